@@ -0,0 +1,113 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sa.com.cloudsolutions.liquibase.Indexes;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the parts of the query analysis hot path that only need SQL and a
+ * Liquibase changelog: WHERE/JOIN collection over JSqlParser ASTs, cardinality lookups,
+ * changelog loading and text block formatting.
+ *
+ * <p>Each operation processes the whole corpus in {@code /benchmarks/query-corpus.sql}, so
+ * scores are corpus passes per second. Run with {@code mvn -Pjmh test-compile exec:exec@jmh};
+ * the profile adds {@code -prof gc} for allocation rates.</p>
+ *
+ * <p>The index snapshot is switched off, so {@link #indexesLoad} measures a full Liquibase
+ * parse and nothing is written to the working directory.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryAnalysisBenchmark {
+
+    @Param("src/jmh/resources/benchmarks/petclinic-changelog.xml")
+    public String changelog;
+
+    private File changelogFile;
+    private List<String> queries;
+    private List<Statement> statements;
+    // table and column pairs looked up by the cardinality benchmark
+    private List<String[]> columns;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Indexes.setSnapshotDirectory(null);
+        changelogFile = new File(changelog);
+        Map<String, Set<Indexes.IndexInfo>> indexMap = Indexes.load(changelogFile);
+        CardinalityAnalyzer.setIndexMap(indexMap);
+
+        queries = QueryCorpus.load();
+        statements = new ArrayList<>();
+        Set<String> whereColumns = new LinkedHashSet<>();
+        for (String query : queries) {
+            Statement statement = CCJSqlParserUtil.parse(query);
+            statements.add(statement);
+            for (WhereCondition condition : QueryOptimizationExtractor.extractWhereConditions(statement)) {
+                whereColumns.add(condition.columnName());
+            }
+        }
+
+        // Every filtered column against every table: a mix of primary keys, indexed and unindexed columns
+        columns = new ArrayList<>();
+        for (String table : indexMap.keySet()) {
+            for (String column : whereColumns) {
+                columns.add(new String[]{table, column});
+            }
+        }
+    }
+
+    @Benchmark
+    public void whereClauseCollector(Blackhole bh) {
+        for (Statement statement : statements) {
+            List<WhereCondition> whereConditions = new ArrayList<>();
+            List<JoinCondition> joinConditions = new ArrayList<>();
+            statement.accept(new WhereClauseCollector(whereConditions, joinConditions), null);
+            bh.consume(whereConditions);
+            bh.consume(joinConditions);
+        }
+    }
+
+    @Benchmark
+    public void analyzeColumnCardinality(Blackhole bh) {
+        for (String[] column : columns) {
+            bh.consume(CardinalityAnalyzer.analyzeColumnCardinality(column[0], column[1]));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Set<Indexes.IndexInfo>> indexesLoad() throws Exception {
+        return Indexes.load(changelogFile);
+    }
+
+    @Benchmark
+    public void formatQueryForTextBlock(Blackhole bh) {
+        for (String query : queries) {
+            bh.consume(QueryOptimizer.formatQueryForTextBlock(query, 80, "            "));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
+import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.BaseRepositoryParser;
+import sa.com.cloudsolutions.antikythera.parser.RepositoryParser;
+import sa.com.cloudsolutions.antikythera.parser.converter.EntityMappingResolver;
+import sa.com.cloudsolutions.liquibase.Indexes;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link QueryAnalysisEngine#analyzeQuery} over every repository query of a
+ * real project.
+ *
+ * <p>The project is the one configured in {@code config}, by default the test helper used by
+ * the unit tests. Point it at a testbed to benchmark a different corpus:</p>
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@jmh \
+ *     -Djmh.args="QueryAnalysisEngineBenchmark -p config=testbeds/petclinic.yml -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryAnalysisEngineBenchmark {
+
+    @Param("src/test/resources/generator.yml")
+    public String config;
+
+    @Param("src/jmh/resources/benchmarks/petclinic-changelog.xml")
+    public String changelog;
+
+    private final QueryAnalysisEngine engine = new QueryAnalysisEngine();
+    private final List<RepositoryQuery> queries = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Settings.loadConfigMap(new File(config));
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+        EntityMappingResolver.reset();
+        EntityMappingResolver.build();
+
+        File changelogFile = new File(changelog);
+        CardinalityAnalyzer.setIndexMap(changelogFile.isFile() ? Indexes.load(changelogFile) : new HashMap<>());
+
+        for (TypeWrapper typeWrapper : AntikytheraRunTime.getResolvedTypes().values()) {
+            if (BaseRepositoryParser.isJpaRepository(typeWrapper)) {
+                collectQueries(typeWrapper);
+            }
+        }
+        if (queries.isEmpty()) {
+            throw new IllegalStateException("No analyzable repository queries found for " + config);
+        }
+    }
+
+    private void collectQueries(TypeWrapper typeWrapper) throws Exception {
+        RepositoryParser parser = new RepositoryParser();
+        parser.compile(AbstractCompiler.classToPath(typeWrapper.getFullyQualifiedName()));
+        parser.processTypes();
+        if (parser.getEntity() == null || parser.getEntity().getFullyQualifiedName() == null) {
+            return;
+        }
+        parser.buildQueries();
+        for (RepositoryQuery query : parser.getAllQueries()) {
+            try {
+                // Keep only queries the engine can analyze, so failures don't skew the score
+                engine.analyzeQuery(query);
+                queries.add(query);
+            } catch (AntikytheraException e) {
+                // not part of the corpus
+            }
+        }
+    }
+
+    @Benchmark
+    public void analyzeQuery(Blackhole bh) {
+        for (RepositoryQuery query : queries) {
+            bh.consume(engine.analyzeQuery(query));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the SQL corpus shared by the JMH benchmarks from {@code /benchmarks/query-corpus.sql}.
+ */
+final class QueryCorpus {
+    static final String CORPUS = "/benchmarks/query-corpus.sql";
+
+    private QueryCorpus() {
+        /* utility class */
+    }
+
+    /**
+     * Returns the statements of the corpus, one per {@code ;} terminated entry, with
+     * {@code --} comment lines removed.
+     */
+    static List<String> load() throws IOException {
+        try (InputStream in = QueryCorpus.class.getResourceAsStream(CORPUS)) {
+            if (in == null) {
+                throw new IllegalStateException("Benchmark corpus not found: " + CORPUS);
+            }
+            StringBuilder sql = new StringBuilder();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.strip().startsWith("--")) {
+                    sql.append(line).append('\n');
+                }
+            }
+
+            List<String> queries = new ArrayList<>();
+            for (String query : sql.toString().split(";")) {
+                if (!query.isBlank()) {
+                    queries.add(query.strip());
+                }
+            }
+            return queries;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+-- Representative queries for the JMH benchmarks, modelled on the repositories in the testbeds
+-- (Spring PetClinic and the antikythera test helper). One statement per entry, ';' terminated.
+
+SELECT * FROM owners WHERE last_name LIKE ?;
+SELECT DISTINCT o.* FROM owners o LEFT JOIN pets p ON o.id = p.owner_id WHERE o.last_name LIKE ?;
+SELECT o.* FROM owners o WHERE o.id = ?;
+SELECT p.* FROM pets p WHERE p.owner_id = ? ORDER BY p.name;
+SELECT pt.* FROM types pt ORDER BY pt.name;
+SELECT v.* FROM visits v WHERE v.pet_id = ? AND v.visit_date BETWEEN ? AND ?;
+SELECT v.* FROM vets v JOIN vet_specialties vs ON v.id = vs.vet_id JOIN specialties s ON s.id = vs.specialty_id WHERE s.name = ?;
+SELECT count(*) FROM visits v WHERE v.visit_date > ? AND v.description IS NOT NULL;
+SELECT p.name, t.name FROM pets p INNER JOIN types t ON p.type_id = t.id WHERE p.birth_date < ? AND t.name IN (?, ?, ?);
+SELECT o.city, count(p.id) FROM owners o JOIN pets p ON p.owner_id = o.id WHERE o.city = ? GROUP BY o.city HAVING count(p.id) > ?;
+SELECT * FROM owners o WHERE o.telephone = ? OR (o.first_name = ? AND o.last_name = ?);
+SELECT * FROM pets p WHERE p.id IN (SELECT v.pet_id FROM visits v WHERE v.visit_date >= ?);
+SELECT * FROM owners o WHERE EXISTS (SELECT 1 FROM pets p WHERE p.owner_id = o.id AND p.type_id = ?);
+UPDATE owners SET address = ?, city = ?, telephone = ? WHERE id = ?;
+UPDATE visits SET description = ? WHERE pet_id = ? AND visit_date = ?;
+DELETE FROM visits WHERE pet_id = ? AND visit_date < ?;
+DELETE FROM vet_specialties WHERE vet_id = ?;
+SELECT u.* FROM users u WHERE u.username = ? AND u.active = ?;
+SELECT u.* FROM users u WHERE u.email = ? AND u.tenant_id = ? AND u.deleted = false;
+SELECT u.* FROM users u WHERE lower(u.username) = lower(?) ORDER BY u.created_at DESC;
+SELECT u.id, u.username FROM users u LEFT JOIN user_roles ur ON ur.user_id = u.id WHERE ur.role = ? AND u.created_at BETWEEN ? AND ?;
+SELECT * FROM users WHERE status = ? AND age > ? AND city = ? AND country = ? ORDER BY last_login DESC LIMIT 50;
+SELECT a.* FROM accounts a WHERE a.customer_id = ? AND a.status IN (?, ?) AND a.opened_on >= ?;
+SELECT t.* FROM transactions t JOIN accounts a ON a.id = t.account_id WHERE a.customer_id = ? AND t.amount > ? AND t.posted = true;
+SELECT * FROM orders o WHERE o.customer_id = ? AND o.status <> ? UNION SELECT * FROM archived_orders ao WHERE ao.customer_id = ?;
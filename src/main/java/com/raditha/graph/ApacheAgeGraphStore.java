@@ -1,5 +1,7 @@
 package com.raditha.graph;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,17 +12,29 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Apache AGE implementation of GraphStore.
  * Uses PostgreSQL JDBC driver and Apache AGE extension.
+ * <p>
+ * Edges are written in batches: the pending edges are grouped by type and attribute names, and
+ * each group is sent as one {@code UNWIND} over a JSON list parameter. The prepared statements are
+ * reused across flushes, and each flush runs in a single transaction.
+ * <p>
+ * Nodes persisted while a {@link SourceFile} is set carry its path and hash in the
+ * {@code sourceFile} and {@code fileHash} properties, which incremental builds match on.
  */
 @SuppressWarnings("java:S2077")
-public class ApacheAgeGraphStore implements GraphStore {
+public class ApacheAgeGraphStore implements IncrementalGraphStore {
 
     private static final Logger logger = LoggerFactory.getLogger(ApacheAgeGraphStore.class);
 
@@ -33,8 +47,13 @@ public class ApacheAgeGraphStore implements GraphStore {
     private Connection connection;
     private final List<KnowledgeGraphEdge> pendingEdges = new ArrayList<>();
     private int edgeCount = 0;
+    private SourceFile sourceFile;
+
+    // Cypher text -> statement prepared on the current connection
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
 
     private static final String BASE_LABEL = "CodeElement";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
 
     public ApacheAgeGraphStore(String url, String user, String password, String graphName, int batchSize) throws SQLException {
         this.url = url;
@@ -45,6 +64,20 @@ public class ApacheAgeGraphStore implements GraphStore {
         initialize();
     }
 
+    /**
+     * Create an ApacheAgeGraphStore with an existing connection.
+     * Useful for testing with mock connections.
+     */
+    ApacheAgeGraphStore(Connection connection, String graphName, int batchSize) throws SQLException {
+        this.url = null;
+        this.user = null;
+        this.password = null;
+        this.graphName = graphName;
+        this.batchSize = batchSize;
+        this.connection = connection;
+        initialize();
+    }
+
     private void initialize() throws SQLException {
         ensureConnection();
         try (Statement stmt = connection.createStatement()) {
@@ -71,6 +104,8 @@ public class ApacheAgeGraphStore implements GraphStore {
 
     private void ensureConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
+            // statements prepared on the old connection cannot be reused
+            statements.clear();
             Properties props = new Properties();
             props.setProperty("user", user);
             props.setProperty("password", password);
@@ -96,21 +131,26 @@ public class ApacheAgeGraphStore implements GraphStore {
             params.put("name", name);
             params.put("fqn", fqn != null ? fqn : name);
             params.put("nodeType", nodeType);
+            String sourceClause = "";
+            if (sourceFile != null) {
+                params.put("sourceFile", sourceFile.path());
+                params.put("fileHash", sourceFile.hash());
+                sourceClause = ", n.sourceFile = $sourceFile, n.fileHash = $fileHash";
+            }
 
             // AGE does not support SET n:Label — store the type as a property instead
             String cypher = """
                 SELECT * FROM cypher('%s', $$
                     MERGE (n:%s {signature: $signature})
-                    SET n.name = $name, n.fqn = $fqn, n.nodeType = $nodeType
+                    SET n.name = $name, n.fqn = $fqn, n.nodeType = $nodeType%s
                 $$, ?) as (v agtype)
-                """.formatted(graphName, BASE_LABEL);
+                """.formatted(graphName, BASE_LABEL, sourceClause);
 
-            String jsonParams = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(params);
+            String jsonParams = objectMapper.writeValueAsString(params);
 
-            try (PreparedStatement stmt = connection.prepareStatement(cypher)) {
-                stmt.setObject(1, jsonParams, java.sql.Types.OTHER);
-                stmt.execute();
-            }
+            PreparedStatement stmt = statement(cypher);
+            stmt.setObject(1, jsonParams, java.sql.Types.OTHER);
+            stmt.execute();
 
         } catch (Exception e) {
             logger.error("Failed to persist node: {}", signature, e);
@@ -126,35 +166,26 @@ public class ApacheAgeGraphStore implements GraphStore {
             ensureConnection();
             logger.debug("Flushing {} pending edges to Apache AGE", pendingEdges.size());
 
+            // Group by type and attribute names, so that each group shares one statement
+            Map<String, List<KnowledgeGraphEdge>> groups = new LinkedHashMap<>();
             for (KnowledgeGraphEdge edge : pendingEdges) {
-                 Map<String, Object> params = new HashMap<>();
-                 params.put("sourceId", edge.sourceId());
-                 params.put("targetId", edge.targetId());
-
-                 // Build individual SET clauses — AGE does not support SET r += $map
-                 StringBuilder setClauses = new StringBuilder();
-                 for (Map.Entry<String, String> attr : edge.attributes().entrySet()) {
-                     params.put("attr_" + attr.getKey(), attr.getValue());
-                     setClauses.append("SET r.").append(attr.getKey())
-                               .append(" = $attr_").append(attr.getKey()).append(" ");
-                 }
-
-                 String cypher = """
-                    SELECT * FROM cypher('%s', $$
-                        MATCH (source:%s {signature: $sourceId})
-                        MATCH (target:%s {signature: $targetId})
-                        MERGE (source)-[r:%s]->(target)
-                        %s
-                    $$, ?) as (v agtype)
-                    """.formatted(graphName, BASE_LABEL, BASE_LABEL,
-                                  edge.type().name(), setClauses.toString());
-
-                 String jsonParams = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(params);
-
-                 try (PreparedStatement stmt = connection.prepareStatement(cypher)) {
-                     stmt.setObject(1, jsonParams, java.sql.Types.OTHER);
-                     stmt.execute();
-                 }
+                List<String> keys = new ArrayList<>(new TreeSet<>(edge.attributes().keySet()));
+                groups.computeIfAbsent(edge.type().name() + "|" + String.join(",", keys),
+                        k -> new ArrayList<>()).add(edge);
+            }
+
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (List<KnowledgeGraphEdge> group : groups.values()) {
+                    writeEdgeGroup(group);
+                }
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
             pendingEdges.clear();
 
@@ -163,6 +194,56 @@ public class ApacheAgeGraphStore implements GraphStore {
         }
     }
 
+    private void writeEdgeGroup(List<KnowledgeGraphEdge> group) throws SQLException, JsonProcessingException {
+        KnowledgeGraphEdge first = group.getFirst();
+        List<String> keys = new ArrayList<>(new TreeSet<>(first.attributes().keySet()));
+        PreparedStatement stmt = statement(edgeBatchCypher(graphName, first.type().name(), keys));
+
+        for (int from = 0; from < group.size(); from += batchSize) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (KnowledgeGraphEdge edge : group.subList(from, Math.min(group.size(), from + batchSize))) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("sourceId", edge.sourceId());
+                row.put("targetId", edge.targetId());
+                for (Map.Entry<String, String> attr : edge.attributes().entrySet()) {
+                    row.put("attr_" + attr.getKey(), attr.getValue());
+                }
+                rows.add(row);
+            }
+            stmt.setObject(1, objectMapper.writeValueAsString(Map.of("batch", rows)), java.sql.Types.OTHER);
+            stmt.execute();
+        }
+    }
+
+    /**
+     * The statement that merges a batch of edges of one type with the given attribute names.
+     * AGE does not support {@code SET r += $map}, so every attribute gets its own SET clause.
+     */
+    static String edgeBatchCypher(String graphName, String type, List<String> attributeKeys) {
+        StringBuilder setClauses = new StringBuilder();
+        for (String key : attributeKeys) {
+            setClauses.append("SET r.").append(key).append(" = row.attr_").append(key).append(' ');
+        }
+        return """
+            SELECT * FROM cypher('%s', $$
+                UNWIND $batch AS row
+                MATCH (source:%s {signature: row.sourceId})
+                MATCH (target:%s {signature: row.targetId})
+                MERGE (source)-[r:%s]->(target)
+                %s
+            $$, ?) as (v agtype)
+            """.formatted(graphName, BASE_LABEL, BASE_LABEL, type, setClauses.toString());
+    }
+
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
     @Override
     public int getEdgeCount() {
         return edgeCount;
@@ -183,6 +264,144 @@ public class ApacheAgeGraphStore implements GraphStore {
         }
     }
 
+    @Override
+    public void setSourceFile(SourceFile sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    @Override
+    public Map<String, String> findSourceFiles() {
+        Map<String, String> files = new HashMap<>();
+        try {
+            ensureConnection();
+            String query = """
+                SELECT * FROM cypher('%s', $$
+                    MATCH (n:%s) WHERE n.sourceFile IS NOT NULL
+                    RETURN DISTINCT n.sourceFile, n.fileHash
+                $$) as (file agtype, hash agtype)
+                """.formatted(graphName, BASE_LABEL);
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    String file = unquote(rs.getString(1));
+                    String hash = unquote(rs.getString(2));
+                    // a file whose nodes disagree on the hash was not fully updated
+                    if (files.containsKey(file) && !Objects.equals(files.get(file), hash)) {
+                        hash = null;
+                    }
+                    files.put(file, hash);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read the source files of graph " + graphName, e);
+        }
+        return files;
+    }
+
+    @Override
+    public Set<String> findFilesReferencing(Collection<String> paths) {
+        flushEdges();
+        Set<String> files = new TreeSet<>();
+        if (paths.isEmpty()) {
+            return files;
+        }
+        try {
+            ensureConnection();
+            String query = """
+                SELECT * FROM cypher('%1$s', $$
+                    MATCH (n:%2$s)-[]->(m:%2$s)
+                    WHERE m.sourceFile IN $paths AND n.sourceFile IS NOT NULL AND NOT n.sourceFile IN $paths
+                    RETURN DISTINCT n.sourceFile
+                $$, ?) as (file agtype)
+                """.formatted(graphName, BASE_LABEL);
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setObject(1, objectMapper.writeValueAsString(Map.of("paths", List.copyOf(paths))),
+                        java.sql.Types.OTHER);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        files.add(unquote(rs.getString(1)));
+                    }
+                }
+            }
+        } catch (SQLException | JsonProcessingException e) {
+            throw new IllegalStateException("Failed to find the files referring to changed files in graph "
+                    + graphName, e);
+        }
+        return files;
+    }
+
+    @Override
+    public void deleteEdgesFrom(Collection<String> paths) {
+        flushEdges();
+        String cypher = """
+            SELECT * FROM cypher('%s', $$
+                UNWIND $batch AS path
+                MATCH (n:%s)-[r]->()
+                WHERE n.sourceFile = path
+                DELETE r
+            $$, ?) as (v agtype)
+            """.formatted(graphName, BASE_LABEL);
+        deleteInBatches(cypher, new ArrayList<Object>(paths));
+    }
+
+    @Override
+    public void deleteStaleNodes(Collection<SourceFile> files) {
+        flushEdges();
+        String cypher = """
+            SELECT * FROM cypher('%s', $$
+                UNWIND $batch AS file
+                MATCH (n:%s)
+                WHERE n.sourceFile = file.path AND (file.hash IS NULL OR n.fileHash <> file.hash)
+                DETACH DELETE n
+            $$, ?) as (v agtype)
+            """.formatted(graphName, BASE_LABEL);
+        List<Object> rows = new ArrayList<>();
+        for (SourceFile file : files) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("path", file.path());
+            row.put("hash", file.hash());
+            rows.add(row);
+        }
+        deleteInBatches(cypher, rows);
+    }
+
+    /**
+     * Runs a delete statement over the rows in batches, all in one transaction.
+     */
+    private void deleteInBatches(String cypher, List<Object> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            ensureConnection();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = statement(cypher);
+                for (int from = 0; from < rows.size(); from += batchSize) {
+                    List<Object> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+                    stmt.setObject(1, objectMapper.writeValueAsString(Map.of("batch", batch)), java.sql.Types.OTHER);
+                    stmt.execute();
+                }
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | JsonProcessingException e) {
+            throw new IllegalStateException("Failed to delete the outdated part of graph " + graphName, e);
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value != null && value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return "null".equals(value) ? null : value;
+    }
+
     @Override
     public List<String> findCallers(String signature) {
         return executeQuery("""
@@ -216,7 +435,7 @@ public class ApacheAgeGraphStore implements GraphStore {
             
             Map<String, Object> params = new HashMap<>();
             params.put("sig", signatureParam);
-            String jsonParams = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(params);
+            String jsonParams = objectMapper.writeValueAsString(params);
 
             try (PreparedStatement stmt = connection.prepareStatement(query)) {
                 stmt.setObject(1, jsonParams, java.sql.Types.OTHER);
@@ -247,6 +466,14 @@ public class ApacheAgeGraphStore implements GraphStore {
     @Override
     public void close() {
         flushEdges();
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing statement", e);
+            }
+        }
+        statements.clear();
         if (connection != null) {
             try {
                 connection.close();
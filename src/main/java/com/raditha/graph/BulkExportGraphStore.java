@@ -0,0 +1,385 @@
+package com.raditha.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GraphStore that writes the graph to CSV files for the bulk importer of the database, instead
+ * of upserting it statement by statement.
+ * <p>
+ * Nodes and edges are streamed to one file per node label and per {@link EdgeType} as they are
+ * persisted. The rows are not kept in memory, but the id of every node and the type, source id
+ * and target id of every edge are, to write each node and edge once; memory use therefore still
+ * grows with the size of the graph, by a few dozen bytes per edge. On {@link #close()} the files
+ * are completed with their headers and an import script is written next to them:
+ * </p>
+ * <ul>
+ *   <li>{@link Format#NEO4J}: files for {@code neo4j-admin database import full}, keyed by
+ *   signature in the {@code CodeElement} id space, and {@code import-neo4j.sh}.</li>
+ *   <li>{@link Format#AGE}: files for Apache AGE's {@code load_labels_from_file} and
+ *   {@code load_edges_from_file}, which load them server side the way {@code COPY} does, and
+ *   {@code import-age.sql}. As with {@link ApacheAgeGraphStore}, all nodes share the
+ *   {@code CodeElement} label and keep their type in {@code nodeType}.</li>
+ * </ul>
+ * <p>
+ * Like the MERGE statements of the live stores, a node or an edge persisted twice is written
+ * once, and a node that is only referenced by edges is written without a name or type. The
+ * export is meant for a full rebuild into an empty database. Nodes persisted while a
+ * {@link SourceFile} is set get {@code sourceFile} and {@code fileHash} columns, so that the
+ * imported graph can be updated incrementally afterwards.
+ * </p>
+ */
+public class BulkExportGraphStore implements GraphStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkExportGraphStore.class);
+
+    private static final String BASE_LABEL = "CodeElement";
+
+    /**
+     * The bulk importer the files are written for.
+     */
+    public enum Format {
+        NEO4J,
+        AGE;
+
+        public static Format fromString(String name) {
+            return "age".equalsIgnoreCase(name) ? AGE : NEO4J;
+        }
+    }
+
+    private record EdgeKey(EdgeType type, long source, long target) {
+    }
+
+    private final Path directory;
+    private final Format format;
+    private final String graphName;
+
+    // signature -> numeric id; the AGE files refer to nodes by these ids
+    private final Map<String, Long> nodeIds = new LinkedHashMap<>();
+    private final BitSet writtenNodes = new BitSet();
+    // one key per distinct edge written, the part of the export that grows with the graph
+    private final Set<EdgeKey> writtenEdges = new HashSet<>();
+    private final Map<String, CsvFile> files = new LinkedHashMap<>();
+    private int nodeCount = 0;
+    private int edgeCount = 0;
+    private IOException failure;
+    private boolean closed;
+    private SourceFile sourceFile;
+
+    /**
+     * @param directory the directory the files are written to, created if missing
+     * @param format the importer to write for
+     * @param graphName the Neo4j database or the AGE graph that the import script loads into
+     */
+    public BulkExportGraphStore(Path directory, Format format, String graphName) throws IOException {
+        this.directory = directory.toAbsolutePath();
+        this.format = format;
+        this.graphName = graphName;
+        Files.createDirectories(this.directory);
+    }
+
+    @Override
+    public void persistNode(String signature, String nodeType, String name, String fqn) {
+        long id = idOf(signature);
+        if (!writtenNodes.get((int) id)) {
+            writtenNodes.set((int) id);
+            writeNode(id, signature, nodeType, name, fqn != null ? fqn : name, sourceFile);
+            nodeCount++;
+        }
+    }
+
+    @Override
+    public void setSourceFile(SourceFile sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    @Override
+    public void persistEdge(KnowledgeGraphEdge edge) {
+        long source = idOf(edge.sourceId());
+        long target = idOf(edge.targetId());
+        if (!writtenEdges.add(new EdgeKey(edge.type(), source, target))) {
+            return;
+        }
+        edgeCount++;
+        if (format == Format.NEO4J) {
+            write("relationships-" + edge.type().name() + ".csv",
+                    List.of(":START_ID(" + BASE_LABEL + ")", ":END_ID(" + BASE_LABEL + ")", ":TYPE"),
+                    List.of(edge.sourceId(), edge.targetId(), edge.type().name()), edge.attributes());
+        } else {
+            write(edge.type().name() + ".csv",
+                    List.of("start_id", "start_vertex_type", "end_id", "end_vertex_type"),
+                    List.of(Long.toString(source), BASE_LABEL, Long.toString(target), BASE_LABEL),
+                    edge.attributes());
+        }
+    }
+
+    private long idOf(String signature) {
+        return nodeIds.computeIfAbsent(signature, s -> (long) nodeIds.size() + 1);
+    }
+
+    private void writeNode(long id, String signature, String nodeType, String name, String fqn, SourceFile source) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (source != null) {
+            properties.put("sourceFile", source.path());
+            properties.put("fileHash", source.hash());
+        }
+        if (format == Format.NEO4J) {
+            String label = nodeType != null ? nodeType : BASE_LABEL;
+            write("nodes-" + label + ".csv",
+                    List.of("signature:ID(" + BASE_LABEL + ")", "name", "fqn", ":LABEL"),
+                    List.of(signature, nullToEmpty(name), nullToEmpty(fqn),
+                            nodeType != null ? BASE_LABEL + ";" + nodeType : BASE_LABEL),
+                    properties);
+        } else {
+            write(BASE_LABEL + ".csv", List.of("id", "signature", "name", "fqn", "nodeType"),
+                    List.of(Long.toString(id), signature, nullToEmpty(name), nullToEmpty(fqn), nullToEmpty(nodeType)),
+                    properties);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private void write(String fileName, List<String> columns, List<String> values, Map<String, String> attributes) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            CsvFile file = files.get(fileName);
+            if (file == null) {
+                file = new CsvFile(directory.resolve(fileName), columns);
+                files.put(fileName, file);
+            }
+            file.write(values, attributes);
+        } catch (IOException e) {
+            // reported by close(); the builder does not expect checked exceptions from the store
+            failure = e;
+        }
+    }
+
+    /**
+     * Edges are written as they are persisted; there is nothing to flush.
+     */
+    @Override
+    public void flushEdges() {
+        // rows are buffered by the file writers only
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * The export always describes a whole graph, to be imported into an empty database.
+     */
+    @Override
+    public void clearGraph() {
+        // nothing to clear
+    }
+
+    @Override
+    public List<String> findCallers(String signature) {
+        throw new UnsupportedOperationException("A bulk export cannot be queried");
+    }
+
+    @Override
+    public List<String> findCallees(String signature) {
+        throw new UnsupportedOperationException("A bulk export cannot be queried");
+    }
+
+    @Override
+    public List<String> findUsages(String signature) {
+        throw new UnsupportedOperationException("A bulk export cannot be queried");
+    }
+
+    /**
+     * Writes the nodes that were only referenced by edges, completes the files and writes the
+     * import script.
+     *
+     * @throws IOException if any of the files could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Map.Entry<String, Long> node : nodeIds.entrySet()) {
+            if (!writtenNodes.get(node.getValue().intValue())) {
+                writeNode(node.getValue(), node.getKey(), null, null, null, null);
+            }
+        }
+        for (CsvFile file : files.values()) {
+            try {
+                file.complete();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        Path script = format == Format.NEO4J ? writeNeo4jScript() : writeAgeScript();
+        logger.info("Exported {} nodes and {} edges to {}; import them with {}",
+                nodeIds.size(), edgeCount, directory, script);
+    }
+
+    private Path writeNeo4jScript() throws IOException {
+        StringBuilder script = new StringBuilder("""
+                #!/bin/sh
+                # Full import into an empty database; stop the database first.
+                cd "$(dirname "$0")" || exit 1
+                neo4j-admin database import full %s --overwrite-destination""".formatted(graphName));
+        for (String fileName : files.keySet()) {
+            String option = fileName.startsWith("nodes-") ? "--nodes" : "--relationships";
+            script.append(" \\\n    ").append(option).append('=').append(fileName);
+        }
+        script.append('\n');
+        Path path = directory.resolve("import-neo4j.sh");
+        Files.writeString(path, script, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    private Path writeAgeScript() throws IOException {
+        StringBuilder script = new StringBuilder("""
+                -- Full import into a new graph. The files are read by the database server,
+                -- so they must be readable from it at these paths.
+                LOAD 'age';
+                SET search_path = ag_catalog, "$user", public;
+                SELECT create_graph('%1$s');
+                SELECT create_vlabel('%1$s', '%2$s');
+                SELECT load_labels_from_file('%1$s', '%2$s', '%3$s', true);
+                """.formatted(graphName, BASE_LABEL, directory.resolve(BASE_LABEL + ".csv")));
+        for (String fileName : files.keySet()) {
+            if (!fileName.equals(BASE_LABEL + ".csv")) {
+                String type = fileName.substring(0, fileName.length() - ".csv".length());
+                script.append("SELECT create_elabel('%s', '%s');%n".formatted(graphName, type));
+                script.append("SELECT load_edges_from_file('%s', '%s', '%s');%n"
+                        .formatted(graphName, type, directory.resolve(fileName)));
+            }
+        }
+        Path path = directory.resolve("import-age.sql");
+        Files.writeString(path, script, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    /**
+     * One CSV file, written in two steps: the rows go to a part file while the attribute columns
+     * are still being discovered, and {@link #complete()} then copies them below the final header,
+     * padding the rows written before a column appeared.
+     */
+    private static final class CsvFile {
+        private final Path path;
+        private final Path part;
+        private final List<String> columns;
+        private final List<String> attributeColumns = new ArrayList<>();
+        private final BufferedWriter writer;
+
+        CsvFile(Path path, List<String> columns) throws IOException {
+            this.path = path;
+            this.part = path.resolveSibling(path.getFileName() + ".part");
+            this.columns = columns;
+            this.writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8);
+        }
+
+        void write(List<String> values, Map<String, String> attributes) throws IOException {
+            for (String key : attributes.keySet()) {
+                if (!attributeColumns.contains(key)) {
+                    attributeColumns.add(key);
+                }
+            }
+            List<String> row = new ArrayList<>(values);
+            if (!attributes.isEmpty()) {
+                for (String key : attributeColumns) {
+                    row.add(attributes.get(key));
+                }
+            }
+            writer.write(toLine(row));
+            writer.newLine();
+        }
+
+        void complete() throws IOException {
+            writer.close();
+            int width = columns.size() + attributeColumns.size();
+            List<String> header = new ArrayList<>(columns);
+            header.addAll(attributeColumns);
+            try (BufferedReader reader = Files.newBufferedReader(part, StandardCharsets.UTF_8);
+                 BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                out.write(toLine(header));
+                out.newLine();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    out.write(line);
+                    out.write(",".repeat(Math.max(0, width - 1 - countSeparators(line))));
+                    out.newLine();
+                }
+            }
+            Files.delete(part);
+        }
+    }
+
+    static String toLine(List<String> cells) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(quote(cells.get(i)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Quotes a cell if it holds a separator, a quote or a line break. Line breaks are replaced
+     * with spaces so that every row stays on one line.
+     */
+    static String quote(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String cell = value.replace('\r', ' ').replace('\n', ' ');
+        if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0) {
+            return cell;
+        }
+        return '"' + cell.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The number of cell separators in a line written by {@link #toLine}.
+     */
+    static int countSeparators(String line) {
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
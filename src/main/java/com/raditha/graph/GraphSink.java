@@ -0,0 +1,31 @@
+package com.raditha.graph;
+
+/**
+ * Receives the nodes and edges extracted from the source code, without being able to query them.
+ */
+public interface GraphSink {
+
+    /**
+     * Persist an edge to the graph store.
+     * @param edge the edge to persist
+     */
+    void persistEdge(KnowledgeGraphEdge edge);
+
+    /**
+     * Persist a node to the graph store.
+     * @param signature unique signature of the node
+     * @param nodeType type of the node (e.g. Class, Method, Field)
+     * @param name name of the node
+     * @param fqn fully qualified name of the node
+     */
+    void persistNode(String signature, String nodeType, String name, String fqn);
+
+    /**
+     * Attribute the nodes persisted from now on to a source file, or to none when null. Stores
+     * that support incremental builds record it on the nodes.
+     * @param sourceFile the file being traversed, or null for nodes that no file owns
+     */
+    default void setSourceFile(SourceFile sourceFile) {
+        // nodes are not attributed to files
+    }
+}
@@ -5,22 +5,7 @@ import java.util.List;
 /**
  * Interface defines the contract for a Graph Store implementation.
  */
-public interface GraphStore extends AutoCloseable {
-
-    /**
-     * Persist an edge to the graph store.
-     * @param edge the edge to persist
-     */
-    void persistEdge(KnowledgeGraphEdge edge);
-
-    /**
-     * Persist a node to the graph store.
-     * @param signature unique signature of the node
-     * @param nodeType type of the node (e.g. Class, Method, Field)
-     * @param name name of the node
-     * @param fqn fully qualified name of the node
-     */
-    void persistNode(String signature, String nodeType, String name, String fqn);
+public interface GraphStore extends GraphSink, AutoCloseable {
 
     /**
      * Flush any pending edges to the graph store.
@@ -18,6 +18,8 @@ import java.util.Map;
  * graph:
  *   type: neo4j          # or "age"
  *   batch_size: 1000
+ *   node_batch_size: 5000  # optional, defaults to batch_size (Neo4j only)
+ *   extraction_threads: 4  # optional, threads walking the compilation units, defaults to 1
  *   neo4j:
  *     uri: bolt://localhost:7687
  *     username: neo4j
@@ -86,8 +88,9 @@ public class GraphStoreFactory {
         String username = getString(neo4jConfig, "username", DEFAULT_NEO4J_USERNAME);
         String password = getString(neo4jConfig, "password", "");
         String database = getString(neo4jConfig, "database", DEFAULT_NEO4J_DATABASE);
+        int nodeBatchSize = getInt(graphConfig, "node_batch_size", batchSize);
 
-        return new Neo4jGraphStore(uri, username, password, database, batchSize);
+        return new Neo4jGraphStore(uri, username, password, database, batchSize, nodeBatchSize);
     }
 
     @SuppressWarnings("unchecked")
@@ -102,6 +105,17 @@ public class GraphStoreFactory {
         return new ApacheAgeGraphStore(url, user, password, graphName, batchSize);
     }
 
+    /**
+     * The number of threads that {@link KnowledgeGraphBuilder} extracts the graph with, from
+     * {@code graph.extraction_threads} in the already-loaded Settings. Defaults to 1.
+     */
+    @SuppressWarnings("unchecked")
+    public static int getExtractionThreads() {
+        Map<String, Object> graphConfig = Settings.getProperty("graph", Map.class)
+                .orElse(Map.of());
+        return Math.max(1, getInt(graphConfig, "extraction_threads", 1));
+    }
+
     private static String getString(Map<String, Object> config, String key, String defaultValue) {
         Object value = config.get(key);
         return value != null ? value.toString() : defaultValue;
@@ -0,0 +1,41 @@
+package com.raditha.graph;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A graph store that records the source file of every node, so that a graph built earlier can be
+ * updated with only the files that changed since. See {@link KnowledgeGraphBuilder#update}.
+ */
+public interface IncrementalGraphStore extends GraphStore {
+
+    /**
+     * Find the source files that the nodes in the graph were extracted from.
+     * @return the path of each file mapped to the hash it had when it was extracted, or to null
+     *         if its nodes disagree on the hash
+     */
+    Map<String, String> findSourceFiles();
+
+    /**
+     * Find the other source files whose nodes have edges into nodes extracted from the given
+     * files, so that they can be extracted again when those files change.
+     * @param paths paths of the source files
+     * @return paths of the referencing files, none of the given ones among them
+     */
+    Set<String> findFilesReferencing(Collection<String> paths);
+
+    /**
+     * Delete the edges leaving the nodes extracted from the given files, before the files are
+     * extracted again.
+     * @param paths paths of the source files
+     */
+    void deleteEdgesFrom(Collection<String> paths);
+
+    /**
+     * Delete, with their edges, the nodes extracted from the given files that were not extracted
+     * again from their current content.
+     * @param files the files with their current hash, or a null hash to delete all their nodes
+     */
+    void deleteStaleNodes(Collection<SourceFile> files);
+}
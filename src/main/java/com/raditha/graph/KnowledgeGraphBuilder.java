@@ -40,13 +40,21 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -63,17 +71,38 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
     public static final String PARTIAL = "partial";
     private static final String ANNOTATION_SIGNATURE_PREFIX = "annotation:";
     private static final String UNRESOLVED_ANNOTATION_PREFIX = "unresolved:";
+    // compilation units extracted ahead of the writer, per extraction thread
+    private static final int HAND_OFF_UNITS_PER_THREAD = 4;
+    /*
+     * AbstractCompiler resolves types through static caches that are not safe to use from
+     * several threads, so the extraction workers take every AbstractCompiler call under this
+     * lock while they walk the syntax trees in parallel. The other helpers they use only read
+     * the syntax tree of their own unit (SignatureUtils) or the loaded settings (SourceFile).
+     */
+    private static final Object RESOLUTION_LOCK = new Object();
 
     private final GraphStore graphStore;
+    // where extracted nodes and edges go: the store itself, or a recording on a worker
+    private final GraphSink sink;
     private boolean autoClose = true;
+    private int extractionThreads = 1;
+    // the file being traversed, which owns the nodes persisted meanwhile
+    private SourceFile currentSource;
 
     public KnowledgeGraphBuilder(GraphStore graphStore) {
+        this(graphStore, graphStore);
+    }
+
+    private KnowledgeGraphBuilder(GraphStore graphStore, GraphSink sink) {
         this.graphStore = graphStore;
+        this.sink = sink;
     }
 
     public static KnowledgeGraphBuilder fromSettings(File configFile) throws IOException, java.sql.SQLException {
         GraphStore store = GraphStoreFactory.createGraphStore(configFile);
-        return new KnowledgeGraphBuilder(store);
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(store);
+        builder.setExtractionThreads(GraphStoreFactory.getExtractionThreads());
+        return builder;
     }
 
     /**
@@ -82,13 +111,87 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
     public void build(List<CompilationUnit> units) {
         logger.info("Starting knowledge graph build for {} compilation units", units.size());
         try {
+            extract(units, null);
+            graphStore.flushEdges();
+            logger.info("Knowledge graph build complete. Total edges: {}", graphStore.getEdgeCount());
+        } finally {
+            if (autoClose) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Incremental entry point: brings a graph built earlier from the same project up to date,
+     * extracting only the compilation units whose file changed since then and the ones that refer
+     * to them.
+     * <p>
+     * Every node records the file it was extracted from and the hash of that file. The nodes of
+     * files whose hash differs from the one in the graph, and of files that are no longer among
+     * the units, are deleted with their edges. Unchanged files with edges into those nodes lose
+     * their outgoing edges. Then the changed files and those referencing files are extracted
+     * again, so the edges into a changed file are resolved against its current content: a call
+     * into a removed method is recorded as a full build records it, against a bare target.
+     * Unchanged files that only refer to a changed file through names that did not resolve to
+     * any of its nodes are not extracted again.
+     * </p>
+     *
+     * @param units all the compilation units of the project, changed or not
+     * @throws UnsupportedOperationException if the graph store is not an {@link IncrementalGraphStore}
+     */
+    public void update(List<CompilationUnit> units) {
+        try {
+            if (!(graphStore instanceof IncrementalGraphStore store)) {
+                throw new UnsupportedOperationException("Incremental updates are not supported by "
+                        + (graphStore == null ? "a missing graph store" : graphStore.getClass().getSimpleName()));
+            }
+            Map<String, String> previous = store.findSourceFiles();
+
+            Map<CompilationUnit, SourceFile> sources = new IdentityHashMap<>();
+            List<CompilationUnit> files = new ArrayList<>();
+            Set<String> current = new HashSet<>();
+            Set<String> changed = new HashSet<>();
             for (CompilationUnit cu : units) {
-                for (TypeDeclaration<?> type : cu.getTypes()) {
-                    traverseType(type, null);
+                // units with several top level types are listed once per type
+                SourceFile source = sources.containsKey(cu) ? null : SourceFile.of(cu);
+                if (source == null) {
+                    continue;
+                }
+                sources.put(cu, source);
+                files.add(cu);
+                current.add(source.path());
+                if (!source.hash().equals(previous.get(source.path()))) {
+                    changed.add(source.path());
                 }
             }
-            graphStore.flushEdges();
-            logger.info("Knowledge graph build complete. Total edges: {}", graphStore.getEdgeCount());
+            List<SourceFile> outdated = new ArrayList<>();
+            changed.forEach(path -> outdated.add(new SourceFile(path, null)));
+            for (String path : previous.keySet()) {
+                if (!current.contains(path)) {
+                    outdated.add(new SourceFile(path, null));
+                }
+            }
+            if (outdated.isEmpty()) {
+                logger.info("Updating the knowledge graph: none of {} files changed", current.size());
+                return;
+            }
+
+            Set<String> referencing = store.findFilesReferencing(outdated.stream().map(SourceFile::path).toList());
+            logger.info("Updating the knowledge graph: {} of {} files changed, {} removed, {} referring to them",
+                    changed.size(), current.size(), outdated.size() - changed.size(), referencing.size());
+
+            store.deleteEdgesFrom(referencing);
+            store.deleteStaleNodes(outdated);
+            List<CompilationUnit> extracted = new ArrayList<>();
+            for (CompilationUnit cu : files) {
+                String path = sources.get(cu).path();
+                if (changed.contains(path) || referencing.contains(path)) {
+                    extracted.add(cu);
+                }
+            }
+            extract(extracted, sources);
+            store.flushEdges();
+            logger.info("Knowledge graph update complete. Total edges written: {}", store.getEdgeCount());
         } finally {
             if (autoClose) {
                 close();
@@ -96,6 +199,28 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
         }
     }
 
+    /**
+     * Returns true if {@link #update(List)} can be used with the graph store of this builder.
+     */
+    public boolean supportsIncremental() {
+        return graphStore instanceof IncrementalGraphStore;
+    }
+
+    /**
+     * Traverses the units, on several threads if so configured.
+     *
+     * @param sources the source files of the units, or null to hash them while traversing
+     */
+    private void extract(List<CompilationUnit> units, Map<CompilationUnit, SourceFile> sources) {
+        if (extractionThreads > 1 && units.size() > 1) {
+            extractInParallel(units, sources);
+        } else {
+            for (CompilationUnit cu : units) {
+                traverseUnit(cu, sources != null ? sources.get(cu) : SourceFile.of(cu));
+            }
+        }
+    }
+
     /**
      * Compatibility wrapper for existing method-based callers.
      */
@@ -136,6 +261,87 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
         this.autoClose = autoClose;
     }
 
+    /**
+     * Sets the number of threads that extract nodes and edges from the compilation units.
+     * With more than one, {@link #build(List)} walks the units on worker threads while the
+     * calling thread writes what they found to the graph store.
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        this.extractionThreads = Math.max(1, extractionThreads);
+    }
+
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
+    private void traverseUnit(CompilationUnit cu, SourceFile source) {
+        currentSource = source;
+        sink.setSourceFile(source);
+        try {
+            for (TypeDeclaration<?> type : cu.getTypes()) {
+                traverseType(type, null);
+            }
+        } finally {
+            currentSource = null;
+            sink.setSourceFile(null);
+        }
+    }
+
+    /**
+     * Walks the compilation units on a pool of worker threads. Each unit is traversed by a
+     * builder of its own that records the nodes and edges instead of writing them, and the
+     * recordings are handed back through a bounded window of pending units. The calling thread
+     * is the only writer: it replays the recordings into the graph store in the original unit
+     * order, so the store sees the same calls as in a serial build and ends in the same state,
+     * while the workers stay at most a few units ahead of it.
+     */
+    private void extractInParallel(List<CompilationUnit> units, Map<CompilationUnit, SourceFile> sources) {
+        int threads = Math.min(extractionThreads, units.size());
+        int capacity = threads * HAND_OFF_UNITS_PER_THREAD;
+        logger.info("Extracting on {} threads", threads);
+
+        Deque<Future<RecordingGraphSink>> handOff = new ArrayDeque<>(capacity);
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            try {
+                for (CompilationUnit cu : units) {
+                    if (handOff.size() >= capacity) {
+                        awaitRecording(handOff.removeFirst()).replayInto(this);
+                    }
+                    handOff.addLast(pool.submit(() -> record(cu, sources)));
+                }
+                while (!handOff.isEmpty()) {
+                    awaitRecording(handOff.removeFirst()).replayInto(this);
+                }
+            } finally {
+                handOff.forEach(future -> future.cancel(true));
+            }
+        }
+    }
+
+    private static RecordingGraphSink record(CompilationUnit cu, Map<CompilationUnit, SourceFile> sources) {
+        RecordingGraphSink recording = new RecordingGraphSink();
+        KnowledgeGraphBuilder worker = new KnowledgeGraphBuilder(null, recording);
+        worker.traverseUnit(cu, sources != null ? sources.get(cu) : SourceFile.of(cu));
+        return recording;
+    }
+
+    private static RecordingGraphSink awaitRecording(Future<RecordingGraphSink> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the knowledge graph", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     public void close() {
         if (graphStore != null) {
             try {
@@ -175,7 +381,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 .type(EdgeType.USES)
                 .build();
 
-        graphStore.persistEdge(edge);
+        sink.persistEdge(edge);
         logger.trace("Edge: {} --USES--> {}", sourceId, targetId);
     }
 
@@ -196,7 +402,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 .attribute("kind", LAMBDA)
                 .build();
 
-        graphStore.persistEdge(edge);
+        sink.persistEdge(edge);
         logger.trace("Edge: {} --ENCLOSES--> {} (lambda)", sourceId, lambdaId);
     }
 
@@ -217,7 +423,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 .attribute("kind", "inner_class")
                 .build();
 
-        graphStore.persistEdge(edge);
+        sink.persistEdge(edge);
         logger.trace("Edge: {} --ENCLOSES--> {} (nested type)", sourceId, targetId);
     }
 
@@ -241,7 +447,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 .type(EdgeType.CONTAINS)
                 .build();
 
-        graphStore.persistEdge(edge);
+        sink.persistEdge(edge);
         logger.trace("Edge: {} --CONTAINS--> {}", sourceId, targetId);
     }
 
@@ -256,7 +462,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 .type(EdgeType.EXTENDS)
                 .build();
 
-        graphStore.persistEdge(edge);
+        sink.persistEdge(edge);
         logger.trace("Edge: {} --EXTENDS--> {}", sourceId, targetId);
     }
 
@@ -271,7 +477,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 .type(EdgeType.IMPLEMENTS)
                 .build();
 
-        graphStore.persistEdge(edge);
+        sink.persistEdge(edge);
         logger.trace("Edge: {} --IMPLEMENTS--> {}", sourceId, targetId);
     }
 
@@ -283,7 +489,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
         emitAnnotations(typeSignature, type, typeCu);
 
         if (enclosingSignature != null) {
-            graphStore.persistEdge(KnowledgeGraphEdge.builder()
+            sink.persistEdge(KnowledgeGraphEdge.builder()
                     .source(enclosingSignature)
                     .target(typeSignature)
                     .type(EdgeType.ENCLOSES)
@@ -314,7 +520,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 persistNode(constantSignature, "EnumConstant", constant.getNameAsString(), typeSignature);
                 emitAnnotations(constantSignature, constant, typeCu);
 
-                graphStore.persistEdge(KnowledgeGraphEdge.builder()
+                sink.persistEdge(KnowledgeGraphEdge.builder()
                         .source(typeSignature)
                         .target(constantSignature)
                         .type(EdgeType.CONTAINS)
@@ -385,7 +591,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 String paramSignature = SignatureUtils.getParameterSignature(callableSignature, parameter);
                 persistNode(paramSignature, "Parameter", parameter.getNameAsString(), paramSignature);
 
-                graphStore.persistEdge(KnowledgeGraphEdge.builder()
+                sink.persistEdge(KnowledgeGraphEdge.builder()
                         .source(callableSignature)
                         .target(paramSignature)
                         .type(EdgeType.CONTAINS)
@@ -404,7 +610,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
         if (callable instanceof MethodDeclaration methodDeclaration) {
             String returnType = methodDeclaration.getType().asString();
             if (!"void".equals(returnType)) {
-                graphStore.persistEdge(KnowledgeGraphEdge.builder()
+                sink.persistEdge(KnowledgeGraphEdge.builder()
                         .source(callableSignature)
                         .target(resolveTypeSignature(cu, methodDeclaration.getType()))
                         .type(EdgeType.USES)
@@ -416,7 +622,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
     private void emitContains(String ownerSignature, BodyDeclaration<?> member) {
         if (member instanceof FieldDeclaration fd) {
             for (String fieldSignature : SignatureUtils.getFieldSignatures(ownerSignature, fd)) {
-                graphStore.persistEdge(KnowledgeGraphEdge.builder()
+                sink.persistEdge(KnowledgeGraphEdge.builder()
                         .source(ownerSignature)
                         .target(fieldSignature)
                         .type(EdgeType.CONTAINS)
@@ -426,7 +632,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
         }
 
         String memberSignature = SignatureUtils.getMemberSignature(ownerSignature, member);
-        graphStore.persistEdge(KnowledgeGraphEdge.builder()
+        sink.persistEdge(KnowledgeGraphEdge.builder()
                 .source(ownerSignature)
                 .target(memberSignature)
                 .type(EdgeType.CONTAINS)
@@ -444,7 +650,12 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
             }
 
             String annotationSignature = ANNOTATION_SIGNATURE_PREFIX + annotationFqn;
-            persistNode(annotationSignature, "Annotation", annotationName, annotationFqn);
+            if (annotationFqn.startsWith(UNRESOLVED_ANNOTATION_PREFIX)) {
+                // specific to the annotated element, so it belongs to this file
+                persistNode(annotationSignature, "Annotation", annotationName, annotationFqn);
+            } else {
+                persistSharedNode(annotationSignature, "Annotation", annotationName, annotationFqn);
+            }
 
             KnowledgeGraphEdge edge = KnowledgeGraphEdge.builder()
                     .source(sourceSignature)
@@ -452,7 +663,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                     .type(EdgeType.ANNOTATED_BY)
                     .build();
 
-            graphStore.persistEdge(edge);
+            sink.persistEdge(edge);
             logger.trace("Edge: {} --ANNOTATED_BY--> {}", sourceSignature, annotationSignature);
         }
     }
@@ -495,7 +706,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
             }
         }
 
-        graphStore.persistEdge(edgeBuilder.build());
+        sink.persistEdge(edgeBuilder.build());
         logger.trace("Edge: {} --CALLS--> {}", context.sourceId(), targetId);
     }
 
@@ -522,7 +733,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
             edgeBuilder.attribute(RESOLUTION, resolution);
         }
 
-        graphStore.persistEdge(edgeBuilder.build());
+        sink.persistEdge(edgeBuilder.build());
         logger.trace("Edge: {} --ACCESSES--> {}", context.sourceId(), targetId);
     }
 
@@ -574,7 +785,9 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
 
     private String findFullyQualifiedName(CompilationUnit compilationUnit, String name) {
         try {
-            return AbstractCompiler.findFullyQualifiedName(compilationUnit, name);
+            synchronized (RESOLUTION_LOCK) {
+                return AbstractCompiler.findFullyQualifiedName(compilationUnit, name);
+            }
         } catch (RuntimeException e) {
             logger.trace("Unable to resolve fully qualified name for {}", name, e);
             return null;
@@ -583,7 +796,9 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
 
     private TypeWrapper findType(CompilationUnit compilationUnit, Type type) {
         try {
-            return AbstractCompiler.findType(compilationUnit, type);
+            synchronized (RESOLUTION_LOCK) {
+                return AbstractCompiler.findType(compilationUnit, type);
+            }
         } catch (RuntimeException e) {
             logger.trace("Unable to resolve type {}", type, e);
             return null;
@@ -596,7 +811,10 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
      */
     private String buildLocalClassName(TypeDeclaration<?> localType) {
         String localName = localType.getNameAsString();
-        TypeDeclaration<?> enclosing = AbstractCompiler.getEnclosingType(localType.getParentNode().orElse(null));
+        TypeDeclaration<?> enclosing;
+        synchronized (RESOLUTION_LOCK) {
+            enclosing = AbstractCompiler.getEnclosingType(localType.getParentNode().orElse(null));
+        }
         if (enclosing != null) {
             String enclosingFqn = enclosing.getFullyQualifiedName().orElse(enclosing.getNameAsString());
             int index = 1;
@@ -642,12 +860,71 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
 
     private void persistNode(String signature, String nodeType, String name, String fqn) {
         try {
-            graphStore.persistNode(signature, nodeType, name, fqn);
+            sink.persistNode(signature, nodeType, name, fqn);
         } catch (Exception e) {
             logger.debug("Node upsert skipped for {} due to store implementation: {}", signature, e.getMessage());
         }
     }
 
+    /**
+     * Persists a node that many files refer to, such as an annotation, without attributing it to
+     * the file being traversed, so that a change to that file does not delete it.
+     */
+    private void persistSharedNode(String signature, String nodeType, String name, String fqn) {
+        if (currentSource == null) {
+            persistNode(signature, nodeType, name, fqn);
+            return;
+        }
+        sink.setSourceFile(null);
+        try {
+            persistNode(signature, nodeType, name, fqn);
+        } finally {
+            sink.setSourceFile(currentSource);
+        }
+    }
+
+    /**
+     * Collects the nodes and edges that a worker extracts from one compilation unit, in the order
+     * they were emitted, until the writer replays them into the real store. It only accepts
+     * writes; a worker never reads from the graph.
+     */
+    private static final class RecordingGraphSink implements GraphSink {
+        private record PendingNode(String signature, String nodeType, String name, String fqn) {
+        }
+
+        private record SourceChange(SourceFile sourceFile) {
+        }
+
+        private final List<Object> emitted = new ArrayList<>();
+
+        @Override
+        public void persistEdge(KnowledgeGraphEdge edge) {
+            emitted.add(edge);
+        }
+
+        @Override
+        public void persistNode(String signature, String nodeType, String name, String fqn) {
+            emitted.add(new PendingNode(signature, nodeType, name, fqn));
+        }
+
+        @Override
+        public void setSourceFile(SourceFile sourceFile) {
+            emitted.add(new SourceChange(sourceFile));
+        }
+
+        void replayInto(KnowledgeGraphBuilder writer) {
+            for (Object element : emitted) {
+                if (element instanceof PendingNode node) {
+                    writer.persistNode(node.signature(), node.nodeType(), node.name(), node.fqn());
+                } else if (element instanceof SourceChange change) {
+                    writer.sink.setSourceFile(change.sourceFile());
+                } else {
+                    writer.sink.persistEdge((KnowledgeGraphEdge) element);
+                }
+            }
+        }
+    }
+
     private record ScopeContext(
             String sourceId,
             String enclosingTypeSignature,
@@ -686,7 +963,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
                 edgeBuilder.attribute(RESOLUTION, resolution);
             }
 
-            graphStore.persistEdge(edgeBuilder.build());
+            sink.persistEdge(edgeBuilder.build());
             logger.trace("Edge: {} --REFERENCES--> {}", context.sourceId(), targetId);
         }
 
@@ -710,7 +987,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
 
         @Override
         public void visit(ClassOrInterfaceType n, ScopeContext context) {
-            graphStore.persistEdge(KnowledgeGraphEdge.builder()
+            sink.persistEdge(KnowledgeGraphEdge.builder()
                     .source(context.sourceId())
                     .target(resolveTypeSignature(context.compilationUnit(), n))
                     .type(EdgeType.USES)
@@ -732,7 +1009,7 @@ public class KnowledgeGraphBuilder extends DependencyAnalyzer {
             String lambdaSignature = SignatureUtils.getLambdaSignature(context.sourceId(), n, index);
             persistNode(lambdaSignature, "Lambda", LAMBDA, context.enclosingTypeSignature());
 
-            graphStore.persistEdge(KnowledgeGraphEdge.builder()
+            sink.persistEdge(KnowledgeGraphEdge.builder()
                     .source(context.sourceId())
                     .target(lambdaSignature)
                     .type(EdgeType.ENCLOSES)
@@ -11,6 +11,7 @@ import sa.com.cloudsolutions.antikythera.parser.MavenHelper;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
@@ -25,6 +26,14 @@ import java.util.Optional;
  * <br>
  * Backward-compatible positional usage:
  * java com.raditha.graph.KnowledgeGraphCLI <path-to-project-src> [path-to-graph.yml]
+ * <br>
+ * With {@code --bulk-export=<dir>} the graph is not written to the database but exported to CSV
+ * files for its bulk importer ({@code neo4j-admin database import} or Apache AGE's file loaders,
+ * following {@code graph.type}), together with a script that runs the import.
+ * <br>
+ * With {@code --incremental} only the files that changed since the graph was last built, and the
+ * files with edges into them, are extracted again, and the nodes of changed and removed files are
+ * replaced. It needs a graph store that records source files, as the Neo4j and AGE stores do.
  * </p>
  */
 @SuppressWarnings("java:S106")
@@ -38,11 +47,20 @@ public class KnowledgeGraphCLI {
     private static final String PROJECT_PATH_OPTION = "--project-path=";
     private static final String CLEAR_FLAG = "--clear";
     private static final String NO_CLEAR_FLAG = "--no-clear";
+    private static final String BULK_EXPORT_OPTION = "--bulk-export=";
+    private static final String INCREMENTAL_FLAG = "--incremental";
 
     public static void main(String[] args) {
         try {
             CliOptions options = parseArgs(args);
-            new KnowledgeGraphCLI().run(options.basePath(), options.configPath(), options.clearOnStart());
+            KnowledgeGraphCLI cli = new KnowledgeGraphCLI();
+            if (options.bulkExportDir() != null) {
+                cli.export(options.basePath(), options.configPath(), Path.of(options.bulkExportDir()));
+            } else if (options.incremental()) {
+                cli.update(options.basePath(), options.configPath());
+            } else {
+                cli.run(options.basePath(), options.configPath(), options.clearOnStart());
+            }
         } catch (IOException | SQLException | XmlPullParserException | RuntimeException e) {
             logger.error("Knowledge graph build failed", e);
             System.exit(1);
@@ -89,7 +107,14 @@ public class KnowledgeGraphCLI {
         // Absence of either flag falls back to graph.clear_on_start in the YAML.
         Boolean clearOnStart = parseClearOverride(args);
 
-        return new CliOptions(basePath, configPath, clearOnStart);
+        String bulkExportDir = findOptionValue(args, BULK_EXPORT_OPTION).orElse(null);
+
+        boolean incremental = Arrays.asList(args).contains(INCREMENTAL_FLAG);
+        if (incremental && (bulkExportDir != null || Boolean.TRUE.equals(clearOnStart))) {
+            throw new IllegalArgumentException("--incremental cannot be used with --bulk-export or --clear");
+        }
+
+        return new CliOptions(basePath, configPath, clearOnStart, bulkExportDir, incremental);
     }
 
     private static Optional<String> findOptionValue(String[] args, String prefix) {
@@ -119,34 +144,8 @@ public class KnowledgeGraphCLI {
 
     @SuppressWarnings("unchecked")
     public void run(String projectPath, String configPath, Boolean clearOverride) throws IOException, SQLException, XmlPullParserException {
-        logger.info("Initializing Knowledge Graph Builder...");
-        logger.info("Target Project: {}", projectPath);
-        logger.info("Configuration: {}", configPath);
-
-        // 1. Ensure Configuration is loaded from selected file
-        File configFile = new File(configPath);
-        Settings.loadConfigMap(configFile);
-
-        // 2. Override base_path with the provided CLI argument
-        // This ensures AbstractCompiler looks at the correct source root
-        updateBasePath(projectPath);
-
-        // 3. Initialize Parser via MavenHelper to resolve dependencies
-        AbstractCompiler.reset();
-
-        MavenHelper mavenHelper = new MavenHelper();
-        mavenHelper.readPomFile();
-        mavenHelper.buildJarPaths();
-
-        new AbstractCompiler();
-        AbstractCompiler.preProcess();
-
-        // 4. Collect resolved compilation units from runtime
-        List<CompilationUnit> units = collectCompilationUnits();
-        logger.info("Found {} compilation units to analyze.", units.size());
-
+        List<CompilationUnit> units = loadCompilationUnits(projectPath, configPath);
         if (units.isEmpty()) {
-            logger.warn("No compilation units found. Check the project path and structure.");
             return;
         }
 
@@ -174,7 +173,106 @@ public class KnowledgeGraphCLI {
         }
 
         KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(store);
+        builder.setExtractionThreads(GraphStoreFactory.getExtractionThreads());
+        builder.build(units);
+    }
+
+    /**
+     * Updates the graph built earlier for the project, extracting only the files that changed since.
+     * The whole project is still parsed, since resolving the types of a changed file needs the
+     * others, but nothing is cleared and unchanged files are not written again.
+     */
+    public void update(String projectPath, String configPath) throws IOException, SQLException, XmlPullParserException {
+        // check the store before the project is parsed
+        Settings.loadConfigMap(new File(configPath));
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(GraphStoreFactory.createGraphStore());
+        if (!builder.supportsIncremental()) {
+            builder.close();
+            throw new IllegalArgumentException(INCREMENTAL_FLAG + " is not supported by the "
+                    + builder.getGraphStore().getClass().getSimpleName());
+        }
+
+        List<CompilationUnit> units = loadCompilationUnits(projectPath, configPath);
+        if (units.isEmpty()) {
+            // a project that failed to load would otherwise look as if all its files were removed
+            builder.close();
+            return;
+        }
+        builder.setExtractionThreads(GraphStoreFactory.getExtractionThreads());
+        builder.update(units);
+    }
+
+    /**
+     * Builds the graph into CSV files for the bulk importer of the configured backend instead of
+     * writing it to the database. Meant for full rebuilds, where the import replaces the graph.
+     *
+     * @param outputDir the directory the CSV files and the import script are written to
+     */
+    @SuppressWarnings("unchecked")
+    public void export(String projectPath, String configPath, Path outputDir) throws IOException, XmlPullParserException {
+        List<CompilationUnit> units = loadCompilationUnits(projectPath, configPath);
+        if (units.isEmpty()) {
+            return;
+        }
+
+        java.util.Map<String, Object> graphConfig = Settings.getProperty("graph", java.util.Map.class)
+                .orElse(java.util.Map.of());
+        BulkExportGraphStore.Format format = BulkExportGraphStore.Format.fromString(
+                String.valueOf(graphConfig.getOrDefault("type", "neo4j")));
+        String graphName = format == BulkExportGraphStore.Format.AGE
+                ? nestedString(graphConfig, "age", "graph_name", "antikythera_graph")
+                : nestedString(graphConfig, "neo4j", "database", "neo4j");
+        logger.info("Exporting the graph for the {} bulk importer to {}", format, outputDir);
+
+        BulkExportGraphStore store = new BulkExportGraphStore(outputDir, format, graphName);
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(store);
+        builder.setExtractionThreads(GraphStoreFactory.getExtractionThreads());
+        // close the store here so that a failed write fails the export
+        builder.setAutoClose(false);
         builder.build(units);
+        store.close();
+    }
+
+    private static String nestedString(java.util.Map<String, Object> config, String section, String key,
+                                       String defaultValue) {
+        if (config.get(section) instanceof java.util.Map<?, ?> nested && nested.get(key) != null) {
+            return nested.get(key).toString();
+        }
+        return defaultValue;
+    }
+
+    private List<CompilationUnit> loadCompilationUnits(String projectPath, String configPath)
+            throws IOException, XmlPullParserException {
+        logger.info("Initializing Knowledge Graph Builder...");
+        logger.info("Target Project: {}", projectPath);
+        logger.info("Configuration: {}", configPath);
+
+        // 1. Ensure Configuration is loaded from selected file
+        File configFile = new File(configPath);
+        Settings.loadConfigMap(configFile);
+
+        // 2. Override base_path with the provided CLI argument
+        // This ensures AbstractCompiler looks at the correct source root
+        updateBasePath(projectPath);
+
+        // 3. Initialize Parser via MavenHelper to resolve dependencies
+        AbstractCompiler.reset();
+
+        MavenHelper mavenHelper = new MavenHelper();
+        mavenHelper.readPomFile();
+        mavenHelper.buildJarPaths();
+
+        new AbstractCompiler();
+        AbstractCompiler.preProcess();
+
+        // 4. Collect resolved compilation units from runtime
+        List<CompilationUnit> units = collectCompilationUnits();
+        logger.info("Found {} compilation units to analyze.", units.size());
+
+        if (units.isEmpty()) {
+            logger.warn("No compilation units found. Check the project path and structure.");
+        }
+        return units;
     }
 
     static boolean parseClearOnStart(Object configValue) {
@@ -211,6 +309,7 @@ public class KnowledgeGraphCLI {
         return new java.util.ArrayList<>(AntikytheraRunTime.getResolvedCompilationUnits().values());
     }
 
-    record CliOptions(String basePath, String configPath, Boolean clearOnStart) {
+    record CliOptions(String basePath, String configPath, Boolean clearOnStart, String bulkExportDir,
+                      boolean incremental) {
     }
 }
@@ -3,25 +3,40 @@ package com.raditha.graph;
 import org.neo4j.driver.AuthTokens;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Record;
 import org.neo4j.driver.Session;
 import org.neo4j.driver.Values;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Neo4j graph store for persisting Knowledge Graph nodes and edges.
  * Supports streaming persistence with configurable batch sizes.
+ * <p>
+ * Nodes and edges are buffered and written with {@code UNWIND} in write transactions, one
+ * statement per node label or edge type. Pending nodes are always written before pending edges,
+ * so an edge never creates a bare node that its labelled node has to be merged into later.
+ * <p>
+ * Nodes persisted while a {@link SourceFile} is set carry its path and hash in the
+ * {@code sourceFile} and {@code fileHash} properties, which incremental builds match on.
  */
-public class Neo4jGraphStore implements GraphStore {
+public class Neo4jGraphStore implements IncrementalGraphStore {
 
     private static final Logger logger = LoggerFactory.getLogger(Neo4jGraphStore.class);
 
     private final Driver driver;
     private final String database;
     private final int batchSize;
+    private final int nodeBatchSize;
 
     private static final String BASE_LABEL = "CodeElement";
 
@@ -30,20 +45,40 @@ public class Neo4jGraphStore implements GraphStore {
     private final List<KnowledgeGraphEdge> pendingEdges = new ArrayList<>();
     private int edgeCount = 0;
 
+    // label -> signature -> properties; a node persisted twice before a flush is written once
+    private final Map<String, Map<String, Map<String, Object>>> pendingNodes = new LinkedHashMap<>();
+    private int pendingNodeCount = 0;
+    private int nodeCount = 0;
+    private SourceFile sourceFile;
+
     /**
      * Create a Neo4jGraphStore with an existing driver.
      * Useful for testing with mock drivers.
      */
     public Neo4jGraphStore(Driver driver, String database, int batchSize) {
+        this(driver, database, batchSize, batchSize);
+    }
+
+    /**
+     * Create a Neo4jGraphStore with an existing driver and separate batch sizes for nodes and edges.
+     */
+    public Neo4jGraphStore(Driver driver, String database, int batchSize, int nodeBatchSize) {
         this.driver = driver;
         this.database = database;
         this.batchSize = batchSize;
+        this.nodeBatchSize = Math.max(1, nodeBatchSize);
         // Don't log connection info for existing driver as it might be a mock
     }
 
     public Neo4jGraphStore(String uri, String username, String password, String database, int batchSize) {
-        this(GraphDatabase.driver(uri, AuthTokens.basic(username, password)), database, batchSize);
-        logger.info("Connected to Neo4j at {} with batch size {}", uri, batchSize);
+        this(uri, username, password, database, batchSize, batchSize);
+    }
+
+    public Neo4jGraphStore(String uri, String username, String password, String database, int batchSize,
+                           int nodeBatchSize) {
+        this(GraphDatabase.driver(uri, AuthTokens.basic(username, password)), database, batchSize, nodeBatchSize);
+        logger.info("Connected to Neo4j at {} with batch size {} and node batch size {}", uri, batchSize,
+                this.nodeBatchSize);
     }
 
     public void persistEdge(KnowledgeGraphEdge edge) {
@@ -55,21 +90,57 @@ public class Neo4jGraphStore implements GraphStore {
     }
 
     public void persistNode(String signature, String nodeType, String name, String fqn) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("signature", signature);
+        row.put("name", name);
+        row.put("fqn", fqn != null ? fqn : name);
+        if (sourceFile != null) {
+            row.put("sourceFile", sourceFile.path());
+            row.put("fileHash", sourceFile.hash());
+        }
+        Map<String, Map<String, Object>> byLabel = pendingNodes.computeIfAbsent(nodeType, k -> new LinkedHashMap<>());
+        if (byLabel.put(signature, row) == null) {
+            pendingNodeCount++;
+            nodeCount++;
+        }
+        if (pendingNodeCount >= nodeBatchSize) {
+            flushNodes();
+        }
+    }
+
+    /**
+     * Write the pending nodes, one {@code UNWIND} statement per label and batch, each in its own
+     * write transaction.
+     */
+    public void flushNodes() {
+        if (pendingNodes.isEmpty()) {
+            return;
+        }
         ensureSession();
-        String cypher = """
-            MERGE (n:%s {signature: $signature})
-            SET n:%s, n.name = $name, n.fqn = $fqn
-            """.formatted(BASE_LABEL, nodeType);
+        logger.debug("Flushing {} pending nodes to Neo4j", pendingNodeCount);
 
-        session.run(cypher, Values.parameters(
-                "signature", signature,
-                "name", name,
-                "fqn", fqn != null ? fqn : name
-        ));
+        for (Map.Entry<String, Map<String, Map<String, Object>>> entry : pendingNodes.entrySet()) {
+            String cypher = """
+                UNWIND $batch AS row
+                MERGE (n:%s {signature: row.signature})
+                SET n:%s, n.name = row.name, n.fqn = row.fqn,
+                    n.sourceFile = coalesce(row.sourceFile, n.sourceFile),
+                    n.fileHash = coalesce(row.fileHash, n.fileHash)
+                """.formatted(BASE_LABEL, entry.getKey());
+
+            List<Map<String, Object>> rows = new ArrayList<>(entry.getValue().values());
+            for (int from = 0; from < rows.size(); from += nodeBatchSize) {
+                List<Map<String, Object>> batch = rows.subList(from, Math.min(rows.size(), from + nodeBatchSize));
+                session.executeWriteWithoutResult(tx -> tx.run(cypher, Values.parameters("batch", batch)));
+            }
+        }
+        pendingNodes.clear();
+        pendingNodeCount = 0;
     }
 
-
     public void flushEdges() {
+        // Nodes go first so that the edge MERGEs find them with their labels
+        flushNodes();
         if (pendingEdges.isEmpty()) {
             return;
         }
@@ -77,18 +148,18 @@ public class Neo4jGraphStore implements GraphStore {
         logger.debug("Flushing {} pending edges to Neo4j", pendingEdges.size());
 
         // Group by Edge Type for batched execution
-        java.util.Map<String, List<KnowledgeGraphEdge>> byType = new java.util.HashMap<>();
+        Map<String, List<KnowledgeGraphEdge>> byType = new HashMap<>();
         for (KnowledgeGraphEdge edge : pendingEdges) {
             byType.computeIfAbsent(edge.type().name(), k -> new ArrayList<>()).add(edge);
         }
 
-        for (java.util.Map.Entry<String, List<KnowledgeGraphEdge>> entry : byType.entrySet()) {
+        for (Map.Entry<String, List<KnowledgeGraphEdge>> entry : byType.entrySet()) {
             String type = entry.getKey();
             List<KnowledgeGraphEdge> group = entry.getValue();
 
-            List<java.util.Map<String, Object>> batch = new ArrayList<>();
+            List<Map<String, Object>> batch = new ArrayList<>();
             for (KnowledgeGraphEdge edge : group) {
-                 java.util.Map<String, Object> row = new java.util.HashMap<>();
+                 Map<String, Object> row = new HashMap<>();
                  row.put("sourceId", edge.sourceId());
                  row.put("targetId", edge.targetId());
                  row.put("attributes", edge.attributes());
@@ -103,12 +174,96 @@ public class Neo4jGraphStore implements GraphStore {
                 SET r += row.attributes
                 """.formatted(BASE_LABEL, BASE_LABEL, type);
 
-            session.run(cypher, Values.parameters("batch", batch));
+            session.executeWriteWithoutResult(tx -> tx.run(cypher, Values.parameters("batch", batch)));
 
         }
         pendingEdges.clear();
     }
 
+    @Override
+    public void setSourceFile(SourceFile sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    @Override
+    public Map<String, String> findSourceFiles() {
+        ensureSession();
+        String cypher = """
+            MATCH (n:%s) WHERE n.sourceFile IS NOT NULL
+            RETURN n.sourceFile AS file, collect(DISTINCT n.fileHash) AS hashes
+            """.formatted(BASE_LABEL);
+        Map<String, String> files = new HashMap<>();
+        for (Record r : session.run(cypher).list()) {
+            List<Object> hashes = r.get("hashes").asList();
+            files.put(r.get("file").asString(), hashes.size() == 1 ? (String) hashes.getFirst() : null);
+        }
+        return files;
+    }
+
+    @Override
+    public Set<String> findFilesReferencing(Collection<String> paths) {
+        flushEdges();
+        Set<String> files = new TreeSet<>();
+        if (paths.isEmpty()) {
+            return files;
+        }
+        ensureSession();
+        String cypher = """
+            MATCH (n:%1$s)-[]->(m:%1$s)
+            WHERE m.sourceFile IN $paths AND n.sourceFile IS NOT NULL AND NOT n.sourceFile IN $paths
+            RETURN DISTINCT n.sourceFile AS file
+            """.formatted(BASE_LABEL);
+        for (Record r : session.run(cypher, Values.parameters("paths", List.copyOf(paths))).list()) {
+            files.add(r.get("file").asString());
+        }
+        return files;
+    }
+
+    @Override
+    public void deleteEdgesFrom(Collection<String> paths) {
+        flushEdges();
+        if (paths.isEmpty()) {
+            return;
+        }
+        ensureSession();
+        String cypher = """
+            UNWIND $batch AS path
+            MATCH (n:%s {sourceFile: path})-[r]->()
+            DELETE r
+            """.formatted(BASE_LABEL);
+        List<String> all = new ArrayList<>(paths);
+        for (int from = 0; from < all.size(); from += batchSize) {
+            List<String> batch = all.subList(from, Math.min(all.size(), from + batchSize));
+            session.executeWriteWithoutResult(tx -> tx.run(cypher, Values.parameters("batch", batch)));
+        }
+    }
+
+    @Override
+    public void deleteStaleNodes(Collection<SourceFile> files) {
+        flushEdges();
+        if (files.isEmpty()) {
+            return;
+        }
+        ensureSession();
+        String cypher = """
+            UNWIND $batch AS file
+            MATCH (n:%s {sourceFile: file.path})
+            WHERE file.hash IS NULL OR n.fileHash <> file.hash
+            DETACH DELETE n
+            """.formatted(BASE_LABEL);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (SourceFile file : files) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("path", file.path());
+            row.put("hash", file.hash());
+            rows.add(row);
+        }
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Map<String, Object>> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+            session.executeWriteWithoutResult(tx -> tx.run(cypher, Values.parameters("batch", batch)));
+        }
+    }
+
     private void ensureSession() {
         if (session == null || !session.isOpen()) {
             session = driver.session(org.neo4j.driver.SessionConfig.forDatabase(database));
@@ -119,6 +274,14 @@ public class Neo4jGraphStore implements GraphStore {
         return edgeCount;
     }
 
+    /**
+     * Get the number of distinct nodes persisted so far, counting a node again only if it is
+     * persisted again after a flush.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
     public void clearGraph() {
         ensureSession();
         session.run("MATCH (n) DETACH DELETE n");
@@ -173,7 +336,7 @@ public class Neo4jGraphStore implements GraphStore {
             session.close();
         }
         driver.close();
-        logger.info("Neo4j connection closed. Total edges persisted: {}", edgeCount);
+        logger.info("Neo4j connection closed. Total nodes persisted: {}, edges persisted: {}", nodeCount, edgeCount);
     }
 
     public static class Builder {
@@ -182,15 +345,18 @@ public class Neo4jGraphStore implements GraphStore {
         private String password = "password";
         private String database = "neo4j";
         private int batchSize = 1000;
+        private Integer nodeBatchSize;
 
         public Builder uri(String uri) { this.uri = uri; return this; }
         public Builder username(String username) { this.username = username; return this; }
         public Builder password(String password) { this.password = password; return this; }
         public Builder database(String database) { this.database = database; return this; }
         public Builder batchSize(int batchSize) { this.batchSize = batchSize; return this; }
+        public Builder nodeBatchSize(int nodeBatchSize) { this.nodeBatchSize = nodeBatchSize; return this; }
 
         public Neo4jGraphStore build() {
-            return new Neo4jGraphStore(uri, username, password, database, batchSize);
+            return new Neo4jGraphStore(uri, username, password, database, batchSize,
+                    nodeBatchSize != null ? nodeBatchSize : batchSize);
         }
     }
 
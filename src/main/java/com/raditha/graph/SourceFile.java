@@ -0,0 +1,76 @@
+package com.raditha.graph;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The source file that a node was extracted from, with a hash of its content.
+ * <p>
+ * Nodes carry both as the {@code sourceFile} and {@code fileHash} properties, so that an
+ * incremental build can tell which files changed since the graph was written and find the nodes
+ * and edges that each of them produced.
+ * </p>
+ *
+ * @param path the path of the file relative to {@code base_path}, with {@code /} separators
+ * @param hash the hex encoded SHA-256 hash of the content of the file
+ */
+public record SourceFile(String path, String hash) {
+
+    /**
+     * The source file of a compilation unit. The file is read again to hash it; a unit that was
+     * not parsed from a file is identified by its package and first type and hashed as printed.
+     *
+     * @return the source file, or null if the unit has neither a file nor a type
+     */
+    public static SourceFile of(CompilationUnit cu) {
+        if (cu.getStorage().isPresent()) {
+            Path file = cu.getStorage().get().getPath().toAbsolutePath().normalize();
+            byte[] content;
+            try {
+                content = Files.readAllBytes(file);
+            } catch (IOException e) {
+                // the next run sees a different hash and extracts the file again
+                content = cu.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            return new SourceFile(relativize(file), sha256(content));
+        }
+        if (cu.getTypes().isEmpty()) {
+            return null;
+        }
+        TypeDeclaration<?> type = cu.getType(0);
+        String directory = cu.getPackageDeclaration()
+                .map(p -> p.getNameAsString().replace('.', '/') + "/")
+                .orElse("");
+        return new SourceFile(directory + type.getNameAsString() + ".java",
+                sha256(cu.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String relativize(Path file) {
+        String basePath = Settings.getProperty(Settings.BASE_PATH, String.class).orElse(null);
+        if (basePath != null) {
+            Path base = Path.of(basePath).toAbsolutePath().normalize();
+            if (file.startsWith(base)) {
+                file = base.relativize(file);
+            }
+        }
+        return file.toString().replace(File.separatorChar, '/');
+    }
+
+    static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
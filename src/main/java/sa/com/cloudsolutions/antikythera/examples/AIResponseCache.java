@@ -0,0 +1,208 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent, content-addressed cache of LLM recommendations for individual queries.
+ *
+ * <p>Each entry is stored as a small JSON file named after the SHA-256 hash of everything
+ * that goes into the prompt for the query (see {@link AbstractAIService#buildCacheKey}), so
+ * re-running the optimizer after a crash or on a branch where only a few repositories changed
+ * does not pay for the unchanged queries again. The cache is bounded by the number of entries;
+ * the least recently used entries are evicted first.</p>
+ *
+ * <p>Example {@code generator.yml} configuration:</p>
+ * <pre>
+ * ai_service:
+ *   response_cache: true
+ *   response_cache_dir: ".query-optimizer-cache"   # optional
+ *   response_cache_max_entries: 10000              # optional
+ * </pre>
+ */
+public class AIResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(AIResponseCache.class);
+    public static final String DEFAULT_CACHE_DIR = ".query-optimizer-cache";
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final String SUFFIX = ".json";
+
+    private final File cacheDir;
+    private final int maxEntries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Access-ordered so that the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, File> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Opens (or creates) a cache in the given directory.
+     *
+     * @param cacheDir   directory holding one file per cached recommendation
+     * @param maxEntries maximum number of entries kept on disk
+     */
+    public AIResponseCache(File cacheDir, int maxEntries) {
+        this.cacheDir = cacheDir;
+        this.maxEntries = Math.max(1, maxEntries);
+        loadIndex();
+    }
+
+    /**
+     * Rebuilds the in-memory index from the files on disk, oldest first, so that the access
+     * order survives between runs through the file modification times.
+     */
+    private void loadIndex() {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            logger.warn("Could not create response cache directory {}", cacheDir);
+            return;
+        }
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            String name = f.getName();
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), f);
+        }
+        evictOverflow();
+        logger.info("Loaded AI response cache from {} ({} entries)", cacheDir, entries.size());
+    }
+
+    /**
+     * Computes a content-addressed key from the given parts.
+     *
+     * @param parts the strings that together determine the response
+     * @return hex encoded SHA-256 hash of the parts
+     */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                // separator so that ("ab", "c") and ("a", "bc") hash differently
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Looks up a cached recommendation.
+     *
+     * @param key the key computed by {@link #key(String...)}
+     * @return the cached recommendation, or {@code null} on a miss
+     */
+    public synchronized JsonNode get(String key) {
+        File f = entries.get(key);
+        if (f == null) {
+            misses++;
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(f);
+            if (!f.setLastModified(System.currentTimeMillis())) {
+                logger.debug("Could not touch cache entry {}", f);
+            }
+            hits++;
+            return node;
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable cache entry {}: {}", f.getName(), e.getMessage());
+            entries.remove(key);
+            deleteQuietly(f);
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Stores a recommendation, evicting the least recently used entries if the cache is full.
+     * Failures are logged and otherwise ignored; the cache is an optimization only.
+     *
+     * @param key            the key computed by {@link #key(String...)}
+     * @param recommendation the recommendation returned by the LLM for a single query
+     */
+    public synchronized void put(String key, JsonNode recommendation) {
+        File f = new File(cacheDir, key + SUFFIX);
+        try {
+            File tmp = new File(cacheDir, key + ".tmp");
+            objectMapper.writeValue(tmp, recommendation);
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            entries.put(key, f);
+            evictOverflow();
+        } catch (IOException e) {
+            logger.warn("Failed to write response cache entry: {}", e.getMessage());
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, File>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            File eldest = it.next().getValue();
+            it.remove();
+            deleteQuietly(eldest);
+            evictions++;
+        }
+    }
+
+    private static void deleteQuietly(File f) {
+        try {
+            Files.deleteIfExists(f.toPath());
+        } catch (IOException e) {
+            logger.debug("Could not delete cache entry {}: {}", f, e.getMessage());
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Calculates the hit rate as a percentage of lookups. Returns 0.0 if there were no lookups.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups * 100.0;
+    }
+
+    /**
+     * Returns a formatted string of the cache counters, in the same style as
+     * {@link TokenUsage#getFormattedReport()}.
+     */
+    public synchronized String getFormattedReport() {
+        return String.format("Response Cache: Hits=%d, Misses=%d (%.1f%% hit rate), Entries=%d, Evictions=%d",
+                hits, misses, getHitRate(), entries.size(), evictions);
+    }
+}
@@ -16,7 +16,7 @@ public class AIServiceFactory {
      * Creates an AI service instance based on the provider specified in the configuration.
      * 
      * @param config Configuration map containing provider and other settings
-     * @return An instance of AbstractAIService (GeminiAIService or OpenAIService)
+     * @return An instance of AbstractAIService (GeminiAIService, OpenAIService, OpenRouterService or StubAIService)
      * @throws IOException if service initialization fails
      * @throws IllegalArgumentException if an unknown provider is specified
      */
@@ -27,8 +27,9 @@ public class AIServiceFactory {
             case "gemini"      -> new GeminiAIService();
             case "openai"      -> new OpenAIService();
             case "openrouter"  -> new OpenRouterService();
+            case "stub"        -> new StubAIService();
             default -> throw new IllegalArgumentException(
-                "Unknown AI provider: " + provider + ". Supported providers: gemini, openai, openrouter");
+                "Unknown AI provider: " + provider + ". Supported providers: gemini, openai, openrouter, stub");
         };
     }
 }
@@ -14,10 +14,12 @@ import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Metrics;
 import sa.com.cloudsolutions.antikythera.generator.QueryType;
 import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
 import sa.com.cloudsolutions.antikythera.parser.BaseRepositoryParser;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.http.HttpClient;
@@ -27,8 +29,16 @@ import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Abstract base class for AI service implementations.
@@ -44,6 +54,15 @@ public abstract class AbstractAIService {
     protected TokenUsage lastTokenUsage;
     protected final String systemPrompt;
 
+    // Bounds the number of requests in flight against this provider (max_concurrent_requests)
+    private Semaphore inFlightRequests = new Semaphore(1);
+    private int maxConcurrentRequests = 1;
+    // Token usage of the request made on the current thread; lastTokenUsage is shared and racy
+    private final ThreadLocal<TokenUsage> requestTokenUsage = new ThreadLocal<>();
+    private final Object tokenUsageLock = new Object();
+    // Optional persistent cache of per-query recommendations (response_cache)
+    private AIResponseCache responseCache;
+
     public static final String OPTIMIZED_CODE_ELEMENT = "optimizedCodeElement";
     public static final String NOTES = "notes";
     public static final String API_KEY = "api_key";
@@ -52,6 +71,9 @@ public abstract class AbstractAIService {
     public static final String STRING = "string";
     public static final String PARTS = "parts";
 
+    // Rough characters-per-token ratio used to estimate prompt sizes before sending them
+    static final int CHARS_PER_TOKEN = 4;
+
     /**
      * Constructor initializes common components.
      */
@@ -77,6 +99,81 @@ public abstract class AbstractAIService {
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(timeoutSeconds))
                 .build();
+
+        this.maxConcurrentRequests = Math.max(1, getConfigInt("max_concurrent_requests", 1));
+        this.inFlightRequests = new Semaphore(maxConcurrentRequests);
+
+        if (getConfigBoolean("response_cache", false)) {
+            this.responseCache = new AIResponseCache(
+                    new File(getConfigString("response_cache_dir", AIResponseCache.DEFAULT_CACHE_DIR)),
+                    getConfigInt("response_cache_max_entries", AIResponseCache.DEFAULT_MAX_ENTRIES));
+        }
+    }
+
+    /**
+     * Returns the maximum number of queries to put in one request ({@code queries_per_request}).
+     * Defaults to 5 for fixed-size batches, and to 50 when batches are packed by token budget.
+     */
+    public int getMaxQueriesPerBatch() {
+        return getConfigInt("queries_per_request", getConfigInt("max_tokens_per_request", 0) > 0 ? 50 : 5);
+    }
+
+    /**
+     * Returns the estimated token budget for the query payload of one request, or 0 if batches
+     * are not sized by tokens.
+     *
+     * <p>The budget is {@code max_tokens_per_request}, lowered where necessary so that the whole
+     * prompt, system prompt included, stays within the cheaper tier of the model's
+     * {@link ModelPricing}.</p>
+     */
+    public int getBatchTokenBudget() {
+        int budget = getConfigInt("max_tokens_per_request", 0);
+        if (budget <= 0) {
+            return 0;
+        }
+        ModelPricing pricing = getModelPricing();
+        if (pricing != null && pricing.tierLimit() < Integer.MAX_VALUE) {
+            budget = Math.min(budget, pricing.tierLimit() - estimateTokens(systemPrompt));
+        }
+        return Math.max(budget, 1);
+    }
+
+    /**
+     * Estimates the number of tokens the query payload of a batch will use, based on the same
+     * JSON that {@link #buildRequestPayload} sends.
+     */
+    public int estimateBatchTokens(QueryBatch batch) throws IOException {
+        return estimateTokens(buildQueryDataArray(batch));
+    }
+
+    /**
+     * Estimates the number of tokens in a piece of text.
+     */
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Returns the pricing of the configured model, or {@code null} if it is not known.
+     * Providers with a pricing table override this.
+     */
+    protected ModelPricing getModelPricing() {
+        return null;
+    }
+
+    /**
+     * Returns the response cache, or {@code null} if caching is not enabled.
+     */
+    public AIResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Returns the maximum number of requests that may be in flight against this provider
+     * at the same time. A value of 1 means batches are sent strictly one after another.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
     }
 
     /**
@@ -84,9 +181,264 @@ public abstract class AbstractAIService {
      * This method orchestrates the request/response flow using abstract methods.
      */
     public List<OptimizationIssue> analyzeQueryBatch(QueryBatch batch) throws IOException, InterruptedException {
-        String requestPayload = buildRequestPayload(batch);
+        try (Metrics.Timer span = Metrics.span("analyzeQueryBatch", batch.getRepositoryName())) {
+            return requestQueryBatch(batch);
+        }
+    }
+
+    private List<OptimizationIssue> requestQueryBatch(QueryBatch batch) throws IOException, InterruptedException {
+        CacheLookup lookup = lookupCache(batch);
+        if (lookup.misses() == null) {
+            // Every query was answered from the cache; no request, no tokens
+            lastTokenUsage = new TokenUsage();
+            return lookup.merge(List.of());
+        }
+        String requestPayload = buildRequestPayload(lookup.misses());
         String response = sendApiRequest(requestPayload);
-        return parseResponse(response, batch);
+        return lookup.merge(parseResponse(response, lookup.misses()));
+    }
+
+    /**
+     * Outcome of looking up the queries of a batch in the response cache.
+     *
+     * @param batch  the original batch
+     * @param hits   recommendations found in the cache, keyed by query position in the batch
+     * @param misses a batch with the queries that still have to be sent, or {@code null} if none
+     */
+    private record CacheLookup(QueryBatch batch, Map<Integer, OptimizationIssue> hits, QueryBatch misses) {
+        /**
+         * Merges cached and freshly fetched recommendations back into query order. Stops at the
+         * first query without a recommendation, as the response parsing does, so positions keep
+         * lining up with the queries.
+         */
+        List<OptimizationIssue> merge(List<OptimizationIssue> fetched) {
+            if (hits.isEmpty()) {
+                return fetched;
+            }
+            List<OptimizationIssue> merged = new ArrayList<>();
+            int next = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                OptimizationIssue hit = hits.get(i);
+                if (hit != null) {
+                    merged.add(hit);
+                } else if (next < fetched.size()) {
+                    merged.add(fetched.get(next++));
+                } else {
+                    break;
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Splits a batch into the queries that can be answered from the response cache and those
+     * that have to be sent to the provider.
+     */
+    private CacheLookup lookupCache(QueryBatch batch) throws IOException {
+        Map<Integer, OptimizationIssue> hits = new HashMap<>();
+        if (responseCache == null) {
+            return new CacheLookup(batch, hits, batch);
+        }
+
+        QueryBatch misses = new QueryBatch();
+        misses.setColumnCardinalities(batch.getColumnCardinalities());
+        List<RepositoryQuery> queries = batch.getQueries();
+        for (int i = 0; i < queries.size(); i++) {
+            RepositoryQuery query = queries.get(i);
+            JsonNode cached = responseCache.get(buildCacheKey(batch, query));
+            if (cached != null) {
+                hits.put(i, parseOptimizationRecommendation(cached, query));
+            } else {
+                misses.addQuery(query);
+            }
+        }
+        return new CacheLookup(batch, hits, misses.isEmpty() ? null : misses);
+    }
+
+    /**
+     * Builds the response cache key for a query. The key covers everything that goes into the
+     * prompt for the query: the provider, model and system prompt, the normalized method
+     * signature and query text, the table schema string and the cardinality map of the batch.
+     *
+     * @param batch the batch the query is sent in
+     * @param query the query
+     * @return the content-addressed cache key
+     */
+    protected String buildCacheKey(QueryBatch batch, RepositoryQuery query) {
+        String signature = query.getMethodDeclaration().getCallableDeclaration().toString();
+        return AIResponseCache.key(
+                getClass().getSimpleName(),
+                getConfigString(MODEL, ""),
+                AIResponseCache.key(systemPrompt),
+                normalizeWhitespace(signature),
+                query.getQueryType().toString(),
+                normalizeWhitespace(getQueryText(query)),
+                buildTableSchemaString(batch, query),
+                new TreeMap<>(batch.getColumnCardinalities()).toString());
+    }
+
+    private static String normalizeWhitespace(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Result of analyzing one batch: the recommendations in query order together with
+     * the token usage reported for that particular request.
+     */
+    public record BatchAnalysis(QueryBatch batch, List<OptimizationIssue> issues, TokenUsage tokenUsage) {
+    }
+
+    /**
+     * Analyzes several batches, keeping up to {@code max_concurrent_requests} of them in flight.
+     * Only the network round-trip runs concurrently, on virtual threads; see
+     * {@link #dispatchQueryBatches} and {@link #collectQueryBatches}.
+     *
+     * @param batches the batches to analyze
+     * @return one {@link BatchAnalysis} per input batch, in input order
+     */
+    public List<BatchAnalysis> analyzeQueryBatches(List<QueryBatch> batches) throws IOException, InterruptedException {
+        if (maxConcurrentRequests <= 1 || batches.size() <= 1) {
+            List<BatchAnalysis> results = new ArrayList<>();
+            for (QueryBatch batch : batches) {
+                List<OptimizationIssue> issues = analyzeQueryBatch(batch);
+                results.add(new BatchAnalysis(batch, issues, getLastTokenUsage()));
+            }
+            return results;
+        }
+        return collectQueryBatches(dispatchQueryBatches(batches));
+    }
+
+    /**
+     * Batches whose requests have been sent but whose responses have not been parsed yet.
+     * Obtained from {@link #dispatchQueryBatches} and consumed exactly once by
+     * {@link #collectQueryBatches}.
+     */
+    public static final class PendingBatches {
+        private final List<QueryBatch> batches;
+        private final List<CacheLookup> lookups;
+        private final List<Future<RawResponse>> responses;
+        private final ExecutorService executor;
+
+        private PendingBatches(List<QueryBatch> batches, List<CacheLookup> lookups,
+                List<Future<RawResponse>> responses, ExecutorService executor) {
+            this.batches = batches;
+            this.lookups = lookups;
+            this.responses = responses;
+            this.executor = executor;
+        }
+
+        public List<QueryBatch> getBatches() {
+            return batches;
+        }
+    }
+
+    /**
+     * Builds the payloads for the given batches on the calling thread and starts sending them
+     * in the background, keeping at most {@code max_concurrent_requests} requests in flight.
+     * Returns immediately so the caller can do other work while the round-trips are pending.
+     *
+     * @param batches the batches to send
+     * @return a handle to pass to {@link #collectQueryBatches}
+     */
+    public PendingBatches dispatchQueryBatches(List<QueryBatch> batches) throws IOException {
+        List<CacheLookup> lookups = new ArrayList<>();
+        List<String> payloads = new ArrayList<>();
+        for (QueryBatch batch : batches) {
+            CacheLookup lookup = lookupCache(batch);
+            lookups.add(lookup);
+            payloads.add(lookup.misses() == null ? null : buildRequestPayload(lookup.misses()));
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<RawResponse>> responses = new ArrayList<>();
+        for (String payload : payloads) {
+            if (payload == null) {
+                responses.add(CompletableFuture.completedFuture(new RawResponse(null, new TokenUsage())));
+            } else {
+                responses.add(executor.submit(() -> sendWithinLimit(payload)));
+            }
+        }
+        executor.shutdown();
+        return new PendingBatches(batches, lookups, responses, executor);
+    }
+
+    /**
+     * Waits for the requests started by {@link #dispatchQueryBatches} and parses the responses
+     * on the calling thread, because parsing goes through JavaParser and the repository parser
+     * which are not thread safe. Results are returned in the same order as the dispatched
+     * batches regardless of the order in which the responses arrived.
+     *
+     * @param pending the handle returned by {@link #dispatchQueryBatches}
+     * @return one {@link BatchAnalysis} per dispatched batch, in dispatch order
+     */
+    public List<BatchAnalysis> collectQueryBatches(PendingBatches pending) throws IOException, InterruptedException {
+        List<BatchAnalysis> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < pending.batches.size(); i++) {
+                CacheLookup lookup = pending.lookups.get(i);
+                RawResponse response = awaitResponse(pending.responses.get(i));
+                List<OptimizationIssue> fetched = response.body() == null
+                        ? List.of()
+                        : parseResponse(response.body(), lookup.misses());
+                results.add(new BatchAnalysis(lookup.batch(), lookup.merge(fetched), response.tokenUsage()));
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // Don't leave the remaining requests running (and billing) once one batch has failed
+            pending.executor.shutdownNow();
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Stops the requests started by {@link #dispatchQueryBatches} whose responses are no longer
+     * wanted. The handle must not be collected afterwards.
+     *
+     * @param pending the handle returned by {@link #dispatchQueryBatches}
+     */
+    public void cancelQueryBatches(PendingBatches pending) {
+        pending.executor.shutdownNow();
+    }
+
+    /**
+     * Raw response body of a single request together with the usage it reported.
+     */
+    private record RawResponse(String body, TokenUsage tokenUsage) {
+    }
+
+    /**
+     * Sends one payload once a slot is available under the provider's in-flight limit.
+     */
+    private RawResponse sendWithinLimit(String payload) throws IOException, InterruptedException {
+        inFlightRequests.acquire();
+        try {
+            requestTokenUsage.remove();
+            String body = sendApiRequest(payload);
+            TokenUsage usage = requestTokenUsage.get();
+            return new RawResponse(body, usage != null ? usage : new TokenUsage());
+        } finally {
+            requestTokenUsage.remove();
+            inFlightRequests.release();
+        }
+    }
+
+    private static RawResponse awaitResponse(Future<RawResponse> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof InterruptedException ie) {
+                throw ie;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException("AI batch request failed: " + cause.getMessage(), cause);
+        }
     }
 
     /**
@@ -125,9 +477,7 @@ public abstract class AbstractAIService {
                         "API request failed with status: " + response.statusCode() + ", body: " + response.body());
             }
 
-            // Extract token usage if available
-            extractTokenUsage(response.body());
-
+            recordTokenUsage(response.body());
             return response.body();
         } catch (HttpTimeoutException e) {
             if (retryCount > 0) {
@@ -140,6 +490,19 @@ public abstract class AbstractAIService {
         }
     }
 
+    /**
+     * Extracts the token usage of a successful response. Subclasses publish it through the shared
+     * lastTokenUsage field, so it is captured for this thread before another request replaces it.
+     *
+     * @param responseBody The API response body
+     */
+    protected void recordTokenUsage(String responseBody) throws IOException {
+        synchronized (tokenUsageLock) {
+            extractTokenUsage(responseBody);
+            requestTokenUsage.set(lastTokenUsage);
+        }
+    }
+
     /**
      * Public method for sending raw API requests.
      * This is for external callers like AICodeGenerationHelper.
@@ -578,6 +941,9 @@ public abstract class AbstractAIService {
             JsonNode recommendation = responseArray.get(i);
             RepositoryQuery originalQuery = queries.get(i);
 
+            if (responseCache != null) {
+                responseCache.put(buildCacheKey(batch, originalQuery), recommendation);
+            }
             OptimizationIssue issue = parseOptimizationRecommendation(recommendation, originalQuery);
             issues.add(issue);
         }
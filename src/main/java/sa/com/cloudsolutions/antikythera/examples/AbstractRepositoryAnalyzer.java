@@ -33,6 +33,7 @@ public abstract class AbstractRepositoryAnalyzer {
     protected static String targetClass = null;
     protected static String targetMethod = null;
     protected static String skipClass = null;
+    protected static boolean pipelined = false;
 
     // Core AI service state
     protected AbstractAIService aiService;
@@ -63,6 +64,10 @@ public abstract class AbstractRepositoryAnalyzer {
         logger.debug("targetClass filter value: {}", targetClass);
         logger.debug("skipClass filter value: {}", skipClass);
 
+        // In pipelined mode the type whose AI round-trip is still in flight while the next one is parsed
+        String pendingName = null;
+        PendingAnalysis pending = null;
+
         for (Map.Entry<String, TypeWrapper> entry : resolvedTypes.entrySet()) {
             String fullyQualifiedName = entry.getKey();
             TypeWrapper typeWrapper = entry.getValue();
@@ -72,23 +77,33 @@ public abstract class AbstractRepositoryAnalyzer {
 
                 if (shouldSkipType(fullyQualifiedName)) continue;
 
-                System.out.println("%n" + "=".repeat(80));
-                System.out.printf("Analyzing: %s%n", fullyQualifiedName);
-                System.out.println("=".repeat(80));
+                if (!pipelined) {
+                    if (completeType(fullyQualifiedName, () -> analyzeType(typeWrapper))) {
+                        typesProcessed++;
+                    }
+                    continue;
+                }
+
+                PendingAnalysis next = startAnalysis(typeWrapper, pending);
+                boolean handedOver = false;
                 try {
-                    analyzeType(typeWrapper);
-                    typesProcessed++;
-
-                    checkpointManager.markProcessed(fullyQualifiedName);
-                    onBeforeCheckpointSave();
-                    checkpointManager.save();
-                } catch (AntikytheraException ae) {
-                    logger.error("Error analyzing {}: {}", fullyQualifiedName, ae.getMessage());
-                    onBeforeCheckpointSave();
-                    checkpointManager.save();
+                    if (pending != null && completeType(pendingName, pending)) {
+                        typesProcessed++;
+                    }
+                    handedOver = true;
+                } finally {
+                    if (!handedOver) {
+                        // Don't leave the AI requests of the next type running once the loop is abandoned
+                        next.cancel();
+                    }
                 }
+                pending = next;
+                pendingName = fullyQualifiedName;
             }
         }
+        if (pending != null && completeType(pendingName, pending)) {
+            typesProcessed++;
+        }
 
         afterAnalysisLoop();
 
@@ -108,6 +123,89 @@ public abstract class AbstractRepositoryAnalyzer {
         return typesProcessed;
     }
 
+    /**
+     * Starts the pipelined analysis of a type. A failure that {@link #beginAnalysis} reports as an
+     * {@link AntikytheraException} is deferred to the writer stage, so that it is reported in order;
+     * any other failure cancels the analysis of the previous type, which is still in flight.
+     */
+    private PendingAnalysis startAnalysis(TypeWrapper typeWrapper, PendingAnalysis previous)
+            throws IOException, ReflectiveOperationException, InterruptedException {
+        boolean started = false;
+        try {
+            PendingAnalysis next = beginAnalysis(typeWrapper);
+            started = true;
+            return next;
+        } catch (AntikytheraException ae) {
+            started = true;
+            return () -> {
+                throw ae;
+            };
+        } finally {
+            if (!started && previous != null) {
+                previous.cancel();
+            }
+        }
+    }
+
+    /**
+     * Finishes the analysis of one type and records it in the checkpoint. This is the single
+     * ordered writer stage: types are always completed, and checkpointed, in discovery order,
+     * and their banner is printed here so that each report appears under its own type.
+     *
+     * @return {@code true} if the type was analyzed successfully
+     */
+    private boolean completeType(String fullyQualifiedName, PendingAnalysis work)
+            throws IOException, ReflectiveOperationException, InterruptedException {
+        System.out.println("%n" + "=".repeat(80));
+        System.out.printf("Analyzing: %s%n", fullyQualifiedName);
+        System.out.println("=".repeat(80));
+        try {
+            work.complete();
+            checkpointManager.markProcessed(fullyQualifiedName);
+            onBeforeCheckpointSave();
+            checkpointManager.save();
+            return true;
+        } catch (AntikytheraException ae) {
+            logger.error("Error analyzing {}: {}", fullyQualifiedName, ae.getMessage());
+            onBeforeCheckpointSave();
+            checkpointManager.save();
+            return false;
+        }
+    }
+
+    /**
+     * The remainder of a type's analysis that was started by {@link #beginAnalysis(TypeWrapper)}.
+     */
+    @FunctionalInterface
+    protected interface PendingAnalysis {
+        void complete() throws IOException, ReflectiveOperationException, InterruptedException;
+
+        /**
+         * Abandons the analysis without completing it, stopping any background work it started.
+         */
+        default void cancel() {
+            // nothing runs in the background
+        }
+    }
+
+    /**
+     * Starts analyzing a type in pipelined mode. Implementations do the CPU-bound part (parsing,
+     * building queries) immediately, start any I/O-bound work such as AI requests in the
+     * background, and return the rest of the work. The returned {@link PendingAnalysis} is
+     * completed after the next type has been started, so parsing of one type overlaps with the
+     * AI round-trip of the previous one. Completions run on the calling thread in order.
+     *
+     * <p>The default implementation has nothing to overlap and analyzes the type up front.</p>
+     *
+     * @param typeWrapper the type to analyze
+     * @return the work that remains to finish the analysis
+     */
+    protected PendingAnalysis beginAnalysis(TypeWrapper typeWrapper)
+            throws IOException, ReflectiveOperationException, InterruptedException {
+        analyzeType(typeWrapper);
+        return () -> {};
+    }
+
     /**
      * Hook invoked just before the checkpoint is saved after each type.
      * Subclasses can override to persist their own accumulated state (e.g. index suggestions).
@@ -265,6 +363,23 @@ public abstract class AbstractRepositoryAnalyzer {
         return quietMode;
     }
 
+    /**
+     * Enables or disables pipelined analysis, where parsing of the next type overlaps
+     * with the AI round-trip of the current one.
+     *
+     * @param enabled {@code true} to pipeline the analysis of consecutive types
+     */
+    public static void setPipelined(boolean enabled) {
+        pipelined = enabled;
+    }
+
+    /**
+     * Returns whether pipelined analysis is enabled.
+     */
+    public static boolean isPipelined() {
+        return pipelined;
+    }
+
     /**
      * Sets the target class to analyze. Supports an optional {@code #methodName} suffix
      * following the same convention used in Antikythera.
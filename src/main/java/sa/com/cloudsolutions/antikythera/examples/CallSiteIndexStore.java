@@ -0,0 +1,249 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.javaparser.ast.CompilationUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk copy of the {@link Fields} dependency and method call indexes, keyed by the
+ * SHA-256 hash of each source file.
+ *
+ * <p>The entries of a source file are reused on a later run as long as the file content is
+ * unchanged:</p>
+ * <ul>
+ *   <li>The field types of the classes in the file are also tied to the set of all resolved
+ *       types, since adding or removing a type can change how a field type resolves.</li>
+ *   <li>The call sites of the file are also tied to the repository fields they were matched
+ *       against, which can come from a superclass in another file.</li>
+ * </ul>
+ *
+ * <p>The store is a single gzip compressed JSON file, rewritten in full after each index
+ * build. Compilation units that were not parsed from a file are never stored.</p>
+ */
+class CallSiteIndexStore {
+    private static final Logger logger = LoggerFactory.getLogger(CallSiteIndexStore.class);
+    public static final String DEFAULT_FILE = AIResponseCache.DEFAULT_CACHE_DIR + "/call-site-index.json.gz";
+    /** Bump whenever the meaning of the stored entries changes. */
+    static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * A call to, or method reference of, a repository method through a field.
+     */
+    record CallSite(String repository, String method, String callerClass, String fieldName) {}
+
+    /**
+     * What is known about one source file.
+     *
+     * @param hash      the SHA-256 hash of the file content
+     * @param fields    class name to (field name to field type) for the classes of the file
+     * @param callsKey  hash of the repository fields the call sites were matched against
+     * @param calls     the call sites of the file
+     */
+    record FileEntry(String hash, Map<String, Map<String, String>> fields, String callsKey, List<CallSite> calls) {}
+
+    record Snapshot(int version, String typesHash, Map<String, FileEntry> files) {}
+
+    private final File file;
+    private final String typesHash;
+    private final Map<String, FileEntry> previous;
+    private final Map<String, FileEntry> current = new ConcurrentHashMap<>();
+    private final Map<CompilationUnit, String> paths = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger indexed = new AtomicInteger();
+
+    private CallSiteIndexStore(File file, String typesHash, Map<String, FileEntry> previous) {
+        this.file = file;
+        this.typesHash = typesHash;
+        this.previous = previous;
+    }
+
+    /**
+     * Opens the store, discarding its content if it is unreadable or was built for a
+     * different set of types.
+     *
+     * @param file      the store file
+     * @param typeNames the fully qualified names of all resolved types
+     */
+    static CallSiteIndexStore open(File file, Collection<String> typeNames) {
+        String typesHash = sha256(String.join("\n", new TreeSet<>(typeNames)).getBytes(StandardCharsets.UTF_8));
+        Map<String, FileEntry> previous = Map.of();
+        if (file.isFile()) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+                Snapshot snapshot = objectMapper.readValue(in, Snapshot.class);
+                if (snapshot.version() == FORMAT_VERSION) {
+                    previous = snapshot.typesHash().equals(typesHash)
+                            ? snapshot.files()
+                            : withoutFields(snapshot.files());
+                }
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable call site index {}: {}", file, e.getMessage());
+            }
+        }
+        return new CallSiteIndexStore(file, typesHash, previous);
+    }
+
+    /**
+     * Field types are tied to the set of types, call sites are not.
+     */
+    private static Map<String, FileEntry> withoutFields(Map<String, FileEntry> files) {
+        Map<String, FileEntry> result = new TreeMap<>();
+        files.forEach((path, entry) -> result.put(path, new FileEntry(entry.hash(), null, entry.callsKey(), entry.calls())));
+        return result;
+    }
+
+    /**
+     * Returns the stored field types of a class, or {@code null} if they have to be resolved.
+     */
+    Map<String, String> fields(CompilationUnit cu, String className) {
+        FileEntry entry = unchanged(cu);
+        if (entry == null || entry.fields() == null) {
+            return null;
+        }
+        return entry.fields().get(className);
+    }
+
+    void putFields(CompilationUnit cu, String className, Map<String, String> fields) {
+        String path = path(cu);
+        if (path != null) {
+            current.compute(path, (k, entry) -> {
+                Map<String, Map<String, String>> all = new TreeMap<>();
+                if (entry != null && entry.fields() != null) {
+                    all.putAll(entry.fields());
+                }
+                all.put(className, fields);
+                return entry == null
+                        ? new FileEntry(hashes.get(path), all, null, null)
+                        : new FileEntry(entry.hash(), all, entry.callsKey(), entry.calls());
+            });
+        }
+    }
+
+    /**
+     * Returns the stored call sites of a compilation unit, or {@code null} if it has to be
+     * traversed again.
+     *
+     * @param callsKey identifies the repository fields the call sites are matched against
+     */
+    List<CallSite> calls(CompilationUnit cu, String callsKey) {
+        FileEntry entry = unchanged(cu);
+        if (entry == null || !callsKey.equals(entry.callsKey()) || entry.calls() == null) {
+            indexed.incrementAndGet();
+            return null;
+        }
+        reused.incrementAndGet();
+        return entry.calls();
+    }
+
+    void putCalls(CompilationUnit cu, String callsKey, List<CallSite> calls) {
+        String path = path(cu);
+        if (path != null) {
+            current.compute(path, (k, entry) -> entry == null
+                    ? new FileEntry(hashes.get(path), null, callsKey, calls)
+                    : new FileEntry(entry.hash(), entry.fields(), callsKey, calls));
+        }
+    }
+
+    /**
+     * Writes the entries recorded during this run, replacing the previous content.
+     */
+    void save() {
+        try {
+            Path target = file.toPath();
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                objectMapper.writeValue(out, new Snapshot(FORMAT_VERSION, typesHash, new TreeMap<>(current)));
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write call site index {}: {}", file, e.getMessage());
+        }
+        logger.info("Call site index: {} compilation units reused, {} traversed", reused.get(), indexed.get());
+    }
+
+    int getReused() {
+        return reused.get();
+    }
+
+    int getIndexed() {
+        return indexed.get();
+    }
+
+    private FileEntry unchanged(CompilationUnit cu) {
+        String path = path(cu);
+        if (path == null) {
+            return null;
+        }
+        FileEntry entry = previous.get(path);
+        return entry != null && entry.hash().equals(hashes.get(path)) ? entry : null;
+    }
+
+    /**
+     * The source file of a compilation unit, hashed on first use.
+     */
+    private String path(CompilationUnit cu) {
+        if (cu == null) {
+            return null;
+        }
+        return paths.computeIfAbsent(cu, k -> k.getStorage().map(storage -> {
+            Path source = storage.getPath().toAbsolutePath().normalize();
+            try {
+                hashes.put(source.toString(), sha256(Files.readAllBytes(source)));
+                return source.toString();
+            } catch (IOException e) {
+                return null;
+            }
+        }).orElse(null));
+    }
+
+    /**
+     * Hashes a canonical rendering of the repository fields a compilation unit is matched against.
+     */
+    static String callsKey(Map<String, Map<String, Set<String>>> callerClasses) {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(callerClasses).forEach((callerClass, fields) -> {
+            sb.append(callerClass).append('\n');
+            new TreeMap<>(fields).forEach((field, repositories) ->
+                    sb.append(' ').append(field).append('=').append(new TreeSet<>(repositories)).append('\n'));
+        });
+        return sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package sa.com.cloudsolutions.antikythera.examples;
 import sa.com.cloudsolutions.liquibase.Indexes;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Collections;
@@ -19,15 +20,22 @@ import java.util.Set;
 public class CardinalityAnalyzer {
     
     private static Map<String, Set<Indexes.IndexInfo>> indexMap;
+    // Normalized view of indexMap, rebuilt by setIndexMap, so lookups don't scan the IndexInfo sets
+    private static volatile Map<String, TableIndexes> tableIndexes = Map.of();
     // Optional map of table -> (column -> data type) for accurate low-cardinality detection
     private static final Map<String, Map<String, ColumnDataType>> columnTypeMap = new HashMap<>();
 
     // User-provided overrides for column cardinality (lower-cased column names)
     private static Set<String> userDefinedLow = Collections.emptySet();
     private static Set<String> userDefinedHigh = Collections.emptySet();
+    // Optional pg_stats snapshot, consulted before the naming and type heuristics
+    private static volatile ColumnStatistics columnStatistics;
 
+    /**
+     * Returns a read-only view of the index metadata; use {@link #setIndexMap} to change it.
+     */
     public static Map<String, Set<Indexes.IndexInfo>> getIndexMap() {
-        return indexMap;
+        return indexMap == null ? null : Collections.unmodifiableMap(indexMap);
     }
 
     /**
@@ -39,8 +47,90 @@ public class CardinalityAnalyzer {
         OTHER
     }
 
+    /**
+     * Sets the index metadata and precomputes the per-table lookup structures from it.
+     * The map must not be modified afterwards; call this method again instead.
+     */
     public static void setIndexMap(Map<String, Set<Indexes.IndexInfo>> indexMap) {
         CardinalityAnalyzer.indexMap = indexMap;
+        Map<String, TableIndexes> tables = new HashMap<>();
+        if (indexMap != null) {
+            for (Map.Entry<String, Set<Indexes.IndexInfo>> entry : indexMap.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    tables.put(entry.getKey(), TableIndexes.of(entry.getValue()));
+                }
+            }
+        }
+        tableIndexes = Map.copyOf(tables);
+    }
+
+    /**
+     * Lower-cased index metadata of a single table.
+     *
+     * @param primaryKeyColumns columns that are part of the primary key
+     * @param uniqueColumns     columns that are part of a unique constraint or unique index
+     * @param leadingColumns    columns that lead at least one index of any kind
+     * @param prefixes          prefix trie over the column lists of all indexes
+     */
+    private record TableIndexes(Set<String> primaryKeyColumns, Set<String> uniqueColumns,
+                                Set<String> leadingColumns, PrefixNode prefixes) {
+
+        static TableIndexes of(Set<Indexes.IndexInfo> indexes) {
+            Set<String> primaryKey = new HashSet<>();
+            Set<String> unique = new HashSet<>();
+            Set<String> leading = new HashSet<>();
+            PrefixNode root = new PrefixNode();
+            for (Indexes.IndexInfo idx : indexes) {
+                if (idx.columns() == null || idx.columns().isEmpty()) {
+                    continue;
+                }
+                Set<String> target = switch (String.valueOf(idx.type())) {
+                    case "PRIMARY_KEY" -> primaryKey;
+                    case "UNIQUE_CONSTRAINT", "UNIQUE_INDEX" -> unique;
+                    default -> null;
+                };
+                PrefixNode node = root;
+                for (String column : idx.columns()) {
+                    if (column == null) {
+                        break;
+                    }
+                    String c = column.toLowerCase();
+                    if (target != null) {
+                        target.add(c);
+                    }
+                    node = node.children.computeIfAbsent(c, k -> new PrefixNode());
+                }
+                String first = idx.columns().getFirst();
+                if (first != null) {
+                    leading.add(first.toLowerCase());
+                }
+            }
+            return new TableIndexes(Set.copyOf(primaryKey), Set.copyOf(unique), Set.copyOf(leading), root);
+        }
+
+        /**
+         * True if some index starts with the given columns, in order.
+         */
+        boolean covers(List<String> columns) {
+            PrefixNode node = prefixes;
+            for (String column : columns) {
+                if (column == null) {
+                    return false;
+                }
+                node = node.children.get(column.toLowerCase());
+                if (node == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Node of the per-table prefix trie; only written while {@link TableIndexes#of} builds it.
+     */
+    private static final class PrefixNode {
+        private final Map<String, PrefixNode> children = new HashMap<>();
     }
     /**
      * Configure user-defined low/high cardinality columns.
@@ -51,6 +141,18 @@ public class CardinalityAnalyzer {
         userDefinedHigh = high != null ? high : Collections.emptySet();
     }
 
+    /**
+     * Sets the column statistics used ahead of the type and naming heuristics, or null to rely
+     * on the heuristics alone.
+     */
+    static void setColumnStatistics(ColumnStatistics statistics) {
+        columnStatistics = statistics;
+    }
+
+    static ColumnStatistics getColumnStatistics() {
+        return columnStatistics;
+    }
+
     /**
      * Analyzes the cardinality level of a specific column in a table.
      * 
@@ -83,6 +185,14 @@ public class CardinalityAnalyzer {
         if (hasUniqueConstraint(normalizedTableName, normalizedColumnName)) {
             return CardinalityLevel.HIGH;
         }
+
+        // Measured statistics beat any guess from the column type or name
+        ColumnStatistics statistics = columnStatistics;
+        CardinalityLevel measured = statistics != null
+                ? statistics.cardinality(normalizedTableName, normalizedColumnName) : null;
+        if (measured != null) {
+            return measured;
+        }
         
         // Prefer entity metadata: boolean or enum columns are low cardinality
         if (isBooleanOrEnumByType(normalizedTableName, normalizedColumnName)) {
@@ -124,18 +234,8 @@ public class CardinalityAnalyzer {
      * @return true if the column is a primary key, false otherwise
      */
     public static boolean isPrimaryKey(String tableName, String columnName) {
-        if (indexMap == null) {
-            return false;
-        }
-        Set<Indexes.IndexInfo> indexes = indexMap.get(tableName);
-        if (indexes == null) {
-            return false;
-        }
-
-        return indexes.stream()
-                .filter(index -> "PRIMARY_KEY".equals(index.type()))
-                .flatMap(index -> index.columns().stream())
-                .anyMatch(col -> col.toLowerCase().equals(columnName));
+        TableIndexes table = tableIndexes.get(tableName);
+        return table != null && table.primaryKeyColumns().contains(columnName);
     }
     
     /**
@@ -169,15 +269,8 @@ public class CardinalityAnalyzer {
      * @return true if the column has a unique constraint, false otherwise
      */
     public static boolean hasUniqueConstraint(String tableName, String columnName) {
-        Set<Indexes.IndexInfo> indexes = indexMap.get(tableName);
-        if (indexes == null) {
-            return false;
-        }
-        
-        return indexes.stream()
-                .filter(index -> "UNIQUE_CONSTRAINT".equals(index.type()) || "UNIQUE_INDEX".equals(index.type()))
-                .flatMap(index -> index.columns().stream())
-                .anyMatch(col -> col.toLowerCase().equals(columnName));
+        TableIndexes table = tableIndexes.get(tableName);
+        return table != null && table.uniqueColumns().contains(columnName);
     }
 
     /**
@@ -189,18 +282,8 @@ public class CardinalityAnalyzer {
      * @return true if there is an index whose first column matches the given column
      */
     public static boolean hasIndexWithLeadingColumn(String tableName, String columnName) {
-        String t = tableName.toLowerCase();
-        String c = columnName.toLowerCase();
-        Set<Indexes.IndexInfo> indexes = indexMap.get(t);
-        if (indexes == null) return false;
-        for (Indexes.IndexInfo idx : indexes) {
-            if (idx.columns() == null || idx.columns().isEmpty()) continue;
-            String first = idx.columns().getFirst();
-            if (first != null && first.equalsIgnoreCase(c)) {
-                return true;
-            }
-        }
-        return false;
+        TableIndexes table = tableIndexes.get(tableName.toLowerCase());
+        return table != null && table.leadingColumns().contains(columnName.toLowerCase());
     }
 
     /**
@@ -227,28 +310,8 @@ public class CardinalityAnalyzer {
         if (columns == null || columns.isEmpty()) {
             return false;
         }
-        
-        String t = tableName.toLowerCase();
-        Set<Indexes.IndexInfo> indexes = indexMap.get(t);
-        if (indexes == null) return false;
-        
-        for (Indexes.IndexInfo idx : indexes) {
-            if (idx.columns() == null || idx.columns().size() < columns.size()) continue;
-            
-            // Check if the index columns start with all the specified columns in order
-            boolean covers = true;
-            for (int i = 0; i < columns.size(); i++) {
-                if (!idx.columns().get(i).equalsIgnoreCase(columns.get(i))) {
-                    covers = false;
-                    break;
-                }
-            }
-            
-            if (covers) {
-                return true;
-            }
-        }
-        return false;
+        TableIndexes table = tableIndexes.get(tableName.toLowerCase());
+        return table != null && table.covers(columns);
     }
 
 }
@@ -208,6 +208,27 @@ public class CheckpointManager {
                 : new LinkedHashSet<>();
     }
 
+    /**
+     * Stores the SQL of the queries the index suggestions were made for, so that the suggestions
+     * restored on resume can still be validated with EXPLAIN.
+     *
+     * @param explainQueries the query statements, in the order they were analyzed
+     */
+    public void setExplainQueries(Set<String> explainQueries) {
+        checkpoint.setExplainQueries(new LinkedHashSet<>(explainQueries));
+    }
+
+    /**
+     * Gets the SQL of the queries the accumulated index suggestions were made for.
+     *
+     * @return set of query statements
+     */
+    public Set<String> getExplainQueries() {
+        return checkpoint.getExplainQueries() != null
+                ? new LinkedHashSet<>(checkpoint.getExplainQueries())
+                : new LinkedHashSet<>();
+    }
+
     /**
      * Stores the set of modified files for resume capability.
      *
@@ -267,6 +288,7 @@ public class CheckpointManager {
         private Set<String> processedRepositories = new HashSet<>();
         private Set<String> suggestedNewIndexes = new LinkedHashSet<>();
         private Set<String> suggestedMultiColumnIndexes = new LinkedHashSet<>();
+        private Set<String> explainQueries = new LinkedHashSet<>();
         private Set<String> modifiedFiles = new HashSet<>();
 
         // Default constructor for Jackson
@@ -323,6 +345,14 @@ public class CheckpointManager {
             this.suggestedMultiColumnIndexes = suggestedMultiColumnIndexes;
         }
 
+        public Set<String> getExplainQueries() {
+            return explainQueries;
+        }
+
+        public void setExplainQueries(Set<String> explainQueries) {
+            this.explainQueries = explainQueries;
+        }
+
         public Set<String> getModifiedFiles() {
             return modifiedFiles;
         }
@@ -0,0 +1,301 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column statistics taken from a snapshot of the {@code pg_stats} view of a production database,
+ * so that cardinality follows the real data instead of the column names.
+ *
+ * <p>The snapshot is a CSV file with a header row or a JSON array of objects, with the
+ * {@code pg_stats} column names {@code tablename}, {@code attname}, {@code null_frac},
+ * {@code n_distinct} and {@code most_common_freqs}. {@code schemaname} is optional, and so is a
+ * row count in {@code reltuples}, which is needed to turn a negative {@code n_distinct} (a
+ * fraction of the rows) into a number of values. Such a file is produced by</p>
+ * <pre>
+ * \copy (SELECT s.schemaname, s.tablename, s.attname, s.null_frac, s.n_distinct,
+ *               s.most_common_freqs, c.reltuples
+ *        FROM pg_stats s JOIN pg_class c ON c.relname = s.tablename
+ *        WHERE s.schemaname = 'public') TO 'pg_stats.csv' CSV HEADER
+ * </pre>
+ *
+ * <p>The statistics are read once and kept in memory keyed by table and column, ignoring
+ * case.</p>
+ */
+class ColumnStatistics {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnStatistics.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Equality matches on at least this fraction of the rows make a column low cardinality. */
+    static final double LOW_SELECTIVITY = 0.1;
+    /** Equality matches on at most this fraction of the rows make a column high cardinality. */
+    static final double HIGH_SELECTIVITY = 0.001;
+
+    private static final List<String> SCHEMA_COLUMNS = List.of("schemaname");
+    private static final List<String> TABLE_COLUMNS = List.of("tablename", "table_name");
+    private static final List<String> COLUMN_COLUMNS = List.of("attname", "column_name");
+    private static final List<String> NULL_FRAC_COLUMNS = List.of("null_frac");
+    private static final List<String> N_DISTINCT_COLUMNS = List.of("n_distinct");
+    private static final List<String> MCV_FREQS_COLUMNS = List.of("most_common_freqs");
+    private static final List<String> ROWS_COLUMNS = List.of("reltuples", "n_live_tup", "rows");
+
+    /**
+     * The statistics of one column.
+     *
+     * @param nullFraction the fraction of the rows where the column is null
+     * @param nDistinct the number of distinct values, or minus their fraction of the rows when
+     *                  negative, 0 if unknown
+     * @param mostCommonFrequency the fraction of the rows holding the most common value, 0 if
+     *                            no value is notably common
+     * @param rows the number of rows of the table, or a negative number if unknown
+     */
+    record Stats(double nullFraction, double nDistinct, double mostCommonFrequency, double rows) {
+
+        /**
+         * The estimated number of distinct non-null values, or 0 if it can't be told.
+         */
+        long distinctValues() {
+            if (nDistinct > 0) {
+                return Math.round(nDistinct);
+            }
+            if (nDistinct < 0 && rows > 0) {
+                return Math.max(1, Math.round(-nDistinct * rows));
+            }
+            return 0;
+        }
+
+        /**
+         * The cardinality implied by the fraction of the rows that an equality match on a
+         * typical value selects, or null if the statistics are not enough to tell.
+         */
+        CardinalityLevel cardinality() {
+            if (mostCommonFrequency >= LOW_SELECTIVITY) {
+                return CardinalityLevel.LOW;
+            }
+            long distinct = distinctValues();
+            if (distinct == 0) {
+                // a negative n_distinct means the values grow with the rows of the table
+                return nDistinct < 0 ? CardinalityLevel.HIGH : null;
+            }
+            double selectivity = Math.max(mostCommonFrequency, (1 - nullFraction) / distinct);
+            if (selectivity >= LOW_SELECTIVITY) {
+                return CardinalityLevel.LOW;
+            }
+            return selectivity <= HIGH_SELECTIVITY ? CardinalityLevel.HIGH : CardinalityLevel.MEDIUM;
+        }
+    }
+
+    private final Map<String, Stats> columns = new HashMap<>();
+    private final String schema;
+
+    /**
+     * @param schema the only schema whose statistics are kept, or null to keep all of them
+     */
+    ColumnStatistics(String schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Reads the snapshot configured in the {@code query_optimizer.column_statistics} section.
+     *
+     * @return the statistics, or null if no snapshot is configured
+     */
+    @SuppressWarnings("unchecked")
+    static ColumnStatistics fromConfiguration() throws IOException {
+        Map<String, Object> queryOptimizer = (Map<String, Object>) Settings.getProperty("query_optimizer");
+        if (queryOptimizer == null || !(queryOptimizer.get("column_statistics") instanceof Map<?, ?> config)) {
+            return null;
+        }
+        if (!(config.get("file") instanceof String file) || file.isBlank()) {
+            logger.warn("query_optimizer.column_statistics has no file, cardinality is guessed from the schema");
+            return null;
+        }
+        String schema = config.get("schema") instanceof String s && !s.isBlank() ? s : null;
+        ColumnStatistics statistics = load(Path.of(file), schema);
+        logger.info("Loaded the statistics of {} columns from {}", statistics.size(), file);
+        return statistics;
+    }
+
+    static ColumnStatistics load(Path file, String schema) throws IOException {
+        ColumnStatistics statistics = new ColumnStatistics(schema);
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+            statistics.readJson(file);
+        } else {
+            statistics.readCsv(file);
+        }
+        return statistics;
+    }
+
+    private void readJson(Path file) throws IOException {
+        JsonNode root = objectMapper.readTree(file.toFile());
+        if (!root.isArray()) {
+            throw new IOException("Expected a JSON array of pg_stats rows in " + file);
+        }
+        for (JsonNode entry : root) {
+            add(text(entry, SCHEMA_COLUMNS), text(entry, TABLE_COLUMNS), text(entry, COLUMN_COLUMNS),
+                    text(entry, NULL_FRAC_COLUMNS), text(entry, N_DISTINCT_COLUMNS),
+                    text(entry, MCV_FREQS_COLUMNS), text(entry, ROWS_COLUMNS));
+        }
+    }
+
+    private static String text(JsonNode entry, List<String> names) {
+        for (String name : names) {
+            JsonNode value = entry.get(name);
+            if (value != null && !value.isNull()) {
+                return value.isArray() ? value.toString() : value.asText();
+            }
+        }
+        return null;
+    }
+
+    private void readCsv(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<String> header = split(lines.get(0));
+        int schemaName = indexOf(header, SCHEMA_COLUMNS);
+        int table = indexOf(header, TABLE_COLUMNS);
+        int column = indexOf(header, COLUMN_COLUMNS);
+        int nullFrac = indexOf(header, NULL_FRAC_COLUMNS);
+        int nDistinct = indexOf(header, N_DISTINCT_COLUMNS);
+        int mcvFreqs = indexOf(header, MCV_FREQS_COLUMNS);
+        int rows = indexOf(header, ROWS_COLUMNS);
+        if (table < 0 || column < 0 || nDistinct < 0) {
+            throw new IOException("Expected tablename, attname and n_distinct columns in " + file);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> cells = split(line);
+            add(cell(cells, schemaName), cell(cells, table), cell(cells, column), cell(cells, nullFrac),
+                    cell(cells, nDistinct), cell(cells, mcvFreqs), cell(cells, rows));
+        }
+    }
+
+    /**
+     * Splits a CSV line, keeping the commas inside quoted cells such as the
+     * {@code {0.4,0.2}} arrays of {@code most_common_freqs}.
+     */
+    static List<String> split(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                cells.add(cell.toString().trim());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString().trim());
+        return cells;
+    }
+
+    private static int indexOf(List<String> header, List<String> names) {
+        for (int i = 0; i < header.size(); i++) {
+            if (names.contains(header.get(i).toLowerCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String cell(List<String> cells, int index) {
+        return index >= 0 && index < cells.size() && !cells.get(index).isEmpty() ? cells.get(index) : null;
+    }
+
+    private void add(String schemaName, String table, String column, String nullFrac, String nDistinct,
+                     String mcvFreqs, String rows) {
+        if (table == null || column == null || nDistinct == null) {
+            return;
+        }
+        if (schema != null && schemaName != null && !schema.equalsIgnoreCase(schemaName)) {
+            return;
+        }
+        try {
+            put(table, column, new Stats(
+                    nullFrac != null ? Double.parseDouble(nullFrac) : 0,
+                    Double.parseDouble(nDistinct),
+                    mostCommonFrequency(mcvFreqs),
+                    rows != null ? Double.parseDouble(rows) : -1));
+        } catch (NumberFormatException e) {
+            logger.debug("Skipping statistics of {}.{}: {}", table, column, e.getMessage());
+        }
+    }
+
+    /**
+     * The largest frequency in a {@code most_common_freqs} array, written either as a
+     * PostgreSQL array literal or as a JSON array.
+     */
+    static double mostCommonFrequency(String freqs) {
+        if (freqs == null) {
+            return 0;
+        }
+        String values = freqs.replaceAll("[{}\\[\\]\\s]", "");
+        double max = 0;
+        if (!values.isEmpty()) {
+            for (String value : values.split(",")) {
+                max = Math.max(max, Double.parseDouble(value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Records the statistics of a column, replacing any recorded before.
+     */
+    void put(String table, String column, Stats stats) {
+        columns.put(key(table, column), stats);
+    }
+
+    /**
+     * The statistics of a column, or null if the snapshot has none for it.
+     */
+    Stats find(String table, String column) {
+        if (table == null || column == null) {
+            return null;
+        }
+        return columns.get(key(table, column));
+    }
+
+    /**
+     * The cardinality of a column according to its statistics, or null if the snapshot can't
+     * tell.
+     */
+    CardinalityLevel cardinality(String table, String column) {
+        Stats stats = find(table, column);
+        return stats != null ? stats.cardinality() : null;
+    }
+
+    int size() {
+        return columns.size();
+    }
+
+    private static String key(String table, String column) {
+        return table.toLowerCase(Locale.ROOT) + "." + column.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,484 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.Scope;
+import liquibase.command.CommandScope;
+import liquibase.command.core.UpdateCommandStep;
+import liquibase.command.core.helpers.DbUrlConnectionArgumentsCommandStep;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.DirectoryResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.liquibase.LiquibaseResourceUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the proposed indexes with the PostgreSQL planner before they are written out.
+ *
+ * <p>The Liquibase changelog is applied to a scratch schema of a disposable PostgreSQL instance,
+ * for example a local {@code pg_ctl} cluster, and every table is filled with synthetic rows whose
+ * number of distinct values follows the cardinality of each column. Each analyzed query is
+ * explained, the changesets of the proposed indexes are applied, and the queries are explained
+ * again. An index whose table shows up in the plans but that no changed plan uses is one the
+ * planner would never pick, and is reported as unused. Indexes on tables that no query could be
+ * explained for are given the benefit of the doubt.</p>
+ *
+ * <p>Queries with parameters are explained with {@code GENERIC_PLAN}, which needs PostgreSQL 16
+ * or later. The scratch schema is dropped afterwards.</p>
+ */
+class ExplainIndexValidator {
+    private static final Logger logger = LoggerFactory.getLogger(ExplainIndexValidator.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static final int DEFAULT_ROWS = 10_000;
+
+    /**
+     * A proposed index.
+     *
+     * @param key the suggestion key, {@code table|column1,column2,...}
+     * @param table the table name
+     * @param indexName the name the changeset gives the index
+     * @param changeSet the Liquibase changeset that creates it
+     */
+    record Candidate(String key, String table, String indexName, String changeSet) {}
+
+    /**
+     * The parts of an {@code EXPLAIN (FORMAT JSON)} plan that matter here.
+     *
+     * @param shape the node types and index names of the plan, without costs
+     * @param relations the tables the plan reads
+     * @param indexes the indexes the plan reads
+     */
+    record PlanSummary(String shape, Set<String> relations, Set<String> indexes) {}
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int defaultRows;
+    private final Map<String, Integer> tableRows;
+
+    ExplainIndexValidator(String url, String user, String password, int defaultRows, Map<String, Integer> tableRows) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.defaultRows = defaultRows;
+        this.tableRows = tableRows;
+    }
+
+    /**
+     * Reads the {@code query_optimizer.explain_validation} section.
+     *
+     * @return the validator, or null if validation is not configured
+     */
+    @SuppressWarnings("unchecked")
+    static ExplainIndexValidator fromConfiguration() {
+        Map<String, Object> queryOptimizer = (Map<String, Object>) Settings.getProperty("query_optimizer");
+        if (queryOptimizer == null || !(queryOptimizer.get("explain_validation") instanceof Map<?, ?> config)) {
+            return null;
+        }
+        if (!(config.get("url") instanceof String url) || url.isBlank()) {
+            logger.warn("query_optimizer.explain_validation has no url, index suggestions are not validated");
+            return null;
+        }
+        int rows = config.get("rows") instanceof Number n ? n.intValue() : DEFAULT_ROWS;
+        Map<String, Integer> tableRows = new HashMap<>();
+        if (config.get("table_rows") instanceof Map<?, ?> counts) {
+            counts.forEach((table, count) -> {
+                if (count instanceof Number n) {
+                    tableRows.put(table.toString().toLowerCase(Locale.ROOT), n.intValue());
+                }
+            });
+        }
+        return new ExplainIndexValidator(url, stringOrNull(config.get("user")), stringOrNull(config.get("password")),
+                rows, tableRows);
+    }
+
+    private static String stringOrNull(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Finds the proposed indexes the planner does not use for any of the queries.
+     *
+     * @param masterChangelog the Liquibase master changelog of the application
+     * @param candidates the proposed indexes
+     * @param queries the SQL of the analyzed queries, optimized where the optimizer rewrote them
+     * @return the keys of the candidates that no plan uses
+     */
+    Set<String> findUnusedIndexes(Path masterChangelog, List<Candidate> candidates, Collection<String> queries)
+            throws SQLException, LiquibaseException, IOException {
+        String schema = "antikythera_explain_" + ProcessHandle.current().pid();
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+                statement.execute("CREATE SCHEMA " + schema);
+                statement.execute("SET search_path TO " + schema);
+            }
+            try {
+                Database database = DatabaseFactory.getInstance()
+                        .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+                database.setDefaultSchemaName(schema);
+
+                Path resourceRoot = LiquibaseResourceUtil.determineResourceRoot(masterChangelog.toFile());
+                update(database, resourceRoot,
+                        LiquibaseResourceUtil.getRelativeChangelogPath(masterChangelog.toFile(), resourceRoot));
+                seed(connection, schema);
+                Map<String, PlanSummary> before = explainAll(connection, queries);
+
+                Path changesDir = Files.createTempDirectory("antikythera-explain");
+                try {
+                    Path changesFile = changesDir.resolve("proposed-indexes.xml");
+                    Files.writeString(changesFile, changelogDocument(candidates), StandardCharsets.UTF_8);
+                    update(database, changesDir, changesFile.getFileName().toString());
+                } finally {
+                    try (var files = Files.list(changesDir)) {
+                        for (Path file : files.toList()) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                    Files.deleteIfExists(changesDir);
+                }
+                analyze(connection);
+                Map<String, PlanSummary> after = explainAll(connection, queries);
+
+                return unusedIndexes(candidates, createdIndexes(connection), before, after);
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+                }
+            }
+        }
+    }
+
+    private static void update(Database database, Path resourceRoot, String changelogFile) throws LiquibaseException {
+        try (DirectoryResourceAccessor resourceAccessor = new DirectoryResourceAccessor(resourceRoot)) {
+            Scope.child(Scope.Attr.resourceAccessor.name(), resourceAccessor, () ->
+                    new CommandScope(UpdateCommandStep.COMMAND_NAME)
+                            .addArgumentValue(DbUrlConnectionArgumentsCommandStep.DATABASE_ARG, database)
+                            .addArgumentValue(UpdateCommandStep.CHANGELOG_FILE_ARG, changelogFile)
+                            .execute());
+        } catch (LiquibaseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LiquibaseException("Could not apply " + changelogFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String changelogDocument(List<Candidate> candidates) {
+        StringBuilder changeSets = new StringBuilder();
+        candidates.forEach(c -> changeSets.append(c.changeSet()).append('\n'));
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <databaseChangeLog xmlns="http://www.liquibase.org/xml/ns/dbchangelog"
+                                   xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                                   xsi:schemaLocation="http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.0.xsd">
+                %s
+                </databaseChangeLog>
+                """.formatted(changeSets);
+    }
+
+    /**
+     * Fills every table of the schema with synthetic rows. Foreign keys are dropped first, since
+     * the rows of different tables do not match up; the schema is thrown away afterwards.
+     */
+    private void seed(Connection connection, String schema) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            List<String> foreignKeys = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("""
+                    SELECT table_name, constraint_name FROM information_schema.table_constraints
+                    WHERE constraint_schema = current_schema() AND constraint_type = 'FOREIGN KEY'""")) {
+                while (rs.next()) {
+                    foreignKeys.add("ALTER TABLE " + quote(rs.getString(1)) + " DROP CONSTRAINT " + quote(rs.getString(2)));
+                }
+            }
+            for (String drop : foreignKeys) {
+                statement.execute(drop);
+            }
+        }
+
+        for (Map.Entry<String, List<String>> table : columnExpressions(connection).entrySet()) {
+            String name = table.getKey();
+            int rows = tableRows.getOrDefault(name.toLowerCase(Locale.ROOT), defaultRows);
+            List<String> columns = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            for (String column : table.getValue()) {
+                String[] parts = column.split("\t", 2);
+                columns.add(quote(parts[0]));
+                values.add(parts[1]);
+            }
+            if (columns.isEmpty()) {
+                continue;
+            }
+            String insert = "INSERT INTO " + quote(name) + " (" + String.join(", ", columns) + ") SELECT "
+                    + String.join(", ", values) + " FROM generate_series(1, " + rows + ") AS g";
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(insert);
+            } catch (SQLException e) {
+                logger.warn("Could not seed {} in {}, its plans use an empty table: {}", name, schema, e.getMessage());
+            }
+        }
+        analyze(connection);
+    }
+
+    /**
+     * The value expression of each column that can be generated, as {@code column\texpression},
+     * grouped by table. Identity and defaulted columns are left to their defaults.
+     */
+    private static Map<String, List<String>> columnExpressions(Connection connection) throws SQLException {
+        Map<String, List<String>> tables = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("""
+                SELECT c.table_name, c.column_name, c.data_type, c.character_maximum_length,
+                       c.is_identity, c.column_default
+                FROM information_schema.columns c
+                JOIN information_schema.tables t
+                  ON t.table_schema = c.table_schema AND t.table_name = c.table_name
+                WHERE c.table_schema = current_schema() AND t.table_type = 'BASE TABLE'
+                  AND c.table_name NOT IN ('databasechangelog', 'databasechangeloglock')
+                ORDER BY c.table_name, c.ordinal_position""");
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString(1);
+                List<String> columns = tables.computeIfAbsent(table, t -> new ArrayList<>());
+                if ("YES".equals(rs.getString(5)) || rs.getString(6) != null) {
+                    continue;
+                }
+                String column = rs.getString(2);
+                int maxLength = rs.getInt(4);
+                String expression = valueExpression(rs.getString(3), maxLength,
+                        distinctValues(table, column));
+                if (expression != null) {
+                    columns.add(column + "\t" + expression);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * The number of distinct values to generate for a column, taken from the column statistics
+     * when they have it and from its cardinality otherwise.
+     */
+    private static int distinctValues(String table, String column) {
+        ColumnStatistics statistics = CardinalityAnalyzer.getColumnStatistics();
+        ColumnStatistics.Stats stats = statistics != null ? statistics.find(table, column) : null;
+        long distinct = stats != null ? stats.distinctValues() : 0;
+        if (distinct > 0) {
+            return (int) Math.min(distinct, Integer.MAX_VALUE);
+        }
+        return distinctValues(CardinalityAnalyzer.analyzeColumnCardinality(table, column));
+    }
+
+    /**
+     * The number of distinct values to generate for a column, 0 for one value per row.
+     */
+    static int distinctValues(CardinalityLevel cardinality) {
+        if (cardinality == null) {
+            return 0;
+        }
+        return switch (cardinality) {
+            case LOW -> 3;
+            case MEDIUM -> 100;
+            default -> 0;
+        };
+    }
+
+    /**
+     * A SQL expression over the series value {@code g} producing values of a column type.
+     *
+     * @param dataType the {@code information_schema} data type
+     * @param maxLength the maximum length of a character type, 0 if there is none
+     * @param distinct the number of distinct values, 0 for one value per row
+     * @return the expression, or null for a type that is not generated
+     */
+    static String valueExpression(String dataType, int maxLength, int distinct) {
+        String g = distinct > 0 ? "(g % " + distinct + ")" : "g";
+        return switch (dataType.toLowerCase(Locale.ROOT)) {
+            case "smallint" -> "(" + g + " % 32000)::smallint";
+            case "integer", "bigint", "numeric", "real", "double precision" -> "CAST(" + g + " AS " + dataType + ")";
+            case "character varying", "character", "text" -> maxLength > 0
+                    ? "left('v' || " + g + ", " + maxLength + ")"
+                    : "'v' || " + g;
+            case "boolean" -> "(g % 2 = 0)";
+            case "date" -> "DATE '2020-01-01' + (" + g + " % 3650)::int";
+            case "timestamp without time zone", "timestamp with time zone" ->
+                    "TIMESTAMP '2020-01-01' + " + g + " * INTERVAL '1 minute'";
+            case "uuid" -> "md5(" + g + "::text)::uuid";
+            case "json", "jsonb" -> "CAST('{}' AS " + dataType + ")";
+            case "bytea" -> "decode(md5(" + g + "::text), 'hex')";
+            default -> null;
+        };
+    }
+
+    private static void analyze(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private static Map<String, PlanSummary> explainAll(Connection connection, Collection<String> queries) {
+        Map<String, PlanSummary> plans = new HashMap<>();
+        for (String query : queries) {
+            String sql = toPositionalParameters(query);
+            String explain = (sql.contains("$1") ? "EXPLAIN (GENERIC_PLAN, FORMAT JSON) " : "EXPLAIN (FORMAT JSON) ") + sql;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(explain)) {
+                if (rs.next()) {
+                    plans.put(query, summarize(objectMapper.readTree(rs.getString(1))));
+                }
+            } catch (SQLException | IOException e) {
+                logger.debug("Could not explain {}: {}", sql, e.getMessage());
+            }
+        }
+        return plans;
+    }
+
+    private static Set<String> createdIndexes(Connection connection) throws SQLException {
+        Set<String> indexes = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT indexname FROM pg_indexes WHERE schemaname = current_schema()")) {
+            while (rs.next()) {
+                indexes.add(rs.getString(1).toLowerCase(Locale.ROOT));
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Finds the candidates that were created on a table the plans read, but that no changed plan
+     * uses. Candidates whose changeset did not create the index, for example because PostgreSQL
+     * is not among the supported dialects, are not judged.
+     */
+    static Set<String> unusedIndexes(List<Candidate> candidates, Set<String> createdIndexes,
+                                     Map<String, PlanSummary> before, Map<String, PlanSummary> after) {
+        Set<String> explainedTables = new HashSet<>();
+        Set<String> usedIndexes = new HashSet<>();
+        for (Map.Entry<String, PlanSummary> plan : after.entrySet()) {
+            PlanSummary previous = before.get(plan.getKey());
+            if (previous == null) {
+                continue;
+            }
+            explainedTables.addAll(previous.relations());
+            if (!previous.shape().equals(plan.getValue().shape())) {
+                usedIndexes.addAll(plan.getValue().indexes());
+            }
+        }
+
+        Set<String> unused = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            String index = candidate.indexName().toLowerCase(Locale.ROOT);
+            if (createdIndexes.contains(index) && explainedTables.contains(candidate.table().toLowerCase(Locale.ROOT))
+                    && !usedIndexes.contains(index)) {
+                unused.add(candidate.key());
+            }
+        }
+        return unused;
+    }
+
+    /**
+     * Reduces the output of {@code EXPLAIN (FORMAT JSON)} to its shape, tables and indexes.
+     */
+    static PlanSummary summarize(JsonNode explain) {
+        StringBuilder shape = new StringBuilder();
+        Set<String> relations = new HashSet<>();
+        Set<String> indexes = new HashSet<>();
+        JsonNode root = explain.isArray() && !explain.isEmpty() ? explain.get(0) : explain;
+        summarize(root.path("Plan"), shape, relations, indexes);
+        return new PlanSummary(shape.toString(), relations, indexes);
+    }
+
+    private static void summarize(JsonNode node, StringBuilder shape, Set<String> relations, Set<String> indexes) {
+        if (node.isMissingNode()) {
+            return;
+        }
+        shape.append('(').append(node.path("Node Type").asText());
+        if (node.has("Relation Name")) {
+            relations.add(node.get("Relation Name").asText().toLowerCase(Locale.ROOT));
+        }
+        if (node.has("Index Name")) {
+            String index = node.get("Index Name").asText().toLowerCase(Locale.ROOT);
+            indexes.add(index);
+            shape.append(' ').append(index);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            summarize(child, shape, relations, indexes);
+        }
+        shape.append(')');
+    }
+
+    /**
+     * Replaces JDBC ({@code ?}, {@code ?1}) and named ({@code :name}) parameters outside string
+     * literals with PostgreSQL's positional {@code $n} parameters.
+     */
+    static String toPositionalParameters(String sql) {
+        StringBuilder out = new StringBuilder();
+        Map<String, Integer> named = new HashMap<>();
+        int next = 1;
+        boolean inLiteral = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+                out.append(c);
+            } else if (!inLiteral && c == '?') {
+                int end = i + 1;
+                while (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+                    end++;
+                }
+                if (end > i + 1) {
+                    int position = Integer.parseInt(sql.substring(i + 1, end));
+                    out.append('$').append(position);
+                    next = Math.max(next, position + 1);
+                } else {
+                    out.append('$').append(next++);
+                }
+                i = end - 1;
+            } else if (!inLiteral && c == ':' && i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))
+                    && (i == 0 || sql.charAt(i - 1) != ':')) {
+                int end = i + 1;
+                while (end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String name = sql.substring(i + 1, end);
+                Integer position = named.get(name);
+                if (position == null) {
+                    position = next++;
+                    named.put(name, position);
+                }
+                out.append('$').append(position);
+                i = end - 1;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -8,19 +8,24 @@ import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.MethodReferenceExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
-import com.github.javaparser.ast.type.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+import sa.com.cloudsolutions.antikythera.examples.CallSiteIndexStore.CallSite;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Metrics;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Fields {
     private static final Logger logger = LoggerFactory.getLogger(Fields.class);
@@ -40,41 +45,78 @@ public class Fields {
      * Storage is: repositoryFQN → methodName → Set of CallerInfo (class + field name)
      * This enables O(callers) instead of O(all_dependent_classes) when renaming methods.
      */
-    protected static final Map<String, Map<String, Set<CallerInfo>>> methodCallIndex = new HashMap<>();
+    protected static final Map<String, Map<String, Set<CallerInfo>>> methodCallIndex = new ConcurrentHashMap<>();
 
     /**
      * Records information about a caller of a repository method.
      */
     public record CallerInfo(String callerClass, String fieldName) {}
 
+    private static File indexStoreFile;
+
     private Fields() {
     }
 
+    /**
+     * Keeps the indexes in the given file between runs, so that only the source files that
+     * changed since the last run are resolved and traversed again.
+     *
+     * @param file the index file, or {@code null} to always build the indexes from scratch
+     */
+    public static void setIndexStoreFile(File file) {
+        indexStoreFile = file;
+    }
+
     public static void buildDependencies() {
-        // Phase 1: Build field dependencies (existing logic)
+        CallSiteIndexStore store = indexStoreFile == null ? null
+                : CallSiteIndexStore.open(indexStoreFile, AntikytheraRunTime.getResolvedTypes().keySet());
+
+        // Phase 1: Build field dependencies
         for (TypeWrapper type : AntikytheraRunTime.getResolvedTypes().values()) {
             String name = type.getFullyQualifiedName();
-            for (FieldDeclaration fd : type.getType().getFields()) {
-                // Process ALL variables in the field declaration, not just the first one
-
-                fd.getVariables().forEach(variable -> {
-                    Type fieldType = variable.getType();
-                    if (fieldType instanceof ClassOrInterfaceType ct) {
-                        TypeWrapper tw = AbstractCompiler.findType(AntikytheraRunTime.getCompilationUnit(name), ct);
-                        if (tw != null) {
-                            Map<String, Set<String>> dependentClasses = fieldDependencies.computeIfAbsent(
-                                    tw.getFullyQualifiedName(), k -> new HashMap<>());
-                            Set<String> fieldNames = dependentClasses.computeIfAbsent(name, k -> new HashSet<>());
-                            fieldNames.add(variable.getNameAsString());
-                        }
-                    }
-                });
+            CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(name);
+            Map<String, String> fieldTypes = store != null ? store.fields(cu, name) : null;
+            if (fieldTypes == null) {
+                fieldTypes = resolveFieldTypes(type, cu);
+            }
+            if (store != null) {
+                store.putFields(cu, name, fieldTypes);
             }
+            fieldTypes.forEach((fieldName, fieldType) -> fieldDependencies
+                    .computeIfAbsent(fieldType, k -> new HashMap<>())
+                    .computeIfAbsent(name, k -> new HashSet<>())
+                    .add(fieldName));
         }
         propagateInheritedFields();
 
         // Phase 2: Build method call index for each repository
-        buildMethodCallIndex();
+        try (Metrics.Timer span = Metrics.span("buildMethodCallIndex", null)) {
+            buildMethodCallIndex(store);
+        }
+        if (store != null) {
+            store.save();
+        }
+    }
+
+    /**
+     * Resolves the types of the fields declared by a class.
+     *
+     * @return field name to the fully qualified name of its type, for the fields whose type is known
+     */
+    private static Map<String, String> resolveFieldTypes(TypeWrapper type, CompilationUnit cu) {
+        Map<String, String> fieldTypes = new LinkedHashMap<>();
+        for (FieldDeclaration fd : type.getType().getFields()) {
+            // Process ALL variables in the field declaration, not just the first one
+            fd.getVariables().forEach(variable -> {
+                if (variable.getType() instanceof ClassOrInterfaceType ct) {
+                    TypeWrapper tw = AbstractCompiler.findType(cu, ct);
+                    if (tw != null) {
+                        fieldTypes.put(variable.getNameAsString(), tw.getFullyQualifiedName());
+                    }
+                }
+            });
+        }
+        return fieldTypes;
     }
 
     private static void propagateInheritedFields() {
@@ -119,33 +161,38 @@ public class Fields {
      * Builds an index of which classes call which repository methods.
      * This enables fast lookup when renaming methods - only classes that actually
      * call the method need to be processed.
+     *
+     * <p>Every compilation unit holding a dependent class is traversed exactly once, matching
+     * calls against all of its repository fields at the same time. Compilation units are
+     * independent of each other, so they are processed in parallel.</p>
      */
-    private static void buildMethodCallIndex() {
+    private static void buildMethodCallIndex(CallSiteIndexStore store) {
         long startTime = System.currentTimeMillis();
         int totalMethodsIndexed = 0;
         int totalCallsIndexed = 0;
 
-        // For each repository that has dependents
+        // compilation unit -> caller class -> field name -> repositories of that field
+        Map<CompilationUnit, Map<String, Map<String, Set<String>>>> fieldsByUnit = new IdentityHashMap<>();
         for (Map.Entry<String, Map<String, Set<String>>> repoEntry : fieldDependencies.entrySet()) {
             String repositoryFqn = repoEntry.getKey();
-            Map<String, Set<String>> dependentClasses = repoEntry.getValue();
-
-            // For each class that has a field of this repository type
-            for (Map.Entry<String, Set<String>> classEntry : dependentClasses.entrySet()) {
+            for (Map.Entry<String, Set<String>> classEntry : repoEntry.getValue().entrySet()) {
                 String callerClass = classEntry.getKey();
-                Set<String> fieldNames = classEntry.getValue();
-
                 CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(callerClass);
                 if (cu == null) {
                     continue;
                 }
-
-                // Find all method calls and method references in this compilation unit
-                indexMethodCalls(cu, repositoryFqn, callerClass, fieldNames);
-                indexMethodReferences(cu, repositoryFqn, callerClass, fieldNames);
+                Map<String, Set<String>> fieldRepositories = fieldsByUnit
+                        .computeIfAbsent(cu, k -> new HashMap<>())
+                        .computeIfAbsent(callerClass, k -> new HashMap<>());
+                for (String fieldName : classEntry.getValue()) {
+                    fieldRepositories.computeIfAbsent(fieldName, k -> new HashSet<>()).add(repositoryFqn);
+                }
             }
         }
 
+        fieldsByUnit.entrySet().parallelStream()
+                .forEach(e -> indexCompilationUnit(e.getKey(), e.getValue(), store));
+
         // Calculate statistics
         for (Map<String, Set<CallerInfo>> repoIndex : methodCallIndex.values()) {
             totalMethodsIndexed += repoIndex.size();
@@ -160,21 +207,46 @@ public class Fields {
     }
 
     /**
-     * Indexes method calls (e.g., repository.findByEmail(...)) in a compilation unit.
+     * Indexes the method calls (e.g., repository.findByEmail(...)) and method references
+     * (e.g., repository::findByEmail) of a compilation unit, traversing it at most once.
+     *
+     * @param cu             the compilation unit
+     * @param callerClasses  caller class -> field name -> repositories held by that field
+     * @param store          the persisted index to reuse unchanged files from, may be null
      */
-    private static void indexMethodCalls(CompilationUnit cu, String repositoryFqn,
-            String callerClass, Set<String> fieldNames) {
-        cu.findAll(MethodCallExpr.class).forEach(mce ->
-            indexMethodCall(repositoryFqn, callerClass, fieldNames, mce)
-        );
+    private static void indexCompilationUnit(CompilationUnit cu,
+            Map<String, Map<String, Set<String>>> callerClasses, CallSiteIndexStore store) {
+        String callsKey = store != null ? CallSiteIndexStore.callsKey(callerClasses) : null;
+        List<CallSite> callSites = store != null ? store.calls(cu, callsKey) : null;
+        if (callSites == null) {
+            callSites = findCallSites(cu, callerClasses);
+        }
+        if (store != null) {
+            store.putCalls(cu, callsKey, callSites);
+        }
+        callSites.forEach(Fields::addToMethodCallIndex);
+    }
+
+    private static List<CallSite> findCallSites(CompilationUnit cu,
+            Map<String, Map<String, Set<String>>> callerClasses) {
+        List<CallSite> callSites = new ArrayList<>();
+        cu.walk(node -> {
+            if (node instanceof MethodCallExpr mce) {
+                callerClasses.forEach((callerClass, fields) -> findMethodCall(callerClass, fields, mce, callSites));
+            } else if (node instanceof MethodReferenceExpr mre) {
+                callerClasses.forEach((callerClass, fields) -> findMethodReference(callerClass, fields, mre, callSites));
+            }
+        });
+        return callSites;
     }
 
-    private static void indexMethodCall(String repositoryFqn, String callerClass, Set<String> fieldNames, MethodCallExpr mce) {
+    private static void findMethodCall(String callerClass, Map<String, Set<String>> fields, MethodCallExpr mce,
+            List<CallSite> callSites) {
         mce.getScope().ifPresent(scope -> {
-            String matchedField = findMatchingField(scope, fieldNames);
+            String methodName = mce.getNameAsString();
+            String matchedField = findMatchingField(scope, fields.keySet());
             if (matchedField != null) {
-                String methodName = mce.getNameAsString();
-                addToMethodCallIndex(repositoryFqn, methodName, callerClass, matchedField);
+                addCallSites(fields.get(matchedField), methodName, callerClass, matchedField, callSites);
             }
 
             // Also check Mockito patterns: verify(field).methodName() and
@@ -182,28 +254,28 @@ public class Fields {
             if (scope instanceof MethodCallExpr mockitoCall &&
                     isMockitoStubbingOrVerify(mockitoCall) &&
                     !mockitoCall.getArguments().isEmpty()) {
-                String mockitoField = findMatchingField(mockitoCall.getArgument(0), fieldNames);
+                String mockitoField = findMatchingField(mockitoCall.getArgument(0), fields.keySet());
                 if (mockitoField != null) {
-                    String methodName = mce.getNameAsString();
-                    addToMethodCallIndex(repositoryFqn, methodName, callerClass, mockitoField);
+                    addCallSites(fields.get(mockitoField), methodName, callerClass, mockitoField, callSites);
                 }
             }
         });
     }
 
-    /**
-     * Indexes method references (e.g., repository::findByEmail) in a compilation unit.
-     */
-    private static void indexMethodReferences(CompilationUnit cu, String repositoryFqn,
-            String callerClass, Set<String> fieldNames) {
-        cu.findAll(MethodReferenceExpr.class).forEach(mre -> {
-            Expression scope = mre.getScope();
-            String matchedField = findMatchingField(scope, fieldNames);
-            if (matchedField != null) {
-                String methodName = mre.getIdentifier();
-                addToMethodCallIndex(repositoryFqn, methodName, callerClass, matchedField);
-            }
-        });
+    private static void findMethodReference(String callerClass, Map<String, Set<String>> fields,
+            MethodReferenceExpr mre, List<CallSite> callSites) {
+        Expression scope = mre.getScope();
+        String matchedField = findMatchingField(scope, fields.keySet());
+        if (matchedField != null) {
+            addCallSites(fields.get(matchedField), mre.getIdentifier(), callerClass, matchedField, callSites);
+        }
+    }
+
+    private static void addCallSites(Set<String> repositories, String methodName, String callerClass,
+            String fieldName, List<CallSite> callSites) {
+        for (String repositoryFqn : repositories) {
+            callSites.add(new CallSite(repositoryFqn, methodName, callerClass, fieldName));
+        }
     }
 
     /**
@@ -239,14 +311,13 @@ public class Fields {
     }
 
     /**
-     * Adds an entry to the method call index.
+     * Adds an entry to the method call index. Safe to call from several threads at once.
      */
-    private static void addToMethodCallIndex(String repositoryFqn, String methodName,
-            String callerClass, String fieldName) {
+    private static void addToMethodCallIndex(CallSite callSite) {
         methodCallIndex
-                .computeIfAbsent(repositoryFqn, k -> new HashMap<>())
-                .computeIfAbsent(methodName, k -> new HashSet<>())
-                .add(new CallerInfo(callerClass, fieldName));
+                .computeIfAbsent(callSite.repository(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(callSite.method(), k -> ConcurrentHashMap.newKeySet())
+                .add(new CallerInfo(callSite.callerClass(), callSite.fieldName()));
     }
 
     /**
@@ -7,7 +7,10 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -33,7 +36,16 @@ public class GeminiAIService extends AbstractAIService {
         Map.entry(GEMINI_3_FLASH, new ModelPricing(0.50, 1.00, 3.00, 4.50, 0.10, 200000)),
         Map.entry("gemini-1.0-pro", new ModelPricing(0.50, 1.50, 0.25))
     );
+    public static final String CACHED_CONTENT = "cachedContent";
+    private static final String SYSTEM_INSTRUCTION = "system_instruction";
+    // A cached content is refreshed when it is this close to expiring, so that no batch references an expired one
+    private static final Duration CACHE_REFRESH_MARGIN = Duration.ofSeconds(60);
 
+    // Explicit context cache holding the system prompt (context_cache)
+    private final Object cachedContentLock = new Object();
+    private String cachedContentName;
+    private Instant cachedContentExpiry;
+    private boolean cachedContentUnavailable;
 
     public GeminiAIService() throws IOException {
         super();
@@ -74,10 +86,13 @@ public class GeminiAIService extends AbstractAIService {
         // Create root node
         ObjectNode root = objectMapper.createObjectNode();
 
-        // system_instruction
-        ObjectNode systemInstruction = root.putObject("system_instruction");
-        ArrayNode parts = systemInstruction.putArray(PARTS);
-        parts.addObject().put("text", systemPrompt);
+        // system_instruction, or a reference to the cached content that already holds it
+        String cachedContent = getCachedContent();
+        if (cachedContent != null) {
+            root.put(CACHED_CONTENT, cachedContent);
+        } else {
+            putSystemInstruction(root);
+        }
 
         // contents
         ArrayNode contents = root.putArray("contents");
@@ -110,6 +125,162 @@ public class GeminiAIService extends AbstractAIService {
     }
 
 
+    private void putSystemInstruction(ObjectNode root) {
+        ObjectNode systemInstruction = root.putObject(SYSTEM_INSTRUCTION);
+        ArrayNode parts = systemInstruction.putArray(PARTS);
+        parts.addObject().put("text", systemPrompt);
+    }
+
+    /**
+     * Returns the name of the cached content holding the system prompt, creating it on first
+     * use and extending its TTL when it is about to expire. Returns {@code null} if context
+     * caching is disabled or the cache could not be created, in which case the system prompt
+     * is sent inline. A cache the provider rejects, for instance because the prompt is below the
+     * model's minimum cacheable size, is not requested again; after any other failure, such as
+     * a network error or a 5xx response, the next batch tries again.
+     *
+     * <p>Example {@code generator.yml} configuration:</p>
+     * <pre>
+     * ai_service:
+     *   context_cache: true
+     *   context_cache_ttl_seconds: 3600   # optional
+     * </pre>
+     */
+    String getCachedContent() {
+        if (!getConfigBoolean("context_cache", false)) {
+            return null;
+        }
+        synchronized (cachedContentLock) {
+            if (cachedContentUnavailable) {
+                return null;
+            }
+            if (cachedContentName != null
+                    && Instant.now().isBefore(cachedContentExpiry.minus(CACHE_REFRESH_MARGIN))) {
+                return cachedContentName;
+            }
+            try {
+                if (cachedContentName == null || !refreshCachedContent()) {
+                    createCachedContent();
+                }
+            } catch (CachedContentRejectedException e) {
+                // The prompt may be below the provider's minimum cacheable size; don't retry every batch
+                logger.warn("Context caching unavailable, sending the system prompt inline: {}", e.getMessage());
+                cachedContentName = null;
+                cachedContentUnavailable = true;
+            } catch (IOException e) {
+                logger.warn("Could not create a context cache, sending the system prompt inline for now: {}",
+                        e.getMessage());
+                cachedContentName = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return cachedContentName;
+        }
+    }
+
+    /**
+     * Creates a cached content holding the system prompt for the configured model.
+     */
+    private void createCachedContent() throws IOException, InterruptedException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put(MODEL, "models/" + getConfigString(MODEL, GEMINI_3_FLASH));
+        root.put("displayName", "antikythera-query-optimizer");
+        ObjectNode systemInstruction = root.putObject("systemInstruction");
+        systemInstruction.putArray(PARTS).addObject().put("text", systemPrompt);
+        root.put("ttl", getContextCacheTtl().toSeconds() + "s");
+
+        HttpRequest request = cachedContentRequest("/cachedContents")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(root)))
+                .build();
+        JsonNode response = sendCachedContentRequest(request);
+        cachedContentName = response.path("name").asText(null);
+        if (cachedContentName == null) {
+            throw new CachedContentRejectedException("Cached content response has no name: " + response);
+        }
+        cachedContentExpiry = parseExpiry(response);
+        if (logger.isInfoEnabled()) {
+            logger.info("Created context cache {} with {} tokens, expiring at {}", cachedContentName,
+                    response.path("usageMetadata").path("totalTokenCount").asInt(0), cachedContentExpiry);
+        }
+    }
+
+    /**
+     * Extends the TTL of the current cached content.
+     *
+     * @return false if the cached content could not be updated and has to be created again
+     */
+    private boolean refreshCachedContent() throws InterruptedException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("ttl", getContextCacheTtl().toSeconds() + "s");
+        try {
+            HttpRequest request = cachedContentRequest("/" + cachedContentName, "updateMask=ttl")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(root)))
+                    .build();
+            cachedContentExpiry = parseExpiry(sendCachedContentRequest(request));
+            logger.info("Refreshed context cache {} until {}", cachedContentName, cachedContentExpiry);
+            return true;
+        } catch (IOException e) {
+            logger.info("Could not refresh context cache {}, creating a new one: {}", cachedContentName, e.getMessage());
+            cachedContentName = null;
+            return false;
+        }
+    }
+
+    /**
+     * Forgets a cached content that the provider reported as missing or expired, so that the
+     * next request creates a new one.
+     */
+    void invalidateCachedContent(String name) {
+        synchronized (cachedContentLock) {
+            if (name != null && name.equals(cachedContentName)) {
+                cachedContentName = null;
+            }
+        }
+    }
+
+    private HttpRequest.Builder cachedContentRequest(String path, String... query) {
+        String endpoint = getConfigString("cache_endpoint", "https://generativelanguage.googleapis.com/v1beta");
+        StringBuilder url = new StringBuilder(endpoint).append(path).append("?key=").append(getConfigString(API_KEY, null));
+        for (String q : query) {
+            url.append('&').append(q);
+        }
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url.toString()))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(getConfigInt("timeout_seconds", 90)));
+    }
+
+    private JsonNode sendCachedContentRequest(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        if (status != 200) {
+            String message = "Cached content request failed with status: " + status + ", body: " + response.body();
+            // timeouts and rate limits are worth another try, other client errors are not
+            if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                throw new CachedContentRejectedException(message);
+            }
+            throw new IOException(message);
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private Duration getContextCacheTtl() {
+        return Duration.ofSeconds(Math.max(getConfigInt("context_cache_ttl_seconds", 3600), 120));
+    }
+
+    private Instant parseExpiry(JsonNode response) {
+        String expireTime = response.path("expireTime").asText(null);
+        if (expireTime != null) {
+            try {
+                return Instant.parse(expireTime);
+            } catch (DateTimeParseException e) {
+                logger.debug("Unparseable expireTime {}", expireTime);
+            }
+        }
+        return Instant.now().plus(getContextCacheTtl());
+    }
+
     /**
      * Escapes a string for JSON format.
      */
@@ -148,7 +319,59 @@ public class GeminiAIService extends AbstractAIService {
                 .timeout(Duration.ofSeconds(timeoutSeconds))
                 .build();
 
-        return executeHttpRequest(request, payload, retryCount);
+        try {
+            return executeHttpRequest(request, payload, retryCount);
+        } catch (IOException e) {
+            String resent = withFreshCachedContent(payload, e);
+            if (resent == null) {
+                throw e;
+            }
+            // Resend once only; a second failure is reported as is
+            HttpRequest resend = HttpRequest.newBuilder(request, (name, value) -> true)
+                    .POST(HttpRequest.BodyPublishers.ofString(resent))
+                    .build();
+            return executeHttpRequest(resend, resent, retryCount);
+        }
+    }
+
+    /**
+     * If a request failed because the cached content it references has expired or was deleted,
+     * returns the payload rewritten to reference a fresh cached content, or to carry the system
+     * prompt inline. Returns {@code null} if the failure was not caused by the cached content.
+     */
+    String withFreshCachedContent(String payload, IOException failure) throws IOException {
+        String message = failure.getMessage();
+        if (message == null || !message.contains("CachedContent")) {
+            return null;
+        }
+        JsonNode node = objectMapper.readTree(payload);
+        if (!(node instanceof ObjectNode root) || !root.has(CACHED_CONTENT)) {
+            return null;
+        }
+        String stale = root.get(CACHED_CONTENT).asText();
+        logger.info("Context cache {} is no longer available, resending", stale);
+        invalidateCachedContent(stale);
+        String cachedContent = getCachedContent();
+        if (cachedContent != null && !cachedContent.equals(stale)) {
+            root.put(CACHED_CONTENT, cachedContent);
+        } else {
+            root.remove(CACHED_CONTENT);
+            putSystemInstruction(root);
+        }
+        return objectMapper.writeValueAsString(root);
+    }
+
+    /**
+     * Looks up the pricing of the configured model.
+     */
+    @Override
+    protected ModelPricing getModelPricing() {
+        String model = getConfigString("model", GEMINI_1_5_FLASH);
+        return MODEL_PRICING.entrySet().stream()
+                .filter(entry -> model.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
     }
 
     /**
@@ -165,15 +388,10 @@ public class GeminiAIService extends AbstractAIService {
             int totalTokens = usageMetadata.path("totalTokenCount").asInt(inputTokens + outputTokens);
             int cachedContentTokenCount = usageMetadata.path("cachedContentTokenCount").asInt(0);
 
-            String model = getConfigString("model", GEMINI_1_5_FLASH);
             double inputCost = 0;
             double outputCost = 0;
 
-            ModelPricing pricing = MODEL_PRICING.entrySet().stream()
-                    .filter(entry -> model.contains(entry.getKey()))
-                    .map(Map.Entry::getValue)
-                    .findFirst()
-                    .orElse(null);
+            ModelPricing pricing = getModelPricing();
 
             if (pricing != null) {
                 inputCost = pricing.calculateInputCost(inputTokens, cachedContentTokenCount);
@@ -186,6 +404,9 @@ public class GeminiAIService extends AbstractAIService {
             }
 
             lastTokenUsage = new TokenUsage(inputTokens, outputTokens, totalTokens, cachedContentTokenCount, inputCost, outputCost);
+            if (pricing != null && cachedContentTokenCount > 0) {
+                lastTokenUsage.setCacheSavings(pricing.calculateInputCost(inputTokens, 0) - inputCost);
+            }
 
             boolean trackUsage = getConfigBoolean("track_usage", true);
             if (trackUsage) {
@@ -263,5 +484,12 @@ public class GeminiAIService extends AbstractAIService {
         return defaultValue;
     }
 
-
+    /**
+     * A cached content request that the provider refused and that would fail again if repeated.
+     */
+    private static final class CachedContentRejectedException extends IOException {
+        CachedContentRejectedException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,302 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The proposed single-column and multi-column indexes, kept in insertion order and in a prefix
+ * tree of columns per table.
+ *
+ * <p>An index on (A, B) is covered by an index on (A, B, C) because the larger index starts with
+ * all the columns of the smaller one. In the tree both end on the same path, so finding whether
+ * an index is covered, or which proposed indexes a new one covers, only walks the columns of that
+ * index instead of comparing it with every other suggestion. Tables and columns are matched
+ * ignoring case; the keys keep the case they were added with.</p>
+ *
+ * <p>Suggestions are identified by keys in the format {@code table|column1,column2,...}, which is
+ * also how they are stored in checkpoints.</p>
+ */
+class IndexSuggestions {
+
+    /**
+     * A proposed index.
+     *
+     * @param key the key the suggestion was added with
+     * @param table the table name
+     * @param columns the indexed columns in order
+     */
+    record Suggestion(String key, String table, List<String> columns) {
+        private String normalizedKey() {
+            return normalize(table) + "|" + String.join(",", columns.stream().map(IndexSuggestions::normalize).toList());
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private Suggestion singleColumn;
+        private Suggestion multiColumn;
+        // multi-column suggestions ending at this node or below it
+        private int multiColumnCount;
+
+        private boolean isEmpty() {
+            return singleColumn == null && multiColumn == null && children.isEmpty();
+        }
+    }
+
+    private final Map<String, Suggestion> singleColumn = new LinkedHashMap<>();
+    private final Map<String, Suggestion> multiColumn = new LinkedHashMap<>();
+    private final Map<String, Node> tables = new LinkedHashMap<>();
+    // estimated milliseconds saved by the suggestions whose queries appear in the workload
+    private final Map<String, Double> benefits = new HashMap<>();
+
+    /**
+     * Parses a key in the format {@code table|column1,column2,...}.
+     *
+     * @return the suggestion, or null if the key has no table or no columns
+     */
+    static Suggestion parse(String key) {
+        if (key == null) {
+            return null;
+        }
+        String[] parts = key.split("\\|", 2);
+        if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+            return null;
+        }
+        List<String> columns = List.of(parts[1].split(","));
+        if (columns.isEmpty() || columns.stream().anyMatch(String::isBlank)) {
+            return null;
+        }
+        return new Suggestion(key, parts[0], columns);
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a single-column index suggestion.
+     *
+     * @return true if the key is valid and was not already suggested
+     */
+    boolean addSingleColumn(String key) {
+        Suggestion suggestion = parse(key);
+        if (suggestion == null || singleColumn.putIfAbsent(suggestion.normalizedKey(), suggestion) != null) {
+            return false;
+        }
+        nodeFor(suggestion.table(), suggestion.columns(), true).singleColumn = suggestion;
+        return true;
+    }
+
+    /**
+     * Adds a multi-column index suggestion.
+     *
+     * @return true if the key is valid and was not already suggested
+     */
+    boolean addMultiColumn(String key) {
+        Suggestion suggestion = parse(key);
+        if (suggestion == null || multiColumn.putIfAbsent(suggestion.normalizedKey(), suggestion) != null) {
+            return false;
+        }
+        Node node = tables.computeIfAbsent(normalize(suggestion.table()), t -> new Node());
+        node.multiColumnCount++;
+        for (String column : suggestion.columns()) {
+            node = node.children.computeIfAbsent(normalize(column), c -> new Node());
+            node.multiColumnCount++;
+        }
+        node.multiColumn = suggestion;
+        return true;
+    }
+
+    boolean containsMultiColumn(String key) {
+        Suggestion suggestion = parse(key);
+        return suggestion != null && multiColumn.containsKey(suggestion.normalizedKey());
+    }
+
+    /**
+     * Removes the suggestions with the given keys, whether they are single-column or
+     * multi-column suggestions.
+     */
+    void removeAll(Collection<String> keys) {
+        for (String key : keys) {
+            Suggestion suggestion = parse(key);
+            if (suggestion != null) {
+                remove(suggestion);
+            }
+        }
+    }
+
+    private void remove(Suggestion suggestion) {
+        String normalizedKey = suggestion.normalizedKey();
+        boolean single = singleColumn.remove(normalizedKey) != null;
+        boolean multi = multiColumn.remove(normalizedKey) != null;
+        if (!single && !multi) {
+            return;
+        }
+
+        String table = normalize(suggestion.table());
+        List<Node> path = new ArrayList<>();
+        Node node = tables.get(table);
+        path.add(node);
+        for (String column : suggestion.columns()) {
+            node = node.children.get(normalize(column));
+            path.add(node);
+        }
+        if (single) {
+            node.singleColumn = null;
+        }
+        if (multi) {
+            node.multiColumn = null;
+            path.forEach(n -> n.multiColumnCount--);
+        }
+
+        if (!singleColumn.containsKey(normalizedKey) && !multiColumn.containsKey(normalizedKey)) {
+            benefits.remove(normalizedKey);
+        }
+
+        // prune the nodes that no longer lead to a suggestion
+        for (int i = path.size() - 1; i > 0 && path.get(i).isEmpty(); i--) {
+            path.get(i - 1).children.remove(normalize(suggestion.columns().get(i - 1)));
+        }
+        if (path.get(0).isEmpty()) {
+            tables.remove(table);
+        }
+    }
+
+    /**
+     * Adds to the estimated time an index would save, from one more query that it serves.
+     */
+    void addBenefit(String key, double millis) {
+        Suggestion suggestion = parse(key);
+        if (suggestion != null) {
+            benefits.merge(suggestion.normalizedKey(), millis, Double::sum);
+        }
+    }
+
+    /**
+     * Credits the benefit of a suggestion that is about to be removed to the one covering it.
+     */
+    void moveBenefit(String fromKey, String toKey) {
+        Suggestion from = parse(fromKey);
+        Suggestion to = parse(toKey);
+        if (from != null && to != null) {
+            Double millis = benefits.remove(from.normalizedKey());
+            if (millis != null) {
+                benefits.merge(to.normalizedKey(), millis, Double::sum);
+            }
+        }
+    }
+
+    /**
+     * The estimated time the index would save, or null if none of its queries appear in the
+     * workload.
+     */
+    Double benefitOf(Suggestion suggestion) {
+        return benefits.get(suggestion.normalizedKey());
+    }
+
+    /**
+     * The single-column suggestions in the order they were added.
+     */
+    Collection<Suggestion> singleColumn() {
+        return singleColumn.values();
+    }
+
+    /**
+     * The multi-column suggestions in the order they were added.
+     */
+    Collection<Suggestion> multiColumn() {
+        return multiColumn.values();
+    }
+
+    Set<String> singleColumnKeys() {
+        return keys(singleColumn);
+    }
+
+    Set<String> multiColumnKeys() {
+        return keys(multiColumn);
+    }
+
+    private static Set<String> keys(Map<String, Suggestion> suggestions) {
+        Set<String> keys = new LinkedHashSet<>();
+        suggestions.values().forEach(s -> keys.add(s.key()));
+        return keys;
+    }
+
+    /**
+     * Finds a multi-column suggestion that starts with the given columns and has at least
+     * {@code minColumns} columns. The suggestion found is not covered by any other one, so it is
+     * the one that remains when the redundant suggestions are removed.
+     *
+     * @param table the table name
+     * @param columns the leading columns
+     * @param minColumns the smallest number of columns the covering suggestion may have
+     * @return the covering suggestion, or null if there is none
+     */
+    Suggestion findMultiColumnStartingWith(String table, List<String> columns, int minColumns) {
+        Node node = nodeFor(table, columns, false);
+        if (node == null || node.multiColumnCount == 0) {
+            return null;
+        }
+        int depth = columns.size();
+        for (Node next = node; next != null; depth++) {
+            node = next;
+            next = null;
+            for (Node child : node.children.values()) {
+                if (child.multiColumnCount > 0) {
+                    next = child;
+                    break;
+                }
+            }
+        }
+        return depth - 1 >= minColumns ? node.multiColumn : null;
+    }
+
+    /**
+     * Checks if a multi-column suggestion starts with all the given columns.
+     */
+    boolean isCoveredByMultiColumn(String table, List<String> columns) {
+        Node node = nodeFor(table, columns, false);
+        return node != null && node.multiColumnCount > 0;
+    }
+
+    /**
+     * The multi-column suggestions that are a strict prefix of the given columns, shortest first.
+     */
+    List<Suggestion> multiColumnPrefixesOf(String table, List<String> columns) {
+        List<Suggestion> prefixes = new ArrayList<>();
+        Node node = tables.get(normalize(table));
+        for (int i = 0; node != null && i < columns.size() - 1; i++) {
+            node = node.children.get(normalize(columns.get(i)));
+            if (node != null && node.multiColumn != null) {
+                prefixes.add(node.multiColumn);
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * The single-column suggestion for a column, or null if that column was not suggested.
+     */
+    Suggestion findSingleColumn(String table, String column) {
+        Node node = nodeFor(table, List.of(column), false);
+        return node == null ? null : node.singleColumn;
+    }
+
+    private Node nodeFor(String table, List<String> columns, boolean create) {
+        Node node = create
+                ? tables.computeIfAbsent(normalize(table), t -> new Node())
+                : tables.get(normalize(table));
+        for (int i = 0; node != null && i < columns.size(); i++) {
+            String column = normalize(columns.get(i));
+            node = create ? node.children.computeIfAbsent(column, c -> new Node()) : node.children.get(column);
+        }
+        return node;
+    }
+}
@@ -135,6 +135,19 @@ public class OpenAIService extends AbstractAIService {
         return new ArrayList<>();
     }
 
+    /**
+     * Looks up the pricing of the configured model.
+     */
+    @Override
+    protected ModelPricing getModelPricing() {
+        String model = getConfigString(MODEL, GPT_4_O);
+        return MODEL_PRICING.entrySet().stream()
+                .filter(entry -> model.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
     /**
      * Extracts token usage information from the OpenAI API response.
      */
@@ -152,15 +165,10 @@ public class OpenAIService extends AbstractAIService {
             JsonNode promptTokensDetails = usage.path("prompt_tokens_details");
             int cachedContentTokenCount = promptTokensDetails.path("cached_tokens").asInt(0);
 
-            String model = getConfigString(MODEL, GPT_4_O);
             double inputCost = 0;
             double outputCost = 0;
 
-            ModelPricing pricing = MODEL_PRICING.entrySet().stream()
-                    .filter(entry -> model.contains(entry.getKey()))
-                    .map(Map.Entry::getValue)
-                    .findFirst()
-                    .orElse(null);
+            ModelPricing pricing = getModelPricing();
 
             if (pricing != null) {
                 inputCost = pricing.calculateInputCost(inputTokens, cachedContentTokenCount);
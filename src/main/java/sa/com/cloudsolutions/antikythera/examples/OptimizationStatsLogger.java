@@ -2,26 +2,52 @@ package sa.com.cloudsolutions.antikythera.examples;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.examples.metrics.CsvMetricsSink;
+import sa.com.cloudsolutions.antikythera.examples.metrics.JsonLinesMetricsSink;
+import sa.com.cloudsolutions.antikythera.examples.metrics.LatencyHistogram;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Metrics;
+import sa.com.cloudsolutions.antikythera.examples.metrics.MetricsSink;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Phase;
+import sa.com.cloudsolutions.antikythera.examples.metrics.PrometheusMetricsSink;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.io.PrintWriter;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Logs optimization statistics to a CSV file for tracking QueryOptimizer
- * changes.
- * The CSV file is appended to on each run and contains detailed metrics about
- * the changes made to repository classes.
+ * Logs optimization statistics for tracking QueryOptimizer changes.
+ *
+ * <p>One row per repository is handed to the configured {@link MetricsSink}s: by default a CSV
+ * file (the {@code database.log_file} of {@link QueryOptimizationTracker}) that is appended to
+ * on each run. The sinks are configured in generator.yml:</p>
+ * <pre>
+ * query_optimizer:
+ *   metrics:
+ *     sinks: [csv, jsonl, prometheus]
+ *     flush_every: 10
+ *     jsonl_file: query-optimization-metrics.jsonl
+ *     prometheus_file: query-optimization-metrics.prom
+ * </pre>
+ * <p>The run wide counters and the per {@link Phase} latency percentiles are published to the
+ * sinks by {@link #close()}.</p>
  */
 public class OptimizationStatsLogger {
     private static final Logger logger = LoggerFactory.getLogger(OptimizationStatsLogger.class);
-    private static final String CSV_FILENAME = "query-optimization-stats.csv";
-    private static final String CSV_HEADER = "Date,Repository Name,Queries,Annotations Changed,Signatures Changed,Calls Updated,Dependency Classes,Indexes Created,Indexes Dropped";
+    private static final String DEFAULT_JSONL_FILE = "query-optimization-metrics.jsonl";
+    private static final String DEFAULT_PROMETHEUS_FILE = "query-optimization-metrics.prom";
+    private static final int DEFAULT_FLUSH_EVERY = 10;
     private static Stats current = null;
     private static Stats total;
+    private static List<MetricsSink> sinks;
+    private static boolean shutdownHookAdded;
 
     public static class Stats {
         private final String repo;
@@ -61,6 +87,11 @@ public class OptimizationStatsLogger {
          */
         private int liquibaseIndexesDropped = 0;
 
+        /**
+         * Whether the row of the repository has been written and nothing changed since.
+         */
+        private boolean flushed = false;
+
         public Stats(String repo) {
             this.repo = repo;
         }
@@ -91,7 +122,12 @@ public class OptimizationStatsLogger {
         if (current == null) {
             return;
         }
+        if (current.flushed && isEmpty(current)) {
+            // nothing happened since the row of this repository was written
+            return;
+        }
         logStats(current);
+        current.flushed = true;
         // Reset current stats to zero for any post-analysis global updates,
         // but preserve the repo name to avoid NullPointerException if used.
         current.queriesAnalyzed = 0;
@@ -104,30 +140,134 @@ public class OptimizationStatsLogger {
         current.liquibaseIndexesDropped = 0;
     }
 
-    private static void logStats(Stats stats) {
-        Path csvPath = Paths.get(CSV_FILENAME);
-        boolean exists = csvPath.toFile().exists();
+    private static boolean isEmpty(Stats stats) {
+        return counts(stats).values().stream().allMatch(count -> count == 0);
+    }
+
+    /**
+     * The change counts of a repository, keyed by their CSV column label.
+     */
+    private static Map<String, Integer> counts(Stats stats) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("Queries", stats.queriesAnalyzed);
+        counts.put("Annotations Changed", stats.queryAnnotationsChanged);
+        counts.put("Signatures Changed", stats.methodSignaturesChanged);
+        counts.put("Calls Updated", stats.methodCallsChanged);
+        counts.put("Dependency Classes", stats.dependentClassesModified);
+        counts.put("Indexes Created", stats.liquibaseIndexesGenerated);
+        counts.put("Indexes Dropped", stats.liquibaseIndexesDropped);
+        return counts;
+    }
+
+    private static synchronized void logStats(Stats stats) {
+        MetricsSink.RepositoryRecord repositoryRecord = new MetricsSink.RepositoryRecord(
+                LocalDate.now(), stats.repo, counts(stats), Metrics.takeRepositoryMillis(stats.repo));
+        boolean csvWritten = false;
+        for (MetricsSink sink : getSinks()) {
+            try {
+                sink.repository(repositoryRecord);
+                csvWritten |= sink instanceof CsvMetricsSink;
+            } catch (IOException e) {
+                logger.error("Failed to write metrics to {}: {}", sink.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        // The processed index mirrors the CSV file, so only repositories with a row in it count
+        if (csvWritten) {
+            QueryOptimizationTracker.getInstance().markProcessed(stats.repo);
+        }
+    }
+
+    private static synchronized List<MetricsSink> getSinks() {
+        if (sinks == null) {
+            sinks = createSinks();
+            if (!shutdownHookAdded) {
+                // buffered rows must not be lost when the run is interrupted or ends with System.exit
+                Runtime.getRuntime().addShutdownHook(new Thread(OptimizationStatsLogger::close, "metrics-close"));
+                shutdownHookAdded = true;
+            }
+        }
+        return sinks;
+    }
+
+    /**
+     * Replaces the configured sinks. Useful for testing.
+     */
+    public static synchronized void setSinks(List<MetricsSink> metricsSinks) {
+        sinks = metricsSinks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<MetricsSink> createSinks() {
+        Map<String, Object> config = Map.of();
+        Object queryOptimizer = Settings.getProperty("query_optimizer");
+        if (queryOptimizer instanceof Map<?, ?> qo && qo.get("metrics") instanceof Map<?, ?> metrics) {
+            config = (Map<String, Object>) metrics;
+        }
 
-        try (FileWriter fw = new FileWriter(CSV_FILENAME, true);
-                PrintWriter out = new PrintWriter(fw)) {
+        int flushEvery = config.get("flush_every") instanceof Number n ? n.intValue() : DEFAULT_FLUSH_EVERY;
+        List<String> names = config.get("sinks") instanceof List<?> list
+                ? list.stream().map(String::valueOf).toList()
+                : List.of("csv");
 
-            if (!exists) {
-                out.println(CSV_HEADER);
+        List<MetricsSink> result = new ArrayList<>();
+        for (String name : names) {
+            switch (name) {
+                case "csv" -> result.add(new CsvMetricsSink(
+                        Path.of(QueryOptimizationTracker.getInstance().getLogFilePath()), flushEvery));
+                case "jsonl" -> result.add(new JsonLinesMetricsSink(
+                        Path.of(stringOrDefault(config.get("jsonl_file"), DEFAULT_JSONL_FILE)), flushEvery));
+                case "prometheus" -> result.add(new PrometheusMetricsSink(
+                        Path.of(stringOrDefault(config.get("prometheus_file"), DEFAULT_PROMETHEUS_FILE))));
+                default -> logger.warn("Unknown metrics sink '{}', expected csv, jsonl or prometheus", name);
             }
+        }
+        return result;
+    }
+
+    private static String stringOrDefault(Object value, String defaultValue) {
+        return value instanceof String s && !s.isBlank() ? s : defaultValue;
+    }
 
-            out.println(String.format("%s,%s,%d,%d,%d,%d,%d,%d,%d",
-                    java.time.LocalDate.now(),
-                    stats.repo,
-                    stats.queriesAnalyzed,
-                    stats.queryAnnotationsChanged,
-                    stats.methodSignaturesChanged,
-                    stats.methodCallsChanged,
-                    stats.dependentClassesModified,
-                    stats.liquibaseIndexesGenerated,
-                    stats.liquibaseIndexesDropped));
-        } catch (IOException e) {
-            logger.error("Failed to write to CSV: {}", e.getMessage());
+    /**
+     * Publishes the run wide counters and phase latencies, then closes the sinks and saves the
+     * processed repository index. Rows are not flushed for the current repository; call
+     * {@link #flush()} first for that.
+     */
+    public static synchronized void close() {
+        if (sinks == null) {
+            return;
         }
+        Metrics.Snapshot snapshot = summarySnapshot();
+        for (MetricsSink sink : sinks) {
+            try {
+                sink.summary(snapshot);
+                sink.close();
+            } catch (IOException e) {
+                logger.error("Failed to write metrics to {}: {}", sink.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        sinks = null;
+        QueryOptimizationTracker.getInstance().save();
+    }
+
+    /**
+     * The counters of {@link Metrics} together with the totals of this class.
+     */
+    private static Metrics.Snapshot summarySnapshot() {
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        Map<String, Long> counters = new TreeMap<>(snapshot.counters());
+        counters.put("repositories_processed", (long) totalRepositoriesProcessed);
+        if (total != null) {
+            counters.put("repositories_modified", (long) total.repositoriesModified);
+            counters.put("queries_analyzed", (long) total.queriesAnalyzed);
+            counters.put("query_annotations_changed", (long) total.queryAnnotationsChanged);
+            counters.put("method_signatures_changed", (long) total.methodSignaturesChanged);
+            counters.put("method_calls_changed", (long) total.methodCallsChanged);
+            counters.put("dependent_classes_modified", (long) total.dependentClassesModified);
+            counters.put("liquibase_indexes_generated", (long) total.liquibaseIndexesGenerated);
+            counters.put("liquibase_indexes_dropped", (long) total.liquibaseIndexesDropped);
+        }
+        return new Metrics.Snapshot(counters, snapshot.phases(), snapshot.spans());
     }
 
     public static void updateQueriesAnalyzed(int queriesAnalyzed) {
@@ -209,5 +349,34 @@ public class OptimizationStatsLogger {
         out.printf("Liquibase indexes generated: %d%n", total.liquibaseIndexesGenerated);
         out.printf("Liquibase indexes Dropped:   %d%n", total.liquibaseIndexesDropped);
         out.println("=".repeat(80));
+
+        Map<Phase, LatencyHistogram.Summary> phases = Metrics.snapshot().phases();
+        if (!phases.isEmpty()) {
+            out.println("⏱️ PHASE LATENCY (ms)");
+            out.printf("%-16s %8s %10s %10s %10s %10s %12s%n", "Phase", "Count", "p50", "p90", "p99", "Max", "Total");
+            phases.forEach((phase, summary) -> out.printf("%-16s %8d %10.1f %10.1f %10.1f %10.1f %12.1f%n",
+                    phase.label(), summary.count(), summary.p50Ms(), summary.p90Ms(), summary.p99Ms(),
+                    summary.maxMs(), summary.totalMs()));
+            out.println("=".repeat(80));
+        }
+        printSpans(out, Metrics.snapshot().spans());
+    }
+
+    /**
+     * Prints the named spans, the ones with the most time first.
+     */
+    static void printSpans(PrintStream out, Map<String, LatencyHistogram.Summary> spans) {
+        if (spans.isEmpty()) {
+            return;
+        }
+        out.println("🔍 SPANS (ms)");
+        out.printf("%-32s %8s %10s %10s %10s %10s %12s%n", "Span", "Count", "p50", "p90", "p99", "Max", "Total");
+        spans.entrySet().stream()
+                .sorted(Map.Entry.<String, LatencyHistogram.Summary>comparingByValue(
+                        Comparator.comparingDouble(LatencyHistogram.Summary::totalMs)).reversed())
+                .forEach(e -> out.printf("%-32s %8d %10.1f %10.1f %10.1f %10.1f %12.1f%n", e.getKey(),
+                        e.getValue().count(), e.getValue().p50Ms(), e.getValue().p90Ms(), e.getValue().p99Ms(),
+                        e.getValue().maxMs(), e.getValue().totalMs()));
+        out.println("=".repeat(80));
     }
 }
@@ -0,0 +1,198 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The names of the repositories that appear in the statistics CSV file, kept in a small index
+ * file next to it so that the CSV file is not read again from the start on every run.
+ *
+ * <p>The index file holds the sorted repository names and the length the CSV file had when the
+ * index was written. On open only the rows appended to the CSV file since then are read. If the
+ * CSV file got shorter, for example because duplicate rows were removed, it is read in full and
+ * the index is rebuilt.</p>
+ */
+class ProcessedRepositoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedRepositoryStore.class);
+    static final String INDEX_SUFFIX = ".idx";
+    private static final String OFFSET_PREFIX = "# csv-offset=";
+
+    private final Path csvFile;
+    private final Path indexFile;
+    private final Set<String> names = Collections.synchronizedSet(new TreeSet<>());
+    private long csvOffset;
+    private boolean dirty;
+
+    private ProcessedRepositoryStore(Path csvFile) {
+        this.csvFile = csvFile;
+        this.indexFile = csvFile.resolveSibling(csvFile.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Loads the index of a CSV file and catches up with the rows appended to the CSV file since
+     * the index was written.
+     */
+    static ProcessedRepositoryStore open(Path csvFile) {
+        ProcessedRepositoryStore store = new ProcessedRepositoryStore(csvFile);
+        store.readIndex();
+        store.catchUp();
+        return store;
+    }
+
+    boolean contains(String repositoryName) {
+        return names.contains(repositoryName);
+    }
+
+    Set<String> names() {
+        synchronized (names) {
+            return new TreeSet<>(names);
+        }
+    }
+
+    /**
+     * Records a repository whose row has been handed to the CSV writer.
+     */
+    void add(String repositoryName) {
+        if (repositoryName != null && !repositoryName.isEmpty() && names.add(repositoryName)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the index file if anything changed. The CSV file must have been flushed, since its
+     * current length is recorded as the point to continue reading from next time.
+     */
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        catchUp();
+        List<String> lines = new ArrayList<>();
+        lines.add(OFFSET_PREFIX + csvOffset);
+        lines.addAll(names());
+        try {
+            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            logger.warn("Could not write processed repository index {}: {}", indexFile, e.getMessage());
+        }
+    }
+
+    Path getIndexFile() {
+        return indexFile;
+    }
+
+    private void readIndex() {
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).startsWith(OFFSET_PREFIX)) {
+                return;
+            }
+            csvOffset = Long.parseLong(lines.get(0).substring(OFFSET_PREFIX.length()).trim());
+            names.addAll(lines.subList(1, lines.size()));
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Ignoring unreadable processed repository index {}: {}", indexFile, e.getMessage());
+            names.clear();
+            csvOffset = 0;
+        }
+    }
+
+    /**
+     * Reads the complete rows appended to the CSV file after {@link #csvOffset}.
+     */
+    private synchronized void catchUp() {
+        if (!Files.isRegularFile(csvFile)) {
+            return;
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(csvFile)) {
+            long size = channel.size();
+            if (size < csvOffset) {
+                logger.info("{} got shorter, rebuilding {}", csvFile, indexFile);
+                names.clear();
+                csvOffset = 0;
+            }
+            if (size == csvOffset) {
+                return;
+            }
+            channel.position(csvOffset);
+            byte[] tail;
+            try (InputStream in = Channels.newInputStream(channel)) {
+                tail = in.readAllBytes();
+            }
+            int end = lastNewline(tail) + 1;
+            if (end == 0) {
+                // an incomplete row, read it once it has been finished
+                return;
+            }
+            boolean fromStart = csvOffset == 0;
+            String[] rows = new String(tail, 0, end, StandardCharsets.UTF_8).split("\r?\n");
+            for (int i = 0; i < rows.length; i++) {
+                if (i == 0 && fromStart && isHeaderRow(rows[i])) {
+                    continue;
+                }
+                add(extractRepositoryName(rows[i]));
+            }
+            csvOffset += end;
+            dirty = true;
+            logger.debug("Read {} rows of {} starting at {}", rows.length, csvFile, csvOffset - end);
+        } catch (IOException e) {
+            logger.warn("Failed to read query optimization stats file: {}", e.getMessage());
+        }
+    }
+
+    private static int lastNewline(byte[] bytes) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a line appears to be a header row.
+     */
+    private static boolean isHeaderRow(String line) {
+        String lower = line.toLowerCase();
+        return lower.contains("repository") || lower.contains("timestamp") || lower.startsWith("#");
+    }
+
+    /**
+     * Extracts the repository name from a CSV line.
+     * The repository name is expected to be in the second column (index 1).
+     *
+     * @param line the CSV line
+     * @return the repository name, or null if not found
+     */
+    private static String extractRepositoryName(String line) {
+        if (line == null || line.trim().isEmpty()) {
+            return null;
+        }
+
+        String[] columns = line.split(",");
+        if (columns.length >= 2) {
+            // Repository name is in the second column
+            return columns[1].trim().replace("\"", "");
+        }
+        return null;
+    }
+}
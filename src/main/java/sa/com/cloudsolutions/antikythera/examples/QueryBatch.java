@@ -27,6 +27,10 @@ public class QueryBatch {
         this.columnCardinalities = new HashMap<>();
     }
 
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
     public List<RepositoryQuery> getQueries() {
         return queries;
     }
@@ -4,6 +4,8 @@ import liquibase.exception.LiquibaseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Metrics;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Phase;
 import sa.com.cloudsolutions.antikythera.examples.util.LiquibaseGenerator;
 import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
@@ -14,14 +16,20 @@ import sa.com.cloudsolutions.liquibase.Indexes;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @SuppressWarnings({ "java:S3457", "java:S106" })
 public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
@@ -33,17 +41,29 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
     protected final File liquibaseXmlPath;
     protected LiquibaseGenerator liquibaseGenerator;
 
-    // Aggregated, de-duplicated suggestions for new indexes (key format:
-    // table|column)
-    protected final LinkedHashSet<String> suggestedNewIndexes = new LinkedHashSet<>();
-    // Multi-column index suggestions (key format: table|column1,column2,...)
-    protected final LinkedHashSet<String> suggestedMultiColumnIndexes = new LinkedHashSet<>();
+    // Aggregated, de-duplicated suggestions for new single-column (key format: table|column)
+    // and multi-column (key format: table|column1,column2,...) indexes
+    protected final IndexSuggestions indexSuggestions = new IndexSuggestions();
 
     protected final List<QueryAnalysisResult> results = new ArrayList<>();
 
     // Maximum number of columns allowed in a multi-column index (configurable)
     protected final int maxIndexColumns;
 
+    // Maximum number of new indexes suggested per table, 0 for no limit (configurable)
+    protected int maxIndexesPerTable;
+
+    // Production call frequencies and latencies used to rank the suggestions, null if not configured
+    protected WorkloadProfile workload;
+
+    // Checks the suggestions with EXPLAIN on a scratch database, null if not configured
+    protected ExplainIndexValidator explainValidator;
+    // SQL of the queries the index suggestions were made for, to be explained
+    private final Set<String> explainQueries = new LinkedHashSet<>();
+
+    // Queries per LLM request when the AI service does not configure queries_per_request
+    static final int DEFAULT_BATCH_SIZE = 5;
+
     /**
      * Creates a new QueryOptimizationChecker that uses RepositoryParser for
      * comprehensive query analysis.
@@ -72,6 +92,9 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
 
         // Read max_index_columns from configuration (default: 4)
         this.maxIndexColumns = getMaxIndexColumnsFromConfig();
+        this.maxIndexesPerTable = getMaxIndexesPerTableFromConfig();
+        this.workload = WorkloadProfile.fromConfiguration();
+        this.explainValidator = ExplainIndexValidator.fromConfiguration();
     }
 
     @Override
@@ -88,13 +111,15 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
 
     @Override
     protected void restoreCheckpointState() {
-        suggestedNewIndexes.addAll(checkpointManager.getSuggestedNewIndexes());
-        suggestedMultiColumnIndexes.addAll(checkpointManager.getSuggestedMultiColumnIndexes());
+        checkpointManager.getSuggestedNewIndexes().forEach(indexSuggestions::addSingleColumn);
+        checkpointManager.getSuggestedMultiColumnIndexes().forEach(indexSuggestions::addMultiColumn);
+        explainQueries.addAll(checkpointManager.getExplainQueries());
     }
 
     @Override
     protected void onBeforeCheckpointSave() {
-        checkpointManager.setIndexSuggestions(suggestedNewIndexes, suggestedMultiColumnIndexes);
+        checkpointManager.setIndexSuggestions(indexSuggestions.singleColumnKeys(), indexSuggestions.multiColumnKeys());
+        checkpointManager.setExplainQueries(explainQueries);
     }
 
     @Override
@@ -115,41 +140,136 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
             throws IOException, ReflectiveOperationException, InterruptedException {
         String fullyQualifiedName = typeWrapper.getFullyQualifiedName();
         OptimizationStatsLogger.initialize(fullyQualifiedName);
-        repositoryParser.compile(AbstractCompiler.classToPath(fullyQualifiedName));
-        repositoryParser.processTypes();
-        if (repositoryParser.getEntity() != null && repositoryParser.getEntity().getFullyQualifiedName() != null) {
-
-            repositoryParser.buildQueries();
-
-            // Step 1: Collect raw methods for LLM analysis (no programmatic analysis yet)
-            Collection<RepositoryQuery> rawQueries = repositoryParser.getAllQueries();
-
-            // Filter to a single method if target_class contained a '#methodName' suffix
-            if (targetMethod != null) {
-                rawQueries = rawQueries.stream()
-                        .filter(q -> targetMethod.equals(q.getMethodDeclaration().getNameAsString()))
-                        .toList();
-                if (rawQueries.isEmpty()) {
-                    logger.warn("Target method '{}' not found in {}", targetMethod, fullyQualifiedName);
-                    return;
-                }
-                logger.info("Filtered to target method: {}", targetMethod);
-            }
 
+        // Step 1: Collect raw methods for LLM analysis (no programmatic analysis yet)
+        List<RepositoryQuery> rawQueries = parseRepository(typeWrapper, repositoryParser);
+        if (rawQueries != null) {
             // Step 2: Send raw methods to LLM first
-            List<OptimizationIssue> llmRecommendations = sendRawQueriesToLLM(fullyQualifiedName, rawQueries);
+            List<OptimizationIssue> llmRecommendations;
+            try (Metrics.Timer timer = Metrics.time(Phase.LLM, fullyQualifiedName)) {
+                llmRecommendations = sendRawQueriesToLLM(fullyQualifiedName, rawQueries);
+            }
 
-            // Step 3: Analyze LLM recommendations and check indexes
-            List<QueryAnalysisResult> finalResults = analyzeLLMRecommendations(llmRecommendations,
-                    rawQueries.stream().toList());
+            // Steps 3 and 4: index analysis and reporting
+            recordResults(fullyQualifiedName, llmRecommendations, rawQueries);
+        }
+    }
 
-            // Step 4: Report final results
-            for (QueryAnalysisResult result : finalResults) {
-                results.add(result);
-                reportOptimizationResults(result);
+    /**
+     * Pipelined variant of {@link #analyzeRepository}. The repository is parsed with its own
+     * {@link RepositoryParser} and its batches are dispatched to the AI service straight away.
+     * The returned work, which is run by the ordered writer stage after the next repository has
+     * been parsed, waits for the responses and then does the index analysis, reporting and
+     * (in subclasses) the source rewrites exactly as the serial path does.
+     */
+    @Override
+    protected PendingAnalysis beginAnalysis(TypeWrapper typeWrapper)
+            throws IOException, ReflectiveOperationException, InterruptedException {
+        String fullyQualifiedName = typeWrapper.getFullyQualifiedName();
+        RepositoryParser parser = new RepositoryParser();
+        List<RepositoryQuery> rawQueries = parseRepository(typeWrapper, parser);
+        AbstractAIService.PendingBatches inFlight = rawQueries == null ? null
+                : aiService.dispatchQueryBatches(createQueryBatches(fullyQualifiedName, rawQueries));
+
+        return new PendingAnalysis() {
+            @Override
+            public void complete() throws IOException, ReflectiveOperationException, InterruptedException {
+                OptimizationStatsLogger.initialize(fullyQualifiedName);
+                repositoryParser = parser;
+                results.clear();
+                if (inFlight != null) {
+                    List<AbstractAIService.BatchAnalysis> analyses;
+                    try (Metrics.Timer timer = Metrics.time(Phase.LLM, fullyQualifiedName)) {
+                        analyses = aiService.collectQueryBatches(inFlight);
+                    }
+                    recordResults(fullyQualifiedName, collectRecommendations(fullyQualifiedName, analyses), rawQueries);
+                }
+                afterRepositoryAnalyzed(typeWrapper);
             }
-        } else {
+
+            @Override
+            public void cancel() {
+                if (inFlight != null) {
+                    aiService.cancelQueryBatches(inFlight);
+                }
+            }
+        };
+    }
+
+    /**
+     * Hook invoked once the analysis results for a repository are available in {@link #results}.
+     * Subclasses override it to act on the results, e.g. to rewrite the repository and its callers.
+     *
+     * @param typeWrapper the repository that was analyzed
+     */
+    void afterRepositoryAnalyzed(TypeWrapper typeWrapper) throws IOException {
+        // Default: reporting only
+    }
+
+    /**
+     * Compiles the repository with the given parser and collects the queries to send to the LLM,
+     * applying the {@code target_class#method} filter.
+     *
+     * @return the queries to analyze, or {@code null} if the repository cannot be analyzed
+     */
+    List<RepositoryQuery> parseRepository(TypeWrapper typeWrapper, RepositoryParser parser)
+            throws IOException, ReflectiveOperationException, InterruptedException {
+        try (Metrics.Timer timer = Metrics.time(Phase.PARSE, typeWrapper.getFullyQualifiedName())) {
+            return compileRepository(typeWrapper, parser);
+        }
+    }
+
+    private List<RepositoryQuery> compileRepository(TypeWrapper typeWrapper, RepositoryParser parser)
+            throws IOException, ReflectiveOperationException, InterruptedException {
+        String fullyQualifiedName = typeWrapper.getFullyQualifiedName();
+        try (Metrics.Timer span = Metrics.span("compile", fullyQualifiedName)) {
+            parser.compile(AbstractCompiler.classToPath(fullyQualifiedName));
+        }
+        parser.processTypes();
+        if (parser.getEntity() == null || parser.getEntity().getFullyQualifiedName() == null) {
             logger.warn("Repository Entity could not be identified for {}", fullyQualifiedName);
+            return null;
+        }
+
+        try (Metrics.Timer span = Metrics.span("buildQueries", fullyQualifiedName)) {
+            parser.buildQueries();
+        }
+        List<RepositoryQuery> rawQueries = parser.getAllQueries().stream().toList();
+
+        // Filter to a single method if target_class contained a '#methodName' suffix
+        if (targetMethod != null) {
+            rawQueries = rawQueries.stream()
+                    .filter(q -> targetMethod.equals(q.getMethodDeclaration().getNameAsString()))
+                    .toList();
+            if (rawQueries.isEmpty()) {
+                logger.warn("Target method '{}' not found in {}", targetMethod, fullyQualifiedName);
+                return null;
+            }
+            logger.info("Filtered to target method: {}", targetMethod);
+        }
+        return rawQueries;
+    }
+
+    /**
+     * Runs the index analysis on the LLM recommendations and reports each result.
+     */
+    private void recordResults(String repositoryName, List<OptimizationIssue> llmRecommendations,
+                               List<RepositoryQuery> rawQueries) {
+        // Writes through this repository count towards the cost of the indexes on its table
+        if (workload != null && !rawQueries.isEmpty()) {
+            workload.mapRepository(repositoryName, rawQueries.getFirst().getPrimaryTable());
+        }
+
+        // Step 3: Analyze LLM recommendations and check indexes
+        List<QueryAnalysisResult> finalResults;
+        try (Metrics.Timer timer = Metrics.time(Phase.INDEX_ANALYSIS, repositoryName)) {
+            finalResults = analyzeLLMRecommendations(llmRecommendations, rawQueries);
+        }
+
+        // Step 4: Report final results
+        for (QueryAnalysisResult result : finalResults) {
+            results.add(result);
+            reportOptimizationResults(result);
         }
     }
 
@@ -159,16 +279,17 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
      */
     private List<OptimizationIssue> sendRawQueriesToLLM(String repositoryName, Collection<RepositoryQuery> rawQueries)
             throws IOException, InterruptedException {
-        List<OptimizationIssue> allRecommendations = new ArrayList<>();
-        List<RepositoryQuery> queryList = new ArrayList<>(rawQueries);
-        int batchSize = 5; // Process queries in small batches to avoid token limits
+        List<QueryBatch> batches = createQueryBatches(repositoryName, new ArrayList<>(rawQueries));
 
-        for (int i = 0; i < queryList.size(); i += batchSize) {
-            int end = Math.min(queryList.size(), i + batchSize);
-            List<RepositoryQuery> batchQueries = queryList.subList(i, end);
+        // With more than one request allowed in flight, all batches of the repository are handed
+        // over at once; the AI service merges the recommendations back in batch order.
+        if (aiService.getMaxConcurrentRequests() > 1) {
+            return collectRecommendations(repositoryName, aiService.analyzeQueryBatches(batches));
+        }
 
-            // Create a batch with raw queries and basic cardinality information
-            QueryBatch batch = createQueryBatch(repositoryName, batchQueries);
+        List<OptimizationIssue> allRecommendations = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            QueryBatch batch = batches.get(i);
 
             // Send batch to AI service for analysis
             List<OptimizationIssue> batchRecommendations = aiService.analyzeQueryBatch(batch);
@@ -179,13 +300,86 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
             cumulativeTokenUsage.add(tokenUsage);
             if (!quietMode) {
                 System.out.printf("🤖 AI Analysis for %s (Batch %d/%d): %s%n",
-                        repositoryName,
-                        (i / batchSize) + 1,
-                        (int) Math.ceil((double) queryList.size() / batchSize),
-                        tokenUsage.getFormattedReport());
+                        repositoryName, i + 1, batches.size(), tokenUsage.getFormattedReport());
+            }
+        }
+
+        return allRecommendations;
+    }
+
+    /**
+     * Splits the queries of a repository into the batches that are sent to the LLM.
+     *
+     * <p>When the AI service has a token budget ({@code max_tokens_per_request}), queries are
+     * packed greedily in their original order until adding the next one would push the sum of
+     * their estimated payloads over the budget, so many small derived finders share one request while
+     * a few large native queries get a request of their own. Without a budget the queries are
+     * split into fixed-size batches. In both cases a batch holds at most
+     * {@code queries_per_request} queries.</p>
+     */
+    List<QueryBatch> createQueryBatches(String repositoryName, List<RepositoryQuery> queryList) throws IOException {
+        int maxQueries = aiService.getMaxQueriesPerBatch();
+        if (maxQueries <= 0) {
+            maxQueries = DEFAULT_BATCH_SIZE;
+        }
+        int tokenBudget = aiService.getBatchTokenBudget();
+
+        List<QueryBatch> batches = new ArrayList<>();
+        if (tokenBudget <= 0) {
+            for (int i = 0; i < queryList.size(); i += maxQueries) {
+                int end = Math.min(queryList.size(), i + maxQueries);
+                // Create a batch with raw queries and basic cardinality information
+                QueryBatch batch = createQueryBatch(repositoryName, queryList.subList(i, end));
+                if (!batch.isEmpty()) {
+                    batches.add(batch);
+                }
             }
+            return batches;
         }
 
+        QueryBatch current = new QueryBatch(repositoryName);
+        // each query is estimated once, on its own, and the batch keeps the running total
+        int currentTokens = 0;
+        for (RepositoryQuery query : queryList) {
+            QueryBatch single = createQueryBatch(repositoryName, List.of(query));
+            if (single.isEmpty()) {
+                continue;
+            }
+            int tokens = aiService.estimateBatchTokens(single);
+            boolean full = current.size() >= maxQueries || currentTokens + tokens > tokenBudget;
+            if (full && !current.isEmpty()) {
+                batches.add(current);
+                current = new QueryBatch(repositoryName);
+                currentTokens = 0;
+            }
+            single.getQueries().forEach(current::addQuery);
+            single.getColumnCardinalities().forEach(current::addColumnCardinality);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Merges the recommendations of the analyzed batches in batch order, accumulating and
+     * reporting the token usage of each request.
+     */
+    private List<OptimizationIssue> collectRecommendations(String repositoryName,
+            List<AbstractAIService.BatchAnalysis> analyses) {
+        List<OptimizationIssue> allRecommendations = new ArrayList<>();
+        for (int i = 0; i < analyses.size(); i++) {
+            AbstractAIService.BatchAnalysis analysis = analyses.get(i);
+            allRecommendations.addAll(analysis.issues());
+
+            TokenUsage tokenUsage = analysis.tokenUsage();
+            cumulativeTokenUsage.add(tokenUsage);
+            if (!quietMode) {
+                System.out.printf("🤖 AI Analysis for %s (Batch %d/%d): %s%n",
+                        repositoryName, i + 1, analyses.size(), tokenUsage.getFormattedReport());
+            }
+        }
         return allRecommendations;
     }
 
@@ -196,6 +390,12 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
      * method parameters.
      */
     QueryBatch createQueryBatch(String repositoryName, Collection<RepositoryQuery> rawQueries) {
+        try (Metrics.Timer span = Metrics.span("createQueryBatch", repositoryName)) {
+            return fillQueryBatch(repositoryName, rawQueries);
+        }
+    }
+
+    private QueryBatch fillQueryBatch(String repositoryName, Collection<RepositoryQuery> rawQueries) {
         QueryBatch batch = new QueryBatch(repositoryName);
 
         // Add all raw queries to the batch
@@ -275,6 +475,12 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
      */
     QueryAnalysisResult createResultWithIndexAnalysis(OptimizationIssue llmRecommendation,
             RepositoryQuery rawQuery) {
+        try (Metrics.Timer span = Metrics.span("createResultWithIndexAnalysis", null)) {
+            return analyzeIndexes(llmRecommendation, rawQuery);
+        }
+    }
+
+    private QueryAnalysisResult analyzeIndexes(OptimizationIssue llmRecommendation, RepositoryQuery rawQuery) {
         // Use QueryAnalysisEngine to extract WHERE conditions from the query
         // If the LLM provided an optimized query, analyze that instead of the raw query
         // to ensure index suggestions match the recommended code changes.
@@ -689,7 +895,48 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
             addColumnToMap(columnsByTable, join.getRightTable(), join.getRightColumn());
         }
 
-        generateRequiredIndexes(columnsByTable);
+        generateRequiredIndexes(columnsByTable, workloadBenefit(result));
+        recordExplainQuery(result);
+    }
+
+    /**
+     * Remembers the SQL of the query, as rewritten by the optimizer, for the EXPLAIN validation.
+     */
+    private void recordExplainQuery(QueryAnalysisResult result) {
+        if (explainValidator == null) {
+            return;
+        }
+        OptimizationIssue issue = result.getOptimizationIssue();
+        RepositoryQuery query = issue != null && issue.optimizedQuery() != null ? issue.optimizedQuery() : result.getQuery();
+        if (query != null && query.getStatement() != null) {
+            explainQueries.add(query.getStatement().toString());
+        }
+    }
+
+    /**
+     * The time spent in the query in production, which is what an index for it can save.
+     *
+     * @return the total milliseconds, or null if there is no workload or the query is not in it
+     */
+    private Double workloadBenefit(QueryAnalysisResult result) {
+        if (workload == null || result.getQuery() == null) {
+            return null;
+        }
+        WorkloadProfile.MethodStats stats = workload.find(result.getQuery().getClassname(),
+                result.getQuery().getMethodName());
+        return stats == null ? null : stats.totalMillis();
+    }
+
+    private void creditBenefit(IndexSuggestions.Suggestion suggestion, Double benefit) {
+        if (suggestion != null) {
+            creditBenefit(suggestion.key(), benefit);
+        }
+    }
+
+    private void creditBenefit(String key, Double benefit) {
+        if (benefit != null) {
+            indexSuggestions.addBenefit(key, benefit);
+        }
     }
 
     private void addColumnToMap(Map<String, Set<String>> columnsByTable, String table, String column) {
@@ -699,20 +946,20 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
         }
     }
 
-    private void generateRequiredIndexes(Map<String, Set<String>> columnsByTable) {
+    private void generateRequiredIndexes(Map<String, Set<String>> columnsByTable, Double benefit) {
         for (Map.Entry<String, Set<String>> entry : columnsByTable.entrySet()) {
             String table = entry.getKey();
             List<String> filteredColumns = getFilteredColumns(new ArrayList<>(entry.getValue()), table);
 
             if (filteredColumns.size() > 1) {
-                generateRequiredCompositeIndex(filteredColumns, table);
+                generateRequiredCompositeIndex(filteredColumns, table, benefit);
             } else if (!filteredColumns.isEmpty()) {
-                generateRequiredSingleColumnIndex(filteredColumns, table);
+                generateRequiredSingleColumnIndex(filteredColumns, table, benefit);
             }
         }
     }
 
-    private void generateRequiredSingleColumnIndex(List<String> filteredColumns, String table) {
+    private void generateRequiredSingleColumnIndex(List<String> filteredColumns, String table, Double benefit) {
         // Only one column needs indexing - create single-column index
         String column = filteredColumns.get(0);
         boolean hasExisting = CardinalityAnalyzer.hasIndexWithLeadingColumn(table, column);
@@ -720,20 +967,22 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
             String key = (table + "|" + column).toLowerCase();
 
             // Check if this single-column is already covered by a proposed multi-column index
-            if (isSingleColumnCoveredByProposed(table.toLowerCase(), column.toLowerCase())) {
+            if (indexSuggestions.isCoveredByMultiColumn(table, List.of(column))) {
                 if (!quietMode) {
                     logger.info("Skipping single-column index {} - already covered by a proposed multi-column index", key);
                 }
+                creditBenefit(indexSuggestions.findMultiColumnStartingWith(table, List.of(column), 1), benefit);
                 return;
             }
 
-            if (suggestedNewIndexes.add(key)) {
+            if (indexSuggestions.addSingleColumn(key)) {
                 OptimizationStatsLogger.updateIndexesGenerated(1);
             }
+            creditBenefit(key, benefit);
         }
     }
 
-    private void generateRequiredCompositeIndex(List<String> filteredColumns, String table) {
+    private void generateRequiredCompositeIndex(List<String> filteredColumns, String table, Double benefit) {
         // Limit to maxIndexColumns (default 4)
         if (filteredColumns.size() > maxIndexColumns) {
             if (!quietMode) {
@@ -760,6 +1009,8 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
             if (!quietMode) {
                 logger.info("Skipping index {} - already covered by a larger proposed index", key);
             }
+            creditBenefit(indexSuggestions.findMultiColumnStartingWith(table, filteredColumns, filteredColumns.size()),
+                    benefit);
             return;
         }
 
@@ -767,9 +1018,10 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
         removeProposedIndexesCoveredBy(table.toLowerCase(), filteredColumns);
 
         // Create multi-column index for this specific table
-        if (suggestedMultiColumnIndexes.add(key)) {
+        if (indexSuggestions.addMultiColumn(key)) {
             OptimizationStatsLogger.updateIndexesGenerated(1);
         }
+        creditBenefit(key, benefit);
     }
 
     private static List<String> getFilteredColumns(List<String> columnsForTable, String table) {
@@ -798,38 +1050,7 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
      * @return true if there's already a larger proposed index that covers this one
      */
     boolean isIndexCoveredByProposedIndex(String table, List<String> columns) {
-        for (String existingKey : suggestedMultiColumnIndexes) {
-            List<String> existingColumns = parseIndexColumnsForTable(existingKey, table);
-
-            // Check if existingColumns covers the new columns (existing is larger or equal and starts with same prefix)
-            if (existingColumns.size() >= columns.size() && isPrefixIgnoreCase(columns, existingColumns)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Checks if a single-column index is already covered by a proposed multi-column index
-     * that has this column as its leading column.
-     *
-     * @param table the table name (lowercase)
-     * @param column the column name (lowercase)
-     * @return true if there's a multi-column index with this as the leading column
-     */
-    private boolean isSingleColumnCoveredByProposed(String table, String column) {
-        for (String mcKey : suggestedMultiColumnIndexes) {
-            String[] mcParts = mcKey.split("\\|", 2);
-            if (mcParts.length != 2) continue;
-
-            String mcTable = mcParts[0];
-            String[] mcColumns = mcParts[1].split(",");
-
-            if (table.equals(mcTable) && mcColumns.length > 0 && mcColumns[0].equalsIgnoreCase(column)) {
-                return true;
-            }
-        }
-        return false;
+        return indexSuggestions.isCoveredByMultiColumn(table, columns);
     }
 
     /**
@@ -842,73 +1063,36 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
     void removeProposedIndexesCoveredBy(String table, List<String> columns) {
         Set<String> toRemove = new HashSet<>();
 
-        // Check multi-column indexes
-        for (String existingKey : suggestedMultiColumnIndexes) {
-            List<String> existingColumns = parseIndexColumnsForTable(existingKey, table);
-            if (existingColumns.isEmpty()) continue;
-
-            // If existing is smaller and is a prefix of the new columns, remove it
-            if (existingColumns.size() < columns.size() && isPrefixIgnoreCase(existingColumns, columns)) {
-                toRemove.add(existingKey);
-                if (!quietMode) {
-                    logger.info("Removing smaller proposed index {} - will be covered by new index on columns {}",
-                            existingKey, columns);
-                }
+        // Check multi-column indexes: the smaller ones lie on the path of the new columns
+        for (IndexSuggestions.Suggestion existing : indexSuggestions.multiColumnPrefixesOf(table, columns)) {
+            toRemove.add(existing.key());
+            if (!quietMode) {
+                logger.info("Removing smaller proposed index {} - will be covered by new index on columns {}",
+                        existing.key(), columns);
             }
         }
 
         // Check single-column indexes
         if (!columns.isEmpty()) {
-            String firstColumn = columns.get(0).toLowerCase();
-            String singleKey = table + "|" + firstColumn;
-            if (suggestedNewIndexes.contains(singleKey)) {
-                toRemove.add(singleKey);
+            IndexSuggestions.Suggestion single = indexSuggestions.findSingleColumn(table, columns.get(0));
+            if (single != null) {
+                toRemove.add(single.key());
                 if (!quietMode) {
                     logger.info("Removing single-column index {} - will be covered by new multi-column index on columns {}",
-                            singleKey, columns);
+                            single.key(), columns);
                 }
             }
         }
 
-        // Remove the covered indexes and update stats
-        suggestedMultiColumnIndexes.removeAll(toRemove);
-        suggestedNewIndexes.removeAll(toRemove);
+        // Remove the covered indexes, crediting the queries they served to the new index, and update stats
+        String key = (table + "|" + String.join(",", columns)).toLowerCase();
+        toRemove.forEach(removed -> indexSuggestions.moveBenefit(removed, key));
+        indexSuggestions.removeAll(toRemove);
         if (!toRemove.isEmpty()) {
             OptimizationStatsLogger.updateIndexesGenerated(-toRemove.size());
         }
     }
 
-    /**
-     * Parses an index key and returns the columns if the key is valid and matches the given table.
-     * 
-     * @param indexKey the index key in format "table|col1,col2,..."
-     * @param expectedTable the table name to match
-     * @return list of columns if valid and table matches, null otherwise
-     */
-    private List<String> parseIndexColumnsForTable(String indexKey, String expectedTable) {
-        String[] parts = indexKey.split("\\|", 2);
-        if (parts.length != 2) return List.of();
-        
-        String table = parts[0];
-        if (!table.equals(expectedTable)) return List.of();
-        
-        return List.of(parts[1].split(","));
-    }
-
-    /**
-     * Checks if list1 is a prefix of list2 (case-insensitive comparison).
-     * For example, [A, B] is a prefix of [A, B, C, D].
-     */
-    private boolean isPrefixIgnoreCase(List<String> list1, List<String> list2) {
-        if (list1.size() > list2.size()) return false;
-        for (int i = 0; i < list1.size(); i++) {
-            if (!list1.get(i).equalsIgnoreCase(list2.get(i))) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     /**
      * Final cleanup pass to remove any remaining redundant proposed indexes.
      * This is called once before generating the Liquibase file to catch any edge cases
@@ -917,16 +1101,14 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
     private void finalRedundancyCleanup() {
         Set<String> toRemove = new HashSet<>();
 
-        // Check each multi-column index against all others
+        // Check each multi-column index against the larger ones below it in the prefix tree
         removeRedundantMultiColumnIndexes(toRemove);
 
-
         // Also check single-column indexes against multi-column indexes
         removeRedundantSingleColumnIndexes(toRemove);
 
         // Remove the redundant indexes
-        suggestedMultiColumnIndexes.removeAll(toRemove);
-        suggestedNewIndexes.removeAll(toRemove);
+        indexSuggestions.removeAll(toRemove);
 
         // Update stats if we removed any
         if (!toRemove.isEmpty()) {
@@ -935,57 +1117,150 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
     }
 
     void removeRedundantSingleColumnIndexes(Set<String> toRemove) {
-        for (String singleKey : suggestedNewIndexes) {
-            String[] parts = singleKey.split("\\|", 2);
-            if (parts.length != 2) continue;
-            String table = parts[0];
-            String column = parts[1];
-
+        for (IndexSuggestions.Suggestion single : indexSuggestions.singleColumn()) {
             // Check if any multi-column index on the same table starts with this column
-            for (String mcKey : suggestedMultiColumnIndexes) {
-                List<String> mcColumns = parseIndexColumnsForTable(mcKey, table);
-
-                if (!mcColumns.isEmpty() && mcColumns.getFirst().equalsIgnoreCase(column)) {
-                    toRemove.add(singleKey);
-                    if (!quietMode) {
-                        logger.info("Final cleanup: Removing redundant single-column index {} - covered by multi-column index {}",
-                                singleKey, mcKey);
-                    }
-                    break;
+            IndexSuggestions.Suggestion covering = indexSuggestions.findMultiColumnStartingWith(
+                    single.table(), single.columns(), single.columns().size());
+            if (covering != null) {
+                toRemove.add(single.key());
+                indexSuggestions.moveBenefit(single.key(), covering.key());
+                if (!quietMode) {
+                    logger.info("Final cleanup: Removing redundant single-column index {} - covered by multi-column index {}",
+                            single.key(), covering.key());
                 }
             }
         }
     }
 
     void removeRedundantMultiColumnIndexes(Set<String> toRemove) {
-        for (String key1 : suggestedMultiColumnIndexes) {
-            String[] parts1 = key1.split("\\|", 2);
-            if (parts1.length != 2) continue;
-            String table1 = parts1[0];
-            List<String> columns1 = List.of(parts1[1].split(","));
-
-            removeRedundantMultiColumnIndex(toRemove, key1, table1, columns1);
+        for (IndexSuggestions.Suggestion multi : indexSuggestions.multiColumn()) {
+            // Covered if a longer multi-column index starts with all of its columns
+            IndexSuggestions.Suggestion covering = indexSuggestions.findMultiColumnStartingWith(
+                    multi.table(), multi.columns(), multi.columns().size() + 1);
+            if (covering != null) {
+                toRemove.add(multi.key());
+                indexSuggestions.moveBenefit(multi.key(), covering.key());
+                if (!quietMode) {
+                    logger.info("Final cleanup: Removing redundant index {} - covered by {}", multi.key(), covering.key());
+                }
+            }
         }
     }
 
-    private void removeRedundantMultiColumnIndex(Set<String> toRemove, String key1, String table1, List<String> columns1) {
-        for (String key2 : suggestedMultiColumnIndexes) {
-            if (!key1.equals(key2)) {
 
-                List<String> columns2 = parseIndexColumnsForTable(key2, table1);
+    /**
+     * Drops the suggestions that cost more to maintain than they save according to the workload,
+     * then keeps at most {@code max_indexes_per_table} suggestions per table, the ones with the
+     * highest estimated net benefit first.
+     */
+    private void applyWorkloadAndBudget() {
+        List<IndexSuggestions.Suggestion> candidates = new ArrayList<>(indexSuggestions.multiColumn());
+        candidates.addAll(indexSuggestions.singleColumn());
+
+        Set<String> toRemove = new HashSet<>();
+        Map<String, List<IndexSuggestions.Suggestion>> byTable = new LinkedHashMap<>();
+        for (IndexSuggestions.Suggestion suggestion : rankByWorkload(candidates)) {
+            Double netBenefit = netBenefit(suggestion);
+            if (netBenefit != null && netBenefit <= 0) {
+                toRemove.add(suggestion.key());
+                if (!quietMode) {
+                    logger.info("Dropping index {} - its queries take {} ms in the workload, less than the {} ms to maintain it",
+                            suggestion.key(), indexSuggestions.benefitOf(suggestion),
+                            workload.writeCostMillis(suggestion.table()));
+                }
+                continue;
+            }
+            byTable.computeIfAbsent(suggestion.table().toLowerCase(), t -> new ArrayList<>()).add(suggestion);
+        }
 
-                // Check if columns1 is a prefix of columns2 (columns2 covers columns1)
-                if (columns2.size() > columns1.size() && isPrefixIgnoreCase(columns1, columns2)) {
-                    toRemove.add(key1);
+        if (maxIndexesPerTable > 0) {
+            for (List<IndexSuggestions.Suggestion> suggestions : byTable.values()) {
+                int budget = Math.min(maxIndexesPerTable, suggestions.size());
+                for (IndexSuggestions.Suggestion suggestion : suggestions.subList(budget, suggestions.size())) {
+                    toRemove.add(suggestion.key());
                     if (!quietMode) {
-                        logger.info("Final cleanup: Removing redundant index {} - covered by {}", key1, key2);
+                        logger.info("Dropping index {} - over the budget of {} new indexes on table {}",
+                                suggestion.key(), maxIndexesPerTable, suggestion.table());
                     }
-                    break;
                 }
             }
         }
+
+        indexSuggestions.removeAll(toRemove);
+        if (!toRemove.isEmpty()) {
+            OptimizationStatsLogger.updateIndexesGenerated(-toRemove.size());
+        }
+    }
+
+    /**
+     * Drops the suggestions that the planner of the scratch database does not use for any of the
+     * analyzed queries. If the validation cannot run, all suggestions are kept.
+     */
+    private void validateWithExplain() {
+        if (explainValidator == null || explainQueries.isEmpty()) {
+            return;
+        }
+        List<ExplainIndexValidator.Candidate> candidates = new ArrayList<>();
+        for (IndexSuggestions.Suggestion multi : indexSuggestions.multiColumn()) {
+            candidates.add(new ExplainIndexValidator.Candidate(multi.key(), multi.table(),
+                    liquibaseGenerator.generateIndexName(multi.table(), multi.columns()),
+                    buildLiquibaseMultiColumnIndexChangeSet(multi.table(), new LinkedHashSet<>(multi.columns()))));
+        }
+        for (IndexSuggestions.Suggestion single : indexSuggestions.singleColumn()) {
+            candidates.add(new ExplainIndexValidator.Candidate(single.key(), single.table(),
+                    liquibaseGenerator.generateIndexName(single.table(), single.columns()),
+                    buildLiquibaseNonLockingIndexChangeSet(single.table(), single.columns().getFirst())));
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Set<String> unused;
+        try (Metrics.Timer span = Metrics.span("validateWithExplain", null)) {
+            unused = explainValidator.findUnusedIndexes(liquibaseXmlPath.toPath(), candidates, explainQueries);
+        } catch (SQLException | LiquibaseException | IOException e) {
+            logger.warn("EXPLAIN validation failed, keeping all index suggestions: {}", e.getMessage());
+            return;
+        }
+        if (!quietMode) {
+            unused.forEach(key -> logger.info("Dropping index {} - the planner does not use it for any analyzed query", key));
+        }
+        indexSuggestions.removeAll(unused);
+        if (!unused.isEmpty()) {
+            OptimizationStatsLogger.updateIndexesGenerated(-unused.size());
+        }
     }
 
+    /**
+     * Orders suggestions by their estimated net benefit, highest first. Suggestions whose queries
+     * are not in the workload follow in their original order, as do all suggestions when no
+     * workload is configured.
+     */
+    List<IndexSuggestions.Suggestion> rankByWorkload(Collection<IndexSuggestions.Suggestion> suggestions) {
+        List<IndexSuggestions.Suggestion> ranked = new ArrayList<>(suggestions);
+        if (workload != null) {
+            ranked.sort(Comparator.comparing(this::netBenefit, Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+        return ranked;
+    }
+
+    /**
+     * The time an index saves minus the time spent maintaining it on writes.
+     *
+     * @return the net benefit in milliseconds, or null if none of its queries are in the workload
+     */
+    private Double netBenefit(IndexSuggestions.Suggestion suggestion) {
+        Double benefit = workload == null ? null : indexSuggestions.benefitOf(suggestion);
+        return benefit == null ? null : benefit - workload.writeCostMillis(suggestion.table());
+    }
+
+    private void addWorkloadComment(Consumer<String> out, IndexSuggestions.Suggestion suggestion) {
+        Double benefit = workload == null ? null : indexSuggestions.benefitOf(suggestion);
+        if (benefit != null) {
+            out.accept(String.format(Locale.ROOT, "%n    <!-- Workload: %.1f ms in the queries served, %.1f ms to maintain on writes -->",
+                    benefit, workload.writeCostMillis(suggestion.table())));
+        }
+    }
 
     String indent(String s, int spaces) {
         String pad = " ".repeat(Math.max(0, spaces));
@@ -1002,17 +1277,27 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
      * file operations.
      */
     public void generateLiquibaseChangesFile() throws IOException {
-        // Generate changesets for both create and drop operations
-        List<String> generated = generateLiquibaseChangesets();
-
-        if (generated.isEmpty()) {
-            return;
+        try (Metrics.Timer span = Metrics.span("generateLiquibaseChangesFile", null)) {
+            writeLiquibaseChangesFile();
         }
+    }
 
-        // Use LiquibaseGenerator to write the changeset file
-        String allChangesets = String.join("\n", generated);
-        LiquibaseGenerator.WriteResult result = liquibaseGenerator.writeChangesetToFile(liquibaseXmlPath,
-                allChangesets);
+    private void writeLiquibaseChangesFile() throws IOException {
+        // Stream the changesets into the file as they are built, so that memory does not grow
+        // with the number of suggestions
+        LiquibaseGenerator.WriteResult result;
+        try (LiquibaseGenerator.ChangesetWriter writer = liquibaseGenerator.openChangesetWriter(liquibaseXmlPath.toPath())) {
+            generateLiquibaseChangesets(changeSet -> {
+                try {
+                    writer.write(changeSet);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            result = writer.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
         if (result.wasWritten() && result.changesFile() != null) {
             logger.debug(
@@ -1030,62 +1315,74 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
      * @return GeneratedChangesets containing all changesets and counts
      */
     List<String> generateLiquibaseChangesets() {
+        List<String> result = new ArrayList<>();
+        generateLiquibaseChangesets(result::add);
+        return result;
+    }
+
+    /**
+     * Generates all Liquibase changesets (create and drop), handing each one, and the comments
+     * between them, to the consumer as soon as it is built.
+     */
+    void generateLiquibaseChangesets(Consumer<String> out) {
         // Final cleanup pass to remove any remaining redundant indexes before generating
         finalRedundancyCleanup();
+        applyWorkloadAndBudget();
+        validateWithExplain();
 
-        List<String> result = new ArrayList<>();
+        boolean created = false;
 
-        for (String key : suggestedMultiColumnIndexes) {
-            String[] parts = key.split("\\|", 2);
-            String table = parts[0];
-            String columnsStr = parts[1];
-            LinkedHashSet<String> columns = new LinkedHashSet<>(List.of(columnsStr.split(",")));
-            String changeSet = buildLiquibaseMultiColumnIndexChangeSet(table, columns);
-            result.add(indentXml(changeSet, 4));
+        for (IndexSuggestions.Suggestion multi : rankByWorkload(indexSuggestions.multiColumn())) {
+            LinkedHashSet<String> columns = new LinkedHashSet<>(multi.columns());
+            String changeSet = buildLiquibaseMultiColumnIndexChangeSet(multi.table(), columns);
+            addWorkloadComment(out, multi);
+            out.accept(indentXml(changeSet, 4));
+            created = true;
         }
 
-        for (String key : suggestedNewIndexes) {
-            String[] parts = key.split("\\|", 2);
-            String table = parts[0];
-            String column = parts[1];
+        for (IndexSuggestions.Suggestion single : rankByWorkload(indexSuggestions.singleColumn())) {
+            String table = single.table();
+            String column = single.columns().getFirst();
 
             if (!isCoveredByComposite(table, column)) {
 
+                addWorkloadComment(out, single);
                 String changeSet = buildLiquibaseNonLockingIndexChangeSet(table, column);
-                result.add(indentXml(changeSet, 4));
+                out.accept(indentXml(changeSet, 4));
+                created = true;
             }
         }
         int totalIndexCreateRecommendations = OptimizationStatsLogger.getTotalIndexesGenerated();
 
         // Add create index summary comment (or note no create recommendations)
         if (totalIndexCreateRecommendations > 0) {
-            result.add("\n    <!-- Summary: " + totalIndexCreateRecommendations
+            out.accept("\n    <!-- Summary: " + totalIndexCreateRecommendations
                     + " total index create recommendations -->");
+            created = true;
         }
 
-        addIndexDropChanges(result);
-        return result;
+        addIndexDropChanges(out, created);
     }
 
-    private void addIndexDropChanges(List<String> result) {
+    private void addIndexDropChanges(Consumer<String> out, boolean created) {
         // Analyze existing indexes to suggest drops for low-cardinality leading columns
         // (always perform)
         LinkedHashSet<String> dropCandidates = getDropCandidates();
 
         // Add drop index changesets even if there are no create suggestions
         if (!dropCandidates.isEmpty()) {
-            if (result.isEmpty()) {
-                result.add("\n    <!-- Summary: No index create recommendations -->");
+            if (!created) {
+                out.accept("\n    <!-- Summary: No index create recommendations -->");
             }
 
-            result.add("\n    <!-- Index Drop Recommendations (leading low-cardinality columns) -->");
+            out.accept("\n    <!-- Index Drop Recommendations (leading low-cardinality columns) -->");
             for (String idxName : dropCandidates) {
                 String changeSet = buildLiquibaseDropIndexChangeSet(idxName);
-                result.add("\n    <!-- Drop index " + idxName + " -->");
-                result.add(indentXml(changeSet, 4));
+                out.accept("\n    <!-- Drop index " + idxName + " -->");
+                out.accept(indentXml(changeSet, 4));
             }
             OptimizationStatsLogger.updateIndexesDropped(dropCandidates.size());
-            result.add("\n    <!-- Summary: " + dropCandidates.size() + " total index drop recommendations -->");
+            out.accept("\n    <!-- Summary: " + dropCandidates.size() + " total index drop recommendations -->");
         }
     }
 
@@ -1110,15 +1407,7 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
     }
 
     boolean isCoveredByComposite(String table, String column) {
-        return suggestedMultiColumnIndexes.stream()
-                .anyMatch(mcKey -> {
-                    String[] mcParts = mcKey.split("\\|", 2);
-                    if (mcParts.length == 2 && mcParts[0].equalsIgnoreCase(table)) {
-                        String[] cols = mcParts[1].split(",");
-                        return cols.length > 0 && cols[0].equalsIgnoreCase(column);
-                    }
-                    return false;
-                });
+        return indexSuggestions.isCoveredByMultiColumn(table, List.of(column));
     }
 
     /**
@@ -1214,10 +1503,15 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
 
         TokenUsage totalTokenUsage = checker.getCumulativeTokenUsage();
         OptimizationStatsLogger.printSummary(System.out);
+        OptimizationStatsLogger.close();
 
         if (totalTokenUsage.getTotalTokens() > 0) {
             System.out.printf("🤖 AI Service Usage: %s%n", totalTokenUsage.getFormattedReport());
         }
+        AIResponseCache responseCache = checker.getAiService().getResponseCache();
+        if (responseCache != null) {
+            System.out.printf("🗄️ %s%n", responseCache.getFormattedReport());
+        }
     }
 
     /**
@@ -1249,24 +1543,63 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
                     skipClass = s;
                     System.out.printf("🚫 Skip class filter: %s%n", s);
                 }
+
+                if (Boolean.TRUE.equals(queryOptimizer.get("pipeline"))) {
+                    pipelined = true;
+                    System.out.println("⏩ Pipelined analysis enabled");
+                }
+
+                if (Boolean.TRUE.equals(queryOptimizer.get("call_site_index"))) {
+                    Object indexFile = queryOptimizer.get("call_site_index_file");
+                    File file = new File(indexFile instanceof String f && !f.isBlank() ? f : CallSiteIndexStore.DEFAULT_FILE);
+                    Fields.setIndexStoreFile(file);
+                    System.out.printf("🗂️ Persistent call site index: %s%n", file);
+                }
+
+                configureColumnStatistics();
         } else {
             System.out.println("ℹ️ No query_optimizer section in settings (processing all repositories)");
         }
     }
 
-    // Package-private getters for testing
-    LinkedHashSet<String> getSuggestedNewIndexes() {
-        return suggestedNewIndexes;
+    private static void configureColumnStatistics() {
+        try {
+            ColumnStatistics statistics = ColumnStatistics.fromConfiguration();
+            if (statistics != null) {
+                CardinalityAnalyzer.setColumnStatistics(statistics);
+                System.out.printf("📊 Column statistics loaded for %d columns%n", statistics.size());
+            }
+        } catch (IOException e) {
+            logger.warn("Could not load the column statistics, cardinality is guessed from the schema: {}",
+                    e.getMessage());
+        }
     }
 
-    LinkedHashSet<String> getSuggestedMultiColumnIndexes() {
-        return suggestedMultiColumnIndexes;
+    // Package-private getters for testing
+    IndexSuggestions getIndexSuggestions() {
+        return indexSuggestions;
     }
 
     int getMaxIndexColumns() {
         return maxIndexColumns;
     }
 
+    void setMaxIndexesPerTable(int maxIndexesPerTable) {
+        this.maxIndexesPerTable = maxIndexesPerTable;
+    }
+
+    void setWorkload(WorkloadProfile workload) {
+        this.workload = workload;
+    }
+
+    void setExplainValidator(ExplainIndexValidator explainValidator) {
+        this.explainValidator = explainValidator;
+    }
+
+    Set<String> getExplainQueries() {
+        return explainQueries;
+    }
+
     /**
      * Reads the max_index_columns configuration from query_optimizer section.
      * Returns the default value of 4 if not configured.
@@ -1289,4 +1622,25 @@ public class QueryOptimizationChecker extends AbstractRepositoryAnalyzer {
         }
         return 4; // Default value
     }
+
+    /**
+     * Reads the max_indexes_per_table configuration from query_optimizer section.
+     * Returns 0, meaning no limit, if not configured.
+     *
+     * @return maximum number of new indexes suggested for a table
+     */
+    @SuppressWarnings("unchecked")
+    private static int getMaxIndexesPerTableFromConfig() {
+        Map<String, Object> queryOptimizer = (Map<String, Object>) Settings.getProperty("query_optimizer");
+        if (queryOptimizer != null) {
+            Object maxIndexes = queryOptimizer.get("max_indexes_per_table");
+            if (maxIndexes instanceof Number n) {
+                if (n.intValue() >= 0) {
+                    return n.intValue();
+                }
+                logger.warn("max_indexes_per_table value {} is negative, suggesting indexes without a limit", n);
+            }
+        }
+        return 0;
+    }
 }
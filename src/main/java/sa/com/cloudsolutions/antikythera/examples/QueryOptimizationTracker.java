@@ -4,10 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -15,6 +12,9 @@ import java.util.Set;
 /**
  * Tracks which repositories have been processed by the QueryOptimizer.
  * Supports skipping already-processed repositories when configured to do so.
+ * The repository names are kept in an index file next to the CSV log
+ * (see {@link ProcessedRepositoryStore}), so only rows appended since the last
+ * run have to be read.
  *
  * Configuration in generator.yml:
  * <pre>
@@ -34,15 +34,14 @@ public class QueryOptimizationTracker {
     private static final String LOG_FILE_KEY = "log_file";
     private static final String DEFAULT_LOG_FILE = "query-optimization-stats.csv";
 
-    private final Set<String> processedRepositories;
     private final boolean skipProcessedEnabled;
     private final String logFilePath;
     private boolean initialized;
+    private ProcessedRepositoryStore store;
 
     private static QueryOptimizationTracker instance;
 
     private QueryOptimizationTracker() {
-        this.processedRepositories = new HashSet<>();
         this.skipProcessedEnabled = isSkipProcessedConfigured();
         this.logFilePath = readLogFilePathFromConfig();
         this.initialized = false;
@@ -76,7 +75,7 @@ public class QueryOptimizationTracker {
             return false;
         }
         ensureInitialized();
-        boolean skip = processedRepositories.contains(repositoryName);
+        boolean skip = store.contains(repositoryName);
         if (skip) {
             logger.debug("Skipping already processed repository: {}", repositoryName);
         }
@@ -85,13 +84,13 @@ public class QueryOptimizationTracker {
 
     /**
      * Gets the set of processed repository names.
-     * Initializes from CSV if not already done.
+     * Initializes from the index and the CSV file if not already done.
      *
      * @return set of processed repository names
      */
     public Set<String> getProcessedRepositories() {
         ensureInitialized();
-        return new HashSet<>(processedRepositories);
+        return new HashSet<>(store.names());
     }
 
     /**
@@ -109,76 +108,37 @@ public class QueryOptimizationTracker {
     }
 
     /**
-     * Ensures the tracker is initialized by reading the CSV file.
+     * Ensures the tracker is initialized by reading the processed repository index and the rows
+     * appended to the CSV file since the index was written.
      */
     private synchronized void ensureInitialized() {
         if (initialized) {
             return;
         }
         initialized = true;
-        loadProcessedRepositoriesFromCsv();
+        store = ProcessedRepositoryStore.open(Path.of(logFilePath));
+        logger.info("Loaded {} processed repositories from {}", store.names().size(), logFilePath);
     }
 
     /**
-     * Loads the list of processed repositories from the CSV file.
-     * The CSV format is expected to have the repository name in the second column.
-     */
-    private void loadProcessedRepositoriesFromCsv() {
-        File csvFile = new File(logFilePath);
-        if (!csvFile.exists()) {
-            logger.debug("Query optimization stats file not found: {}", logFilePath);
-            return;
-        }
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
-            String line;
-            boolean firstLine = true;
-            while ((line = reader.readLine()) != null) {
-                // Skip header row if present
-                if (firstLine) {
-                    firstLine = false;
-                    if (isHeaderRow(line)) {
-                        continue;
-                    }
-                }
-
-                String repositoryName = extractRepositoryName(line);
-                if (repositoryName != null && !repositoryName.isEmpty()) {
-                    processedRepositories.add(repositoryName);
-                }
-            }
-            logger.info("Loaded {} processed repositories from {}", processedRepositories.size(), logFilePath);
-        } catch (IOException e) {
-            logger.warn("Failed to read query optimization stats file: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Checks if a line appears to be a header row.
+     * Records a repository whose statistics row has been handed to the CSV writer, so that the
+     * index written by {@link #save()} includes it.
+     *
+     * @param repositoryName the fully qualified name of the repository
      */
-    private boolean isHeaderRow(String line) {
-        String lower = line.toLowerCase();
-        return lower.contains("repository") || lower.contains("timestamp") || lower.startsWith("#");
+    public void markProcessed(String repositoryName) {
+        ensureInitialized();
+        store.add(repositoryName);
     }
 
     /**
-     * Extracts the repository name from a CSV line.
-     * The repository name is expected to be in the second column (index 1).
-     *
-     * @param line the CSV line
-     * @return the repository name, or null if not found
+     * Writes the processed repository index next to the CSV file. Call it after the CSV file
+     * has been flushed.
      */
-    private String extractRepositoryName(String line) {
-        if (line == null || line.trim().isEmpty()) {
-            return null;
-        }
-
-        String[] columns = line.split(",");
-        if (columns.length >= 2) {
-            // Repository name is in the second column
-            return columns[1].trim().replace("\"", "");
+    public synchronized void save() {
+        if (initialized) {
+            store.save();
         }
-        return null;
     }
 
     /**
@@ -22,6 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Metrics;
+import sa.com.cloudsolutions.antikythera.examples.metrics.Phase;
 import sa.com.cloudsolutions.antikythera.generator.QueryType;
 import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
@@ -38,10 +40,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("java:S106")
 public class QueryOptimizer extends QueryOptimizationChecker {
@@ -50,6 +57,8 @@ public class QueryOptimizer extends QueryOptimizationChecker {
     private final boolean supportsTextBlocks;
     private static final Set<String> modifiedFiles = new java.util.HashSet<>();
     private static final  Set<String> writtenFiles = new java.util.HashSet<>();
+    // Rewrite the callers in dependent classes on a pool of worker threads
+    private static boolean parallelRewrite = false;
 
     // Profiling accumulators for writeFile breakdown
     private long totalLppTime = 0;
@@ -75,6 +84,22 @@ public class QueryOptimizer extends QueryOptimizationChecker {
         }
     }
 
+    /**
+     * Enables or disables rewriting the callers in dependent classes on a pool of worker
+     * threads. Files are still written one at a time, in the same order as a serial run.
+     *
+     * @param enabled {@code true} to rewrite dependent classes in parallel
+     */
+    public static void setParallelRewrite(boolean enabled) {
+        parallelRewrite = enabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isParallelRewriteConfigured() {
+        Map<String, Object> queryOptimizer = (Map<String, Object>) Settings.getProperty("query_optimizer");
+        return queryOptimizer != null && Boolean.TRUE.equals(queryOptimizer.get("parallel_rewrite"));
+    }
+
     private static int detectJavaVersion() {
         try {
             MavenHelper helper = new MavenHelper();
@@ -101,7 +126,21 @@ public class QueryOptimizer extends QueryOptimizationChecker {
     void analyzeRepository(TypeWrapper typeWrapper)
             throws IOException, ReflectiveOperationException, InterruptedException {
         super.analyzeRepository(typeWrapper);
+        afterRepositoryAnalyzed(typeWrapper);
+    }
+
+    /**
+     * Applies the analysis results of a repository: updates its query annotations and method
+     * signatures, rewrites the callers in dependent classes and writes the changed files.
+     */
+    @Override
+    void afterRepositoryAnalyzed(TypeWrapper typeWrapper) throws IOException {
+        try (Metrics.Timer timer = Metrics.time(Phase.REWRITE, typeWrapper.getFullyQualifiedName())) {
+            applyResults(typeWrapper);
+        }
+    }
 
+    private void applyResults(TypeWrapper typeWrapper) throws IOException {
         OptimizationStatsLogger.updateQueriesAnalyzed(results.size());
 
         repositoryFileModified = false;
@@ -128,7 +167,9 @@ public class QueryOptimizer extends QueryOptimizationChecker {
                     methodRenames.size());
 
             long startTime = System.currentTimeMillis();
-            batchUpdateMethodSignatures(methodRenames, repositoryClassName);
+            try (Metrics.Timer span = Metrics.span("batchUpdateMethodSignatures", repositoryClassName)) {
+                batchUpdateMethodSignatures(methodRenames, repositoryClassName);
+            }
             long elapsed = System.currentTimeMillis() - startTime;
 
             if (elapsed > 1000) {
@@ -410,6 +451,13 @@ public class QueryOptimizer extends QueryOptimizationChecker {
             String annotationName,
             String newStringValue,
             boolean useTextBlock) {
+        try (Metrics.Timer span = Metrics.span("updateAnnotationValue", null)) {
+            replaceAnnotationValue(method, annotationName, newStringValue, useTextBlock);
+        }
+    }
+
+    private void replaceAnnotationValue(MethodDeclaration method, String annotationName, String newStringValue,
+                                        boolean useTextBlock) {
 
         // 1. Find the annotation on the method
         Optional<AnnotationExpr> oldAnnotationOpt = method.getAnnotationByName(annotationName);
@@ -608,33 +656,38 @@ public class QueryOptimizer extends QueryOptimizationChecker {
                 classesToProcess.size(), totalDependentClasses,
                 totalDependentClasses > 0 ? (100 - (classesToProcess.size() * 100 / totalDependentClasses)) : 0);
 
-        long loopStartTime = System.currentTimeMillis();
-        int classesProcessed = 0;
-        int totalMethodCallsUpdated = 0;
-        List<String> classesModifiedInBatch = new ArrayList<>();
-
-        for (Map.Entry<String, Set<String>> entry : classesToProcess.entrySet()) {
-            String className = entry.getKey();
-            Set<String> fieldNames = entry.getValue();
-
-            TypeWrapper typeWrapper = AntikytheraRunTime.getResolvedTypes().get(className);
-
-            if (typeWrapper == null) {
+        for (String className : classesToProcess.keySet()) {
+            if (AntikytheraRunTime.getResolvedTypes().get(className) == null) {
                 throw new IllegalStateException(
                         "Class " + className + " found in method call index but not in resolved types. " +
                         "This may indicate incomplete preprocessing or an external dependency that should be excluded.");
             }
+        }
 
-            long astStart = System.currentTimeMillis();
-            logger.info("  Visiting class: {} (fields: {})", className, fieldNames);
-            int callsUpdated = updateMethodCallSignatureBatched(methodRenames, fieldNames, className);
-            long astElapsed = System.currentTimeMillis() - astStart;
+        int totalMethodCallsUpdated = parallelRewrite && classesToProcess.size() > 1
+                ? rewriteInParallel(methodRenames, classesToProcess)
+                : rewriteSerially(methodRenames, classesToProcess);
+        OptimizationStatsLogger.updateMethodCallsChanged(totalMethodCallsUpdated);
+    }
 
-            if (callsUpdated > 0) {
-                logger.info("  Updated {} calls in {} ({}ms)", callsUpdated, className, astElapsed);
-                classesModifiedInBatch.add(className);
+    /**
+     * Outcome of rewriting the callers in one dependent class.
+     */
+    record ClassRewrite(String className, int callsUpdated, boolean modified, long elapsedMs) {}
+
+    private int rewriteSerially(List<MethodRename> methodRenames, Map<String, Set<String>> classesToProcess)
+            throws IOException {
+        long loopStartTime = System.currentTimeMillis();
+        int classesProcessed = 0;
+        int totalMethodCallsUpdated = 0;
+        List<String> classesModifiedInBatch = new ArrayList<>();
+
+        for (Map.Entry<String, Set<String>> entry : classesToProcess.entrySet()) {
+            ClassRewrite rewrite = updateMethodCallSignatureBatched(methodRenames, entry.getValue(), entry.getKey());
+            if (recordRewrite(rewrite)) {
+                classesModifiedInBatch.add(rewrite.className());
             }
-            totalMethodCallsUpdated += callsUpdated;
+            totalMethodCallsUpdated += rewrite.callsUpdated();
             classesProcessed++;
 
             if (classesProcessed % 100 == 0) {
@@ -652,7 +705,97 @@ public class QueryOptimizer extends QueryOptimizationChecker {
                 writtenFiles.add(className);
             }
         }
-        OptimizationStatsLogger.updateMethodCallsChanged(totalMethodCallsUpdated);
+        return totalMethodCallsUpdated;
+    }
+
+    /**
+     * Rewrites the dependent classes on a pool of worker threads. Classes sharing a compilation
+     * unit are rewritten by the same task, since the AST is not safe to modify concurrently.
+     * Results are consumed in the original class order on the calling thread, which is the only
+     * one that updates the bookkeeping and writes files, so the outcome matches a serial run.
+     */
+    private int rewriteInParallel(List<MethodRename> methodRenames, Map<String, Set<String>> classesToProcess)
+            throws IOException {
+        Map<CompilationUnit, List<String>> classesByUnit = new IdentityHashMap<>();
+        List<List<String>> groups = new ArrayList<>();
+        for (String className : classesToProcess.keySet()) {
+            CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(className);
+            List<String> group = cu == null ? null : classesByUnit.get(cu);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+                if (cu != null) {
+                    classesByUnit.put(cu, group);
+                }
+            }
+            group.add(className);
+        }
+
+        long loopStartTime = System.currentTimeMillis();
+        int classesProcessed = 0;
+        int totalMethodCallsUpdated = 0;
+        int threads = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            List<Future<List<ClassRewrite>>> futures = new ArrayList<>();
+            for (List<String> group : groups) {
+                futures.add(pool.submit(() -> {
+                    List<ClassRewrite> rewrites = new ArrayList<>();
+                    for (String className : group) {
+                        rewrites.add(updateMethodCallSignatureBatched(
+                                methodRenames, classesToProcess.get(className), className));
+                    }
+                    return rewrites;
+                }));
+            }
+
+            for (Future<List<ClassRewrite>> future : futures) {
+                for (ClassRewrite rewrite : awaitRewrite(future)) {
+                    if (recordRewrite(rewrite) && writeFile(rewrite.className())) {
+                        writtenFiles.add(rewrite.className());
+                    }
+                    totalMethodCallsUpdated += rewrite.callsUpdated();
+                    classesProcessed++;
+
+                    if (classesProcessed % 100 == 0) {
+                        long elapsed = System.currentTimeMillis() - loopStartTime;
+                        logger.info("Progress: {}/{} classes processed in {}ms on {} threads",
+                                classesProcessed, classesToProcess.size(), elapsed, threads);
+                    }
+                }
+            }
+        }
+        return totalMethodCallsUpdated;
+    }
+
+    private static List<ClassRewrite> awaitRewrite(Future<List<ClassRewrite>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rewriting dependent classes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Updates the modified class bookkeeping for a rewritten class.
+     *
+     * @return true if the class was modified and has to be written
+     */
+    private boolean recordRewrite(ClassRewrite rewrite) {
+        if (rewrite.modified() && modifiedFiles.add(rewrite.className())) {
+            OptimizationStatsLogger.updateDependentClassesChanged(1);
+        }
+        if (rewrite.callsUpdated() > 0) {
+            logger.info("  Updated {} calls in {} ({}ms)", rewrite.callsUpdated(), rewrite.className(),
+                    rewrite.elapsedMs());
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -715,13 +858,14 @@ public class QueryOptimizer extends QueryOptimizationChecker {
      * @param methodRenames list of all method renames to apply
      * @param fieldNames set of field names that reference the repository in this class
      * @param className the class to update
-     * @return number of method calls updated
+     * @return the number of method calls updated and whether the class was modified
      */
-    private int updateMethodCallSignatureBatched(List<MethodRename> methodRenames,
+    private ClassRewrite updateMethodCallSignatureBatched(List<MethodRename> methodRenames,
             Set<String> fieldNames, String className) {
-        long getCuStart = System.currentTimeMillis();
+        long astStart = System.currentTimeMillis();
+        logger.info("  Visiting class: {} (fields: {})", className, fieldNames);
         CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(className);
-        long getCuTime = System.currentTimeMillis() - getCuStart;
+        long getCuTime = System.currentTimeMillis() - astStart;
         logger.info("    Got CompilationUnit in {}ms, starting processing...", getCuTime);
 
         // Use direct processing instead of visitor pattern for better performance
@@ -730,11 +874,8 @@ public class QueryOptimizer extends QueryOptimizationChecker {
 
         processor.logDiagnostics();
 
-        if (processor.modified && modifiedFiles.add(className)) {
-            OptimizationStatsLogger.updateDependentClassesChanged(1);
-        }
-
-        return methodCallsUpdated;
+        return new ClassRewrite(className, methodCallsUpdated, processor.modified,
+                System.currentTimeMillis() - astStart);
     }
 
     /**
@@ -757,6 +898,12 @@ public class QueryOptimizer extends QueryOptimizationChecker {
     }
 
     boolean writeFile(String fullyQualifiedName, CompilationUnit cu) throws IOException {
+        try (Metrics.Timer timer = Metrics.time(Phase.WRITE, null)) {
+            return printAndWrite(fullyQualifiedName, cu);
+        }
+    }
+
+    private boolean printAndWrite(String fullyQualifiedName, CompilationUnit cu) throws IOException {
         String relativePath = AbstractCompiler.classToPath(fullyQualifiedName);
         String fullPath = Settings.getBasePath() + "/src/main/java/" + relativePath;
 
@@ -1179,6 +1326,9 @@ public class QueryOptimizer extends QueryOptimizationChecker {
         // Parse command-line flags
         boolean quietMode = hasFlag(args, "--quiet") || hasFlag(args, "-q");
         AbstractRepositoryAnalyzer.setQuietMode(quietMode);
+        if (hasFlag(args, "--pipeline")) {
+            AbstractRepositoryAnalyzer.setPipelined(true);
+        }
 
         // Check for --fresh flag to clear checkpoint and start fresh
         boolean freshStart = hasFlag(args, "--fresh") || hasFlag(args, "-f");
@@ -1192,6 +1342,9 @@ public class QueryOptimizer extends QueryOptimizationChecker {
 
         // Read configuration from generator.yml (target_class)
         configureFromSettings();
+        if (hasFlag(args, "--parallel-rewrite") || isParallelRewriteConfigured()) {
+            setParallelRewrite(true);
+        }
 
         AbstractCompiler.loadDependencies();
         AbstractCompiler.preProcess();
@@ -1215,15 +1368,21 @@ public class QueryOptimizer extends QueryOptimizationChecker {
 
         OptimizationStatsLogger.printSummary(System.out);
         checker.updateFiles();
+        OptimizationStatsLogger.close();
 
         System.out.println("\n--- Final AI Token Usage Report ---");
         System.out.println(checker.getCumulativeTokenUsage().getFormattedReport());
+        AIResponseCache responseCache = checker.getAiService().getResponseCache();
+        if (responseCache != null) {
+            System.out.println(responseCache.getFormattedReport());
+        }
         System.out.println("-----------------------------------\n");
 
         if (!quietMode) {
             System.out.println("\nTime taken " + (System.currentTimeMillis() - s) + " ms.");
         }
-        System.out.println("📊 Detailed statistics logged to: query-optimization-stats.csv");
+        System.out.println("📊 Detailed statistics logged to: "
+                + QueryOptimizationTracker.getInstance().getLogFilePath());
 
         // Explicitly exit to ensure JVM shuts down (HttpClient may have non-daemon
         // threads)
@@ -0,0 +1,159 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline stand-in for an LLM provider, used to benchmark the optimizer pipeline without
+ * network access or API costs.
+ *
+ * <p>No HTTP request is made. Each query in a batch is answered from a canned response file
+ * if one exists, otherwise with a synthesized "no change" recommendation. A configurable
+ * latency and jitter is added to every request so that concurrency and caching can be
+ * measured realistically. Token usage is estimated from the prompt and response sizes and
+ * reported like any other provider.</p>
+ *
+ * <p>Canned responses are looked up in {@code responses_dir}, first as
+ * {@code <sha256 of the method signature>.json} and then as {@code <methodName>.json}. Each
+ * file holds a single recommendation object, as the live providers return it.</p>
+ *
+ * <p>Example {@code generator.yml} configuration:</p>
+ * <pre>
+ * ai_service:
+ *   provider: "stub"
+ *   responses_dir: "src/test/resources/stub-responses"  # optional
+ *   latency_ms: 800                                     # optional, per request
+ *   jitter_ms: 400                                      # optional, uniformly added to the latency
+ *   jitter_seed: 42                                     # optional, for repeatable runs
+ *   cost_per_1k_tokens: 0.0                             # optional
+ * </pre>
+ *
+ * <p>The jitter of a request is derived from the seed and the request payload, so a repeated
+ * run delays every batch by the same amount however the concurrent requests are scheduled.</p>
+ */
+public class StubAIService extends AbstractAIService {
+    private static final Pattern METHOD_NAME = Pattern.compile("(\\w+)\\s*\\(");
+
+    private int jitterSeed = 0;
+
+    public StubAIService() throws IOException {
+        super();
+    }
+
+    @Override
+    public void configure(Map<String, Object> config) {
+        super.configure(config);
+        this.jitterSeed = getConfigInt("jitter_seed", 0);
+    }
+
+    /**
+     * The stub request is the same query data array that the live providers send.
+     */
+    @Override
+    protected String buildRequestPayload(QueryBatch batch) throws IOException {
+        return buildQueryDataArray(batch);
+    }
+
+    /**
+     * Waits for the configured latency and answers every query in the payload.
+     */
+    @Override
+    protected String sendApiRequest(String payload, int retryCount) throws IOException, InterruptedException {
+        long delay = getConfigInt("latency_ms", 0);
+        int jitterMs = getConfigInt("jitter_ms", 0);
+        if (jitterMs > 0) {
+            delay += jitterFor(payload, jitterMs);
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+
+        ArrayNode recommendations = objectMapper.createArrayNode();
+        JsonNode queries = objectMapper.readTree(payload);
+        for (JsonNode query : queries) {
+            recommendations.add(respondTo(query.path("method").asText()));
+        }
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.set("recommendations", recommendations);
+        ObjectNode usage = root.putObject("usage");
+        usage.put("input_tokens", estimateTokens(systemPrompt) + estimateTokens(payload));
+        usage.put("output_tokens", estimateTokens(objectMapper.writeValueAsString(recommendations)));
+
+        String response = objectMapper.writeValueAsString(root);
+        recordTokenUsage(response);
+        return response;
+    }
+
+    /**
+     * Returns the jitter for a request, between 0 and {@code jitterMs} inclusive.
+     */
+    int jitterFor(String payload, int jitterMs) {
+        return new SplittableRandom(jitterSeed ^ AIResponseCache.key(payload).hashCode()).nextInt(jitterMs + 1);
+    }
+
+    /**
+     * Returns the canned recommendation for a method, or a "no change" recommendation if there
+     * is none.
+     */
+    private JsonNode respondTo(String method) throws IOException {
+        String dir = getConfigString("responses_dir", null);
+        if (dir != null) {
+            File canned = new File(dir, AIResponseCache.key(method) + ".json");
+            if (!canned.isFile()) {
+                Matcher m = METHOD_NAME.matcher(method);
+                canned = m.find() ? new File(dir, m.group(1) + ".json") : canned;
+            }
+            if (canned.isFile()) {
+                return objectMapper.readTree(canned);
+            }
+        }
+
+        ObjectNode recommendation = objectMapper.createObjectNode();
+        recommendation.put("originalMethod", method);
+        recommendation.put(OPTIMIZED_CODE_ELEMENT, method);
+        recommendation.put(NOTES, "N/A - stub provider");
+        return recommendation;
+    }
+
+    @Override
+    protected List<OptimizationIssue> parseResponse(String responseBody, QueryBatch batch) throws IOException {
+        JsonNode recommendations = objectMapper.readTree(responseBody).path("recommendations");
+        if (!recommendations.isArray()) {
+            return new ArrayList<>();
+        }
+        return parseRecommendationsFromJson(objectMapper.writeValueAsString(recommendations), batch);
+    }
+
+    @Override
+    protected void extractTokenUsage(String responseBody) throws IOException {
+        JsonNode usage = objectMapper.readTree(responseBody).path("usage");
+        int inputTokens = usage.path("input_tokens").asInt(0);
+        int outputTokens = usage.path("output_tokens").asInt(0);
+        double costPer1kTokens = getConfigDouble("cost_per_1k_tokens", 0.0);
+
+        lastTokenUsage = new TokenUsage(inputTokens, outputTokens, inputTokens + outputTokens, 0,
+                inputTokens / 1000.0 * costPer1kTokens, outputTokens / 1000.0 * costPer1kTokens);
+        if (getConfigBoolean("track_usage", true)) {
+            logger.debug("Stub token usage: {}", lastTokenUsage.getFormattedReport());
+        }
+    }
+
+    /**
+     * The stub needs no API key.
+     */
+    @Override
+    protected void validateConfig() {
+        // nothing to validate
+    }
+}
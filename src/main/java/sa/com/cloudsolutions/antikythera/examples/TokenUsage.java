@@ -12,6 +12,7 @@ public class TokenUsage {
     private double outputCost;
     private double estimatedCost;
     private int cachedContentTokenCount;
+    private double cacheSavings;
 
     public TokenUsage() {
         this.inputTokens = 0;
@@ -94,6 +95,18 @@ public class TokenUsage {
         this.cachedContentTokenCount = cachedContentTokenCount;
     }
 
+    /**
+     * Returns the input cost saved by serving cached content tokens at the cached rate
+     * instead of the regular input rate.
+     */
+    public double getCacheSavings() {
+        return cacheSavings;
+    }
+
+    public void setCacheSavings(double cacheSavings) {
+        this.cacheSavings = cacheSavings;
+    }
+
     /**
      * Adds token usage from another TokenUsage object to this one.
      * Used for accumulating usage across multiple API calls.
@@ -107,6 +120,7 @@ public class TokenUsage {
             this.outputCost += other.outputCost;
             this.estimatedCost += other.estimatedCost;
             this.cachedContentTokenCount += other.cachedContentTokenCount;
+            this.cacheSavings += other.cacheSavings;
         }
     }
 
@@ -116,8 +130,12 @@ public class TokenUsage {
     public String getFormattedReport() {
         if (cachedContentTokenCount > 0) {
             double cacheEfficiency = getCacheEfficiency();
-            return String.format("Token Usage: Input=%d, Output=%d, Total=%d, Cached=%d (%.1f%%), Estimated Cost=$%.4f",
+            String report = String.format("Token Usage: Input=%d, Output=%d, Total=%d, Cached=%d (%.1f%%), Estimated Cost=$%.4f",
                     inputTokens, outputTokens, totalTokens, cachedContentTokenCount, cacheEfficiency, estimatedCost);
+            if (cacheSavings > 0) {
+                report += String.format(", Cache Savings=$%.4f", cacheSavings);
+            }
+            return report;
         } else {
             return String.format("Token Usage: Input=%d, Output=%d, Total=%d, Estimated Cost=$%.4f",
                     inputTokens, outputTokens, totalTokens, estimatedCost);
@@ -137,7 +155,7 @@ public class TokenUsage {
 
     @Override
     public String toString() {
-        return String.format("TokenUsage{inputTokens=%d, outputTokens=%d, totalTokens=%d, cachedContentTokenCount=%d, estimatedCost=%.4f}",
-                inputTokens, outputTokens, totalTokens, cachedContentTokenCount, estimatedCost);
+        return String.format("TokenUsage{inputTokens=%d, outputTokens=%d, totalTokens=%d, cachedContentTokenCount=%d, estimatedCost=%.4f, cacheSavings=%.4f}",
+                inputTokens, outputTokens, totalTokens, cachedContentTokenCount, estimatedCost, cacheSavings);
     }
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How often each repository method is called in production and how long it takes, as exported
+ * from an APM tool or from {@code pg_stat_statements} after mapping the statements to methods.
+ *
+ * <p>The file is either a CSV file with a header row or a JSON array of objects. Both use the
+ * same names: {@code method} ({@code UserRepository#findByEmail}, the class may be fully
+ * qualified and {@code .} may be used instead of {@code #}), {@code calls} and
+ * {@code mean_ms}. {@code total_ms} may be given instead of, or in addition to, the mean. The
+ * {@code pg_stat_statements} names {@code mean_exec_time} and {@code total_exec_time} are
+ * accepted as well.</p>
+ *
+ * <p>The time spent in a method is the benefit an index for its query can bring. Every index also
+ * has to be maintained on each write to its table; the writes are the calls of the save, update,
+ * insert and delete methods of the repositories of that table.</p>
+ */
+class WorkloadProfile {
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadProfile.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** Default estimated cost of maintaining one index on one write, in milliseconds. */
+    static final double DEFAULT_WRITE_COST_MS = 0.05;
+
+    private static final List<String> WRITE_PREFIXES = List.of(
+            "save", "update", "insert", "delete", "remove", "persist", "merge");
+    private static final List<String> METHOD_COLUMNS = List.of("method", "query", "name");
+    private static final List<String> CALLS_COLUMNS = List.of("calls", "count");
+    private static final List<String> MEAN_COLUMNS = List.of("mean_ms", "mean_exec_time", "mean_time", "latency_ms");
+    private static final List<String> TOTAL_COLUMNS = List.of("total_ms", "total_exec_time", "total_time");
+
+    /**
+     * The recorded load of one repository method.
+     *
+     * @param calls the number of calls
+     * @param totalMillis the time spent in all the calls together
+     */
+    record MethodStats(long calls, double totalMillis) {
+        double meanMillis() {
+            return calls == 0 ? 0 : totalMillis / calls;
+        }
+    }
+
+    private final Map<String, MethodStats> methods = new HashMap<>();
+    private final Map<String, Long> writesByRepository = new HashMap<>();
+    private final Map<String, Set<String>> repositoriesByTable = new HashMap<>();
+    private final double writeCostMillis;
+
+    WorkloadProfile(double writeCostMillis) {
+        this.writeCostMillis = writeCostMillis;
+    }
+
+    /**
+     * Reads the workload configured in the {@code query_optimizer.workload} section.
+     *
+     * @return the workload, or null if no workload file is configured
+     */
+    @SuppressWarnings("unchecked")
+    static WorkloadProfile fromConfiguration() throws IOException {
+        Map<String, Object> queryOptimizer = (Map<String, Object>) Settings.getProperty("query_optimizer");
+        if (queryOptimizer == null || !(queryOptimizer.get("workload") instanceof Map<?, ?> config)) {
+            return null;
+        }
+        if (!(config.get("file") instanceof String file) || file.isBlank()) {
+            logger.warn("query_optimizer.workload has no file, index suggestions are not weighted");
+            return null;
+        }
+        double writeCost = config.get("write_cost_ms") instanceof Number n ? n.doubleValue() : DEFAULT_WRITE_COST_MS;
+        WorkloadProfile profile = load(Path.of(file), writeCost);
+        logger.info("Loaded the workload of {} repository methods from {}", profile.size(), file);
+        return profile;
+    }
+
+    static WorkloadProfile load(Path file, double writeCostMillis) throws IOException {
+        WorkloadProfile profile = new WorkloadProfile(writeCostMillis);
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")) {
+            profile.readJson(file);
+        } else {
+            profile.readCsv(file);
+        }
+        return profile;
+    }
+
+    private void readJson(Path file) throws IOException {
+        JsonNode root = objectMapper.readTree(file.toFile());
+        if (!root.isArray()) {
+            throw new IOException("Expected a JSON array of method entries in " + file);
+        }
+        for (JsonNode entry : root) {
+            String method = text(entry, METHOD_COLUMNS);
+            String calls = text(entry, CALLS_COLUMNS);
+            add(method, calls, text(entry, MEAN_COLUMNS), text(entry, TOTAL_COLUMNS));
+        }
+    }
+
+    private static String text(JsonNode entry, List<String> names) {
+        for (String name : names) {
+            JsonNode value = entry.get(name);
+            if (value != null && !value.isNull()) {
+                return value.asText();
+            }
+        }
+        return null;
+    }
+
+    private void readCsv(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<String> header = ColumnStatistics.split(lines.get(0));
+        int method = indexOf(header, METHOD_COLUMNS);
+        int calls = indexOf(header, CALLS_COLUMNS);
+        int mean = indexOf(header, MEAN_COLUMNS);
+        int total = indexOf(header, TOTAL_COLUMNS);
+        if (method < 0 || calls < 0 || (mean < 0 && total < 0)) {
+            throw new IOException("Expected method, calls and mean_ms or total_ms columns in " + file);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            // quote-aware, pg_stat_statements query text is full of commas
+            List<String> cells = ColumnStatistics.split(line);
+            add(cell(cells, method), cell(cells, calls), cell(cells, mean), cell(cells, total));
+        }
+    }
+
+    private static int indexOf(List<String> header, List<String> names) {
+        for (int i = 0; i < header.size(); i++) {
+            if (names.contains(header.get(i).toLowerCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String cell(List<String> cells, int index) {
+        return index >= 0 && index < cells.size() && !cells.get(index).isEmpty() ? cells.get(index) : null;
+    }
+
+    private void add(String method, String calls, String mean, String total) {
+        if (method == null || calls == null) {
+            return;
+        }
+        try {
+            long callCount = (long) Double.parseDouble(calls);
+            double totalMillis = total != null
+                    ? Double.parseDouble(total)
+                    : mean != null ? Double.parseDouble(mean) * callCount : 0;
+            int separator = method.lastIndexOf('#') >= 0 ? method.lastIndexOf('#') : method.lastIndexOf('.');
+            if (separator <= 0 || separator == method.length() - 1) {
+                logger.debug("Skipping workload entry without a repository: {}", method);
+                return;
+            }
+            put(method.substring(0, separator), method.substring(separator + 1), callCount, totalMillis);
+        } catch (NumberFormatException e) {
+            logger.debug("Skipping workload entry {}: {}", method, e.getMessage());
+        }
+    }
+
+    /**
+     * Records the load of a repository method, adding to any load already recorded for it.
+     *
+     * @param repository the simple or fully qualified name of the repository
+     * @param method the method name
+     * @param calls the number of calls
+     * @param totalMillis the time spent in all the calls together
+     */
+    void put(String repository, String method, long calls, double totalMillis) {
+        methods.merge(repository + "#" + method, new MethodStats(calls, totalMillis),
+                (a, b) -> new MethodStats(a.calls() + b.calls(), a.totalMillis() + b.totalMillis()));
+        if (isWrite(method)) {
+            writesByRepository.merge(repository, calls, Long::sum);
+        }
+    }
+
+    private static boolean isWrite(String method) {
+        return WRITE_PREFIXES.stream().anyMatch(method::startsWith);
+    }
+
+    int size() {
+        return methods.size();
+    }
+
+    /**
+     * Finds the load of a repository method by the fully qualified name of the repository,
+     * falling back to its simple name.
+     *
+     * @return the load, or null if the method does not appear in the workload
+     */
+    MethodStats find(String repository, String method) {
+        if (repository == null || method == null) {
+            return null;
+        }
+        MethodStats stats = methods.get(repository + "#" + method);
+        return stats != null ? stats : methods.get(simpleName(repository) + "#" + method);
+    }
+
+    /**
+     * Records that a repository manages the rows of a table, so that the writes through the
+     * repository count towards the maintenance cost of the indexes on that table.
+     */
+    void mapRepository(String repository, String table) {
+        if (repository != null && table != null) {
+            repositoriesByTable.computeIfAbsent(table.toLowerCase(Locale.ROOT), t -> new LinkedHashSet<>()).add(repository);
+        }
+    }
+
+    /**
+     * The number of writes to a table through the repositories mapped to it.
+     */
+    long writesTo(String table) {
+        long writes = 0;
+        for (String repository : repositoriesByTable.getOrDefault(table.toLowerCase(Locale.ROOT), Set.of())) {
+            Long count = writesByRepository.get(repository);
+            writes += count != null ? count : writesByRepository.getOrDefault(simpleName(repository), 0L);
+        }
+        return writes;
+    }
+
+    /**
+     * The estimated time spent maintaining one more index on a table.
+     */
+    double writeCostMillis(String table) {
+        return writesTo(table) * writeCostMillis;
+    }
+
+    private static String simpleName(String repository) {
+        return repository.substring(repository.lastIndexOf('.') + 1);
+    }
+}
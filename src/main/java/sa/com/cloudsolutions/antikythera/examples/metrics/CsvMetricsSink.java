@@ -0,0 +1,74 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends one row per repository to a CSV file.
+ *
+ * <p>The file is opened once and kept open for the whole run. Rows are flushed every
+ * {@code flushEvery} repositories and when the sink is closed, instead of reopening the file for
+ * every repository. The header is written only when the file is new or empty.</p>
+ */
+public class CsvMetricsSink implements MetricsSink {
+    private final Path file;
+    private final int flushEvery;
+    private BufferedWriter writer;
+    private int pending;
+
+    public CsvMetricsSink(Path file, int flushEvery) {
+        this.file = file;
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    @Override
+    public void repository(RepositoryRecord repositoryRecord) throws IOException {
+        if (writer == null) {
+            boolean empty = !Files.exists(file) || Files.size(file) == 0;
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (empty) {
+                writer.write("Date,Repository Name," + String.join(",", repositoryRecord.counts().keySet()));
+                writer.newLine();
+            }
+        }
+
+        StringBuilder row = new StringBuilder();
+        row.append(repositoryRecord.date()).append(',').append(repositoryRecord.repository());
+        repositoryRecord.counts().values().forEach(count -> row.append(',').append(count));
+        writer.write(row.toString());
+        writer.newLine();
+
+        if (++pending >= flushEvery) {
+            writer.flush();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void summary(Metrics.Snapshot snapshot) throws IOException {
+        if (writer != null) {
+            writer.flush();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
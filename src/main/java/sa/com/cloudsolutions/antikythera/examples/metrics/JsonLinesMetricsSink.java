@@ -0,0 +1,96 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Appends the metrics as JSON objects, one per line.
+ *
+ * <p>Each repository gives a {@code "type": "repository"} line with its change counts and the
+ * milliseconds spent in each phase. The summary gives a {@code "type": "summary"} line with
+ * the counters and the latency percentiles of each phase and span.</p>
+ */
+public class JsonLinesMetricsSink implements MetricsSink {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path file;
+    private final int flushEvery;
+    private BufferedWriter writer;
+    private int pending;
+
+    public JsonLinesMetricsSink(Path file, int flushEvery) {
+        this.file = file;
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    @Override
+    public void repository(RepositoryRecord repositoryRecord) throws IOException {
+        ObjectNode line = objectMapper.createObjectNode();
+        line.put("type", "repository");
+        line.put("date", repositoryRecord.date().toString());
+        line.put("repository", repositoryRecord.repository());
+        ObjectNode counts = line.putObject("counts");
+        repositoryRecord.counts().forEach(counts::put);
+        ObjectNode phases = line.putObject("phases_ms");
+        repositoryRecord.phaseMillis().forEach((phase, millis) -> phases.put(phase.label(), millis));
+        write(line);
+
+        if (++pending >= flushEvery) {
+            writer.flush();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void summary(Metrics.Snapshot snapshot) throws IOException {
+        ObjectNode line = objectMapper.createObjectNode();
+        line.put("type", "summary");
+        line.put("timestamp", Instant.now().toString());
+        ObjectNode counters = line.putObject("counters");
+        snapshot.counters().forEach(counters::put);
+        ObjectNode phases = line.putObject("phases");
+        snapshot.phases().forEach((phase, summary) -> putSummary(phases.putObject(phase.label()), summary));
+        ObjectNode spans = line.putObject("spans");
+        snapshot.spans().forEach((name, summary) -> putSummary(spans.putObject(name), summary));
+        write(line);
+        writer.flush();
+        pending = 0;
+    }
+
+    private static void putSummary(ObjectNode node, LatencyHistogram.Summary summary) {
+        node.put("count", summary.count());
+        node.put("total_ms", summary.totalMs());
+        node.put("p50_ms", summary.p50Ms());
+        node.put("p90_ms", summary.p90Ms());
+        node.put("p99_ms", summary.p99Ms());
+        node.put("max_ms", summary.maxMs());
+    }
+
+    private void write(ObjectNode line) throws IOException {
+        if (writer == null) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        writer.write(objectMapper.writeValueAsString(line));
+        writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
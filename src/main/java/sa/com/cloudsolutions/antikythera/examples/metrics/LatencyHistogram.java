@@ -0,0 +1,123 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram with log-linear buckets.
+ *
+ * <p>Values are recorded in microseconds. Values below 16 microseconds get a bucket each,
+ * larger values share a bucket with the values of the same power of two and the same three
+ * leading bits, so a percentile is reported within 12.5% of the recorded value. Memory use is
+ * fixed, no matter how many values are recorded.</p>
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The smallest exponent with sub buckets: 2^4 = {@value #LINEAR_BUCKETS}. */
+    private static final int FIRST_EXPONENT = 4;
+    private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 1 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * The summary of a histogram at one point in time.
+     *
+     * @param count   the number of recorded values
+     * @param totalMs the sum of the recorded values
+     * @param p50Ms   the median
+     * @param p90Ms   the 90th percentile
+     * @param p99Ms   the 99th percentile
+     * @param maxMs   the largest recorded value
+     */
+    public record Summary(long count, double totalMs, double p50Ms, double p90Ms, double p99Ms, double maxMs) {}
+
+    public void recordNanos(long nanos) {
+        recordMicros(Math.max(0, nanos) / 1_000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Forgets the recorded values. Values recorded concurrently may or may not survive.
+     */
+    public void clear() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded values falls, in
+     * microseconds, or 0 if nothing was recorded.
+     *
+     * @param quantile a fraction between 0 and 1
+     */
+    public long percentileMicros(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(midpointOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public Summary summary() {
+        return new Summary(count.get(), toMillis(sum.get()), toMillis(percentileMicros(0.5)),
+                toMillis(percentileMicros(0.9)), toMillis(percentileMicros(0.99)), toMillis(max.get()));
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = FIRST_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+
+    private static long midpointOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = FIRST_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        return lowerBoundOf(bucket) + (1L << (exponent - SUB_BUCKET_BITS)) / 2;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1_000.0;
+    }
+}
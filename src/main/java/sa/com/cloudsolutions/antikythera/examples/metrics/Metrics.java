@@ -0,0 +1,170 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory counters, per phase latency histograms and named spans of a query optimizer run.
+ *
+ * <p>Everything is kept in memory and is safe to update from any thread; the sinks decide when
+ * and where it is written. Phase timings are also added up per repository, so that the row
+ * written for a repository can show where its time went. Typical use:</p>
+ * <pre>
+ * try (Metrics.Timer timer = Metrics.time(Phase.PARSE, repositoryName)) {
+ *     parser.compile(path);
+ * }
+ * </pre>
+ *
+ * <p>Spans time a single named step, such as one AI request, with a histogram per name. Both
+ * phases and spans are also emitted as {@link SpanEvent} JFR events, so a flight recording
+ * shows them on the timeline of the thread that ran them.</p>
+ */
+public final class Metrics {
+    private static final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Map<Phase, AtomicLong>> repositoryNanos = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> spans = new ConcurrentHashMap<>();
+
+    static {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    private Metrics() {
+        /* not to be instantiated */
+    }
+
+    /**
+     * A running measurement of a phase or a span, recorded when it is closed.
+     */
+    public static final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final String span;
+        private final String repository;
+        private final SpanEvent event = new SpanEvent();
+        private final long start;
+        private boolean closed;
+
+        private Timer(Phase phase, String span, String repository) {
+            this.phase = phase;
+            this.span = span;
+            this.repository = repository;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long nanos = System.nanoTime() - start;
+            if (phase != null) {
+                record(phase, repository, nanos);
+            } else {
+                recordSpan(span, nanos);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.span = span;
+                event.phase = phase == null ? null : phase.label();
+                event.repository = repository;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Everything recorded so far.
+     *
+     * @param counters the counters, by name
+     * @param phases   the latency summary of each phase that was measured at least once
+     * @param spans    the latency summary of each span, by name
+     */
+    public record Snapshot(Map<String, Long> counters, Map<Phase, LatencyHistogram.Summary> phases,
+                           Map<String, LatencyHistogram.Summary> spans) {}
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase      the phase
+     * @param repository the repository the work is done for, or {@code null} if the time should
+     *                   only go into the phase histogram
+     */
+    public static Timer time(Phase phase, String repository) {
+        return new Timer(phase, phase.label(), repository);
+    }
+
+    /**
+     * Starts timing a named step.
+     *
+     * @param name       the span name, usually the name of the method doing the work
+     * @param repository the repository the work is done for, or {@code null}; only used to
+     *                   label the JFR event
+     */
+    public static Timer span(String name, String repository) {
+        return new Timer(null, name, repository);
+    }
+
+    public static void recordSpan(String name, long nanos) {
+        spans.computeIfAbsent(name, k -> new LatencyHistogram()).recordNanos(nanos);
+    }
+
+    public static void record(Phase phase, String repository, long nanos) {
+        histograms.get(phase).recordNanos(nanos);
+        if (repository != null) {
+            repositoryNanos.computeIfAbsent(repository, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(phase, k -> new AtomicLong())
+                    .addAndGet(nanos);
+        }
+    }
+
+    public static void increment(String counter, long delta) {
+        counters.computeIfAbsent(counter, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public static LatencyHistogram histogram(Phase phase) {
+        return histograms.get(phase);
+    }
+
+    /**
+     * Removes and returns the time spent on a repository, in milliseconds per phase.
+     */
+    public static Map<Phase, Long> takeRepositoryMillis(String repository) {
+        Map<Phase, Long> result = new EnumMap<>(Phase.class);
+        Map<Phase, AtomicLong> nanos = repository == null ? null : repositoryNanos.remove(repository);
+        if (nanos != null) {
+            nanos.forEach((phase, value) -> result.put(phase, value.get() / 1_000_000));
+        }
+        return result;
+    }
+
+    public static Snapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, value) -> counterValues.put(name, value.get()));
+        Map<Phase, LatencyHistogram.Summary> phases = new EnumMap<>(Phase.class);
+        histograms.forEach((phase, histogram) -> {
+            if (histogram.getCount() > 0) {
+                phases.put(phase, histogram.summary());
+            }
+        });
+        Map<String, LatencyHistogram.Summary> spanSummaries = new TreeMap<>();
+        spans.forEach((name, histogram) -> spanSummaries.put(name, histogram.summary()));
+        return new Snapshot(counterValues, phases, spanSummaries);
+    }
+
+    /**
+     * Forgets everything recorded so far. Useful for testing.
+     */
+    public static void reset() {
+        histograms.values().forEach(LatencyHistogram::clear);
+        counters.clear();
+        repositoryNanos.clear();
+        spans.clear();
+    }
+}
@@ -0,0 +1,33 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * A destination for the metrics of a query optimizer run.
+ *
+ * <p>Sinks are called from a single thread. They may buffer what they are given; everything
+ * has to be on disk once {@link #close()} returns.</p>
+ */
+public interface MetricsSink extends Closeable {
+
+    /**
+     * The statistics of one repository.
+     *
+     * @param date        the day the repository was processed
+     * @param repository  the fully qualified name of the repository
+     * @param counts      the change counts, by column label, in column order
+     * @param phaseMillis the time spent on the repository in each phase
+     */
+    record RepositoryRecord(LocalDate date, String repository, Map<String, Integer> counts,
+                            Map<Phase, Long> phaseMillis) {}
+
+    void repository(RepositoryRecord repositoryRecord) throws IOException;
+
+    /**
+     * Publishes the run wide counters and latency percentiles.
+     */
+    void summary(Metrics.Snapshot snapshot) throws IOException;
+}
@@ -0,0 +1,30 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+/**
+ * The stages of the query optimizer whose latency is measured.
+ */
+public enum Phase {
+    /** Compiling a repository and building its queries. */
+    PARSE("parse"),
+    /** Waiting for the AI service to answer the query batches of a repository. */
+    LLM("llm"),
+    /** Checking the AI recommendations against the known indexes. */
+    INDEX_ANALYSIS("index_analysis"),
+    /** Updating the repository and the callers of renamed methods. */
+    REWRITE("rewrite"),
+    /** Printing and saving a single source file. */
+    WRITE("write");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    /**
+     * The name used for the phase in the metrics files.
+     */
+    public String label() {
+        return label;
+    }
+}
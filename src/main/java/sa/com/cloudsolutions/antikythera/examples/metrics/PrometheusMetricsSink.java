@@ -0,0 +1,90 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Writes the metrics in the Prometheus text exposition format, for the node exporter's
+ * textfile collector.
+ *
+ * <p>The file only ever holds the latest summary: it is written to a temporary file that then
+ * replaces the target, so the collector never sees a partial file. Repository rows are not
+ * exported; their counts show up in the counters.</p>
+ */
+public class PrometheusMetricsSink implements MetricsSink {
+    static final String PREFIX = "antikythera_query_optimizer_";
+
+    private final Path file;
+
+    public PrometheusMetricsSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void repository(RepositoryRecord repositoryRecord) {
+        // only the summary is exported
+    }
+
+    @Override
+    public void summary(Metrics.Snapshot snapshot) throws IOException {
+        StringBuilder out = new StringBuilder();
+        snapshot.counters().forEach((name, value) -> {
+            String metric = PREFIX + sanitize(name) + "_total";
+            out.append("# TYPE ").append(metric).append(" counter\n");
+            out.append(metric).append(' ').append(value).append('\n');
+        });
+
+        String phaseMetric = PREFIX + "phase_duration_seconds";
+        out.append("# HELP ").append(phaseMetric).append(" Time spent in each phase of the query optimizer.\n");
+        out.append("# TYPE ").append(phaseMetric).append(" summary\n");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram.Summary summary = snapshot.phases().get(phase);
+            if (summary != null) {
+                appendSummary(out, phaseMetric, "phase", phase.label(), summary);
+            }
+        }
+
+        if (!snapshot.spans().isEmpty()) {
+            String spanMetric = PREFIX + "span_duration_seconds";
+            out.append("# HELP ").append(spanMetric).append(" Time spent in each named step of the query optimizer.\n");
+            out.append("# TYPE ").append(spanMetric).append(" summary\n");
+            snapshot.spans().forEach((name, summary) -> appendSummary(out, spanMetric, "span", name, summary));
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, out, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void appendSummary(StringBuilder out, String metric, String label, String value,
+                                      LatencyHistogram.Summary summary) {
+        appendQuantile(out, metric, label, value, "0.5", summary.p50Ms());
+        appendQuantile(out, metric, label, value, "0.9", summary.p90Ms());
+        appendQuantile(out, metric, label, value, "0.99", summary.p99Ms());
+        out.append(String.format(Locale.ROOT, "%s_sum{%s=\"%s\"} %.6f%n", metric, label, value,
+                summary.totalMs() / 1_000.0));
+        out.append(String.format(Locale.ROOT, "%s_count{%s=\"%s\"} %d%n", metric, label, value, summary.count()));
+    }
+
+    private static void appendQuantile(StringBuilder out, String metric, String label, String value,
+                                       String quantile, double millis) {
+        out.append(String.format(Locale.ROOT, "%s{%s=\"%s\",quantile=\"%s\"} %.6f%n", metric, label, value,
+                quantile, millis / 1_000.0));
+    }
+
+    private static String sanitize(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+    }
+
+    @Override
+    public void close() {
+        // written in full by every summary
+    }
+}
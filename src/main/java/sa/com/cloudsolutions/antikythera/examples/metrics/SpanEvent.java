@@ -0,0 +1,32 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for each closed {@link Metrics.Timer}.
+ *
+ * <p>The events are only recorded while a recording with this event enabled is running, for
+ * example after starting the JVM with {@code -XX:StartFlightRecording}. They show up in JDK
+ * Mission Control under the Antikythera category, next to the JVM's own events.</p>
+ */
+@Name(SpanEvent.NAME)
+@Label("Antikythera Span")
+@Category({"Antikythera", "Query Optimizer"})
+@Description("A timed step of the query optimizer")
+@StackTrace(false)
+class SpanEvent extends jdk.jfr.Event {
+    static final String NAME = "sa.com.cloudsolutions.antikythera.Span";
+
+    @Label("Span")
+    String span;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Repository")
+    String repository;
+}
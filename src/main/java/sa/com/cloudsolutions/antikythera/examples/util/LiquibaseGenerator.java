@@ -2,12 +2,15 @@ package sa.com.cloudsolutions.antikythera.examples.util;
 
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -182,23 +185,29 @@ public class LiquibaseGenerator {
             return new WriteResult(null, false);
         }
 
+        try (ChangesetWriter writer = openChangesetWriter(masterFile)) {
+            writer.write(changesets);
+            return writer.commit();
+        }
+    }
+
+    /**
+     * Opens a new Liquibase changes file next to the master changelog, for changesets that are
+     * written as they are generated rather than collected first.
+     * <p>
+     * The changesets go to a temporary file. {@link ChangesetWriter#commit()} renames it and adds
+     * the include to the master changelog; closing the writer without committing discards it.
+     *
+     * @param masterFile the master Liquibase changelog file
+     * @return the writer, which must be closed
+     * @throws IOException if the temporary file cannot be created
+     */
+    public ChangesetWriter openChangesetWriter(Path masterFile) throws IOException {
         Path masterPath = masterFile.toAbsolutePath();
-        Path dir = masterPath.getParent();
         String timestamp = new SimpleDateFormat("yyyyMMddHHmmss", Locale.ROOT).format(new Date());
         long nanos = System.nanoTime() % 1000000; // Get microsecond precision
         String fileName = "antikythera-" + config.filePrefix() + "-" + timestamp + "-" + nanos + ".xml";
-        Path outputFile = dir.resolve(fileName);
-
-        String content = createLiquibaseDocument(changesets);
-        PrintWriter writer = new PrintWriter(outputFile.toFile());
-        writer.println(content);
-        writer.close();
-
-        // Update master file to include the new changeset file using relative path
-        String relativePath = dir.relativize(outputFile).toString();
-        updateMasterFile(masterPath, relativePath);
-
-        return new WriteResult(outputFile.toFile(), true);
+        return new ChangesetWriter(masterPath, masterPath.getParent().resolve(fileName));
     }
 
     /**
@@ -558,16 +567,17 @@ public class LiquibaseGenerator {
         return input.replaceAll("\\W", "_");
     }
 
-    private String createLiquibaseDocument(String changesets) {
-        return """
-                <?xml version="1.0" encoding="UTF-8"?>
-                <databaseChangeLog xmlns="http://www.liquibase.org/xml/ns/dbchangelog"
-                                   xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
-                                   xsi:schemaLocation="http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.0.xsd">
-                %s
-                </databaseChangeLog>
-                """.formatted(changesets);
-    }
+    private static final String DOCUMENT_HEADER = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <databaseChangeLog xmlns="http://www.liquibase.org/xml/ns/dbchangelog"
+                               xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                               xsi:schemaLocation="http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.0.xsd">
+            """;
+    private static final String DOCUMENT_FOOTER = """
+
+            </databaseChangeLog>
+
+            """;
 
     private void updateMasterFile(Path masterFile, String fileName) throws IOException {
         String masterText = Files.readString(masterFile, StandardCharsets.UTF_8);
@@ -583,9 +593,18 @@ public class LiquibaseGenerator {
             int idx = masterText.lastIndexOf("</databaseChangeLog>");
 
             String updated = masterText.substring(0, idx) + includeTag + "\n" + masterText.substring(idx);
-            try (PrintWriter writer = new PrintWriter(masterFile.toFile())) {
-                writer.println(updated);
-            }
+            // Replace the master in one step so that Liquibase never reads a half written changelog
+            Path tmp = masterFile.resolveSibling(masterFile.getFileName() + ".tmp");
+            Files.writeString(tmp, updated + System.lineSeparator(), StandardCharsets.UTF_8);
+            moveAtomically(tmp, masterFile);
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -741,6 +760,85 @@ public class LiquibaseGenerator {
         }
     }
 
+    /**
+     * Streams changesets into a new Liquibase changes file, holding none of them in memory.
+     * Changesets written one after the other are separated by a line break.
+     */
+    public final class ChangesetWriter implements Closeable {
+        private final Path masterFile;
+        private final Path changesFile;
+        private final Path tmpFile;
+        private final BufferedWriter writer;
+        private int count;
+        private boolean committed;
+
+        private ChangesetWriter(Path masterFile, Path changesFile) throws IOException {
+            this.masterFile = masterFile;
+            this.changesFile = changesFile;
+            this.tmpFile = changesFile.resolveSibling(changesFile.getFileName() + ".tmp");
+            this.writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8);
+            writer.write(DOCUMENT_HEADER);
+        }
+
+        /**
+         * Appends changesets, or comments between them, to the changes file.
+         */
+        public void write(String changesets) throws IOException {
+            if (changesets == null || changesets.isEmpty()) {
+                return;
+            }
+            if (count++ > 0) {
+                writer.write("\n");
+            }
+            writer.write(changesets);
+        }
+
+        /**
+         * The number of pieces written so far.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Completes the changes file and includes it in the master changelog. Nothing is written
+         * if no changesets were.
+         *
+         * @return the changes file, or a result with {@code wasWritten} false if it was empty
+         */
+        public WriteResult commit() throws IOException {
+            if (count == 0) {
+                close();
+                return new WriteResult(null, false);
+            }
+            writer.write(DOCUMENT_FOOTER);
+            writer.close();
+            moveAtomically(tmpFile, changesFile);
+            try {
+                // Update master file to include the new changeset file using relative path
+                updateMasterFile(masterFile, masterFile.getParent().relativize(changesFile).toString());
+            } catch (IOException e) {
+                Files.deleteIfExists(changesFile);
+                throw e;
+            }
+            committed = true;
+            return new WriteResult(changesFile.toFile(), true);
+        }
+
+        /**
+         * Discards the changes file unless it was committed, including after a commit that
+         * failed part way.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                committed = true;
+                writer.close();
+                Files.deleteIfExists(tmpFile);
+            }
+        }
+    }
+
     /**
      * Result of a changeset file write operation.
      */
@@ -14,10 +14,13 @@ import liquibase.database.OfflineConnection;
 import liquibase.exception.LiquibaseException;
 import liquibase.parser.ChangeLogParser;
 import liquibase.parser.ChangeLogParserFactory;
+import liquibase.precondition.core.PreconditionContainer;
 import liquibase.resource.DirectoryResourceAccessor;
+import sa.com.cloudsolutions.liquibase.ChangelogTree;
 import sa.com.cloudsolutions.liquibase.LiquibaseResourceUtil;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -119,11 +122,16 @@ public class LiquibaseValidator {
 
                     try (Database database = DatabaseFactory.getInstance()
                             .findCorrectDatabaseImplementation(new OfflineConnection(offlineUri, resourceAccessor))) {
-                        // Parse the changelog
-                        DatabaseChangeLog changeLog = parser.parse(
-                                relativeChangelogPath,
-                                new ChangeLogParameters(database),
-                                resourceAccessor);
+                        DatabaseChangeLog changeLog = ChangelogTree.isParallel()
+                                ? parseInParallel(resourceRoot, relativeChangelogPath, database)
+                                : null;
+                        if (changeLog == null) {
+                            // Parse the changelog
+                            changeLog = parser.parse(
+                                    relativeChangelogPath,
+                                    new ChangeLogParameters(database),
+                                    resourceAccessor);
+                        }
 
                         if (changeLog == null) {
                             errors.add("Failed to parse changelog file");
@@ -167,6 +175,37 @@ public class LiquibaseValidator {
         return new ValidationResult(errors.isEmpty(), errors, warnings);
     }
 
+    /**
+     * Parses the leaf files of the changelog tree concurrently and assembles their changesets,
+     * in order, into the master changelog, the way Liquibase resolves the includes. The result
+     * is validated as a whole, exactly like a serially parsed changelog.
+     *
+     * @return the master changelog, or null if the tree can't be split up and has to be parsed serially
+     */
+    private DatabaseChangeLog parseInParallel(Path resourceRoot, String relativeChangelogPath, Database database)
+            throws IOException, LiquibaseException {
+        List<String> leaves = ChangelogTree.leaves(resourceRoot, relativeChangelogPath);
+        if (leaves == null || leaves.size() < 2) {
+            return null;
+        }
+
+        DatabaseChangeLog master = new DatabaseChangeLog(relativeChangelogPath);
+        master.setChangeLogParameters(new ChangeLogParameters(database));
+        for (DatabaseChangeLog leaf : ChangelogTree.parseLeaves(resourceRoot, leaves,
+                () -> new ChangeLogParameters(database))) {
+            if (leaf.getPreconditions() != null) {
+                if (master.getPreconditions() == null) {
+                    master.setPreconditions(new PreconditionContainer());
+                }
+                master.getPreconditions().addNestedPrecondition(leaf.getPreconditions());
+            }
+            for (ChangeSet changeSet : leaf.getChangeSets()) {
+                master.addChangeSet(changeSet);
+            }
+        }
+        return master;
+    }
+
     /**
      * Validates a changelog against a database.
      */
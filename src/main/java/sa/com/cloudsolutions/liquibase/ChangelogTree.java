@@ -0,0 +1,292 @@
+package sa.com.cloudsolutions.liquibase;
+
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.exception.LiquibaseException;
+import liquibase.parser.ChangeLogParser;
+import liquibase.parser.ChangeLogParserFactory;
+import liquibase.resource.DirectoryResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Parallel parsing of a Liquibase changelog tree.
+ *
+ * <p>Liquibase follows {@code include} and {@code includeAll} directives while it parses, so a
+ * master changelog with hundreds of included files is parsed one file after the other. This
+ * class first discovers the include tree by scanning the XML of the including files, then
+ * parses the leaf files (the ones holding the changesets) concurrently on the common fork/join
+ * pool. Leaves are returned in the order Liquibase would have visited them, so replaying their
+ * changesets gives the same result as a serial parse.</p>
+ *
+ * <p>Only trees whose including files do nothing but include are handled: a file mixing
+ * changesets with includes, declaring changelog properties, or using {@code includeAll} filters
+ * and comparators makes {@link #leaves} return {@code null} and callers parse serially.</p>
+ *
+ * <p>Parallel parsing is off unless the {@value #PARALLEL_PROPERTY} system property is
+ * {@code true} or it is switched on with {@link #setParallel}.</p>
+ */
+public final class ChangelogTree {
+    private static final Logger logger = LoggerFactory.getLogger(ChangelogTree.class);
+    public static final String PARALLEL_PROPERTY = "antikythera.liquibase.parallel";
+
+    private static final Set<String> CHANGELOG_EXTENSIONS = Set.of("xml", "yaml", "yml", "json", "sql");
+    private static final Set<String> UNSUPPORTED_INCLUDE_ALL_ATTRIBUTES = Set.of(
+            "filter", "resourceFilter", "resourceComparator", "minDepth", "maxDepth", "endsWithFilter");
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private static volatile boolean parallel = Boolean.getBoolean(PARALLEL_PROPERTY);
+
+    private ChangelogTree() {
+        /* utility class */
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    public static boolean isParallel() {
+        return parallel;
+    }
+
+    public static void setParallel(boolean enabled) {
+        parallel = enabled;
+    }
+
+    /**
+     * Finds the files of a changelog tree that hold changesets.
+     *
+     * @param root      the resource root include paths are resolved against
+     * @param changelog the master changelog, relative to the root
+     * @return the leaf files relative to the root, in Liquibase's execution order, or
+     *         {@code null} if the tree can't be split up safely
+     */
+    public static List<String> leaves(Path root, String changelog) throws IOException {
+        return leaves(root, changelog, new HashSet<>());
+    }
+
+    /**
+     * Like {@link #leaves(Path, String)}, also collecting the files that include other files.
+     */
+    public static List<String> leaves(Path root, String changelog, Set<String> includers) throws IOException {
+        List<String> leaves = new ArrayList<>();
+        String master = normalize(root, root.resolve(Indexes.normalizePath(changelog)));
+        return master != null && collect(root, master, leaves, includers, new HashSet<>()) ? leaves : null;
+    }
+
+    private static boolean collect(Path root, String file, List<String> leaves, Set<String> includers,
+                                   Set<String> seen) throws IOException {
+        Path path = root.resolve(file);
+        if (!Files.isRegularFile(path) || !seen.add(file)) {
+            // missing files and files included twice are left to Liquibase to report or skip
+            return false;
+        }
+
+        List<String> includes = file.toLowerCase(Locale.ROOT).endsWith(".xml")
+                ? scanIncludes(root, path)
+                : scanNonXml(path);
+        if (includes == null) {
+            return false;
+        }
+        if (includes.isEmpty()) {
+            leaves.add(file);
+            return true;
+        }
+        includers.add(file);
+        for (String include : includes) {
+            if (include == null || !collect(root, include, leaves, includers, seen)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists the files an XML changelog includes.
+     *
+     * @return the included files, an empty list for a leaf, or {@code null} if the file
+     *         mixes changesets and includes or uses anything this class does not model
+     */
+    private static List<String> scanIncludes(Path root, Path path) throws IOException {
+        List<String> includes = new ArrayList<>();
+        boolean hasChangeSets = false;
+        try (InputStream in = Files.newInputStream(path)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 1 && !reader.getLocalName().equals("databaseChangeLog")) {
+                        return null;
+                    }
+                    if (depth == 2) {
+                        switch (reader.getLocalName()) {
+                            case "changeSet" -> hasChangeSets = true;
+                            case "include" -> {
+                                String include = resolveInclude(root, path, reader, "file");
+                                if (include == null || isTrue(reader.getAttributeValue(null, "ignore"))) {
+                                    return null;
+                                }
+                                includes.add(include);
+                            }
+                            case "includeAll" -> {
+                                for (String attribute : UNSUPPORTED_INCLUDE_ALL_ATTRIBUTES) {
+                                    if (reader.getAttributeValue(null, attribute) != null) {
+                                        return null;
+                                    }
+                                }
+                                String dir = resolveInclude(root, path, reader, "path");
+                                List<String> files = dir == null ? null : listDirectory(root, root.resolve(dir));
+                                if (files == null) {
+                                    return null;
+                                }
+                                includes.addAll(files);
+                            }
+                            case "preConditions", "comment" -> {
+                                // no effect on the changesets
+                            }
+                            default -> {
+                                // properties and other changelog level elements need the whole tree
+                                return null;
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            // let Liquibase report the error
+            return null;
+        }
+        return hasChangeSets && !includes.isEmpty() ? null : includes;
+    }
+
+    /**
+     * YAML and JSON changelogs are treated as leaves unless they mention includes; SQL
+     * changelogs can't include other files.
+     */
+    private static List<String> scanNonXml(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".sql")) {
+            return List.of();
+        }
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        return content.contains("include") || content.contains("property") ? null : List.of();
+    }
+
+    private static String resolveInclude(Path root, Path includer, XMLStreamReader reader, String attribute) {
+        String value = reader.getAttributeValue(null, attribute);
+        if (value == null || value.isBlank() || value.contains("${")) {
+            return null;
+        }
+        String relative = Indexes.normalizePath(value.trim());
+        Path resolved = isTrue(reader.getAttributeValue(null, "relativeToChangelogFile"))
+                ? includer.getParent().resolve(relative)
+                : root.resolve(relative);
+        return normalize(root, resolved);
+    }
+
+    /**
+     * The changelog files of an {@code includeAll} directory, in Liquibase's alphabetical order.
+     * Nested directories are not modelled.
+     */
+    private static List<String> listDirectory(Path root, Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            for (Path child : listing.sorted().toList()) {
+                if (Files.isDirectory(child)) {
+                    return null;
+                }
+                String name = child.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                if (dot > 0 && CHANGELOG_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+                    files.add(normalize(root, child));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String normalize(Path root, Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        if (!normalized.startsWith(absoluteRoot)) {
+            return null;
+        }
+        return absoluteRoot.relativize(normalized).toString().replace(File.separatorChar, '/');
+    }
+
+    private static boolean isTrue(String value) {
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Parses leaf changelogs concurrently.
+     *
+     * @param root       the resource root
+     * @param leaves     the files to parse, as returned by {@link #leaves}
+     * @param parameters creates the changelog parameters for each file
+     * @return the parsed changelogs, in the same order as {@code leaves}
+     */
+    public static List<DatabaseChangeLog> parseLeaves(Path root, List<String> leaves,
+                                                      Supplier<ChangeLogParameters> parameters)
+            throws LiquibaseException {
+        List<Callable<DatabaseChangeLog>> tasks = new ArrayList<>();
+        for (String leaf : leaves) {
+            tasks.add(() -> parse(root, leaf, parameters.get()));
+        }
+
+        List<DatabaseChangeLog> changeLogs = new ArrayList<>();
+        try {
+            for (Future<DatabaseChangeLog> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                changeLogs.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LiquibaseException("Interrupted while parsing " + leaves.size() + " changelog files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LiquibaseException le) {
+                throw le;
+            }
+            throw new LiquibaseException(e.getCause());
+        }
+        logger.debug("Parsed {} changelog files in parallel", leaves.size());
+        return changeLogs;
+    }
+
+    static DatabaseChangeLog parse(Path root, String file, ChangeLogParameters parameters) throws LiquibaseException {
+        DirectoryResourceAccessor accessor = new DirectoryResourceAccessor(root);
+        ChangeLogParser parser = ChangeLogParserFactory.getInstance().getParser(file, accessor);
+        return parser.parse(file, parameters, accessor);
+    }
+}
@@ -0,0 +1,276 @@
+package sa.com.cloudsolutions.liquibase;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import liquibase.exception.LiquibaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import sa.com.cloudsolutions.liquibase.Indexes.IndexOp;
+import sa.com.cloudsolutions.liquibase.Indexes.LoadResult;
+import sa.com.cloudsolutions.liquibase.Indexes.ParsedChangeSet;
+
+import static sa.com.cloudsolutions.liquibase.LiquibaseResourceUtil.determineResourceRoot;
+import static sa.com.cloudsolutions.liquibase.LiquibaseResourceUtil.getRelativeChangelogPath;
+
+/**
+ * Persistent snapshot of the index model built from a Liquibase changelog tree.
+ *
+ * <p>Parsing a large changelog with Liquibase is by far the slowest part of loading the index
+ * model, yet between two runs usually nothing or only the newest changelog file has changed.
+ * The snapshot records the operations of every changeset, grouped by the file they came from,
+ * together with a SHA-256 hash of each file and a fingerprint of each directory holding one.</p>
+ *
+ * <ul>
+ *   <li>If nothing changed the model is replayed from the snapshot without invoking Liquibase.</li>
+ *   <li>If only files without includes changed, just those files are parsed again and the
+ *       remaining operations are replayed from the snapshot, in the original order.</li>
+ *   <li>Anything else (an include list changed, a file was added to or removed from an
+ *       {@code includeAll} directory, a changed file uses changelog properties) falls back to a
+ *       full parse.</li>
+ * </ul>
+ *
+ * <p>The snapshot is off unless the {@value #DIRECTORY_PROPERTY} system property names the
+ * directory to keep snapshots in, one file per changelog, or one is set with
+ * {@link #setDirectory}.</p>
+ */
+final class IndexSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(IndexSnapshot.class);
+    static final String DIRECTORY_PROPERTY = "antikythera.liquibase.snapshot.dir";
+    /** Bump whenever the operations recorded for a changeset change meaning. */
+    static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static File directory = defaultDirectory();
+
+    /**
+     * The operations of consecutive changesets declared in the same file.
+     */
+    record Segment(String file, List<IndexOp> ops) {}
+
+    /**
+     * @param version         the {@link #FORMAT_VERSION} the snapshot was written with
+     * @param fileHashes      changelog file (relative to the resource root) to content hash
+     * @param directoryHashes directory of a changelog file to a hash of its file names
+     * @param includers       files that include other changelog files
+     * @param segments        the operations of the whole tree, in execution order
+     */
+    record Snapshot(int version, Map<String, String> fileHashes, Map<String, String> directoryHashes,
+                    Set<String> includers, List<Segment> segments) {}
+
+    private IndexSnapshot() {
+        /* utility class */
+    }
+
+    /**
+     * Returns the directory named by the {@value #DIRECTORY_PROPERTY} system property, or
+     * {@code null} if it is not set.
+     */
+    static File defaultDirectory() {
+        String configured = System.getProperty(DIRECTORY_PROPERTY, "");
+        return configured.isBlank() || configured.equalsIgnoreCase("none") ? null : new File(configured);
+    }
+
+    /**
+     * Changes the directory snapshots are kept in.
+     *
+     * @param dir the directory, or {@code null} to always parse the changelog in full
+     */
+    static void setDirectory(File dir) {
+        directory = dir;
+    }
+
+    /**
+     * Builds the index model for a changelog, reusing the snapshot where the files allow it.
+     */
+    static LoadResult load(File changelog) throws LiquibaseException, IOException {
+        Path root = determineResourceRoot(changelog);
+        String master = getRelativeChangelogPath(changelog, root);
+        if (directory == null) {
+            return replay(toSegments(Indexes.parseChangeSets(root, master, new HashSet<>())));
+        }
+
+        File snapshotFile = new File(directory, sha256(changelog.getAbsolutePath().getBytes(StandardCharsets.UTF_8)) + ".json");
+        Snapshot previous = read(snapshotFile);
+        Snapshot current = previous == null ? null : update(previous, root);
+        if (current == null) {
+            Set<String> includers = new HashSet<>();
+            List<Segment> segments = toSegments(Indexes.parseChangeSets(root, master, includers));
+            current = fingerprint(root, master, includers, segments);
+            if (current == null) {
+                // Some file could not be mapped back to the resource root, so it can't be tracked
+                return replay(segments);
+            }
+        }
+        if (!current.equals(previous)) {
+            write(snapshotFile, current);
+        }
+        return replay(current.segments());
+    }
+
+    /**
+     * Brings a snapshot up to date with the files on disk.
+     *
+     * @return the updated snapshot, or {@code null} if the changelog has to be parsed in full
+     */
+    private static Snapshot update(Snapshot previous, Path root) throws LiquibaseException, IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> entry : previous.fileHashes().entrySet()) {
+            Path file = root.resolve(entry.getKey());
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            String hash = sha256(Files.readAllBytes(file));
+            hashes.put(entry.getKey(), hash);
+            if (!hash.equals(entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        if (!directoryHashes(root, hashes.keySet()).equals(previous.directoryHashes())) {
+            return null;
+        }
+        if (changed.isEmpty()) {
+            return previous;
+        }
+
+        List<Segment> segments = new ArrayList<>(previous.segments());
+        for (String file : changed) {
+            if (previous.includers().contains(file)
+                    || Files.readString(root.resolve(file), StandardCharsets.UTF_8).contains("${")) {
+                return null;
+            }
+            int index = -1;
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i).file().equals(file)) {
+                    if (index != -1) {
+                        return null;
+                    }
+                    index = i;
+                }
+            }
+            if (index == -1) {
+                return null;
+            }
+
+            List<IndexOp> ops = new ArrayList<>();
+            for (ParsedChangeSet changeSet : Indexes.parseChangeSets(root, file, new HashSet<>())) {
+                if (!file.equals(changeSet.file())) {
+                    // The file now includes others
+                    return null;
+                }
+                ops.addAll(changeSet.ops());
+            }
+            segments.set(index, new Segment(file, ops));
+        }
+        logger.debug("Re-parsed {} of {} Liquibase changelog files", changed.size(), hashes.size());
+        return new Snapshot(FORMAT_VERSION, hashes, previous.directoryHashes(), previous.includers(), segments);
+    }
+
+    private static Snapshot fingerprint(Path root, String master, Set<String> includers, List<Segment> segments)
+            throws IOException {
+        Set<String> files = new HashSet<>(includers);
+        files.add(master);
+        for (Segment segment : segments) {
+            files.add(segment.file());
+            if (!master.equals(segment.file())) {
+                includers.add(master);
+            }
+        }
+
+        Map<String, String> hashes = new TreeMap<>();
+        for (String file : files) {
+            Path path = file == null ? null : root.resolve(file);
+            if (path == null || !Files.isRegularFile(path)) {
+                return null;
+            }
+            hashes.put(file, sha256(Files.readAllBytes(path)));
+        }
+        return new Snapshot(FORMAT_VERSION, hashes, directoryHashes(root, hashes.keySet()), includers, segments);
+    }
+
+    /**
+     * Hashes the names of the files in every directory holding a changelog file, so that files
+     * added to or removed from an {@code includeAll} directory are noticed.
+     */
+    private static Map<String, String> directoryHashes(Path root, Set<String> files) throws IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        for (String file : files) {
+            Path dir = root.resolve(file).getParent();
+            String key = root.relativize(dir).toString().replace(File.separatorChar, '/');
+            if (!hashes.containsKey(key)) {
+                try (Stream<Path> listing = Files.list(dir)) {
+                    String names = String.join("\n", listing.map(p -> p.getFileName().toString()).sorted().toList());
+                    hashes.put(key, sha256(names.getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private static List<Segment> toSegments(List<ParsedChangeSet> changeSets) {
+        List<Segment> segments = new ArrayList<>();
+        for (ParsedChangeSet changeSet : changeSets) {
+            Segment last = segments.isEmpty() ? null : segments.getLast();
+            if (last != null && last.file() != null && last.file().equals(changeSet.file())) {
+                last.ops().addAll(changeSet.ops());
+            } else {
+                segments.add(new Segment(changeSet.file(), new ArrayList<>(changeSet.ops())));
+            }
+        }
+        return segments;
+    }
+
+    private static LoadResult replay(List<Segment> segments) {
+        return Indexes.replay(segments.stream().map(Segment::ops).toList());
+    }
+
+    private static Snapshot read(File snapshotFile) {
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+        try {
+            Snapshot snapshot = objectMapper.readValue(snapshotFile, Snapshot.class);
+            return snapshot.version() == FORMAT_VERSION ? snapshot : null;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable Liquibase index snapshot {}: {}", snapshotFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(File snapshotFile, Snapshot snapshot) {
+        try {
+            Files.createDirectories(snapshotFile.getParentFile().toPath());
+            File tmp = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+            objectMapper.writeValue(tmp, snapshot);
+            Files.move(tmp.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write Liquibase index snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
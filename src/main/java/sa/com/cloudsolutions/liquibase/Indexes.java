@@ -8,9 +8,6 @@ import liquibase.exception.LiquibaseException;
 import liquibase.changelog.ChangeLogParameters;
 import liquibase.changelog.ChangeSet;
 import liquibase.changelog.DatabaseChangeLog;
-import liquibase.parser.ChangeLogParser;
-import liquibase.parser.ChangeLogParserFactory;
-import liquibase.resource.DirectoryResourceAccessor;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
@@ -22,9 +19,6 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.*;
 
-import static sa.com.cloudsolutions.liquibase.LiquibaseResourceUtil.determineResourceRoot;
-import static sa.com.cloudsolutions.liquibase.LiquibaseResourceUtil.getRelativeChangelogPath;
-
 @SuppressWarnings("java:S106")
 public class Indexes {
 
@@ -95,10 +89,7 @@ public class Indexes {
      * separately when FK information is also needed.
      */
     public static LoadResult loadAll(File liquibaseXml) throws LiquibaseException, java.io.IOException {
-        Map<String, Set<IndexInfo>> indexMap = new LinkedHashMap<>();
-        Map<String, Set<FKConstraintInfo>> fkMap = new LinkedHashMap<>();
-        parseLiquibaseFileInto(liquibaseXml, indexMap, fkMap);
-        return new LoadResult(indexMap, fkMap);
+        return IndexSnapshot.load(liquibaseXml);
     }
 
     /**
@@ -110,6 +101,15 @@ public class Indexes {
         return loadAll(liquibaseXml).indexMap();
     }
 
+    /**
+     * Changes the directory {@link #loadAll} keeps its index snapshots in.
+     *
+     * @param dir the directory, or {@code null} to always parse the changelog in full
+     */
+    public static void setSnapshotDirectory(File dir) {
+        IndexSnapshot.setDirectory(dir);
+    }
+
     /**
      * Looks up the FK constraint name for a specific FK relationship in the parsed
      * FK map.  The lookup is case-insensitive on all three identifiers.
@@ -175,57 +175,168 @@ public class Indexes {
         });
     }
 
-    private static void parseLiquibaseFileInto(File file,
-                                               Map<String, Set<IndexInfo>> indexResult,
-                                               Map<String, Set<FKConstraintInfo>> fkResult)
-            throws LiquibaseException, java.io.IOException {
-        // Determine the root path for resource resolution
-        // For Spring Boot projects, includes are relative to src/main/resources or
-        // src/test/resources
-        Path rootPath = determineResourceRoot(file);
-        DirectoryResourceAccessor accessor = new DirectoryResourceAccessor(rootPath);
+    /**
+     * A single effect of a changeset on the index or FK model. Changesets are reduced to these
+     * operations so that they can be replayed from a snapshot without parsing the changelog again.
+     */
+    record IndexOp(Kind kind, String table, String name, IndexInfo index, FKConstraintInfo fk) {
+        enum Kind { ADD_INDEX, ADD_FOREIGN_KEY, DROP_INDEX, DROP_PRIMARY_KEY, DROP_UNIQUE_CONSTRAINT }
+
+        static IndexOp add(String table, IndexInfo index) {
+            return new IndexOp(Kind.ADD_INDEX, table, null, index, null);
+        }
+
+        static IndexOp drop(Kind kind, String table, String name) {
+            return new IndexOp(kind, table, name, null, null);
+        }
+
+        void applyTo(Map<String, Set<IndexInfo>> indexMap, Map<String, Set<FKConstraintInfo>> fkMap) {
+            switch (kind) {
+                case ADD_INDEX -> Indexes.add(indexMap, table, index);
+                case ADD_FOREIGN_KEY -> fkMap.computeIfAbsent(table, k -> new LinkedHashSet<>()).add(fk);
+                case DROP_INDEX -> {
+                    if (isBlank(table)) {
+                        removeIndexByNameAnyTable(indexMap, name);
+                    } else {
+                        removeIndexByName(indexMap, table, name);
+                    }
+                }
+                case DROP_PRIMARY_KEY -> removePrimaryKey(indexMap, table, name);
+                case DROP_UNIQUE_CONSTRAINT -> removeUniqueConstraint(indexMap, table, name);
+            }
+        }
+    }
+
+    /**
+     * The operations of one changeset, with the changelog file it was declared in.
+     *
+     * @param file path of the changelog file relative to the resource root
+     * @param ops  the changeset's effects, in declaration order
+     */
+    record ParsedChangeSet(String file, List<IndexOp> ops) {}
 
-        // Get the changelog file path relative to the resource root
-        String changelogFile = getRelativeChangelogPath(file, rootPath);
-        ChangeLogParser parser = ChangeLogParserFactory.getInstance().getParser(changelogFile, accessor);
-        DatabaseChangeLog changeLog = parser.parse(changelogFile, new ChangeLogParameters(), accessor);
+    /**
+     * Parses a changelog, following its includes, and reduces every changeset to its operations.
+     *
+     * @param rootPath      the resource root includes are resolved against
+     * @param changelogFile the changelog path relative to the root
+     * @param includers     receives the files that include other changelog files
+     * @return the changesets in execution order
+     */
+    static List<ParsedChangeSet> parseChangeSets(Path rootPath, String changelogFile, Set<String> includers)
+            throws LiquibaseException {
+        if (ChangelogTree.isParallel()) {
+            List<ParsedChangeSet> result = parseChangeSetsInParallel(rootPath, changelogFile, includers);
+            if (result != null) {
+                return result;
+            }
+        }
 
+        DatabaseChangeLog changeLog = ChangelogTree.parse(rootPath, changelogFile, new ChangeLogParameters());
+        List<ParsedChangeSet> result = new ArrayList<>();
         for (ChangeSet changeSet : changeLog.getChangeSets()) {
-            for (Change change : changeSet.getChanges()) {
-                processChange(change, indexResult, fkResult);
+            List<IndexOp> ops = opsOf(changeSet);
+            DatabaseChangeLog declaredIn = changeSet.getChangeLog();
+            String file = declaredIn != null ? normalizePath(declaredIn.getPhysicalFilePath()) : changelogFile;
+            for (DatabaseChangeLog parent = declaredIn != null ? declaredIn.getParentChangeLog() : null;
+                 parent != null; parent = parent.getParentChangeLog()) {
+                includers.add(normalizePath(parent.getPhysicalFilePath()));
             }
+            result.add(new ParsedChangeSet(file, ops));
         }
+        return result;
     }
 
+    /**
+     * Parses the leaf files of the changelog tree concurrently.
+     *
+     * @return the changesets in execution order, or {@code null} if the tree has to be parsed serially
+     */
+    private static List<ParsedChangeSet> parseChangeSetsInParallel(Path rootPath, String changelogFile,
+                                                                   Set<String> includers) throws LiquibaseException {
+        Set<String> treeIncluders = new HashSet<>();
+        List<String> leaves;
+        try {
+            leaves = ChangelogTree.leaves(rootPath, changelogFile, treeIncluders);
+        } catch (java.io.IOException e) {
+            leaves = null;
+        }
+        if (leaves == null || leaves.size() < 2) {
+            return null;
+        }
+
+        List<DatabaseChangeLog> changeLogs = ChangelogTree.parseLeaves(rootPath, leaves, ChangeLogParameters::new);
+        List<ParsedChangeSet> result = new ArrayList<>();
+        for (int i = 0; i < leaves.size(); i++) {
+            for (ChangeSet changeSet : changeLogs.get(i).getChangeSets()) {
+                result.add(new ParsedChangeSet(leaves.get(i), opsOf(changeSet)));
+            }
+        }
+        includers.addAll(treeIncluders);
+        return result;
+    }
+
+    /**
+     * Replays changeset operations, in order, into a fresh {@link LoadResult}.
+     */
+    static LoadResult replay(List<List<IndexOp>> changes) {
+        Map<String, Set<IndexInfo>> indexMap = new LinkedHashMap<>();
+        Map<String, Set<FKConstraintInfo>> fkMap = new LinkedHashMap<>();
+        for (List<IndexOp> ops : changes) {
+            for (IndexOp op : ops) {
+                op.applyTo(indexMap, fkMap);
+            }
+        }
+        return new LoadResult(indexMap, fkMap);
+    }
 
-    private static void processChange(Change change,
-                                      Map<String, Set<IndexInfo>> result,
-                                      Map<String, Set<FKConstraintInfo>> fkResult) {
+    static String normalizePath(String physicalPath) {
+        if (physicalPath == null) {
+            return null;
+        }
+        String path = physicalPath.replace('\\', '/');
+        if (path.startsWith("classpath:")) {
+            path = path.substring("classpath:".length());
+        }
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path;
+    }
+
+    private static List<IndexOp> opsOf(ChangeSet changeSet) {
+        List<IndexOp> ops = new ArrayList<>();
+        for (Change change : changeSet.getChanges()) {
+            processChange(change, ops);
+        }
+        return ops;
+    }
+
+    private static void processChange(Change change, List<IndexOp> ops) {
         if (change instanceof CreateIndexChange cic) {
-            handleCreateIndex(cic, result);
+            handleCreateIndex(cic, ops);
         } else if (change instanceof AddPrimaryKeyChange apk) {
-            handleAddPrimaryKey(apk, result);
+            handleAddPrimaryKey(apk, ops);
         } else if (change instanceof AddUniqueConstraintChange auc) {
-            handleAddUniqueConstraint(auc, result);
+            handleAddUniqueConstraint(auc, ops);
         } else if (change instanceof AddForeignKeyConstraintChange afk) {
-            handleAddForeignKey(afk, fkResult);
+            handleAddForeignKey(afk, ops);
         } else if (change instanceof CreateTableChange ctc) {
-            handleCreateTable(ctc, result);
+            handleCreateTable(ctc, ops);
         } else if (change instanceof AddColumnChange acc) {
-            handleAddColumn(acc, result);
+            handleAddColumn(acc, ops);
         } else if (change instanceof DropIndexChange dic) {
-            handleDropIndex(dic, result);
+            handleDropIndex(dic, ops);
         } else if (change instanceof DropPrimaryKeyChange dpk) {
-            handleDropPrimaryKey(dpk, result);
+            handleDropPrimaryKey(dpk, ops);
         } else if (change instanceof DropUniqueConstraintChange duc) {
-            handleDropUniqueConstraint(duc, result);
+            handleDropUniqueConstraint(duc, ops);
         } else if (change instanceof AbstractSQLChange sqlChange) {
-            handleRawSql(sqlChange, result);
+            handleRawSql(sqlChange, ops);
         }
     }
 
-    private static void handleAddForeignKey(AddForeignKeyConstraintChange afk,
-                                            Map<String, Set<FKConstraintInfo>> fkResult) {
+    private static void handleAddForeignKey(AddForeignKeyConstraintChange afk, List<IndexOp> ops) {
         String baseTable = afk.getBaseTableName();
         String baseColumn = afk.getBaseColumnNames();
         String refTable = afk.getReferencedTableName();
@@ -234,16 +345,16 @@ public class Indexes {
 
         if (isBlank(baseTable) || isBlank(baseColumn) || isBlank(refTable)) return;
 
-        fkResult.computeIfAbsent(baseTable, k -> new LinkedHashSet<>())
-                .add(new FKConstraintInfo(
+        ops.add(new IndexOp(IndexOp.Kind.ADD_FOREIGN_KEY, baseTable, null, null,
+                new FKConstraintInfo(
                         orUnknown(constraintName),
                         baseTable,
                         baseColumn.trim(),
                         refTable,
-                        isBlank(refColumn) ? null : refColumn.trim()));
+                        isBlank(refColumn) ? null : refColumn.trim())));
     }
 
-    private static void handleCreateIndex(CreateIndexChange cic, Map<String, Set<IndexInfo>> result) {
+    private static void handleCreateIndex(CreateIndexChange cic, List<IndexOp> ops) {
         String tableName = cic.getTableName();
         if (isBlank(tableName))
             return;
@@ -257,20 +368,20 @@ public class Indexes {
 
         boolean unique = Boolean.TRUE.equals(cic.isUnique());
         String type = unique ? UNIQUE_INDEX : INDEX;
-        add(result, tableName, new IndexInfo(type, orUnknown(cic.getIndexName()), cols));
+        ops.add(IndexOp.add(tableName, new IndexInfo(type, orUnknown(cic.getIndexName()), cols)));
     }
 
-    private static void handleAddPrimaryKey(AddPrimaryKeyChange apk, Map<String, Set<IndexInfo>> result) {
-        addConstraint(result, apk.getTableName(), apk.getColumnNames(),
+    private static void handleAddPrimaryKey(AddPrimaryKeyChange apk, List<IndexOp> ops) {
+        addConstraint(ops, apk.getTableName(), apk.getColumnNames(),
                       PRIMARY_KEY, apk.getConstraintName());
     }
 
-    private static void handleAddUniqueConstraint(AddUniqueConstraintChange auc, Map<String, Set<IndexInfo>> result) {
-        addConstraint(result, auc.getTableName(), auc.getColumnNames(),
+    private static void handleAddUniqueConstraint(AddUniqueConstraintChange auc, List<IndexOp> ops) {
+        addConstraint(ops, auc.getTableName(), auc.getColumnNames(),
                       UNIQUE_CONSTRAINT, auc.getConstraintName());
     }
 
-    private static void addConstraint(Map<String, Set<IndexInfo>> result, String tableName,
+    private static void addConstraint(List<IndexOp> ops, String tableName,
                                        String columnNames, String type, String constraintName) {
         if (isBlank(tableName) || isBlank(columnNames))
             return;
@@ -279,10 +390,10 @@ public class Indexes {
         if (cols.isEmpty())
             return;
 
-        add(result, tableName, new IndexInfo(type, orUnknown(constraintName), cols));
+        ops.add(IndexOp.add(tableName, new IndexInfo(type, orUnknown(constraintName), cols)));
     }
 
-    private static void handleCreateTable(CreateTableChange ctc, Map<String, Set<IndexInfo>> result) {
+    private static void handleCreateTable(CreateTableChange ctc, List<IndexOp> ops) {
         String tableName = ctc.getTableName();
         if (isBlank(tableName))
             return;
@@ -300,18 +411,18 @@ public class Indexes {
                 }
                 if (Boolean.TRUE.equals(col.getConstraints().isUnique())) {
                     String uniqueName = col.getConstraints().getUniqueConstraintName();
-                    add(result, tableName,
-                            new IndexInfo(UNIQUE_CONSTRAINT, orUnknown(uniqueName), List.of(col.getName())));
+                    ops.add(IndexOp.add(tableName,
+                            new IndexInfo(UNIQUE_CONSTRAINT, orUnknown(uniqueName), List.of(col.getName()))));
                 }
             }
         }
 
         if (!pkCols.isEmpty()) {
-            add(result, tableName, new IndexInfo(PRIMARY_KEY, orUnknown(pkName), pkCols));
+            ops.add(IndexOp.add(tableName, new IndexInfo(PRIMARY_KEY, orUnknown(pkName), pkCols)));
         }
     }
 
-    private static void handleAddColumn(AddColumnChange acc, Map<String, Set<IndexInfo>> result) {
+    private static void handleAddColumn(AddColumnChange acc, List<IndexOp> ops) {
         String tableName = acc.getTableName();
         if (isBlank(tableName))
             return;
@@ -319,51 +430,47 @@ public class Indexes {
         for (ColumnConfig col : acc.getColumns()) {
             if (col.getConstraints() != null) {
                 if (Boolean.TRUE.equals(col.getConstraints().isPrimaryKey())) {
-                    add(result, tableName, new IndexInfo(PRIMARY_KEY,
+                    ops.add(IndexOp.add(tableName, new IndexInfo(PRIMARY_KEY,
                             orUnknown(col.getConstraints().getPrimaryKeyName()),
-                            List.of(col.getName())));
+                            List.of(col.getName()))));
                 }
                 if (Boolean.TRUE.equals(col.getConstraints().isUnique())) {
-                    add(result, tableName, new IndexInfo(UNIQUE_CONSTRAINT,
+                    ops.add(IndexOp.add(tableName, new IndexInfo(UNIQUE_CONSTRAINT,
                             orUnknown(col.getConstraints().getUniqueConstraintName()),
-                            List.of(col.getName())));
+                            List.of(col.getName()))));
                 }
             }
         }
     }
 
-    private static void handleDropIndex(DropIndexChange dic, Map<String, Set<IndexInfo>> result) {
+    private static void handleDropIndex(DropIndexChange dic, List<IndexOp> ops) {
         String indexName = dic.getIndexName();
         String tableName = dic.getTableName();
 
         if (!isBlank(indexName)) {
-            if (!isBlank(tableName)) {
-                removeIndexByName(result, tableName, indexName);
-            } else {
-                removeIndexByNameAnyTable(result, indexName);
-            }
+            ops.add(IndexOp.drop(IndexOp.Kind.DROP_INDEX, isBlank(tableName) ? null : tableName, indexName));
         }
     }
 
-    private static void handleDropPrimaryKey(DropPrimaryKeyChange dpk, Map<String, Set<IndexInfo>> result) {
+    private static void handleDropPrimaryKey(DropPrimaryKeyChange dpk, List<IndexOp> ops) {
         String tableName = dpk.getTableName();
         String constraintName = dpk.getConstraintName();
 
         if (!isBlank(tableName)) {
-            removePrimaryKey(result, tableName, constraintName);
+            ops.add(IndexOp.drop(IndexOp.Kind.DROP_PRIMARY_KEY, tableName, constraintName));
         }
     }
 
-    private static void handleDropUniqueConstraint(DropUniqueConstraintChange duc, Map<String, Set<IndexInfo>> result) {
+    private static void handleDropUniqueConstraint(DropUniqueConstraintChange duc, List<IndexOp> ops) {
         String tableName = duc.getTableName();
         String constraintName = duc.getConstraintName();
 
         if (!isBlank(tableName)) {
-            removeUniqueConstraint(result, tableName, constraintName);
+            ops.add(IndexOp.drop(IndexOp.Kind.DROP_UNIQUE_CONSTRAINT, tableName, constraintName));
         }
     }
 
-    private static void handleRawSql(AbstractSQLChange sqlChange, Map<String, Set<IndexInfo>> result) {
+    private static void handleRawSql(AbstractSQLChange sqlChange, List<IndexOp> ops) {
         String sql = sqlChange.getSql();
         if (isBlank(sql)) {
             return;
@@ -379,9 +486,9 @@ public class Indexes {
             Statements statements = CCJSqlParserUtil.parseStatements(sql);
             for (Statement stmt : statements.getStatements()) {
                 if (stmt instanceof CreateIndex createIndex) {
-                    handleCreateIndexStatement(createIndex, result);
+                    handleCreateIndexStatement(createIndex, ops);
                 } else if (stmt instanceof Drop drop) {
-                    handleDropIndexStatement(drop, result);
+                    handleDropIndexStatement(drop, ops);
                 }
             }
         } catch (JSQLParserException e) {
@@ -390,7 +497,7 @@ public class Indexes {
         }
     }
 
-    private static void handleCreateIndexStatement(CreateIndex createIndex, Map<String, Set<IndexInfo>> result) {
+    private static void handleCreateIndexStatement(CreateIndex createIndex, List<IndexOp> ops) {
         if (createIndex.getTable() == null || createIndex.getIndex() == null) {
             return;
         }
@@ -420,10 +527,10 @@ public class Indexes {
         boolean unique = indexType != null && indexType.toUpperCase().contains("UNIQUE");
         String type = unique ? UNIQUE_INDEX : INDEX;
 
-        add(result, tableName, new IndexInfo(type, orUnknown(indexName), columns));
+        ops.add(IndexOp.add(tableName, new IndexInfo(type, orUnknown(indexName), columns)));
     }
 
-    private static void handleDropIndexStatement(Drop drop, Map<String, Set<IndexInfo>> result) {
+    private static void handleDropIndexStatement(Drop drop, List<IndexOp> ops) {
         // Only process DROP INDEX statements
         if (!"INDEX".equalsIgnoreCase(drop.getType())) {
             return;
@@ -440,7 +547,7 @@ public class Indexes {
 
         // DROP INDEX may optionally specify table via ON clause
         // JSqlParser doesn't directly expose this, so we search all tables
-        removeIndexByNameAnyTable(result, indexName);
+        ops.add(IndexOp.drop(IndexOp.Kind.DROP_INDEX, null, indexName));
     }
 
     // --- Helper methods ---
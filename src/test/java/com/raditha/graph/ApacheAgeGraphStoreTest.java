@@ -0,0 +1,116 @@
+package com.raditha.graph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that AGE edges are written as one UNWIND per type and attribute shape, with reused
+ * statements inside one transaction.
+ */
+@ExtendWith(MockitoExtension.class)
+class ApacheAgeGraphStoreTest {
+
+    @Mock
+    private Connection connection;
+    @Mock
+    private Statement statement;
+    @Mock
+    private PreparedStatement graphCheck;
+    @Mock
+    private ResultSet graphExists;
+    @Mock
+    private PreparedStatement edgeStatement;
+
+    private ApacheAgeGraphStore store;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement("SELECT 1 FROM ag_graph WHERE name = ?")).thenReturn(graphCheck);
+        when(graphCheck.executeQuery()).thenReturn(graphExists);
+        when(graphExists.next()).thenReturn(true);
+        store = new ApacheAgeGraphStore(connection, "code_graph", 100);
+    }
+
+    @Test
+    void testEdgesAreWrittenPerTypeAndAttributeShape() throws SQLException {
+        when(connection.getAutoCommit()).thenReturn(true);
+        List<String> prepared = new ArrayList<>();
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            prepared.add(invocation.getArgument(0));
+            return edgeStatement;
+        });
+
+        store.persistEdge(new KnowledgeGraphEdge("a", "b", EdgeType.CALLS, Map.of()));
+        store.persistEdge(new KnowledgeGraphEdge("a", "c", EdgeType.CALLS, Map.of()));
+        store.persistEdge(new KnowledgeGraphEdge("b", "c", EdgeType.CALLS, Map.of("resolution", "exact")));
+        store.persistEdge(new KnowledgeGraphEdge("a", "b", EdgeType.CONTAINS, Map.of()));
+        store.flushEdges();
+
+        assertEquals(3, prepared.size(), "One statement per type and attribute shape");
+        assertTrue(prepared.get(0).contains("UNWIND $batch AS row"));
+        assertTrue(prepared.get(1).contains("SET r.resolution = row.attr_resolution"));
+        assertTrue(prepared.get(2).contains("MERGE (source)-[r:CONTAINS]->(target)"));
+        verify(edgeStatement, times(3)).execute();
+        verify(edgeStatement).setObject(eq(1), eq("{\"batch\":[{\"sourceId\":\"a\",\"targetId\":\"b\"},"
+                + "{\"sourceId\":\"a\",\"targetId\":\"c\"}]}"), eq(Types.OTHER));
+        verify(connection).setAutoCommit(false);
+        verify(connection).commit();
+        verify(connection).setAutoCommit(true);
+
+        // the statements are prepared once and reused by later flushes
+        store.persistEdge(new KnowledgeGraphEdge("c", "d", EdgeType.CALLS, Map.of()));
+        store.flushEdges();
+        assertEquals(3, prepared.size());
+        verify(edgeStatement, times(4)).execute();
+    }
+
+    @Test
+    void testFailedFlushIsRolledBackAndKept() throws SQLException {
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(edgeStatement);
+        when(edgeStatement.execute()).thenThrow(new SQLException("boom")).thenReturn(false);
+
+        store.persistEdge(new KnowledgeGraphEdge("a", "b", EdgeType.CALLS, Map.of()));
+        store.flushEdges();
+
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+
+        store.flushEdges();
+        verify(connection).commit();
+        verify(edgeStatement, times(2)).execute();
+    }
+
+    @Test
+    void testEdgeBatchCypher() {
+        String cypher = ApacheAgeGraphStore.edgeBatchCypher("g", "USES", List.of("kind", "resolution"));
+
+        assertTrue(cypher.contains("cypher('g', $$"));
+        assertTrue(cypher.contains("MATCH (source:CodeElement {signature: row.sourceId})"));
+        assertTrue(cypher.contains("SET r.kind = row.attr_kind SET r.resolution = row.attr_resolution"));
+        assertTrue(cypher.contains("$$, ?) as (v agtype)"));
+    }
+}
@@ -0,0 +1,110 @@
+package com.raditha.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkExportGraphStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testNeo4jExportWritesFilesPerLabelAndType() throws IOException {
+        BulkExportGraphStore store = new BulkExportGraphStore(tempDir, BulkExportGraphStore.Format.NEO4J, "graphdb");
+        store.persistNode("com.A", "Class", "A", "com.A");
+        store.persistNode("com.A#m()", "Method", "m", "com.A");
+        store.persistNode("com.A", "Class", "A", "com.A");
+        store.persistEdge(new KnowledgeGraphEdge("com.A", "com.A#m()", EdgeType.CONTAINS, Map.of()));
+        store.persistEdge(new KnowledgeGraphEdge("com.A#m()", "java.util.List#size()", EdgeType.CALLS, Map.of()));
+        store.persistEdge(new KnowledgeGraphEdge("com.A#m()", "com.B#n(int,int)", EdgeType.CALLS,
+                Map.of("parameterValues", "[\"a\",\"b\"]")));
+        store.persistEdge(new KnowledgeGraphEdge("com.A", "com.A#m()", EdgeType.CONTAINS, Map.of()));
+        store.close();
+
+        assertEquals(2, store.getNodeCount());
+        assertEquals(3, store.getEdgeCount());
+        assertEquals(List.of("signature:ID(CodeElement),name,fqn,:LABEL", "com.A,A,com.A,CodeElement;Class"),
+                Files.readAllLines(tempDir.resolve("nodes-Class.csv")));
+        assertEquals(List.of("signature:ID(CodeElement),name,fqn,:LABEL",
+                        "java.util.List#size(),,,CodeElement",
+                        "\"com.B#n(int,int)\",,,CodeElement"),
+                Files.readAllLines(tempDir.resolve("nodes-CodeElement.csv")),
+                "Nodes only referenced by edges are exported without a name");
+        assertEquals(List.of(":START_ID(CodeElement),:END_ID(CodeElement),:TYPE,parameterValues",
+                        "com.A#m(),java.util.List#size(),CALLS,",
+                        "com.A#m(),\"com.B#n(int,int)\",CALLS,\"[\"\"a\"\",\"\"b\"\"]\""),
+                Files.readAllLines(tempDir.resolve("relationships-CALLS.csv")),
+                "Rows written before an attribute appeared are padded");
+        assertEquals(2, Files.readAllLines(tempDir.resolve("relationships-CONTAINS.csv")).size());
+
+        String script = Files.readString(tempDir.resolve("import-neo4j.sh"));
+        assertTrue(script.contains("neo4j-admin database import full graphdb"));
+        assertTrue(script.contains("--nodes=nodes-Method.csv"));
+        assertTrue(script.contains("--relationships=relationships-CALLS.csv"));
+        try (var files = Files.list(tempDir)) {
+            assertFalse(files.anyMatch(p -> p.toString().endsWith(".part")));
+        }
+    }
+
+    @Test
+    void testAgeExportRefersToNodesById() throws IOException {
+        BulkExportGraphStore store = new BulkExportGraphStore(tempDir, BulkExportGraphStore.Format.AGE, "code_graph");
+        store.persistNode("com.A", "Class", "A", null);
+        store.persistEdge(new KnowledgeGraphEdge("com.A", "com.A#f", EdgeType.CONTAINS, Map.of("kind", "field")));
+        store.persistNode("com.A#f", "Field", "f", "com.A");
+        store.close();
+
+        assertEquals(List.of("id,signature,name,fqn,nodeType", "1,com.A,A,A,Class", "2,com.A#f,f,com.A,Field"),
+                Files.readAllLines(tempDir.resolve("CodeElement.csv")));
+        assertEquals(List.of("start_id,start_vertex_type,end_id,end_vertex_type,kind",
+                        "1,CodeElement,2,CodeElement,field"),
+                Files.readAllLines(tempDir.resolve("CONTAINS.csv")));
+
+        String script = Files.readString(tempDir.resolve("import-age.sql"));
+        assertTrue(script.contains("SELECT create_graph('code_graph');"));
+        assertTrue(script.contains("SELECT load_labels_from_file('code_graph', 'CodeElement', '"
+                + tempDir.toAbsolutePath().resolve("CodeElement.csv") + "', true);"));
+        assertTrue(script.contains("SELECT load_edges_from_file('code_graph', 'CONTAINS', '"));
+    }
+
+    @Test
+    void testExportCannotBeQueried() throws IOException {
+        BulkExportGraphStore store = new BulkExportGraphStore(tempDir, BulkExportGraphStore.Format.NEO4J, "neo4j");
+        assertThrows(UnsupportedOperationException.class, () -> store.findCallers("com.A#m()"));
+    }
+
+    @Test
+    void testQuoteAndCountSeparators() {
+        assertEquals("plain", BulkExportGraphStore.quote("plain"));
+        assertEquals("\"a,b\"", BulkExportGraphStore.quote("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", BulkExportGraphStore.quote("say \"hi\""));
+        assertEquals("two lines", BulkExportGraphStore.quote("two\nlines"));
+        assertEquals(2, BulkExportGraphStore.countSeparators("\"a,b\",c,\"d\"\"e,\""));
+    }
+
+    @Test
+    void testNodesCarryTheirSourceFile() throws IOException {
+        BulkExportGraphStore store = new BulkExportGraphStore(tempDir, BulkExportGraphStore.Format.AGE, "code_graph");
+        store.persistNode("annotation:x.Marker", "Annotation", "Marker", "x.Marker");
+        store.setSourceFile(new SourceFile("com/A.java", "abc"));
+        store.persistNode("com.A", "Class", "A", "com.A");
+        store.setSourceFile(null);
+        store.close();
+
+        assertEquals(List.of("id,signature,name,fqn,nodeType,sourceFile,fileHash",
+                        "1,annotation:x.Marker,Marker,x.Marker,Annotation,,",
+                        "2,com.A,A,com.A,Class,com/A.java,abc"),
+                Files.readAllLines(tempDir.resolve("CodeElement.csv")));
+    }
+}
@@ -12,6 +12,7 @@ import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -108,4 +109,27 @@ class GraphStoreFactoryTest {
             Files.deleteIfExists(config);
         }
     }
+
+    @Test
+    void testExtractionThreads() throws IOException {
+        Path config = Files.createTempFile("graph-config-threads", ".yml");
+        try {
+            Files.writeString(config, """
+                graph:
+                  type: neo4j
+                  extraction_threads: 6
+                """);
+            Settings.loadConfigMap(config.toFile());
+            assertEquals(6, GraphStoreFactory.getExtractionThreads());
+
+            Files.writeString(config, """
+                graph:
+                  type: neo4j
+                """);
+            Settings.loadConfigMap(config.toFile());
+            assertEquals(1, GraphStoreFactory.getExtractionThreads());
+        } finally {
+            Files.deleteIfExists(config);
+        }
+    }
 }
@@ -0,0 +1,307 @@
+package com.raditha.graph;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.depsolver.Graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifies that an incremental update leaves the graph as a full build of the new sources would.
+ */
+class IncrementalUpdateTest {
+
+    /**
+     * An in-memory graph with the MERGE and delete semantics of the database stores.
+     */
+    private static final class MemoryGraphStore implements IncrementalGraphStore {
+        private record Edge(String source, String target, EdgeType type) {
+        }
+
+        // signature -> owning file, or a file with null fields for nodes no file owns
+        private final Map<String, SourceFile> nodes = new HashMap<>();
+        private final Set<Edge> edges = new HashSet<>();
+        private SourceFile sourceFile;
+        private int edgeCount = 0;
+        private int deletes = 0;
+
+        @Override
+        public void persistEdge(KnowledgeGraphEdge edge) {
+            nodes.putIfAbsent(edge.sourceId(), new SourceFile(null, null));
+            nodes.putIfAbsent(edge.targetId(), new SourceFile(null, null));
+            edges.add(new Edge(edge.sourceId(), edge.targetId(), edge.type()));
+            edgeCount++;
+        }
+
+        @Override
+        public void persistNode(String signature, String nodeType, String name, String fqn) {
+            if (sourceFile != null) {
+                nodes.put(signature, sourceFile);
+            } else {
+                nodes.putIfAbsent(signature, new SourceFile(null, null));
+            }
+        }
+
+        @Override
+        public void setSourceFile(SourceFile sourceFile) {
+            this.sourceFile = sourceFile;
+        }
+
+        @Override
+        public Map<String, String> findSourceFiles() {
+            Map<String, String> files = new HashMap<>();
+            nodes.values().stream().filter(f -> f.path() != null).forEach(f -> files.put(f.path(), f.hash()));
+            return files;
+        }
+
+        @Override
+        public Set<String> findFilesReferencing(Collection<String> paths) {
+            Set<String> files = new HashSet<>();
+            for (Edge e : edges) {
+                String source = nodes.get(e.source()).path();
+                if (source != null && !paths.contains(source) && paths.contains(nodes.get(e.target()).path())) {
+                    files.add(source);
+                }
+            }
+            return files;
+        }
+
+        @Override
+        public void deleteEdgesFrom(Collection<String> paths) {
+            deletes++;
+            edges.removeIf(e -> {
+                String path = nodes.get(e.source()).path();
+                return path != null && paths.contains(path);
+            });
+        }
+
+        @Override
+        public void deleteStaleNodes(Collection<SourceFile> files) {
+            deletes++;
+            for (SourceFile file : files) {
+                Set<String> stale = new HashSet<>();
+                nodes.forEach((signature, owner) -> {
+                    if (file.path().equals(owner.path()) && (file.hash() == null || !file.hash().equals(owner.hash()))) {
+                        stale.add(signature);
+                    }
+                });
+                stale.forEach(nodes::remove);
+                edges.removeIf(e -> stale.contains(e.source()) || stale.contains(e.target()));
+            }
+        }
+
+        @Override
+        public void flushEdges() {
+            // nothing is buffered
+        }
+
+        @Override
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        @Override
+        public void clearGraph() {
+            nodes.clear();
+            edges.clear();
+        }
+
+        @Override
+        public List<String> findCallers(String signature) {
+            return List.of();
+        }
+
+        @Override
+        public List<String> findCallees(String signature) {
+            return List.of();
+        }
+
+        @Override
+        public List<String> findUsages(String signature) {
+            return List.of();
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    private static final String CALLER = """
+        package com.example;
+        class Caller {
+            @Deprecated
+            void run(Service service) { service.work(); }
+        }
+        """;
+
+    private static final String SERVICE = """
+        package com.example;
+        class Service {
+            @Deprecated
+            void work() { helper(); }
+            void helper() {}
+            void obsolete() {}
+        }
+        """;
+
+    private static final String CHANGED_SERVICE = """
+        package com.example;
+        class Service {
+            void work() { added(); }
+            void added() {}
+        }
+        """;
+
+    private static final String CLIENT = """
+        package com.example;
+        class Client {
+            void run(com.example.Service service) {
+                service.work();
+                service.obsolete();
+            }
+        }
+        """;
+
+    private static final String REMOVED = """
+        package com.example;
+        class Removed {
+            void gone() {}
+        }
+        """;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Graph.getNodes().clear();
+        Settings.loadConfigMap(new File("src/test/resources/graph-test.yml"));
+    }
+
+    private static List<CompilationUnit> parse(String... sources) {
+        return Arrays.stream(sources).map(StaticJavaParser::parse).toList();
+    }
+
+    private static KnowledgeGraphBuilder builder(GraphStore store, int threads) {
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(store);
+        builder.setAutoClose(false);
+        builder.setExtractionThreads(threads);
+        return builder;
+    }
+
+    @Test
+    @DisplayName("Nodes record the file they were extracted from, except shared annotation nodes")
+    void testNodesRecordTheirSourceFile() {
+        MemoryGraphStore store = new MemoryGraphStore();
+        builder(store, 1).build(parse(SERVICE));
+
+        SourceFile owner = store.nodes.get("com.example.Service");
+        assertEquals("com/example/Service.java", owner.path());
+        assertEquals(SourceFile.of(StaticJavaParser.parse(SERVICE)).hash(), owner.hash());
+        assertEquals(owner, store.nodes.get("com.example.Service#obsolete()"));
+        assertTrue(store.nodes.entrySet().stream()
+                .filter(e -> e.getKey().startsWith("annotation:"))
+                .allMatch(e -> e.getKey().startsWith("annotation:unresolved:") == (e.getValue().path() != null)));
+    }
+
+    @Test
+    @DisplayName("An update matches a full build of the changed sources")
+    void testUpdateMatchesFullBuild() {
+        MemoryGraphStore store = new MemoryGraphStore();
+        builder(store, 1).build(parse(CALLER, SERVICE, REMOVED));
+        assertTrue(store.nodes.containsKey("com.example.Removed"));
+
+        builder(store, 1).update(parse(CALLER, CHANGED_SERVICE));
+
+        MemoryGraphStore rebuilt = new MemoryGraphStore();
+        builder(rebuilt, 1).build(parse(CALLER, CHANGED_SERVICE));
+        assertEquals(rebuilt.nodes, store.nodes);
+        assertEquals(rebuilt.edges, store.edges);
+        assertFalse(store.nodes.containsKey("com.example.Removed"));
+    }
+
+    @Test
+    @DisplayName("A parallel update matches a full build of the changed sources")
+    void testParallelUpdateMatchesFullBuild() {
+        MemoryGraphStore store = new MemoryGraphStore();
+        builder(store, 1).build(parse(CALLER, SERVICE, REMOVED));
+
+        builder(store, 3).update(parse(CALLER, CHANGED_SERVICE));
+
+        MemoryGraphStore rebuilt = new MemoryGraphStore();
+        builder(rebuilt, 1).build(parse(CALLER, CHANGED_SERVICE));
+        assertEquals(rebuilt.nodes, store.nodes);
+        assertEquals(rebuilt.edges, store.edges);
+    }
+
+    @Test
+    @DisplayName("Unchanged files calling into a changed file are extracted again")
+    void testFilesReferringToChangedFileAreExtractedAgain() {
+        String run = "com.example.Client#run(com.example.Service)";
+        MemoryGraphStore.Edge work = new MemoryGraphStore.Edge(run, "com.example.Service#work()", EdgeType.CALLS);
+        MemoryGraphStore.Edge obsolete = new MemoryGraphStore.Edge(run, "com.example.Service#obsolete()", EdgeType.CALLS);
+        MemoryGraphStore store = new MemoryGraphStore();
+        builder(store, 1).build(parse(CLIENT, SERVICE));
+        assertTrue(store.edges.contains(obsolete));
+
+        builder(store, 1).update(parse(CLIENT, CHANGED_SERVICE));
+
+        // Client still calls the removed method, as a full build would record
+        assertTrue(store.edges.contains(work));
+        assertTrue(store.edges.contains(obsolete));
+
+        MemoryGraphStore rebuilt = new MemoryGraphStore();
+        builder(rebuilt, 1).build(parse(CLIENT, CHANGED_SERVICE));
+        assertEquals(rebuilt.nodes, store.nodes);
+        assertEquals(rebuilt.edges, store.edges);
+    }
+
+    @Test
+    @DisplayName("An update is rejected by a graph store that does not record source files")
+    void testUpdateNeedsIncrementalGraphStore() throws Exception {
+        GraphStore plain = mock(GraphStore.class);
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(plain);
+        assertFalse(builder.supportsIncremental());
+        assertTrue(new KnowledgeGraphBuilder(new MemoryGraphStore()).supportsIncremental());
+
+        List<CompilationUnit> units = parse(SERVICE);
+        assertThrows(UnsupportedOperationException.class, () -> builder.update(units));
+        verify(plain).close();
+    }
+
+    @Test
+    @DisplayName("An update without changes writes and deletes nothing")
+    void testUpdateWithoutChanges() {
+        MemoryGraphStore store = new MemoryGraphStore();
+        builder(store, 1).build(parse(CALLER, SERVICE));
+        int edges = store.getEdgeCount();
+
+        builder(store, 1).update(parse(CALLER, SERVICE));
+
+        assertEquals(edges, store.getEdgeCount());
+        assertEquals(0, store.deletes);
+    }
+
+    @Test
+    void testSourceFileOfUnitWithoutTypes() {
+        assertNull(SourceFile.of(StaticJavaParser.parse("package com.example;")));
+    }
+}
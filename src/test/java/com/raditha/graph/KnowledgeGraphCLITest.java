@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -52,4 +53,37 @@ class KnowledgeGraphCLITest {
                 "--base-path=src/test/java"
         }));
     }
+
+    @Test
+    void testParseArgsReadsBulkExportDirectory() throws IOException {
+        KnowledgeGraphCLI.CliOptions options = KnowledgeGraphCLI.parseArgs(new String[] {
+                "--config=src/test/resources/graph-test.yml",
+                "--base-path=src/test/java",
+                "--bulk-export=target/graph-export"
+        });
+        assertEquals("target/graph-export", options.bulkExportDir());
+
+        KnowledgeGraphCLI.CliOptions live = KnowledgeGraphCLI.parseArgs(new String[] {
+                "--config=src/test/resources/graph-test.yml",
+                "--base-path=src/test/java"
+        });
+        assertNull(live.bulkExportDir());
+    }
+
+    @Test
+    void testParseArgsReadsIncrementalFlag() throws IOException {
+        KnowledgeGraphCLI.CliOptions options = KnowledgeGraphCLI.parseArgs(new String[] {
+                "--config=src/test/resources/graph-test.yml",
+                "--base-path=src/test/java",
+                "--incremental"
+        });
+        assertTrue(options.incremental());
+
+        assertThrows(IllegalArgumentException.class, () -> KnowledgeGraphCLI.parseArgs(new String[] {
+                "--config=src/test/resources/graph-test.yml",
+                "--base-path=src/test/java",
+                "--incremental",
+                "--clear"
+        }));
+    }
 }
@@ -0,0 +1,175 @@
+package com.raditha.graph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionContext;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that nodes are buffered per label and written with UNWIND in write transactions,
+ * ahead of the edges.
+ */
+@ExtendWith(MockitoExtension.class)
+class Neo4jGraphStoreTest {
+
+    @Mock
+    private Driver driver;
+    @Mock
+    private Session session;
+    @Mock
+    private TransactionContext tx;
+
+    private final List<String> statements = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<Value> parameters = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(driver.session(any(SessionConfig.class))).thenReturn(session);
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionContext> work = invocation.getArgument(0);
+            work.accept(tx);
+            return null;
+        }).when(session).executeWriteWithoutResult(any());
+        lenient().when(tx.run(anyString(), any(Value.class))).thenAnswer(invocation -> {
+            statements.add(invocation.getArgument(0));
+            parameters.add(invocation.getArgument(1));
+            batchSizes.add(((Value) invocation.getArgument(1)).get("batch").size());
+            return null;
+        });
+    }
+
+    @Test
+    void testNodesAreBufferedPerLabelAndDeduplicated() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 100, 10);
+        store.persistNode("com.A", "Class", "A", "com.A");
+        store.persistNode("com.A#m1()", "Method", "m1", "com.A");
+        store.persistNode("com.A#m2()", "Method", "m2", "com.A");
+        store.persistNode("com.A", "Class", "A", "com.A");
+
+        verify(session, never()).executeWriteWithoutResult(any());
+        assertEquals(3, store.getNodeCount());
+
+        store.flushNodes();
+
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).contains("UNWIND $batch AS row"));
+        assertTrue(statements.get(0).contains("SET n:Class"));
+        assertTrue(statements.get(1).contains("SET n:Method"));
+        assertEquals(List.of(1, 2), batchSizes);
+    }
+
+    @Test
+    void testNodeBatchSizeTriggersFlush() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 100, 2);
+        store.persistNode("com.A#f", "Field", "f", "com.A");
+        store.persistNode("com.A#g", "Field", "g", "com.A");
+        store.persistNode("com.A#h", "Field", "h", "com.A");
+
+        assertEquals(List.of(2), batchSizes);
+
+        store.flushNodes();
+        store.flushNodes();
+
+        assertEquals(List.of(2, 1), batchSizes);
+    }
+
+    @Test
+    void testNodesAreFlushedBeforeEdges() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 100, 100);
+        store.persistNode("com.A", "Class", "A", "com.A");
+        store.persistNode("com.A#m()", "Method", "m", "com.A");
+        store.persistEdge(new KnowledgeGraphEdge("com.A", "com.A#m()", EdgeType.CONTAINS, Map.of()));
+
+        store.flushEdges();
+
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(0).contains("SET n:Class"));
+        assertTrue(statements.get(1).contains("SET n:Method"));
+        assertTrue(statements.get(2).contains("MERGE (source)-[r:CONTAINS]->(target)"));
+    }
+
+    @Test
+    void testCloseFlushesPendingNodes() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 100, 100);
+        store.persistNode("com.A", "Class", "A", null);
+
+        store.close();
+
+        assertEquals(List.of(1), batchSizes);
+        verify(session).close();
+        verify(driver).close();
+    }
+
+    @Test
+    void testNodesRecordTheSourceFileWhileItIsSet() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 100, 100);
+        store.setSourceFile(new SourceFile("com/A.java", "abc"));
+        store.persistNode("com.A", "Class", "A", "com.A");
+        store.setSourceFile(null);
+        store.persistNode("annotation:x.Marker", "Annotation", "Marker", "x.Marker");
+
+        store.flushNodes();
+
+        assertTrue(statements.get(0).contains("n.sourceFile = coalesce(row.sourceFile, n.sourceFile)"));
+        Value owned = parameters.get(0).get("batch").get(0);
+        assertEquals("com/A.java", owned.get("sourceFile").asString());
+        assertEquals("abc", owned.get("fileHash").asString());
+        assertTrue(parameters.get(1).get("batch").get(0).get("sourceFile").isNull());
+    }
+
+    @Test
+    void testIncrementalDeletesRunInBatches() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 2, 100);
+
+        store.deleteEdgesFrom(List.of("com/A.java", "com/B.java", "com/C.java"));
+        store.deleteStaleNodes(List.of(new SourceFile("com/A.java", "abc"), new SourceFile("com/Gone.java", null)));
+
+        assertEquals(List.of(2, 1, 2), batchSizes);
+        assertTrue(statements.get(0).contains("MATCH (n:CodeElement {sourceFile: path})-[r]->()"));
+        assertTrue(statements.get(2).contains("WHERE file.hash IS NULL OR n.fileHash <> file.hash"));
+        assertTrue(statements.get(2).contains("DETACH DELETE n"));
+    }
+
+    @Test
+    void testFilesReferencingChangedFilesAreReadBack() {
+        Neo4jGraphStore store = new Neo4jGraphStore(driver, "neo4j", 2, 100);
+        Result result = mock(Result.class);
+        Record record = mock(Record.class);
+        when(record.get("file")).thenReturn(Values.value("com/B.java"));
+        when(result.list()).thenReturn(List.of(record, record));
+        when(session.run(anyString(), any(Value.class))).thenReturn(result);
+
+        assertEquals(Set.of("com/B.java"), store.findFilesReferencing(List.of("com/A.java")));
+        assertEquals(Set.of(), store.findFilesReferencing(List.of()));
+
+        verify(session).run(contains("NOT n.sourceFile IN $paths"), any(Value.class));
+    }
+}
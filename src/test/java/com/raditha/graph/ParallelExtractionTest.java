@@ -0,0 +1,196 @@
+package com.raditha.graph;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import sa.com.cloudsolutions.antikythera.depsolver.Graph;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.MavenHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that extracting on several threads writes the same nodes and edges, in the same
+ * order, as a serial build, both for synthetic units and for the petclinic testbed resolved through
+ * AbstractCompiler.
+ */
+class ParallelExtractionTest {
+
+    /**
+     * Records the calls it receives, from the writer thread only.
+     */
+    private static final class CallLog implements GraphStore {
+        private final List<String> calls = new ArrayList<>();
+        private int edges = 0;
+
+        @Override
+        public void persistEdge(KnowledgeGraphEdge edge) {
+            calls.add(edge.sourceId() + " -" + edge.type() + "-> " + edge.targetId() + " " + edge.attributes());
+            edges++;
+        }
+
+        @Override
+        public void persistNode(String signature, String nodeType, String name, String fqn) {
+            calls.add(nodeType + " " + signature + " " + name + " " + fqn);
+        }
+
+        @Override
+        public void flushEdges() {
+            calls.add("flush");
+        }
+
+        @Override
+        public int getEdgeCount() {
+            return edges;
+        }
+
+        @Override
+        public void clearGraph() {
+            calls.clear();
+        }
+
+        @Override
+        public List<String> findCallers(String signature) {
+            return List.of();
+        }
+
+        @Override
+        public List<String> findCallees(String signature) {
+            return List.of();
+        }
+
+        @Override
+        public List<String> findUsages(String signature) {
+            return List.of();
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Graph.getNodes().clear();
+        Settings.loadConfigMap(new File("src/test/resources/graph-test.yml"));
+    }
+
+    private static List<CompilationUnit> units(int count) {
+        List<CompilationUnit> units = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            units.add(StaticJavaParser.parse("""
+                package com.example;
+                import java.util.List;
+                enum Status%1$d { NEW, DONE }
+                class Service%1$d extends Base implements Api {
+                    private List<String> names;
+                    @Deprecated
+                    int work(String name) {
+                        names.forEach(n -> helper(n));
+                        names.stream().map(String::trim).count();
+                        return helper(name);
+                    }
+                    int helper(String value) {
+                        class Local {}
+                        return value.length() + %1$d;
+                    }
+                    static class Inner {}
+                }
+                """.formatted(i)));
+        }
+        return units;
+    }
+
+    private static List<String> build(List<CompilationUnit> units, int threads) {
+        CallLog log = new CallLog();
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(log);
+        builder.setAutoClose(false);
+        builder.setExtractionThreads(threads);
+        builder.build(units);
+        return log.calls;
+    }
+
+    @Test
+    @DisplayName("Parallel extraction writes the same calls in the same order as a serial build")
+    void testParallelMatchesSerial() {
+        List<CompilationUnit> units = units(40);
+
+        List<String> serial = build(units, 1);
+        List<String> parallel = build(units, 4);
+
+        assertFalse(serial.isEmpty());
+        assertEquals(serial, parallel);
+    }
+
+    @Test
+    @Tag("integration")
+    @DisplayName("Parallel extraction of the petclinic testbed resolves types as a serial build does")
+    void testParallelMatchesSerialOnPetClinic() throws IOException, XmlPullParserException {
+        MavenHelper mavenHelper = new MavenHelper();
+        mavenHelper.readPomFile();
+        mavenHelper.buildJarPaths();
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+        List<CompilationUnit> units = new ArrayList<>(AntikytheraRunTime.getResolvedCompilationUnits().values());
+
+        List<String> serial = build(units, 1);
+        List<String> parallel = build(units, 4);
+
+        assertFalse(units.isEmpty());
+        assertTrue(serial.stream().anyMatch(call -> call.contains("-CALLS-> org.springframework.samples.petclinic")
+                        && call.contains("Repository#")),
+                "Calls on the repositories should be resolved to their types");
+        assertEquals(serial, parallel);
+    }
+
+    @Test
+    @DisplayName("More threads than units still builds the whole graph")
+    void testMoreThreadsThanUnits() {
+        List<CompilationUnit> units = units(2);
+
+        assertEquals(build(units, 1), build(units, 16));
+    }
+
+    @Test
+    @DisplayName("A failure on a worker fails the build")
+    void testWorkerFailureIsRethrown() {
+        List<CompilationUnit> units = units(3);
+        units.set(1, new CompilationUnit() {
+            @Override
+            public NodeList<TypeDeclaration<?>> getTypes() {
+                throw new IllegalStateException("broken unit");
+            }
+        });
+
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(new CallLog());
+        builder.setAutoClose(false);
+        builder.setExtractionThreads(2);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> builder.build(units));
+        assertEquals("broken unit", e.getMessage());
+    }
+
+    @Test
+    void testExtractionThreadsAreAtLeastOne() {
+        KnowledgeGraphBuilder builder = new KnowledgeGraphBuilder(new CallLog());
+        builder.setExtractionThreads(0);
+        assertEquals(1, builder.getExtractionThreads());
+    }
+}
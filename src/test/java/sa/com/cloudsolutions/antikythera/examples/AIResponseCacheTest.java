@@ -0,0 +1,72 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    File cacheDir;
+
+    private JsonNode recommendation(String notes) throws Exception {
+        return objectMapper.readTree(
+                "{\"optimizedCodeElement\": \"User findByUsername(String username);\", \"notes\": \"" + notes + "\"}");
+    }
+
+    @Test
+    void testKeyIsStableAndSeparatesParts() {
+        assertEquals(AIResponseCache.key("a", "b"), AIResponseCache.key("a", "b"));
+        assertNotEquals(AIResponseCache.key("ab", "c"), AIResponseCache.key("a", "bc"));
+        assertEquals(64, AIResponseCache.key("x").length());
+    }
+
+    @Test
+    void testPutGetAndCounters() throws Exception {
+        AIResponseCache cache = new AIResponseCache(cacheDir, 10);
+        String key = AIResponseCache.key("query");
+
+        assertNull(cache.get(key));
+        cache.put(key, recommendation("N/A"));
+        assertEquals("N/A", cache.get(key).path("notes").asText());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(50.0, cache.getHitRate(), 0.01);
+        assertTrue(cache.getFormattedReport().contains("Hits=1"));
+    }
+
+    @Test
+    void testEntriesSurviveReopen() throws Exception {
+        String key = AIResponseCache.key("query");
+        new AIResponseCache(cacheDir, 10).put(key, recommendation("Reordered"));
+
+        AIResponseCache reopened = new AIResponseCache(cacheDir, 10);
+        assertEquals(1, reopened.size());
+        assertEquals("Reordered", reopened.get(key).path("notes").asText());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        AIResponseCache cache = new AIResponseCache(cacheDir, 2);
+        cache.put("a", recommendation("a"));
+        cache.put("b", recommendation("b"));
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", recommendation("c"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertFalse(new File(cacheDir, "b.json").exists());
+    }
+}
@@ -0,0 +1,150 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the ordering of the pipelined mode: each type is completed and checkpointed in
+ * discovery order, after the next type has been started.
+ */
+class AbstractRepositoryAnalyzerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MockedStatic<AntikytheraRunTime> runTime;
+    private final List<String> events = new ArrayList<>();
+
+    /**
+     * Records when each type is started, completed, cancelled and checkpointed.
+     */
+    private class PipelineAnalyzer extends AbstractRepositoryAnalyzer {
+        private final Set<String> failToBegin;
+        private final Set<String> failToComplete;
+
+        PipelineAnalyzer(Set<String> failToBegin, Set<String> failToComplete) {
+            this.failToBegin = failToBegin;
+            this.failToComplete = failToComplete;
+            checkpointManager = new CheckpointManager(tempDir.resolve("checkpoint.json").toFile()) {
+                @Override
+                public void markProcessed(String fullyQualifiedName) {
+                    events.add("checkpoint " + fullyQualifiedName);
+                    super.markProcessed(fullyQualifiedName);
+                }
+            };
+        }
+
+        @Override
+        protected boolean shouldProcess(TypeWrapper typeWrapper) {
+            return true;
+        }
+
+        @Override
+        protected void analyzeType(TypeWrapper typeWrapper) {
+            events.add("analyze " + typeWrapper.getFullyQualifiedName());
+        }
+
+        @Override
+        protected PendingAnalysis beginAnalysis(TypeWrapper typeWrapper) throws IOException {
+            String name = typeWrapper.getFullyQualifiedName();
+            events.add("begin " + name);
+            if (failToBegin.contains(name)) {
+                throw new AntikytheraException("cannot parse " + name);
+            }
+            return new PendingAnalysis() {
+                @Override
+                public void complete() throws IOException {
+                    events.add("complete " + name);
+                    if (failToComplete.contains(name)) {
+                        throw new IOException("cannot write " + name);
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    events.add("cancel " + name);
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        Map<String, TypeWrapper> types = new LinkedHashMap<>();
+        for (String name : List.of("com.example.A", "com.example.B", "com.example.C")) {
+            TypeWrapper type = mock(TypeWrapper.class);
+            when(type.getFullyQualifiedName()).thenReturn(name);
+            types.put(name, type);
+        }
+        runTime = mockStatic(AntikytheraRunTime.class);
+        runTime.when(AntikytheraRunTime::getResolvedTypes).thenReturn(types);
+        AbstractRepositoryAnalyzer.pipelined = true;
+        AbstractRepositoryAnalyzer.setQuietMode(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        runTime.close();
+        AbstractRepositoryAnalyzer.pipelined = false;
+        AbstractRepositoryAnalyzer.setQuietMode(false);
+    }
+
+    @Test
+    void testTypesCompleteInDiscoveryOrder() throws Exception {
+        int analyzed = new PipelineAnalyzer(Set.of(), Set.of()).analyze();
+
+        assertEquals(3, analyzed);
+        assertEquals(List.of(
+                "begin com.example.A",
+                "begin com.example.B",
+                "complete com.example.A", "checkpoint com.example.A",
+                "begin com.example.C",
+                "complete com.example.B", "checkpoint com.example.B",
+                "complete com.example.C", "checkpoint com.example.C"), events);
+    }
+
+    @Test
+    void testFailureToBeginIsReportedInOrder() throws Exception {
+        int analyzed = new PipelineAnalyzer(Set.of("com.example.B"), Set.of()).analyze();
+
+        assertEquals(2, analyzed);
+        assertEquals(List.of(
+                "begin com.example.A",
+                "begin com.example.B",
+                "complete com.example.A", "checkpoint com.example.A",
+                "begin com.example.C",
+                "complete com.example.C", "checkpoint com.example.C"), events);
+    }
+
+    @Test
+    void testFailureToCompleteCancelsTheNextType() {
+        PipelineAnalyzer analyzer = new PipelineAnalyzer(Set.of(), Set.of("com.example.A"));
+
+        assertThrows(IOException.class, analyzer::analyze);
+        assertEquals(List.of(
+                "begin com.example.A",
+                "begin com.example.B",
+                "complete com.example.A",
+                "cancel com.example.B"), events);
+    }
+}
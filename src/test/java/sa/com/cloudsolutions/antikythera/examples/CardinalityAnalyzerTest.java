@@ -1,5 +1,6 @@
 package sa.com.cloudsolutions.antikythera.examples;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -24,6 +25,11 @@ class CardinalityAnalyzerTest {
         CardinalityAnalyzer.setIndexMap(indexMap);
     }
 
+    @AfterEach
+    void tearDown() {
+        CardinalityAnalyzer.setColumnStatistics(null);
+    }
+
     /**
      * Sets up test index configurations for various scenarios.
      */
@@ -191,6 +197,7 @@ class CardinalityAnalyzerTest {
         Set<Indexes.IndexInfo> userIndexes = indexMap.get("users");
         Indexes.IndexInfo uniqueUserId = new Indexes.IndexInfo("UNIQUE_CONSTRAINT", "uk_users_user_id", List.of("user_id"));
         userIndexes.add(uniqueUserId);
+        CardinalityAnalyzer.setIndexMap(indexMap);
 
         // Primary key should take priority over unique constraint
         CardinalityLevel result = CardinalityAnalyzer.analyzeColumnCardinality("users", "user_id");
@@ -204,6 +211,7 @@ class CardinalityAnalyzerTest {
         Set<Indexes.IndexInfo> userIndexes = indexMap.get("users");
         Indexes.IndexInfo emailIndex = new Indexes.IndexInfo("INDEX", "idx_users_email", List.of("email"));
         userIndexes.add(emailIndex);
+        CardinalityAnalyzer.setIndexMap(indexMap);
 
         // Unique constraint should take priority over regular index
         CardinalityLevel result = CardinalityAnalyzer.analyzeColumnCardinality("users", "email");
@@ -217,6 +225,7 @@ class CardinalityAnalyzerTest {
         Set<Indexes.IndexInfo> userIndexes = indexMap.get("users");
         Indexes.IndexInfo activeIndex = new Indexes.IndexInfo("INDEX", "idx_users_is_active", List.of("is_active"));
         userIndexes.add(activeIndex);
+        CardinalityAnalyzer.setIndexMap(indexMap);
 
         // Boolean naming should take priority over index (low cardinality)
         CardinalityLevel result = CardinalityAnalyzer.analyzeColumnCardinality("users", "is_active");
@@ -224,6 +233,15 @@ class CardinalityAnalyzerTest {
         assertTrue(CardinalityAnalyzer.isBooleanColumn("is_active"));
     }
 
+    @Test
+    void testGetIndexMapIsReadOnly() {
+        Map<String, Set<Indexes.IndexInfo>> view = CardinalityAnalyzer.getIndexMap();
+
+        assertEquals(indexMap, view);
+        assertThrows(UnsupportedOperationException.class, () -> view.put("orders", new HashSet<>()));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove("users"));
+    }
+
     @Test
     void testEmptyIndexMap() {
         // Test with a completely unknown table (not in index map)
@@ -237,6 +255,37 @@ class CardinalityAnalyzerTest {
         assertTrue(CardinalityAnalyzer.isBooleanColumn("is_active"));
     }
 
+    @Test
+    void testHasIndexWithLeadingColumn() {
+        assertTrue(CardinalityAnalyzer.hasIndexWithLeadingColumn("orders", "customer_id"));
+        assertTrue(CardinalityAnalyzer.hasIndexWithLeadingColumn("ORDERS", "Customer_Id"));
+        assertTrue(CardinalityAnalyzer.hasIndexWithLeadingColumn("orders", "order_id"));
+        assertFalse(CardinalityAnalyzer.hasIndexWithLeadingColumn("orders", "order_date"));
+        assertFalse(CardinalityAnalyzer.hasIndexWithLeadingColumn("unknown_table", "customer_id"));
+    }
+
+    @Test
+    void testHasIndexCoveringColumns() {
+        assertTrue(CardinalityAnalyzer.hasIndexCoveringColumns("orders", List.of("customer_id")));
+        assertTrue(CardinalityAnalyzer.hasIndexCoveringColumns("orders", List.of("customer_id", "order_date")));
+        assertTrue(CardinalityAnalyzer.hasIndexCoveringColumns("Orders", List.of("CUSTOMER_ID", "Order_Date")));
+        assertFalse(CardinalityAnalyzer.hasIndexCoveringColumns("orders", List.of("order_date")));
+        assertFalse(CardinalityAnalyzer.hasIndexCoveringColumns("orders", List.of("customer_id", "order_date", "status")));
+        assertFalse(CardinalityAnalyzer.hasIndexCoveringColumns("orders", List.of()));
+        assertFalse(CardinalityAnalyzer.hasIndexCoveringColumns("unknown_table", List.of("customer_id")));
+    }
+
+    @Test
+    void testSetIndexMap_ReplacesLookups() {
+        Map<String, Set<Indexes.IndexInfo>> other = new HashMap<>();
+        other.put("orders", Set.of(new Indexes.IndexInfo("INDEX", "idx_orders_status", List.of("status", "customer_id"))));
+        CardinalityAnalyzer.setIndexMap(other);
+
+        assertTrue(CardinalityAnalyzer.hasIndexCoveringColumns("orders", List.of("status", "customer_id")));
+        assertFalse(CardinalityAnalyzer.hasIndexWithLeadingColumn("orders", "customer_id"));
+        assertFalse(CardinalityAnalyzer.isPrimaryKey("users", "user_id"));
+    }
+
     @Test
     void testMultipleTablesIndependence() {
         // Test that analysis of one table doesn't affect another
@@ -246,4 +295,22 @@ class CardinalityAnalyzerTest {
         assertEquals(CardinalityLevel.HIGH, usersUserId); // Primary key in users table
         assertEquals(CardinalityLevel.MEDIUM, ordersUserId);  // No identifiable LOW/HIGH characteristics
     }
+
+    @Test
+    void testColumnStatistics_OverrideHeuristics() {
+        ColumnStatistics statistics = new ColumnStatistics(null);
+        // named like a flag but nearly unique in the data
+        statistics.put("users", "is_active", new ColumnStatistics.Stats(0, -0.9, 0, -1));
+        // a plain column that holds only a handful of values
+        statistics.put("users", "description", new ColumnStatistics.Stats(0, 4, 0.4, 1_000_000));
+        // unique constraints stay HIGH whatever the snapshot says
+        statistics.put("users", "email", new ColumnStatistics.Stats(0, 2, 0.5, 1_000_000));
+        CardinalityAnalyzer.setColumnStatistics(statistics);
+
+        assertEquals(CardinalityLevel.HIGH, CardinalityAnalyzer.analyzeColumnCardinality("users", "is_active"));
+        assertEquals(CardinalityLevel.LOW, CardinalityAnalyzer.analyzeColumnCardinality("Users", "DESCRIPTION"));
+        assertEquals(CardinalityLevel.HIGH, CardinalityAnalyzer.analyzeColumnCardinality("users", "email"));
+        assertEquals(CardinalityLevel.MEDIUM, CardinalityAnalyzer.analyzeColumnCardinality("users", "name"),
+                "Columns missing from the snapshot fall back to the heuristics");
+    }
 }
@@ -0,0 +1,92 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnStatisticsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoadsPgStatsCsv() throws IOException {
+        Path file = tempDir.resolve("pg_stats.csv");
+        Files.writeString(file, """
+                schemaname,tablename,attname,null_frac,n_distinct,most_common_freqs,reltuples
+                public,users,status,0,3,"{0.7,0.2,0.1}",50000
+                public,users,email,0,-1,,50000
+                public,users,city,0.25,250,"{0.01,0.008}",50000
+                public,users,country,0,40,"{0.02}",50000
+                audit,users,status,0,-1,,10
+                public,users,broken,0,many,,50000
+                """);
+
+        ColumnStatistics statistics = ColumnStatistics.load(file, "public");
+
+        assertEquals(4, statistics.size());
+        assertEquals(CardinalityLevel.LOW, statistics.cardinality("users", "status"));
+        assertEquals(CardinalityLevel.HIGH, statistics.cardinality("USERS", "Email"));
+        assertEquals(CardinalityLevel.MEDIUM, statistics.cardinality("users", "city"));
+        assertEquals(CardinalityLevel.MEDIUM, statistics.cardinality("users", "country"));
+        assertNull(statistics.cardinality("users", "broken"));
+        assertEquals(0.7, statistics.find("users", "status").mostCommonFrequency(), 1e-9);
+        assertEquals(50000, statistics.find("users", "email").distinctValues());
+    }
+
+    @Test
+    void testLoadsJsonWithArrayFrequencies() throws IOException {
+        Path file = tempDir.resolve("pg_stats.json");
+        Files.writeString(file, """
+                [
+                  {"tablename": "orders", "attname": "customer_id", "null_frac": 0, "n_distinct": -0.2},
+                  {"tablename": "orders", "attname": "channel", "n_distinct": 12, "most_common_freqs": [0.05, 0.04]},
+                  {"tablename": "orders", "attname": "coupon", "null_frac": 0.99, "n_distinct": 20}
+                ]
+                """);
+
+        ColumnStatistics statistics = ColumnStatistics.load(file, null);
+
+        assertEquals(3, statistics.size());
+        assertEquals(CardinalityLevel.HIGH, statistics.cardinality("orders", "customer_id"),
+                "Distinct values that grow with the table are high cardinality even without a row count");
+        assertEquals(0, statistics.find("orders", "customer_id").distinctValues());
+        assertEquals(CardinalityLevel.MEDIUM, statistics.cardinality("orders", "channel"));
+        assertEquals(CardinalityLevel.HIGH, statistics.cardinality("orders", "coupon"),
+                "Mostly null columns select few rows per value");
+        assertNull(statistics.find("orders", "unknown"));
+    }
+
+    @Test
+    void testRejectsCsvWithoutStatistics() throws IOException {
+        Path file = tempDir.resolve("stats.csv");
+        Files.writeString(file, "tablename,attname\nusers,email\n");
+
+        assertThrows(IOException.class, () -> ColumnStatistics.load(file, null));
+    }
+
+    @Test
+    void testCardinalityThresholds() {
+        assertEquals(CardinalityLevel.LOW, new ColumnStatistics.Stats(0, 10, 0, -1).cardinality());
+        assertEquals(CardinalityLevel.MEDIUM, new ColumnStatistics.Stats(0, 11, 0, -1).cardinality());
+        assertEquals(CardinalityLevel.HIGH, new ColumnStatistics.Stats(0, 1000, 0, -1).cardinality());
+        assertEquals(CardinalityLevel.LOW, new ColumnStatistics.Stats(0, 5000, 0.3, -1).cardinality(),
+                "A dominant value makes an index useless for most lookups");
+        assertEquals(1000, new ColumnStatistics.Stats(0, -0.5, 0, 2000).distinctValues());
+        assertNull(new ColumnStatistics.Stats(0, 0, 0, -1).cardinality());
+    }
+
+    @Test
+    void testSplitKeepsQuotedCommas() {
+        assertEquals(List.of("public", "users", "{0.5,0.3}", "say \"hi\"", ""),
+                ColumnStatistics.split("public, users,\"{0.5,0.3}\",\"say \"\"hi\"\"\","));
+        assertEquals(0.5, ColumnStatistics.mostCommonFrequency("{0.3,0.5}"), 1e-9);
+        assertEquals(0.0, ColumnStatistics.mostCommonFrequency(null), 1e-9);
+    }
+}
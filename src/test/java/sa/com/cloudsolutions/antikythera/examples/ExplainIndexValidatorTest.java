@@ -0,0 +1,82 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExplainIndexValidatorTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String SEQ_SCAN = """
+            [{"Plan": {"Node Type": "Seq Scan", "Relation Name": "users", "Total Cost": 180.0}}]""";
+    private static final String INDEX_SCAN = """
+            [{"Plan": {"Node Type": "Nested Loop", "Total Cost": 16.5, "Plans": [
+                {"Node Type": "Index Scan", "Relation Name": "users", "Index Name": "idx_users_email"},
+                {"Node Type": "Seq Scan", "Relation Name": "orders"}
+            ]}}]""";
+
+    @Test
+    void testToPositionalParameters() {
+        assertEquals("SELECT * FROM users WHERE email = $1 AND status = $2",
+                ExplainIndexValidator.toPositionalParameters("SELECT * FROM users WHERE email = ? AND status = ?"));
+        assertEquals("SELECT * FROM users WHERE email = $2 AND status = $1",
+                ExplainIndexValidator.toPositionalParameters("SELECT * FROM users WHERE email = ?2 AND status = ?1"));
+        assertEquals("SELECT * FROM users WHERE a = $1 OR b = $1 OR c = $2",
+                ExplainIndexValidator.toPositionalParameters("SELECT * FROM users WHERE a = :name OR b = :name OR c = :other"));
+        assertEquals("SELECT id::text FROM users WHERE note = 'why? :not' AND x = $1",
+                ExplainIndexValidator.toPositionalParameters("SELECT id::text FROM users WHERE note = 'why? :not' AND x = ?"));
+    }
+
+    @Test
+    void testSummarizePlan() throws Exception {
+        ExplainIndexValidator.PlanSummary summary = ExplainIndexValidator.summarize(objectMapper.readTree(INDEX_SCAN));
+
+        assertEquals("(Nested Loop(Index Scan idx_users_email)(Seq Scan))", summary.shape());
+        assertEquals(Set.of("users", "orders"), summary.relations());
+        assertEquals(Set.of("idx_users_email"), summary.indexes());
+    }
+
+    @Test
+    void testUnusedIndexes() throws Exception {
+        ExplainIndexValidator.PlanSummary before = ExplainIndexValidator.summarize(objectMapper.readTree(SEQ_SCAN));
+        ExplainIndexValidator.PlanSummary after = ExplainIndexValidator.summarize(objectMapper.readTree(INDEX_SCAN));
+        List<ExplainIndexValidator.Candidate> candidates = List.of(
+                new ExplainIndexValidator.Candidate("users|email", "users", "idx_users_email", ""),
+                new ExplainIndexValidator.Candidate("users|status", "users", "idx_users_status", ""),
+                new ExplainIndexValidator.Candidate("users|name", "users", "idx_users_name", ""),
+                new ExplainIndexValidator.Candidate("invoices|total", "invoices", "idx_invoices_total", ""));
+        Set<String> created = Set.of("idx_users_email", "idx_users_status", "idx_invoices_total");
+
+        Set<String> unused = ExplainIndexValidator.unusedIndexes(candidates, created,
+                Map.of("q1", before), Map.of("q1", after));
+
+        assertEquals(Set.of("users|status"), unused,
+                "idx_users_name was never created and no query reads invoices, so neither can be judged");
+    }
+
+    @Test
+    void testUnchangedPlanDoesNotCountAsUse() throws Exception {
+        ExplainIndexValidator.PlanSummary plan = ExplainIndexValidator.summarize(objectMapper.readTree(INDEX_SCAN));
+        List<ExplainIndexValidator.Candidate> candidates = List.of(
+                new ExplainIndexValidator.Candidate("users|email", "users", "idx_users_email", ""));
+
+        assertEquals(Set.of("users|email"), ExplainIndexValidator.unusedIndexes(candidates,
+                Set.of("idx_users_email"), Map.of("q1", plan), Map.of("q1", plan)));
+    }
+
+    @Test
+    void testValueExpressions() {
+        assertEquals("CAST(g AS bigint)", ExplainIndexValidator.valueExpression("bigint", 0, 0));
+        assertEquals("left('v' || (g % 3), 10)", ExplainIndexValidator.valueExpression("character varying", 10,
+                ExplainIndexValidator.distinctValues(CardinalityLevel.LOW)));
+        assertEquals("'v' || (g % 100)", ExplainIndexValidator.valueExpression("text", 0,
+                ExplainIndexValidator.distinctValues(CardinalityLevel.MEDIUM)));
+        assertEquals("(g % 2 = 0)", ExplainIndexValidator.valueExpression("boolean", 0, 0));
+        assertNull(ExplainIndexValidator.valueExpression("USER-DEFINED", 0, 0));
+    }
+}
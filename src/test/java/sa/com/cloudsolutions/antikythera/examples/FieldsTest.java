@@ -1,14 +1,21 @@
 package sa.com.cloudsolutions.antikythera.examples;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
 
@@ -71,4 +78,96 @@ class FieldsTest {
         assertTrue(repoDeps.containsKey(subServiceFqn), "SubService should have inherited dependencies");
         assertTrue(repoDeps.get(subServiceFqn).contains("repo"), "SubService should inherit 'repo' field");
     }
+
+    @Test
+    void testMethodCallIndexCoversAllRepositoryFieldsOfAClass() {
+        for (String repo : new String[]{"UserRepo", "OrderRepo"}) {
+            CompilationUnit repoCu = StaticJavaParser.parse("package com.example; public interface " + repo + " {}");
+            AntikytheraRunTime.addType("com.example." + repo,
+                    new TypeWrapper(repoCu.getType(0).asClassOrInterfaceDeclaration()));
+            AntikytheraRunTime.addCompilationUnit("com.example." + repo, repoCu);
+        }
+
+        String serviceFqn = "com.example.Service";
+        CompilationUnit serviceCu = StaticJavaParser.parse("""
+                package com.example;
+                public class Service {
+                    private UserRepo users;
+                    private OrderRepo orders;
+                    void run() {
+                        users.findByEmail("a");
+                        this.orders.findByUser(1);
+                        java.util.stream.Stream.of(1).map(orders::findById);
+                        verify(users).deleteAll();
+                    }
+                }
+                """);
+        AntikytheraRunTime.addType(serviceFqn, new TypeWrapper(serviceCu.getType(0).asClassOrInterfaceDeclaration()));
+        AntikytheraRunTime.addCompilationUnit(serviceFqn, serviceCu);
+
+        Fields.buildDependencies();
+
+        Fields.CallerInfo users = new Fields.CallerInfo(serviceFqn, "users");
+        Fields.CallerInfo orders = new Fields.CallerInfo(serviceFqn, "orders");
+        assertEquals(Set.of(users), Fields.getMethodCallers("com.example.UserRepo", "findByEmail"));
+        assertEquals(Set.of(users), Fields.getMethodCallers("com.example.UserRepo", "deleteAll"));
+        assertEquals(Set.of(orders), Fields.getMethodCallers("com.example.OrderRepo", "findByUser"));
+        assertEquals(Set.of(orders), Fields.getMethodCallers("com.example.OrderRepo", "findById"));
+        assertEquals(Set.of("findByUser", "findById"), Fields.getIndexedMethodNames("com.example.OrderRepo"));
+    }
+
+    private static void registerFromFile(String fqn, Path source) throws IOException {
+        CompilationUnit cu = StaticJavaParser.parse(source);
+        AntikytheraRunTime.addType(fqn, new TypeWrapper(cu.getType(0).asClassOrInterfaceDeclaration()));
+        AntikytheraRunTime.addCompilationUnit(fqn, cu);
+    }
+
+    @Test
+    void testPersistedIndexReusesUnchangedFiles(@TempDir Path tempDir) throws IOException {
+        Path repo = Files.writeString(tempDir.resolve("UserRepo.java"),
+                "package com.example; public interface UserRepo {}");
+        Path service = Files.writeString(tempDir.resolve("Service.java"), """
+                package com.example;
+                public class Service {
+                    private UserRepo users;
+                    void run() { users.findByEmail("a"); }
+                }
+                """);
+        Fields.setIndexStoreFile(tempDir.resolve("index/call-sites.json.gz").toFile());
+        try {
+            registerFromFile("com.example.UserRepo", repo);
+            registerFromFile("com.example.Service", service);
+            Fields.buildDependencies();
+            assertTrue(Files.exists(tempDir.resolve("index/call-sites.json.gz")));
+
+            // Same file on disk, but the call is gone from the AST: the stored entry must be used
+            AntikytheraRunTime.resetAll();
+            Fields.clearFieldDependencies();
+            registerFromFile("com.example.UserRepo", repo);
+            registerFromFile("com.example.Service", service);
+            AntikytheraRunTime.getCompilationUnit("com.example.Service")
+                    .findAll(ExpressionStmt.class).forEach(Node::remove);
+            Fields.buildDependencies();
+            assertEquals(Set.of(new Fields.CallerInfo("com.example.Service", "users")),
+                    Fields.getMethodCallers("com.example.UserRepo", "findByEmail"));
+
+            // A changed file is traversed again
+            Files.writeString(service, """
+                    package com.example;
+                    public class Service {
+                        private UserRepo users;
+                        void run() { users.findByName("a"); }
+                    }
+                    """);
+            AntikytheraRunTime.resetAll();
+            Fields.clearFieldDependencies();
+            registerFromFile("com.example.UserRepo", repo);
+            registerFromFile("com.example.Service", service);
+            Fields.buildDependencies();
+            assertTrue(Fields.getMethodCallers("com.example.UserRepo", "findByEmail").isEmpty());
+            assertEquals(1, Fields.getMethodCallers("com.example.UserRepo", "findByName").size());
+        } finally {
+            Fields.setIndexStoreFile(null);
+        }
+    }
 }
@@ -11,6 +11,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
@@ -29,6 +30,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -191,6 +193,75 @@ class GeminiAIServiceTest {
         }
     }
 
+    @Test
+    void testAnalyzeQueryBatches_ConcurrentKeepsBatchOrder() throws Exception {
+        try (MockedStatic<HttpClient> httpClientMock = mockStatic(HttpClient.class)) {
+            HttpClient.Builder mockBuilder = mock(HttpClient.Builder.class);
+            when(mockBuilder.connectTimeout(any())).thenReturn(mockBuilder);
+            when(mockBuilder.build()).thenReturn(mockHttpClient);
+            httpClientMock.when(HttpClient::newBuilder).thenReturn(mockBuilder);
+
+            Map<String, Object> concurrentConfig = new HashMap<>(config);
+            concurrentConfig.put("max_concurrent_requests", 3);
+            GeminiAIService testService = new GeminiAIService();
+            testService.configure(concurrentConfig);
+            assertEquals(3, testService.getMaxConcurrentRequests());
+
+            String mockResponseBody = """
+                    {
+                      "candidates": [
+                        {
+                          "content": {
+                            "parts": [
+                              {
+                                "text": "[{\\"optimizedCodeElement\\": \\"User findByUsername(String username);\\", \\"notes\\": \\"N/A\\"}]"
+                              }
+                            ]
+                          }
+                        }
+                      ],
+                      "usageMetadata": {
+                        "promptTokenCount": 100,
+                        "candidatesTokenCount": 50,
+                        "totalTokenCount": 150
+                      }
+                    }
+                    """;
+            when(mockHttpResponse.statusCode()).thenReturn(200);
+            when(mockHttpResponse.body()).thenReturn(mockResponseBody);
+            when(mockHttpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                    .thenReturn(mockHttpResponse);
+
+            List<QueryBatch> batches = List.of(createTestQueryBatch(), createTestQueryBatch(), createTestQueryBatch());
+            List<AbstractAIService.BatchAnalysis> analyses = testService.analyzeQueryBatches(batches);
+
+            assertEquals(3, analyses.size());
+            for (int i = 0; i < batches.size(); i++) {
+                assertSame(batches.get(i), analyses.get(i).batch());
+                assertEquals(1, analyses.get(i).issues().size());
+                assertEquals(150, analyses.get(i).tokenUsage().getTotalTokens());
+            }
+            verify(mockHttpClient, times(3)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+        }
+    }
+
+    @Test
+    void testBatchTokenBudget_StaysWithinPricingTier() {
+        assertEquals(0, geminiAIService.getBatchTokenBudget());
+        assertEquals(5, geminiAIService.getMaxQueriesPerBatch());
+
+        geminiAIService.configure(Map.of("api_key", "test-key", "model", "gemini-2.5-pro",
+                "max_tokens_per_request", 500000));
+        int budget = geminiAIService.getBatchTokenBudget();
+        assertTrue(budget > 0 && budget < 200000, "budget should be capped below the 200k price tier");
+        assertEquals(50, geminiAIService.getMaxQueriesPerBatch());
+
+        geminiAIService.configure(Map.of("api_key", "test-key", "model", "gemini-2.5-pro",
+                "max_tokens_per_request", 8000, "queries_per_request", 20));
+        assertEquals(8000, geminiAIService.getBatchTokenBudget());
+        assertEquals(20, geminiAIService.getMaxQueriesPerBatch());
+    }
+
     @Test
     void testGetCacheEfficiency_NoTokens() {
         assertEquals(0.0, geminiAIService.getCacheEfficiency());
@@ -385,6 +456,133 @@ class GeminiAIServiceTest {
         assertTrue(result.contains("DERIVED"));
     }
 
+    private GeminiAIService contextCachingService(String... cacheResponses) throws Exception {
+        return contextCachingService(new GeminiAIService(), cacheResponses);
+    }
+
+    private GeminiAIService contextCachingService(GeminiAIService service, String... cacheResponses)
+            throws Exception {
+        HttpClient.Builder mockBuilder = mock(HttpClient.Builder.class);
+        when(mockBuilder.connectTimeout(any())).thenReturn(mockBuilder);
+        when(mockBuilder.build()).thenReturn(mockHttpClient);
+
+        try (MockedStatic<HttpClient> httpClientMock = mockStatic(HttpClient.class)) {
+            httpClientMock.when(HttpClient::newBuilder).thenReturn(mockBuilder);
+            Map<String, Object> cachingConfig = new HashMap<>(config);
+            cachingConfig.put("context_cache", true);
+            service.configure(cachingConfig);
+        }
+
+        when(mockHttpResponse.statusCode()).thenReturn(200);
+        String first = cacheResponses[0];
+        String[] rest = Arrays.copyOfRange(cacheResponses, 1, cacheResponses.length);
+        when(mockHttpResponse.body()).thenReturn(first, rest);
+        when(mockHttpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(mockHttpResponse);
+        return service;
+    }
+
+    @Test
+    void testContextCache_CreatedOnceAndReferenced() throws Exception {
+        String expiry = Instant.now().plusSeconds(3600).toString();
+        GeminiAIService service = contextCachingService(
+                "{\"name\": \"cachedContents/abc\", \"expireTime\": \"" + expiry + "\"}");
+
+        String first = service.buildGeminiApiRequest("[]");
+        String second = service.buildGeminiApiRequest("[]");
+
+        assertTrue(first.contains("\"cachedContent\":\"cachedContents/abc\""));
+        assertFalse(first.contains("system_instruction"));
+        assertEquals(first, second);
+        verify(mockHttpClient, times(1)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    void testContextCache_RefreshedBeforeExpiry() throws Exception {
+        String soon = Instant.now().plusSeconds(30).toString();
+        String later = Instant.now().plusSeconds(3600).toString();
+        GeminiAIService service = contextCachingService(
+                "{\"name\": \"cachedContents/abc\", \"expireTime\": \"" + soon + "\"}",
+                "{\"name\": \"cachedContents/abc\", \"expireTime\": \"" + later + "\"}");
+
+        service.buildGeminiApiRequest("[]");
+        String payload = service.buildGeminiApiRequest("[]");
+
+        assertTrue(payload.contains("cachedContents/abc"));
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(mockHttpClient, times(2)).send(requests.capture(), any(HttpResponse.BodyHandler.class));
+        assertEquals("POST", requests.getAllValues().get(0).method());
+        assertEquals("PATCH", requests.getAllValues().get(1).method());
+        assertTrue(requests.getAllValues().get(1).uri().toString().contains("cachedContents/abc"));
+    }
+
+    @Test
+    void testContextCache_FallsBackToInlinePrompt() throws Exception {
+        GeminiAIService service = contextCachingService("{}");
+        when(mockHttpResponse.statusCode()).thenReturn(400);
+
+        String first = service.buildGeminiApiRequest("[]");
+        String second = service.buildGeminiApiRequest("[]");
+
+        assertTrue(first.contains("system_instruction"));
+        assertFalse(first.contains("cachedContent"));
+        assertTrue(second.contains("system_instruction"));
+        // the failed creation is not retried for every batch
+        verify(mockHttpClient, times(1)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    void testContextCache_RetriedAfterTransientFailure() throws Exception {
+        String expiry = Instant.now().plusSeconds(3600).toString();
+        GeminiAIService service = contextCachingService(
+                "{\"error\": \"unavailable\"}",
+                "{\"name\": \"cachedContents/abc\", \"expireTime\": \"" + expiry + "\"}");
+        when(mockHttpResponse.statusCode()).thenReturn(503, 200);
+
+        String first = service.buildGeminiApiRequest("[]");
+        String second = service.buildGeminiApiRequest("[]");
+
+        assertTrue(first.contains("system_instruction"));
+        assertTrue(second.contains("\"cachedContent\":\"cachedContents/abc\""));
+        verify(mockHttpClient, times(2)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    void testSendApiRequest_ResendsOnceWithRefreshedCache() throws Exception {
+        String expiry = Instant.now().plusSeconds(3600).toString();
+        List<String> sent = new ArrayList<>();
+        GeminiAIService service = contextCachingService(new GeminiAIService() {
+                    @Override
+                    protected String executeHttpRequest(HttpRequest request, String payload, int retryCount)
+                            throws IOException {
+                        sent.add(payload);
+                        if (sent.size() == 1) {
+                            throw new IOException("API request failed with status: 403, body: "
+                                    + "CachedContent not found (or permission denied)");
+                        }
+                        return "{\"candidates\": []}";
+                    }
+                },
+                "{\"name\": \"cachedContents/abc\", \"expireTime\": \"" + expiry + "\"}",
+                "{\"name\": \"cachedContents/def\", \"expireTime\": \"" + expiry + "\"}");
+
+        String response = service.sendApiRequest(service.buildGeminiApiRequest("[]"), 0);
+
+        assertEquals("{\"candidates\": []}", response);
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(0).contains("\"cachedContent\":\"cachedContents/abc\""));
+        assertTrue(sent.get(1).contains("\"cachedContent\":\"cachedContents/def\""));
+        assertFalse(sent.get(1).contains("system_instruction"));
+        // the stale cache is replaced by creating a new one, not by refreshing it
+        verify(mockHttpClient, times(2)).send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class));
+    }
+
+    @Test
+    void testWithFreshCachedContent_IgnoresUnrelatedFailures() throws Exception {
+        String payload = geminiAIService.buildGeminiApiRequest("[]");
+        assertNull(geminiAIService.withFreshCachedContent(payload, new IOException("status: 500")));
+    }
+
     @Test
     void testExtractTokenUsage_ValidResponse() throws IOException {
         String responseBody = """
@@ -431,6 +629,9 @@ class GeminiAIServiceTest {
         // outputCost = (100000/1M)*0.30 = 0.03
         // total = 0.0346875
         assertEquals(0.0346875, tokenUsage.getEstimatedCost(), 0.000001);
+        // 50000 cached tokens at 25% of $0.075/1M instead of the full price
+        assertEquals(0.0028125, tokenUsage.getCacheSavings(), 0.000001);
+        assertTrue(tokenUsage.getFormattedReport().contains("Cache Savings=$0.0028"));
     }
 
     @Test
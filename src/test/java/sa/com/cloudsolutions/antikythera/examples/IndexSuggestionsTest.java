@@ -0,0 +1,99 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexSuggestionsTest {
+
+    @Test
+    void testKeepsInsertionOrderAcrossRemovals() {
+        IndexSuggestions suggestions = new IndexSuggestions();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String key = "table" + (i % 7) + "|col" + (499 - i) + ",col" + i;
+            assertTrue(suggestions.addMultiColumn(key));
+            if (i % 3 != 0) {
+                expected.add(key);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < 500; i += 3) {
+            removed.add("table" + (i % 7) + "|col" + (499 - i) + ",col" + i);
+        }
+        suggestions.removeAll(removed);
+
+        assertEquals(expected, new ArrayList<>(suggestions.multiColumnKeys()));
+        assertEquals(expected, suggestions.multiColumn().stream().map(IndexSuggestions.Suggestion::key).toList());
+    }
+
+    @Test
+    void testDuplicatesAndMalformedKeysAreRejected() {
+        IndexSuggestions suggestions = new IndexSuggestions();
+        assertTrue(suggestions.addMultiColumn("users|email,name"));
+        assertFalse(suggestions.addMultiColumn("USERS|Email,Name"));
+        assertFalse(suggestions.addMultiColumn("malformed_key"));
+        assertFalse(suggestions.addMultiColumn("|"));
+        assertFalse(suggestions.addMultiColumn("table|"));
+        assertFalse(suggestions.addSingleColumn("users|"));
+
+        assertEquals(Set.of("users|email,name"), suggestions.multiColumnKeys());
+        assertTrue(suggestions.containsMultiColumn("Users|EMAIL,name"));
+    }
+
+    @Test
+    void testCoverageFollowsTheColumnPrefix() {
+        IndexSuggestions suggestions = new IndexSuggestions();
+        suggestions.addMultiColumn("users|id,name,email");
+        suggestions.addMultiColumn("users|status,created_at");
+
+        assertTrue(suggestions.isCoveredByMultiColumn("users", List.of("id")));
+        assertTrue(suggestions.isCoveredByMultiColumn("users", List.of("ID", "Name")));
+        assertTrue(suggestions.isCoveredByMultiColumn("users", List.of("id", "name", "email")));
+        assertFalse(suggestions.isCoveredByMultiColumn("users", List.of("name")));
+        assertFalse(suggestions.isCoveredByMultiColumn("users", List.of("id", "email")));
+        assertFalse(suggestions.isCoveredByMultiColumn("orders", List.of("id")));
+
+        assertEquals("users|id,name,email",
+                suggestions.findMultiColumnStartingWith("users", List.of("id", "name"), 3).key());
+        assertNull(suggestions.findMultiColumnStartingWith("users", List.of("id", "name", "email"), 4));
+        assertNull(suggestions.findMultiColumnStartingWith("users", List.of("status", "created_at"), 3));
+    }
+
+    @Test
+    void testPrefixesAndSingleColumnOnThePath() {
+        IndexSuggestions suggestions = new IndexSuggestions();
+        suggestions.addSingleColumn("users|id");
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("users|id,name,email");
+        suggestions.addMultiColumn("users|name,id");
+
+        List<String> prefixes = suggestions.multiColumnPrefixesOf("users", List.of("id", "name", "email", "status"))
+                .stream().map(IndexSuggestions.Suggestion::key).toList();
+        assertEquals(List.of("users|id,name", "users|id,name,email"), prefixes);
+        assertEquals("users|id", suggestions.findSingleColumn("users", "ID").key());
+        assertNull(suggestions.findSingleColumn("users", "name"));
+    }
+
+    @Test
+    void testRemovedSuggestionsNoLongerCover() {
+        IndexSuggestions suggestions = new IndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("users|id,name,email");
+        suggestions.addSingleColumn("users|id");
+
+        suggestions.removeAll(List.of("users|id,name,email"));
+        assertNull(suggestions.findMultiColumnStartingWith("users", List.of("id", "name"), 3));
+        assertTrue(suggestions.isCoveredByMultiColumn("users", List.of("id")));
+
+        suggestions.removeAll(List.of("users|id,name", "users|id"));
+        assertFalse(suggestions.isCoveredByMultiColumn("users", List.of("id")));
+        assertNull(suggestions.findSingleColumn("users", "id"));
+        assertTrue(suggestions.multiColumn().isEmpty());
+        assertTrue(suggestions.singleColumn().isEmpty());
+    }
+}
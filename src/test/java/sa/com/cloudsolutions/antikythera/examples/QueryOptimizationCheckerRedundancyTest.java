@@ -11,7 +11,7 @@ import java.io.FileWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -62,9 +62,9 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_BasicRedundancy() {
         // Setup: Add indexes where (A,B) is covered by (A,B,C)
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name");           // Should be removed
-        multiColumnIndexes.add("users|id,name,email");     // Covers the above
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");           // Should be removed
+        suggestions.addMultiColumn("users|id,name,email");     // Covers the above
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -80,9 +80,9 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_NoDifferentTables() {
         // Setup: Indexes on different tables should not interfere
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name");
-        multiColumnIndexes.add("orders|id,name,email");    // Different table
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("orders|id,name,email");    // Different table
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -95,9 +95,9 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_DifferentColumnOrder() {
         // Setup: Different column order means no coverage
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name");
-        multiColumnIndexes.add("users|name,id,email");     // Different order
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("users|name,id,email");     // Different order
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -110,10 +110,10 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_MultipleCoveringIndexes() {
         // Setup: One index covered by multiple larger indexes
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name");           // Should be removed
-        multiColumnIndexes.add("users|id,name,email");     // Covers the above
-        multiColumnIndexes.add("users|id,name,status");    // Also covers the above
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");           // Should be removed
+        suggestions.addMultiColumn("users|id,name,email");     // Covers the above
+        suggestions.addMultiColumn("users|id,name,status");    // Also covers the above
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -138,8 +138,8 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_SingleIndex() {
         // Setup: Only one index
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name,email");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name,email");
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -152,9 +152,9 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_CaseInsensitive() {
         // Setup: Test case-insensitive comparison
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|email,name");        // Should be removed
-        multiColumnIndexes.add("users|EMAIL,NAME,id");     // Covers the above (case-insensitive)
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|email,name");        // Should be removed
+        suggestions.addMultiColumn("users|EMAIL,NAME,id");     // Covers the above (case-insensitive)
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -167,10 +167,10 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantMultiColumnIndexes_ChainedRedundancy() {
         // Setup: (A,B) covered by (A,B,C) covered by (A,B,C,D)
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name");
-        multiColumnIndexes.add("users|id,name,email");
-        multiColumnIndexes.add("users|id,name,email,status");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("users|id,name,email");
+        suggestions.addMultiColumn("users|id,name,email,status");
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -190,11 +190,10 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_CoveredByMultiColumn() {
         // Setup: Single-column index covered by multi-column index with same leading column
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
         
-        singleIndexes.add("users|email");                  // Should be removed
-        multiColumnIndexes.add("users|email,name");        // Covers the above
+        suggestions.addSingleColumn("users|email");                  // Should be removed
+        suggestions.addMultiColumn("users|email,name");        // Covers the above
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -208,11 +207,10 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_NotCoveredNonLeadingColumn() {
         // Setup: Single-column index NOT covered (not the leading column)
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
         
-        singleIndexes.add("users|name");                   // Should NOT be removed
-        multiColumnIndexes.add("users|email,name");        // name is not leading column
+        suggestions.addSingleColumn("users|name");                   // Should NOT be removed
+        suggestions.addMultiColumn("users|email,name");        // name is not leading column
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -226,15 +224,14 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_MultipleSingleColumns() {
         // Setup: Multiple single-column indexes, some covered, some not
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
         
-        singleIndexes.add("users|email");                  // Should be removed
-        singleIndexes.add("users|name");                   // Should NOT be removed
-        singleIndexes.add("users|status");                 // Should be removed
+        suggestions.addSingleColumn("users|email");                  // Should be removed
+        suggestions.addSingleColumn("users|name");                   // Should NOT be removed
+        suggestions.addSingleColumn("users|status");                 // Should be removed
         
-        multiColumnIndexes.add("users|email,created_at");  // Covers email
-        multiColumnIndexes.add("users|status,updated_at"); // Covers status
+        suggestions.addMultiColumn("users|email,created_at");  // Covers email
+        suggestions.addMultiColumn("users|status,updated_at"); // Covers status
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -252,11 +249,10 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_DifferentTables() {
         // Setup: Single-column and multi-column on different tables
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
         
-        singleIndexes.add("users|email");
-        multiColumnIndexes.add("orders|email,created_at"); // Different table
+        suggestions.addSingleColumn("users|email");
+        suggestions.addMultiColumn("orders|email,created_at"); // Different table
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -269,9 +265,9 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_EmptyMultiColumnSet() {
         // Setup: Single-column indexes but no multi-column indexes
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        singleIndexes.add("users|email");
-        singleIndexes.add("users|name");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addSingleColumn("users|email");
+        suggestions.addSingleColumn("users|name");
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -284,8 +280,8 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_EmptySingleColumnSet() {
         // Setup: Multi-column indexes but no single-column indexes
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|email,name");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|email,name");
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -297,11 +293,10 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testRemoveRedundantSingleColumnIndexes_CaseInsensitive() {
         // Setup: Test case-insensitive comparison
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
         
-        singleIndexes.add("users|email");                  // Should be removed
-        multiColumnIndexes.add("users|EMAIL,name");        // Covers email (case-insensitive)
+        suggestions.addSingleColumn("users|email");                  // Should be removed
+        suggestions.addMultiColumn("users|EMAIL,name");        // Covers email (case-insensitive)
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantSingleColumnIndexes(toRemove);
@@ -316,17 +311,16 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testBothMethodsTogether_ComplexScenario() {
         // Setup: Complex scenario with both types of redundancy
-        LinkedHashSet<String> singleIndexes = checker.getSuggestedNewIndexes();
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
         
         // Single-column indexes
-        singleIndexes.add("users|email");                  // Covered by multi-column
-        singleIndexes.add("users|status");                 // Not covered
+        suggestions.addSingleColumn("users|email");                  // Covered by multi-column
+        suggestions.addSingleColumn("users|status");                 // Not covered
         
         // Multi-column indexes
-        multiColumnIndexes.add("users|email,name");        // Covers single email
-        multiColumnIndexes.add("users|id,created_at");     // Standalone
-        multiColumnIndexes.add("users|id,created_at,updated_at"); // Covers above
+        suggestions.addMultiColumn("users|email,name");        // Covers single email
+        suggestions.addMultiColumn("users|id,created_at");     // Standalone
+        suggestions.addMultiColumn("users|id,created_at,updated_at"); // Covers above
 
         Set<String> toRemove = new HashSet<>();
         
@@ -351,11 +345,11 @@ class QueryOptimizationCheckerRedundancyTest {
     @Test
     void testMalformedIndexKeys() {
         // Setup: Test with malformed keys (missing pipe separator)
-        LinkedHashSet<String> multiColumnIndexes = checker.getSuggestedMultiColumnIndexes();
-        multiColumnIndexes.add("users|id,name");
-        multiColumnIndexes.add("malformed_key");           // No pipe separator
-        multiColumnIndexes.add("|");                       // Only pipe
-        multiColumnIndexes.add("table|");                  // No columns
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("malformed_key");           // No pipe separator
+        suggestions.addMultiColumn("|");                       // Only pipe
+        suggestions.addMultiColumn("table|");                  // No columns
 
         Set<String> toRemove = new HashSet<>();
         checker.removeRedundantMultiColumnIndexes(toRemove);
@@ -364,4 +358,65 @@ class QueryOptimizationCheckerRedundancyTest {
         assertTrue(toRemove.isEmpty(), 
             "Malformed keys should be skipped without causing errors");
     }
+
+    // ==================== Workload ranking and index budget ====================
+
+    @Test
+    void testCoveredIndexesCreditTheirBenefitToTheSurvivingIndex() {
+        checker.setWorkload(new WorkloadProfile(WorkloadProfile.DEFAULT_WRITE_COST_MS));
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|id,name");
+        suggestions.addMultiColumn("users|id,name,email");
+        suggestions.addMultiColumn("users|id,name,email,status");
+        suggestions.addSingleColumn("users|id");
+        suggestions.addBenefit("users|id,name", 10);
+        suggestions.addBenefit("users|id,name,email", 20);
+        suggestions.addBenefit("users|id", 5);
+
+        checker.generateLiquibaseChangesets();
+
+        assertEquals(Set.of("users|id,name,email,status"), suggestions.multiColumnKeys());
+        assertTrue(suggestions.singleColumnKeys().isEmpty());
+        IndexSuggestions.Suggestion survivor = suggestions.multiColumn().iterator().next();
+        assertEquals(35.0, suggestions.benefitOf(survivor), 1e-9);
+    }
+
+    @Test
+    void testWorkloadRanksAndBudgetLimitsSuggestions() {
+        WorkloadProfile workload = new WorkloadProfile(WorkloadProfile.DEFAULT_WRITE_COST_MS);
+        workload.put("OrderRepository", "save", 100_000, 0);
+        workload.mapRepository("com.example.OrderRepository", "orders");
+        checker.setWorkload(workload);
+        checker.setMaxIndexesPerTable(2);
+
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addSingleColumn("users|created_at");      // not in the workload
+        suggestions.addMultiColumn("users|email,name");
+        suggestions.addSingleColumn("users|status");
+        suggestions.addSingleColumn("orders|code");           // costs more to maintain than it saves
+        suggestions.addBenefit("users|email,name", 100);
+        suggestions.addBenefit("users|status", 500);
+        suggestions.addBenefit("orders|code", 1);
+
+        checker.generateLiquibaseChangesets();
+
+        assertEquals(Set.of("users|email,name"), suggestions.multiColumnKeys());
+        assertEquals(Set.of("users|status"), suggestions.singleColumnKeys(),
+                "The unmeasured index is over the budget and the orders index is not worth its writes");
+    }
+
+    @Test
+    void testRankingWithoutWorkloadKeepsInsertionOrder() {
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addSingleColumn("users|b");
+        suggestions.addSingleColumn("users|a");
+        suggestions.addBenefit("users|a", 100);
+
+        assertEquals(List.of("users|b", "users|a"), checker.rankByWorkload(suggestions.singleColumn())
+                .stream().map(IndexSuggestions.Suggestion::key).toList());
+
+        checker.setWorkload(new WorkloadProfile(WorkloadProfile.DEFAULT_WRITE_COST_MS));
+        assertEquals(List.of("users|a", "users|b"), checker.rankByWorkload(suggestions.singleColumn())
+                .stream().map(IndexSuggestions.Suggestion::key).toList());
+    }
 }
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
@@ -208,6 +209,66 @@ class QueryOptimizationCheckerTest {
         assertTrue(result.toString().contains("TestRepository"));
     }
 
+    private RepositoryQuery mockQueryNamed(String methodName) {
+        sa.com.cloudsolutions.antikythera.parser.Callable callable = mock(
+                sa.com.cloudsolutions.antikythera.parser.Callable.class);
+        when(callable.getNameAsString()).thenReturn(methodName);
+        RepositoryQuery query = mock(RepositoryQuery.class);
+        when(query.getMethodName()).thenReturn(methodName);
+        when(query.getMethodDeclaration()).thenReturn(callable);
+        return query;
+    }
+
+    private List<RepositoryQuery> mockQueries(int count) {
+        QueryAnalysisEngine engine = mock(QueryAnalysisEngine.class);
+        when(engine.analyzeQuery(any())).thenAnswer(
+                inv -> new QueryAnalysisResult(inv.getArgument(0), new ArrayList<>()));
+        checker.setAnalysisEngine(engine);
+
+        List<RepositoryQuery> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            queries.add(mockQueryNamed("findByField" + i));
+        }
+        return queries;
+    }
+
+    @Test
+    void testCreateQueryBatches_FixedSizeWithoutTokenBudget() throws Exception {
+        List<RepositoryQuery> queries = mockQueries(7);
+
+        List<QueryBatch> batches = checker.createQueryBatches("TestRepository", queries);
+
+        assertEquals(List.of(5, 2), batches.stream().map(QueryBatch::size).toList());
+    }
+
+    @Test
+    void testCreateQueryBatches_PacksByTokenBudget() throws Exception {
+        List<RepositoryQuery> queries = mockQueries(5);
+        when(mockAiService.getMaxQueriesPerBatch()).thenReturn(50);
+        when(mockAiService.getBatchTokenBudget()).thenReturn(25);
+        when(mockAiService.estimateBatchTokens(any()))
+                .thenAnswer(inv -> 10 * ((QueryBatch) inv.getArgument(0)).size());
+
+        List<QueryBatch> batches = checker.createQueryBatches("TestRepository", queries);
+
+        assertEquals(List.of(2, 2, 1), batches.stream().map(QueryBatch::size).toList());
+        // every query is estimated exactly once, never the growing batch
+        verify(mockAiService, times(5)).estimateBatchTokens(argThat(batch -> batch.size() == 1));
+        verify(mockAiService, times(5)).estimateBatchTokens(any());
+    }
+
+    @Test
+    void testCreateQueryBatches_QueryCountCapAppliesWithinBudget() throws Exception {
+        List<RepositoryQuery> queries = mockQueries(5);
+        when(mockAiService.getMaxQueriesPerBatch()).thenReturn(3);
+        when(mockAiService.getBatchTokenBudget()).thenReturn(10_000);
+        when(mockAiService.estimateBatchTokens(any())).thenReturn(1);
+
+        List<QueryBatch> batches = checker.createQueryBatches("TestRepository", queries);
+
+        assertEquals(List.of(3, 2), batches.stream().map(QueryBatch::size).toList());
+    }
+
     @Test
     void testAnalyzeLLMRecommendations() {
         List<OptimizationIssue> recommendations = Arrays.asList(mockOptimizationIssue);
@@ -225,8 +286,8 @@ class QueryOptimizationCheckerTest {
     @Test
     void testIsCoveredByComposite() {
         // Add a multi-column index suggestion
-        LinkedHashSet<String> multiColumnSet = checker.getSuggestedMultiColumnIndexes();
-        multiColumnSet.add("users|email,name");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addMultiColumn("users|email,name");
 
         assertTrue(checker.isCoveredByComposite("users", "email"));
         assertFalse(checker.isCoveredByComposite("users", "name")); // Not first column
@@ -281,8 +342,8 @@ class QueryOptimizationCheckerTest {
     @Test
     void testGenerateLiquibaseChangesFile() {
         // Add some index suggestions
-        LinkedHashSet<String> suggestedSet = checker.getSuggestedNewIndexes();
-        suggestedSet.add("users|email");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addSingleColumn("users|email");
 
         // This method requires file I/O, so we'll just test it doesn't throw
         try {
@@ -346,8 +407,8 @@ class QueryOptimizationCheckerTest {
     @Test
     void testLiquibaseGeneration() {
         // Test the method that generates Liquibase changes
-        LinkedHashSet<String> suggestedSet = checker.getSuggestedNewIndexes();
-        suggestedSet.add("users|email");
+        IndexSuggestions suggestions = checker.getIndexSuggestions();
+        suggestions.addSingleColumn("users|email");
 
         // This will likely fail due to file I/O but we test it doesn't crash
         try {
@@ -449,6 +510,15 @@ class QueryOptimizationCheckerTest {
         verify(mockRepositoryParser).buildQueries();
     }
 
+    @Test
+    void testParseRepository_EntityNotIdentified() throws Exception {
+        when(mockTypeWrapper.getFullyQualifiedName()).thenReturn("com.example.UserRepository");
+        when(mockRepositoryParser.getEntity()).thenReturn(null);
+
+        assertNull(checker.parseRepository(mockTypeWrapper, mockRepositoryParser));
+        verify(mockRepositoryParser, never()).buildQueries();
+    }
+
     @Test
     void testAnalyze() {
         try {
@@ -488,13 +558,13 @@ class QueryOptimizationCheckerTest {
 
     @Test
     void testRemoveProposedIndexesCoveredBy_TableMismatch() {
-        checker.getSuggestedMultiColumnIndexes().add("orders|user_id");
+        checker.getIndexSuggestions().addMultiColumn("orders|user_id");
         List<String> newColumns = List.of("user_id", "created_date");
         
         // This should NOT remove "orders|user_id" because we are adding an index to "users"
         checker.removeProposedIndexesCoveredBy("users", newColumns);
         
-        assertTrue(checker.getSuggestedMultiColumnIndexes().contains("orders|user_id"));
+        assertTrue(checker.getIndexSuggestions().containsMultiColumn("orders|user_id"));
     }
 
     @Test
@@ -507,4 +577,46 @@ class QueryOptimizationCheckerTest {
         assertFalse(checker.isCoveredByComposite("users", "email"));
         assertFalse(checker.isCoveredByComposite("", ""));
     }
+
+    @Test
+    void testResumedSuggestionsAreValidatedAgainstTheirQueries(@TempDir Path tempDir) throws Exception {
+        File checkpointFile = tempDir.resolve("checkpoint.json").toFile();
+        CheckpointManager interrupted = new CheckpointManager(checkpointFile);
+        interrupted.load();
+        checker.setCheckpointManager(interrupted);
+        checker.getIndexSuggestions().addSingleColumn("orders|customer_id");
+        checker.getExplainQueries().add("SELECT * FROM orders WHERE customer_id = ?");
+        interrupted.markProcessed("com.example.OrderRepository");
+        checker.onBeforeCheckpointSave();
+        interrupted.save();
+
+        // The next run resumes from the checkpoint and analyzes one more repository
+        QueryOptimizationChecker resumed = new QueryOptimizationChecker(liquibaseFile);
+        resumed.setCheckpointManager(new CheckpointManager(checkpointFile));
+        resumed.checkResumptionState();
+        resumed.getExplainQueries().add("SELECT * FROM users WHERE email = ?");
+
+        List<String> explained = new ArrayList<>();
+        resumed.setExplainValidator(new ExplainIndexValidator("jdbc:postgresql://localhost/unused", null, null, 0, Map.of()) {
+            @Override
+            Set<String> findUnusedIndexes(Path masterChangelog, List<Candidate> candidates, Collection<String> queries) {
+                explained.addAll(queries);
+                // Drops the candidates whose table none of the explained queries reads
+                Set<String> unused = new HashSet<>();
+                for (Candidate candidate : candidates) {
+                    if (queries.stream().noneMatch(q -> q.contains(" " + candidate.table() + " "))) {
+                        unused.add(candidate.key());
+                    }
+                }
+                return unused;
+            }
+        });
+
+        List<String> changesets = resumed.generateLiquibaseChangesets();
+
+        assertEquals(List.of("SELECT * FROM orders WHERE customer_id = ?", "SELECT * FROM users WHERE email = ?"),
+                explained);
+        assertTrue(resumed.getIndexSuggestions().singleColumnKeys().contains("orders|customer_id"));
+        assertTrue(changesets.stream().anyMatch(c -> c.contains("customer_id")));
+    }
 }
@@ -5,12 +5,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.examples.metrics.CsvMetricsSink;
+import sa.com.cloudsolutions.antikythera.examples.metrics.JsonLinesMetricsSink;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -218,4 +221,71 @@ class QueryOptimizationTrackerTest {
 
         assertEquals("query-optimization-stats.csv", tracker.getLogFilePath());
     }
+
+    @Test
+    void testIndexIsReusedAndCaughtUp() throws IOException {
+        File csvFile = tempDir.resolve("test-stats.csv").toFile();
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("Date,Repository Name,Queries\n");
+            writer.write("2024-01-01,com.example.UserRepository,5\n");
+        }
+
+        Map<String, Object> dbConfig = new HashMap<>();
+        Map<String, Object> qcConfig = new HashMap<>();
+        qcConfig.put("skip_processed", true);
+        dbConfig.put("query_conversion", qcConfig);
+        dbConfig.put("log_file", csvFile.getAbsolutePath());
+        Settings.setProperty("database", dbConfig);
+
+        QueryOptimizationTracker.reset();
+        QueryOptimizationTracker tracker = QueryOptimizationTracker.getInstance();
+        tracker.markProcessed("com.example.OrderRepository");
+        tracker.save();
+        assertTrue(new File(csvFile.getAbsolutePath() + ProcessedRepositoryStore.INDEX_SUFFIX).exists());
+
+        // rows appended after the index was written are picked up without the index
+        try (FileWriter writer = new FileWriter(csvFile, true)) {
+            writer.write("2024-01-02,com.example.ProductRepository,3\n");
+        }
+        QueryOptimizationTracker.reset();
+        tracker = QueryOptimizationTracker.getInstance();
+        assertEquals(Set.of("com.example.UserRepository", "com.example.OrderRepository",
+                "com.example.ProductRepository"), tracker.getProcessedRepositories());
+
+        // a shorter CSV file, e.g. after removing duplicates, rebuilds the index
+        try (FileWriter writer = new FileWriter(csvFile)) {
+            writer.write("Date,Repository Name\n");
+            writer.write("2024-01-01,com.example.UserRepository\n");
+        }
+        QueryOptimizationTracker.reset();
+        tracker = QueryOptimizationTracker.getInstance();
+        assertEquals(Set.of("com.example.UserRepository"), tracker.getProcessedRepositories());
+    }
+
+    @Test
+    void testRepositoryIsProcessedOnlyOnceItsCsvRowIsWritten() {
+        File csvFile = tempDir.resolve("test-stats.csv").toFile();
+        Map<String, Object> dbConfig = new HashMap<>();
+        dbConfig.put("log_file", csvFile.getAbsolutePath());
+        Settings.setProperty("database", dbConfig);
+        QueryOptimizationTracker.reset();
+        QueryOptimizationTracker tracker = QueryOptimizationTracker.getInstance();
+
+        try {
+            OptimizationStatsLogger.setSinks(List.of(
+                    new JsonLinesMetricsSink(tempDir.resolve("metrics.jsonl"), 1)));
+            OptimizationStatsLogger.initialize("com.example.OrderRepository");
+            OptimizationStatsLogger.updateQueriesAnalyzed(1);
+            OptimizationStatsLogger.flush();
+            assertFalse(tracker.getProcessedRepositories().contains("com.example.OrderRepository"));
+
+            OptimizationStatsLogger.setSinks(List.of(new CsvMetricsSink(csvFile.toPath(), 1)));
+            OptimizationStatsLogger.initialize("com.example.UserRepository");
+            OptimizationStatsLogger.updateQueriesAnalyzed(1);
+            OptimizationStatsLogger.flush();
+            assertEquals(Set.of("com.example.UserRepository"), tracker.getProcessedRepositories());
+        } finally {
+            OptimizationStatsLogger.close();
+        }
+    }
 }
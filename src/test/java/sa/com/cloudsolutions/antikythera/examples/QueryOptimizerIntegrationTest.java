@@ -2,6 +2,7 @@ package sa.com.cloudsolutions.antikythera.examples;
 
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
 import com.github.javaparser.ast.expr.MethodCallExpr;
@@ -13,9 +14,11 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import sa.com.cloudsolutions.antikythera.parser.Callable;
 import sa.com.cloudsolutions.antikythera.parser.converter.EntityMappingResolver;
@@ -24,11 +27,13 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -223,6 +228,12 @@ class QueryOptimizerIntegrationTest {
     void testBatchUpdateMethodSignatures_RollsBackOnMappingFailure() throws Exception {
         QueryOptimizer optimizer = new QueryOptimizer(tempLiquibaseFile);
 
+        optimizer.batchUpdateMethodSignatures(List.of(unmappableFindByAgeRename()), USER_REPO_FQN);
+
+        assertFindByAgeUnchanged();
+    }
+
+    private static QueryOptimizer.MethodRename unmappableFindByAgeRename() {
         // Build a rename with mismatched param names AND no column orders
         MethodDeclaration oldMd = new MethodDeclaration();
         oldMd.setName("findByAge");
@@ -258,11 +269,11 @@ class QueryOptimizerIntegrationTest {
         when(result.getMethodName()).thenReturn("findByAge");
 
         java.util.Map<Integer, Integer> positionMap = issue.buildPositionMapping(1);
-        QueryOptimizer.MethodRename rename = new QueryOptimizer.MethodRename(
+        return new QueryOptimizer.MethodRename(
                 "findByAge", "findByAgeRenamed", result, issue, positionMap);
+    }
 
-        optimizer.batchUpdateMethodSignatures(List.of(rename), USER_REPO_FQN);
-
+    private static void assertFindByAgeUnchanged() {
         // Verify: UserService should still have findByAge (rollback)
         CompilationUnit serviceCu = AntikytheraRunTime.getCompilationUnit(USER_SERVICE_FQN);
         List<MethodCallExpr> calls = serviceCu.findAll(MethodCallExpr.class);
@@ -369,4 +380,164 @@ class QueryOptimizerIntegrationTest {
         assertEquals("a", method.getParameter(1).getNameAsString());
         assertEquals("String", method.getParameter(1).getTypeAsString());
     }
+
+    // ---------------------------------------------------------------
+    // 7. Parallel rewrite of dependent classes
+    // ---------------------------------------------------------------
+
+    @Test
+    @Order(8)
+    void testBatchUpdateMethodSignatures_ParallelRewriteRollsBackOnMappingFailure() throws Exception {
+        QueryOptimizer optimizer = new QueryOptimizer(tempLiquibaseFile);
+
+        QueryOptimizer.setParallelRewrite(true);
+        try {
+            optimizer.batchUpdateMethodSignatures(List.of(unmappableFindByAgeRename()), USER_REPO_FQN);
+        } finally {
+            QueryOptimizer.setParallelRewrite(false);
+        }
+
+        assertFindByAgeUnchanged();
+    }
+
+    @Test
+    @Order(9)
+    void testBatchUpdateMethodSignatures_ParallelRewriteMatchesSerial(@TempDir Path tempDir) throws Exception {
+        RewriteOutcome serial = rewriteOrderCallers("serial", false, tempDir.resolve("serial"));
+        RewriteOutcome parallel = rewriteOrderCallers("parallel", true, tempDir.resolve("parallel"));
+
+        assertEquals(List.of(
+                "orders.findByCustomerAndStatus(customer, \"OPEN\")",
+                "orders.findByCustomerAndStatus(customer, \"CLOSED\")"), serial.calls().get("OrderService"));
+        assertEquals(List.of("repository.findByCustomerAndStatus(customer, status)"),
+                serial.calls().get("ReportService"));
+        assertEquals(List.of("orderRepository.findByCustomerAndStatus(customer, \"DUE\")"),
+                serial.calls().get("BillingService"));
+        assertEquals(Set.of("BillingService.java", "OrderService.java", "ReportService.java"),
+                serial.files().keySet());
+        assertTrue(serial.files().get("ReportService.java")
+                .contains("repository.findByCustomerAndStatus(customer, status)"));
+
+        assertEquals(serial, parallel);
+    }
+
+    /**
+     * Rewritten call sites, and the files written with their content, for the classes of one
+     * {@link #rewriteOrderCallers} run.
+     */
+    private record RewriteOutcome(Map<String, List<String>> calls, Map<String, String> files) {}
+
+    /**
+     * Registers a repository with three dependent classes in a package of its own, and renames
+     * {@code findByStatusAndCustomer} to {@code findByCustomerAndStatus} in all of them.
+     * Files are written to {@code outputDir} instead of the testbed, with the package name
+     * replaced so that runs in different packages can be compared.
+     */
+    private RewriteOutcome rewriteOrderCallers(String name, boolean parallel, Path outputDir) throws Exception {
+        String pkg = "com.example." + name;
+        register(pkg, "OrderRepository", """
+                public interface OrderRepository {
+                    Object findByStatusAndCustomer(String status, String customer);
+                }
+                """);
+        register(pkg, "OrderService", """
+                public class OrderService {
+                    private OrderRepository orders;
+                    Object open(String customer) { return orders.findByStatusAndCustomer("OPEN", customer); }
+                    Object closed(String customer) { return orders.findByStatusAndCustomer("CLOSED", customer); }
+                }
+                """);
+        register(pkg, "ReportService", """
+                public class ReportService {
+                    private OrderRepository repository;
+                    Object report(String status, String customer) {
+                        return repository.findByStatusAndCustomer(status, customer);
+                    }
+                }
+                """);
+        register(pkg, "BillingService", """
+                public class BillingService {
+                    private OrderRepository orderRepository;
+                    Object due(String customer) { return orderRepository.findByStatusAndCustomer("DUE", customer); }
+                }
+                """);
+
+        Files.createDirectories(outputDir);
+        QueryOptimizer optimizer = new QueryOptimizer(tempLiquibaseFile) {
+            @Override
+            boolean writeFile(String fullyQualifiedName) throws IOException {
+                String content = AntikytheraRunTime.getCompilationUnit(fullyQualifiedName).toString();
+                Files.writeString(outputDir.resolve(fullyQualifiedName.substring(pkg.length() + 1) + ".java"),
+                        content.replace(pkg, "com.example"));
+                return true;
+            }
+        };
+        QueryOptimizer.setParallelRewrite(parallel);
+        try {
+            optimizer.batchUpdateMethodSignatures(List.of(findByStatusAndCustomerRename()), pkg + ".OrderRepository");
+        } finally {
+            QueryOptimizer.setParallelRewrite(false);
+        }
+
+        Map<String, List<String>> calls = new TreeMap<>();
+        for (String service : List.of("OrderService", "ReportService", "BillingService")) {
+            calls.put(service, AntikytheraRunTime.getCompilationUnit(pkg + "." + service)
+                    .findAll(MethodCallExpr.class).stream().map(Node::toString).toList());
+        }
+        Map<String, String> files = new TreeMap<>();
+        try (var written = Files.list(outputDir)) {
+            for (Path file : written.toList()) {
+                files.put(file.getFileName().toString(), Files.readString(file));
+            }
+        }
+        return new RewriteOutcome(calls, files);
+    }
+
+    private static void register(String pkg, String simpleName, String body) {
+        CompilationUnit cu = StaticJavaParser.parse("package " + pkg + ";\n" + body);
+        AntikytheraRunTime.addType(pkg + "." + simpleName,
+                new TypeWrapper(cu.getType(0).asClassOrInterfaceDeclaration()));
+        AntikytheraRunTime.addCompilationUnit(pkg + "." + simpleName, cu);
+    }
+
+    private static QueryOptimizer.MethodRename findByStatusAndCustomerRename() {
+        MethodDeclaration oldMd = new MethodDeclaration();
+        oldMd.setName("findByStatusAndCustomer");
+        oldMd.addParameter(new Parameter(new ClassOrInterfaceType(null, "String"), "status"));
+        oldMd.addParameter(new Parameter(new ClassOrInterfaceType(null, "String"), "customer"));
+
+        MethodDeclaration newMd = new MethodDeclaration();
+        newMd.setName("findByCustomerAndStatus");
+        newMd.addParameter(new Parameter(new ClassOrInterfaceType(null, "String"), "customer"));
+        newMd.addParameter(new Parameter(new ClassOrInterfaceType(null, "String"), "status"));
+
+        Callable mockOldCallable = mock(Callable.class);
+        when(mockOldCallable.asMethodDeclaration()).thenReturn(oldMd);
+        when(mockOldCallable.getNameAsString()).thenReturn("findByStatusAndCustomer");
+
+        Callable mockNewCallable = mock(Callable.class);
+        when(mockNewCallable.asMethodDeclaration()).thenReturn(newMd);
+        when(mockNewCallable.getNameAsString()).thenReturn("findByCustomerAndStatus");
+
+        RepositoryQuery mockOriginal = mock(RepositoryQuery.class);
+        when(mockOriginal.getMethodDeclaration()).thenReturn(mockOldCallable);
+        when(mockOriginal.getMethodName()).thenReturn("findByStatusAndCustomer");
+
+        RepositoryQuery mockOptimized = mock(RepositoryQuery.class);
+        when(mockOptimized.getMethodDeclaration()).thenReturn(mockNewCallable);
+        when(mockOptimized.getMethodName()).thenReturn("findByCustomerAndStatus");
+
+        OptimizationIssue issue = new OptimizationIssue(
+                mockOriginal, List.of("status", "customer"),
+                List.of("customer", "status"),
+                "Reorder for index", "Swap columns",
+                mockOptimized);
+
+        QueryAnalysisResult result = mock(QueryAnalysisResult.class);
+        when(result.getOptimizationIssue()).thenReturn(issue);
+        when(result.getMethodName()).thenReturn("findByStatusAndCustomer");
+
+        return new QueryOptimizer.MethodRename("findByStatusAndCustomer", "findByCustomerAndStatus",
+                result, issue, issue.buildPositionMapping(2));
+    }
 }
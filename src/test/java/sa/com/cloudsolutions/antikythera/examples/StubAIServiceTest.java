@@ -0,0 +1,175 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.BaseRepositoryParser;
+import sa.com.cloudsolutions.antikythera.parser.Callable;
+import sa.com.cloudsolutions.antikythera.parser.converter.EntityMappingResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubAIServiceTest {
+    public static final String USER_REPO = "sa.com.cloudsolutions.antikythera.testhelper.repository.UserRepository";
+
+    private static BaseRepositoryParser bp;
+
+    @TempDir
+    File responsesDir;
+
+    @BeforeAll
+    static void setUpAll() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator.yml"));
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+        EntityMappingResolver.reset();
+        EntityMappingResolver.build();
+        CardinalityAnalyzer.setIndexMap(new HashMap<>());
+
+        bp = BaseRepositoryParser.create(
+                AntikytheraRunTime.getCompilationUnit(USER_REPO));
+        bp.processTypes();
+        bp.buildQueries();
+    }
+
+    private QueryBatch createTestQueryBatch() {
+        return createQueryBatch("findByUsername");
+    }
+
+    private QueryBatch createQueryBatch(String... methodNames) {
+        QueryBatch batch = new QueryBatch("UserRepository");
+        for (String methodName : methodNames) {
+            MethodDeclaration md = bp.getCompilationUnit().findAll(MethodDeclaration.class).stream()
+                    .filter(m -> m.getNameAsString().equals(methodName))
+                    .findFirst()
+                    .orElseThrow();
+            batch.addQuery(bp.getQueryFromRepositoryMethod(new Callable(md, null)));
+        }
+        batch.setColumnCardinalities(Map.of("username", CardinalityLevel.HIGH));
+        return batch;
+    }
+
+    private StubAIService createService(Map<String, Object> config) throws IOException {
+        StubAIService service = new StubAIService();
+        service.configure(config);
+        return service;
+    }
+
+    @Test
+    void testFactoryCreatesStubWithoutApiKey() throws IOException {
+        AbstractAIService service = AIServiceFactory.create(Map.of("provider", "stub"));
+        assertInstanceOf(StubAIService.class, service);
+        assertDoesNotThrow(() -> service.configure(Map.of("provider", "stub")));
+    }
+
+    @Test
+    void testSynthesizesNoChangeRecommendation() throws Exception {
+        StubAIService service = createService(Map.of());
+
+        List<OptimizationIssue> issues = service.analyzeQueryBatch(createTestQueryBatch());
+
+        assertEquals(1, issues.size());
+        assertNull(issues.getFirst().optimizedQuery());
+        assertEquals("Where clause is already optimized", issues.getFirst().description());
+
+        TokenUsage usage = service.getLastTokenUsage();
+        assertTrue(usage.getInputTokens() > 0);
+        assertTrue(usage.getOutputTokens() > 0);
+        assertEquals(usage.getInputTokens() + usage.getOutputTokens(), usage.getTotalTokens());
+        assertEquals(0.0, usage.getEstimatedCost());
+    }
+
+    @Test
+    void testUsesCannedResponseByMethodName() throws Exception {
+        Files.writeString(new File(responsesDir, "findByUsername.json").toPath(),
+                "{\"optimizedCodeElement\": \"User findByUsername(String username);\", \"notes\": \"Canned answer\"}");
+        StubAIService service = createService(Map.of("responses_dir", responsesDir.getPath()));
+
+        List<OptimizationIssue> issues = service.analyzeQueryBatch(createTestQueryBatch());
+
+        assertEquals(1, issues.size());
+        assertEquals("Canned answer", issues.getFirst().aiExplanation());
+    }
+
+    @Test
+    void testInjectsLatency() throws Exception {
+        StubAIService service = createService(Map.of("latency_ms", 50, "jitter_ms", 10, "jitter_seed", 1));
+
+        long start = System.nanoTime();
+        service.analyzeQueryBatch(createTestQueryBatch());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs >= 50, "expected at least 50ms of injected latency but was " + elapsedMs);
+    }
+
+    @Test
+    void testJitterDependsOnSeedAndPayloadOnly() throws Exception {
+        StubAIService service = createService(Map.of("jitter_ms", 1000, "jitter_seed", 7));
+        StubAIService repeated = createService(Map.of("jitter_ms", 1000, "jitter_seed", 7));
+
+        int first = service.jitterFor("[\"a\"]", 1000);
+        int second = service.jitterFor("[\"b\"]", 1000);
+
+        // the same requests get the same jitter in the opposite order
+        assertEquals(second, repeated.jitterFor("[\"b\"]", 1000));
+        assertEquals(first, repeated.jitterFor("[\"a\"]", 1000));
+        assertEquals(first, service.jitterFor("[\"a\"]", 1000));
+        assertTrue(first >= 0 && first <= 1000);
+    }
+
+    @Test
+    void testOnlyCacheMissesAreSentAndResultsKeepQueryOrder(@TempDir File cacheDir) throws Exception {
+        // Warm the cache with the middle query only, answered from a canned response
+        Files.writeString(new File(responsesDir, "findByFirstNameAndLastName.json").toPath(),
+                "{\"optimizedCodeElement\": \"\", \"notes\": \"N/A - cached\"}");
+        Map<String, Object> warmConfig = new HashMap<>();
+        warmConfig.put("response_cache", true);
+        warmConfig.put("response_cache_dir", cacheDir.getPath());
+        warmConfig.put("responses_dir", responsesDir.getPath());
+        createService(warmConfig).analyzeQueryBatch(createQueryBatch("findByFirstNameAndLastName"));
+
+        List<String> payloads = new ArrayList<>();
+        StubAIService service = new StubAIService() {
+            @Override
+            protected String sendApiRequest(String payload, int retryCount) throws IOException, InterruptedException {
+                payloads.add(payload);
+                return super.sendApiRequest(payload, retryCount);
+            }
+        };
+        service.configure(Map.of("response_cache", true, "response_cache_dir", cacheDir.getPath()));
+
+        List<OptimizationIssue> issues = service.analyzeQueryBatch(
+                createQueryBatch("findByUsername", "findByFirstNameAndLastName", "findByUsernameAndAge"));
+
+        assertEquals(1, payloads.size());
+        List<String> sent = new ArrayList<>();
+        for (JsonNode query : new ObjectMapper().readTree(payloads.getFirst())) {
+            sent.add(query.path("method").asText());
+        }
+        assertEquals(2, sent.size());
+        assertTrue(sent.getFirst().contains("findByUsername("), sent.getFirst());
+        assertTrue(sent.get(1).contains("findByUsernameAndAge("), sent.get(1));
+
+        assertEquals(List.of("findByUsername", "findByFirstNameAndLastName", "findByUsernameAndAge"),
+                issues.stream().map(issue -> issue.query().getMethodName()).toList());
+        assertEquals("N/A - stub provider", issues.get(0).aiExplanation());
+        assertEquals("N/A - cached", issues.get(1).aiExplanation());
+        assertEquals("N/A - stub provider", issues.get(2).aiExplanation());
+        assertEquals(1, service.getResponseCache().getHits());
+    }
+}
@@ -0,0 +1,100 @@
+package sa.com.cloudsolutions.antikythera.examples;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadProfileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoadsCsvWithMeanLatency() throws IOException {
+        Path file = tempDir.resolve("workload.csv");
+        Files.writeString(file, """
+                method,calls,mean_ms
+                com.example.UserRepository#findByEmail,1000,2.5
+                UserRepository.findByStatus,10,40
+                "OrderRepository#save",5000,1
+                not-a-method,1,1
+                UserRepository#broken,many,1
+                """);
+
+        WorkloadProfile profile = WorkloadProfile.load(file, 0.1);
+
+        assertEquals(3, profile.size());
+        assertEquals(2500.0, profile.find("com.example.UserRepository", "findByEmail").totalMillis(), 1e-9);
+        assertEquals(400.0, profile.find("com.example.UserRepository", "findByStatus").totalMillis(), 1e-9);
+        assertEquals(40.0, profile.find("UserRepository", "findByStatus").meanMillis(), 1e-9);
+        assertNull(profile.find("com.example.UserRepository", "findById"));
+        assertNull(profile.find("com.other.UserRepository", "findByEmail"),
+                "A fully qualified entry only matches its own repository");
+    }
+
+    @Test
+    void testQuotedQueryTextDoesNotShiftTheColumns() throws IOException {
+        Path file = tempDir.resolve("workload.csv");
+        Files.writeString(file, """
+                method,query,calls,total_exec_time
+                UserRepository#findByStatus,"SELECT id, email FROM users WHERE status IN ('A', 'B')",300,600
+                UserRepository#findByEmail,"SELECT ""name"", email FROM users WHERE email = $1",20,10
+                """);
+
+        WorkloadProfile profile = WorkloadProfile.load(file, WorkloadProfile.DEFAULT_WRITE_COST_MS);
+
+        assertEquals(2, profile.size());
+        WorkloadProfile.MethodStats status = profile.find("UserRepository", "findByStatus");
+        assertEquals(300, status.calls());
+        assertEquals(600.0, status.totalMillis(), 1e-9);
+        WorkloadProfile.MethodStats email = profile.find("UserRepository", "findByEmail");
+        assertEquals(20, email.calls());
+        assertEquals(10.0, email.totalMillis(), 1e-9);
+    }
+
+    @Test
+    void testLoadsPgStatStatementsStyleJson() throws IOException {
+        Path file = tempDir.resolve("workload.json");
+        Files.writeString(file, """
+                [
+                  {"query": "UserRepository#findByEmail", "calls": 200, "total_exec_time": 900.5},
+                  {"method": "UserRepository#findByEmail", "calls": 100, "mean_exec_time": 1.0},
+                  {"method": "UserRepository#deleteByStatus", "calls": 30, "mean_ms": 5}
+                ]
+                """);
+
+        WorkloadProfile profile = WorkloadProfile.load(file, WorkloadProfile.DEFAULT_WRITE_COST_MS);
+
+        WorkloadProfile.MethodStats stats = profile.find("com.example.UserRepository", "findByEmail");
+        assertEquals(300, stats.calls());
+        assertEquals(1000.5, stats.totalMillis(), 1e-9);
+    }
+
+    @Test
+    void testWriteCostComesFromTheRepositoriesOfTheTable() {
+        WorkloadProfile profile = new WorkloadProfile(0.5);
+        profile.put("UserRepository", "save", 100, 50);
+        profile.put("UserRepository", "deleteByStatus", 20, 50);
+        profile.put("UserRepository", "findByEmail", 10_000, 500);
+        profile.put("OrderRepository", "saveAll", 7, 1);
+
+        profile.mapRepository("com.example.UserRepository", "USERS");
+
+        assertEquals(120, profile.writesTo("users"));
+        assertEquals(60.0, profile.writeCostMillis("users"), 1e-9);
+        assertEquals(0, profile.writesTo("orders"), "OrderRepository is not mapped to a table");
+    }
+
+    @Test
+    void testCsvWithoutRequiredColumnsIsRejected() throws IOException {
+        Path file = tempDir.resolve("workload.csv");
+        Files.writeString(file, "method,latency\nUserRepository#findByEmail,1\n");
+
+        assertThrows(IOException.class, () -> WorkloadProfile.load(file, WorkloadProfile.DEFAULT_WRITE_COST_MS));
+    }
+}
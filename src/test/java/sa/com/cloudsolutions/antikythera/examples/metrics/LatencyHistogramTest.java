@@ -0,0 +1,51 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsCoverTheirValues() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1_000, 123_456_789L, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.lowerBoundOf(bucket) <= value, "lower bound of " + value);
+            if (value < Long.MAX_VALUE) {
+                assertTrue(value < LatencyHistogram.lowerBoundOf(bucket + 1), "upper bound of " + value);
+            }
+        }
+    }
+
+    @Test
+    void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i * 1_000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_000, histogram.percentileMicros(0.5), 500_000 * 0.125);
+        assertEquals(900_000, histogram.percentileMicros(0.9), 900_000 * 0.125);
+        assertEquals(990_000, histogram.percentileMicros(0.99), 990_000 * 0.125);
+
+        LatencyHistogram.Summary summary = histogram.summary();
+        assertEquals(1000.0, summary.maxMs());
+        assertEquals(500_500.0, summary.totalMs());
+        assertTrue(summary.p50Ms() <= summary.p90Ms() && summary.p90Ms() <= summary.p99Ms());
+        assertTrue(summary.p99Ms() <= summary.maxMs());
+    }
+
+    @Test
+    void testEmptyAndClearedHistograms() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(0.99));
+
+        histogram.recordNanos(5_000_000);
+        assertEquals(5_000, histogram.percentileMicros(0.5), 5_000 * 0.125);
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentileMicros(0.5));
+    }
+}
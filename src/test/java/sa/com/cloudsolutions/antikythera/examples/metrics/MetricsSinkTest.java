@@ -0,0 +1,124 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.reset();
+    }
+
+    private static MetricsSink.RepositoryRecord repositoryRecord(String repository, int queries) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("Queries", queries);
+        counts.put("Annotations Changed", 1);
+        Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+        phases.put(Phase.LLM, 1200L);
+        return new MetricsSink.RepositoryRecord(LocalDate.of(2024, 1, 1), repository, counts, phases);
+    }
+
+    @Test
+    void testCsvSinkWritesHeaderOnceAcrossRuns() throws IOException {
+        Path csv = tempDir.resolve("stats.csv");
+
+        try (CsvMetricsSink sink = new CsvMetricsSink(csv, 10)) {
+            sink.repository(repositoryRecord("com.example.UserRepository", 3));
+            // buffered until the flush interval or close
+            assertEquals(0, Files.size(csv));
+        }
+        try (CsvMetricsSink sink = new CsvMetricsSink(csv, 1)) {
+            sink.repository(repositoryRecord("com.example.OrderRepository", 5));
+            assertEquals(3, Files.readAllLines(csv).size());
+        }
+
+        assertEquals(List.of(
+                "Date,Repository Name,Queries,Annotations Changed",
+                "2024-01-01,com.example.UserRepository,3,1",
+                "2024-01-01,com.example.OrderRepository,5,1"), Files.readAllLines(csv));
+    }
+
+    @Test
+    void testJsonLinesSinkWritesRepositoriesAndSummary() throws IOException {
+        Path jsonl = tempDir.resolve("metrics.jsonl");
+        Metrics.record(Phase.LLM, "com.example.UserRepository", 2_000_000_000L);
+
+        try (JsonLinesMetricsSink sink = new JsonLinesMetricsSink(jsonl, 10)) {
+            sink.repository(repositoryRecord("com.example.UserRepository", 3));
+            sink.summary(Metrics.snapshot());
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> lines = Files.readAllLines(jsonl);
+        assertEquals(2, lines.size());
+
+        JsonNode repository = mapper.readTree(lines.get(0));
+        assertEquals("repository", repository.get("type").asText());
+        assertEquals(3, repository.get("counts").get("Queries").asInt());
+        assertEquals(1200, repository.get("phases_ms").get("llm").asLong());
+
+        JsonNode summary = mapper.readTree(lines.get(1));
+        assertEquals("summary", summary.get("type").asText());
+        assertEquals(1, summary.get("phases").get("llm").get("count").asLong());
+        assertEquals(2000.0, summary.get("phases").get("llm").get("max_ms").asDouble());
+        assertFalse(summary.get("phases").has("parse"));
+    }
+
+    @Test
+    void testPrometheusSinkReplacesTheFile() throws IOException {
+        Path prom = tempDir.resolve("metrics.prom");
+        Metrics.increment("repositories_processed", 2);
+        Metrics.record(Phase.PARSE, null, 250_000_000L);
+
+        PrometheusMetricsSink sink = new PrometheusMetricsSink(prom);
+        sink.summary(Metrics.snapshot());
+        Metrics.increment("repositories_processed", 1);
+        sink.summary(Metrics.snapshot());
+
+        String content = Files.readString(prom);
+        assertTrue(content.contains("antikythera_query_optimizer_repositories_processed_total 3\n"));
+        assertFalse(content.contains("repositories_processed_total 2\n"));
+        assertTrue(content.contains("antikythera_query_optimizer_phase_duration_seconds{phase=\"parse\",quantile=\"0.5\"}"));
+        assertTrue(content.contains("antikythera_query_optimizer_phase_duration_seconds_count{phase=\"parse\"} 1\n"));
+        assertTrue(content.contains("antikythera_query_optimizer_phase_duration_seconds_sum{phase=\"parse\"} 0.250000\n"));
+        assertFalse(content.contains("phase=\"llm\""));
+        assertFalse(Files.exists(tempDir.resolve("metrics.prom.tmp")));
+    }
+
+    @Test
+    void testRepositoryTimesAreTakenOnce() {
+        try (Metrics.Timer timer = Metrics.time(Phase.REWRITE, "com.example.UserRepository")) {
+            assertNotNull(timer);
+        }
+        Metrics.record(Phase.REWRITE, "com.example.UserRepository", 3_000_000L);
+
+        Map<Phase, Long> millis = Metrics.takeRepositoryMillis("com.example.UserRepository");
+        assertTrue(millis.get(Phase.REWRITE) >= 3);
+        assertTrue(Metrics.takeRepositoryMillis("com.example.UserRepository").isEmpty());
+        assertEquals(2, Metrics.histogram(Phase.REWRITE).getCount());
+    }
+}
@@ -0,0 +1,77 @@
+package sa.com.cloudsolutions.antikythera.examples.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.reset();
+    }
+
+    @Test
+    void testSpansAreSummarizedByName() {
+        for (int i = 0; i < 3; i++) {
+            try (Metrics.Timer span = Metrics.span("analyzeQueryBatch", "com.example.UserRepository")) {
+                assertNotNull(span);
+            }
+        }
+        Metrics.recordSpan("writeFile", 5_000_000L);
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        assertEquals(List.of("analyzeQueryBatch", "writeFile"), List.copyOf(snapshot.spans().keySet()));
+        assertEquals(3, snapshot.spans().get("analyzeQueryBatch").count());
+        assertEquals(5.0, snapshot.spans().get("writeFile").maxMs());
+        // spans do not count as phases
+        assertTrue(snapshot.phases().isEmpty());
+    }
+
+    @Test
+    void testTimersEmitFlightRecorderEvents() throws IOException {
+        Path dump = tempDir.resolve("spans.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(SpanEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            try (Metrics.Timer span = Metrics.span("compile", "com.example.UserRepository")) {
+                assertNotNull(span);
+            }
+            try (Metrics.Timer timer = Metrics.time(Phase.PARSE, "com.example.UserRepository")) {
+                assertNotNull(timer);
+            }
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals(SpanEvent.NAME))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .toList();
+        assertEquals(2, events.size());
+        assertEquals("compile", events.get(0).getString("span"));
+        assertNull(events.get(0).getString("phase"));
+        assertEquals("parse", events.get(1).getString("phase"));
+        assertEquals("com.example.UserRepository", events.get(1).getString("repository"));
+    }
+}
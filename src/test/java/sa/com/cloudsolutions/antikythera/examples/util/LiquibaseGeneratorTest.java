@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import sa.com.cloudsolutions.antikythera.examples.util.LiquibaseGenerator.ChangesetConfig;
+import sa.com.cloudsolutions.antikythera.examples.util.LiquibaseGenerator.ChangesetWriter;
 import sa.com.cloudsolutions.antikythera.examples.util.LiquibaseGenerator.DatabaseDialect;
 import sa.com.cloudsolutions.antikythera.examples.util.LiquibaseGenerator.WriteResult;
 
@@ -751,4 +752,68 @@ class LiquibaseGeneratorTest {
         assertTrue(updatedMaster.contains("<include file=\"antikythera-changes-"),
                 "New include should have no prefix when no existing entries. Actual content:\n" + updatedMaster);
     }
+
+    @Test
+    void testChangesetWriterStreamsChangesetsAndIncludesFile() throws IOException {
+        WriteResult result;
+        try (ChangesetWriter writer = generator.openChangesetWriter(masterFile)) {
+            for (int i = 0; i < 500; i++) {
+                writer.write(generator.createIndexChangeset("table_" + i, "column_" + i));
+            }
+            assertEquals(500, writer.getCount());
+            assertFalse(Files.readString(masterFile).contains("antikythera-changes-"),
+                    "The master must not include the file before it is complete");
+            result = writer.commit();
+        }
+
+        assertTrue(result.wasWritten());
+        String content = Files.readString(result.changesFile().toPath());
+        assertTrue(content.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"));
+        assertTrue(content.contains("table_0") && content.contains("table_499"));
+        assertTrue(content.trim().endsWith("</databaseChangeLog>"));
+        assertTrue(Files.readString(masterFile).contains("<include file=\"" + result.changesFile().getName() + "\"/>"));
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")), "No temporary files should remain");
+        }
+    }
+
+    @Test
+    void testChangesetWriterDiscardsUncommittedAndEmptyFiles() throws IOException {
+        String master = Files.readString(masterFile);
+        try (ChangesetWriter writer = generator.openChangesetWriter(masterFile)) {
+            writer.write(generator.createIndexChangeset("users", "email"));
+        }
+        try (ChangesetWriter writer = generator.openChangesetWriter(masterFile)) {
+            writer.write("");
+            assertFalse(writer.commit().wasWritten());
+        }
+
+        assertEquals(master, Files.readString(masterFile));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(List.of(masterFile), files.toList());
+        }
+    }
+
+    @Test
+    void testChangesetWriterDiscardsTheTemporaryFileWhenCommitFails() throws IOException {
+        String master = Files.readString(masterFile);
+        try (ChangesetWriter writer = generator.openChangesetWriter(masterFile)) {
+            writer.write(generator.createIndexChangeset("users", "email"));
+            Path tmp;
+            try (var files = Files.list(tempDir)) {
+                tmp = files.filter(p -> p.toString().endsWith(".tmp")).findFirst().orElseThrow();
+            }
+            // a non-empty directory where the changes file goes makes the rename fail
+            Path blocker = tmp.resolveSibling(tmp.getFileName().toString().replace(".tmp", ""));
+            Files.createDirectories(blocker);
+            Files.writeString(blocker.resolve("keep"), "");
+
+            assertThrows(IOException.class, writer::commit);
+        }
+
+        assertEquals(master, Files.readString(masterFile));
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")), "No temporary files should remain");
+        }
+    }
 }
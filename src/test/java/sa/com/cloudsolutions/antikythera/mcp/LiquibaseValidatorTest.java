@@ -2,10 +2,12 @@ package sa.com.cloudsolutions.antikythera.mcp;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.liquibase.ChangelogTree;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -115,4 +117,73 @@ class LiquibaseValidatorTest {
                 .anyMatch(e -> e.contains("SQL Syntax error")), "Expected SQL syntax error message");
     }
 
+    @Test
+    void testParallelValidationMatchesSerial() {
+        LiquibaseValidator validator = new LiquibaseValidator();
+        String changelogPath = "src/test/resources/db/changelog/changelog-with-includes.xml";
+
+        LiquibaseValidator.ValidationResult serial = validator.validate(changelogPath);
+        ChangelogTree.setParallel(true);
+        try {
+            LiquibaseValidator.ValidationResult parallel = validator.validate(changelogPath);
+
+            assertTrue(parallel.valid(), "Expected valid changelog");
+            assertEquals(serial.errors(), parallel.errors());
+            assertEquals(serial.warnings(), parallel.warnings());
+        } finally {
+            ChangelogTree.setParallel(false);
+        }
+    }
+
+    @Test
+    void testParallelValidationReportsTheSameErrorsAsSerial(@TempDir Path tempDir) throws IOException {
+        Path changelogDir = tempDir.resolve("src/main/resources/db/changelog");
+        Files.createDirectories(changelogDir);
+        String header = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <databaseChangeLog
+                    xmlns="http://www.liquibase.org/xml/ns/dbchangelog"
+                    xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                    xsi:schemaLocation="http://www.liquibase.org/xml/ns/dbchangelog
+                    http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-4.0.xsd">
+                """;
+        Files.writeString(changelogDir.resolve("tables.xml"), header + """
+                  <changeSet id="1" author="test">
+                    <createTable>
+                      <column name="id" type="bigint"/>
+                    </createTable>
+                  </changeSet>
+                </databaseChangeLog>
+                """);
+        Files.writeString(changelogDir.resolve("data.xml"), header + """
+                  <changeSet id="2" author="test">
+                    <createIndex indexName="idx_users_email">
+                      <column name="email"/>
+                    </createIndex>
+                  </changeSet>
+                  <changeSet id="3" author="test">
+                    <sql>INSERT INTO users (username VALUES ('test'</sql>
+                  </changeSet>
+                </databaseChangeLog>
+                """);
+        Path master = changelogDir.resolve("changelog-master.xml");
+        Files.writeString(master, header + """
+                  <include file="db/changelog/tables.xml"/>
+                  <include file="db/changelog/data.xml"/>
+                </databaseChangeLog>
+                """);
+
+        LiquibaseValidator validator = new LiquibaseValidator();
+        LiquibaseValidator.ValidationResult serial = validator.validate(master.toString());
+        ChangelogTree.setParallel(true);
+        try {
+            LiquibaseValidator.ValidationResult parallel = validator.validate(master.toString());
+
+            assertFalse(serial.valid(), "Expected validation errors");
+            assertEquals(serial.errors(), parallel.errors());
+            assertEquals(serial.warnings(), parallel.warnings());
+        } finally {
+            ChangelogTree.setParallel(false);
+        }
+    }
 }
@@ -0,0 +1,128 @@
+package sa.com.cloudsolutions.liquibase;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangelogTreeTest {
+    private static final String HEADER = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <databaseChangeLog
+                xmlns="http://www.liquibase.org/xml/ns/dbchangelog"
+                xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                xsi:schemaLocation="http://www.liquibase.org/xml/ns/dbchangelog
+                http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.8.xsd">
+            """;
+    private static final String FOOTER = "</databaseChangeLog>\n";
+
+    @TempDir
+    Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        write("db/tables.xml", """
+                  <changeSet id="1" author="test">
+                    <createTable tableName="users">
+                      <column name="id" type="bigint"><constraints primaryKey="true"/></column>
+                      <column name="email" type="varchar(100)"/>
+                      <column name="name" type="varchar(100)"/>
+                    </createTable>
+                  </changeSet>
+                """);
+        write("db/migrations/002-drop.xml", """
+                  <changeSet id="3" author="test">
+                    <dropIndex tableName="users" indexName="idx_users_name"/>
+                  </changeSet>
+                """);
+        write("db/migrations/001-indexes.xml", """
+                  <changeSet id="2" author="test">
+                    <createIndex tableName="users" indexName="idx_users_name">
+                      <column name="name"/>
+                    </createIndex>
+                    <createIndex tableName="users" indexName="idx_users_email">
+                      <column name="email"/>
+                    </createIndex>
+                  </changeSet>
+                """);
+        write("db/migrations.xml", """
+                  <includeAll path="migrations/" relativeToChangelogFile="true"/>
+                """);
+        write("master.xml", """
+                  <include file="db/tables.xml"/>
+                  <include file="db/migrations.xml"/>
+                """);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ChangelogTree.setParallel(false);
+    }
+
+    private void write(String name, String body) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, HEADER + body + FOOTER);
+    }
+
+    @Test
+    void testLeavesInExecutionOrder() throws IOException {
+        Set<String> includers = new HashSet<>();
+
+        List<String> leaves = ChangelogTree.leaves(root, "master.xml", includers);
+
+        assertEquals(List.of("db/tables.xml", "db/migrations/001-indexes.xml", "db/migrations/002-drop.xml"), leaves);
+        assertEquals(Set.of("master.xml", "db/migrations.xml"), includers);
+    }
+
+    @Test
+    void testMixedChangelogIsNotSplit() throws IOException {
+        write("master.xml", """
+                  <include file="db/tables.xml"/>
+                  <changeSet id="4" author="test">
+                    <createIndex tableName="users" indexName="idx_users_id_name">
+                      <column name="id"/>
+                      <column name="name"/>
+                    </createIndex>
+                  </changeSet>
+                """);
+
+        assertNull(ChangelogTree.leaves(root, "master.xml"));
+    }
+
+    @Test
+    void testPropertiesAreNotSplit() throws IOException {
+        write("master.xml", """
+                  <property name="schema" value="public"/>
+                  <include file="db/tables.xml"/>
+                """);
+
+        assertNull(ChangelogTree.leaves(root, "master.xml"));
+    }
+
+    @Test
+    void testParallelLoadMatchesSerialLoad() throws Exception {
+        IndexSnapshot.setDirectory(null);
+        try {
+            Indexes.LoadResult serial = Indexes.loadAll(root.resolve("master.xml").toFile());
+            ChangelogTree.setParallel(true);
+            Indexes.LoadResult parallel = Indexes.loadAll(root.resolve("master.xml").toFile());
+
+            assertEquals(serial, parallel);
+            assertEquals(List.copyOf(serial.indexMap().get("users")), List.copyOf(parallel.indexMap().get("users")));
+            assertTrue(parallel.indexMap().get("users").stream().anyMatch(i -> i.name().equals("idx_users_email")));
+            assertTrue(parallel.indexMap().get("users").stream().noneMatch(i -> i.name().equals("idx_users_name")));
+        } finally {
+            IndexSnapshot.setDirectory(IndexSnapshot.defaultDirectory());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package sa.com.cloudsolutions.liquibase;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import liquibase.exception.LiquibaseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexSnapshotTest {
+    private static final String HEADER = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <databaseChangeLog
+                xmlns="http://www.liquibase.org/xml/ns/dbchangelog"
+                xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                xsi:schemaLocation="http://www.liquibase.org/xml/ns/dbchangelog
+                http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.8.xsd">
+            """;
+    private static final String FOOTER = "</databaseChangeLog>\n";
+
+    @TempDir
+    Path tempDir;
+
+    private Path changelogDir;
+    private File master;
+    private File snapshotDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        changelogDir = tempDir.resolve("src/main/resources/db/changelog");
+        Files.createDirectories(changelogDir);
+        snapshotDir = tempDir.resolve("snapshots").toFile();
+        IndexSnapshot.setDirectory(snapshotDir);
+
+        write("tables.xml", """
+                  <changeSet id="1" author="test">
+                    <createTable tableName="users">
+                      <column name="id" type="bigint"><constraints primaryKey="true"/></column>
+                      <column name="email" type="varchar(100)"/>
+                      <column name="name" type="varchar(100)"/>
+                    </createTable>
+                  </changeSet>
+                """);
+        write("indexes.xml", """
+                  <changeSet id="2" author="test">
+                    <createIndex tableName="users" indexName="idx_users_email">
+                      <column name="email"/>
+                    </createIndex>
+                  </changeSet>
+                """);
+        master = write("changelog-master.xml", """
+                  <include file="db/changelog/tables.xml"/>
+                  <include file="db/changelog/indexes.xml"/>
+                """);
+    }
+
+    @AfterEach
+    void tearDown() {
+        IndexSnapshot.setDirectory(IndexSnapshot.defaultDirectory());
+    }
+
+    private File write(String name, String changeSets) throws IOException {
+        Path file = changelogDir.resolve(name);
+        Files.writeString(file, HEADER + changeSets + FOOTER);
+        return file.toFile();
+    }
+
+    private Set<String> indexNames() throws IOException, LiquibaseException {
+        return Indexes.load(master).getOrDefault("users", Set.of()).stream()
+                .map(Indexes.IndexInfo::name)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Renames the index added by the {@code indexes.xml} segment of the snapshot, so that tests
+     * can tell whether that segment was replayed or parsed again.
+     */
+    private void tamperWithIndexesSegment() throws IOException {
+        File[] snapshots = snapshotDir.listFiles((dir, name) -> name.endsWith(".json"));
+        assertNotNull(snapshots);
+        assertEquals(1, snapshots.length);
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = (ObjectNode) mapper.readTree(snapshots[0]);
+        root.withArray("segments").forEach(segment -> {
+            if (segment.path("file").asText().endsWith("indexes.xml")) {
+                ((ObjectNode) segment.path("ops").get(0).path("index")).put("name", "idx_from_snapshot");
+            }
+        });
+        mapper.writeValue(snapshots[0], root);
+    }
+
+    @Test
+    void testUnchangedChangelogIsReplayedFromSnapshot() throws Exception {
+        assertTrue(indexNames().contains("idx_users_email"));
+
+        tamperWithIndexesSegment();
+
+        assertTrue(indexNames().contains("idx_from_snapshot"));
+    }
+
+    @Test
+    void testChangedLeafIsReparsedAndLaterFilesReplayed() throws Exception {
+        write("later.xml", """
+                  <changeSet id="3" author="test">
+                    <dropIndex tableName="users" indexName="idx_users_name"/>
+                  </changeSet>
+                """);
+        write("changelog-master.xml", """
+                  <include file="db/changelog/tables.xml"/>
+                  <include file="db/changelog/indexes.xml"/>
+                  <include file="db/changelog/later.xml"/>
+                """);
+        indexNames();
+        tamperWithIndexesSegment();
+
+        // A new index in the first file, dropped again by the last one
+        write("tables.xml", """
+                  <changeSet id="1" author="test">
+                    <createTable tableName="users">
+                      <column name="id" type="bigint"><constraints primaryKey="true"/></column>
+                      <column name="email" type="varchar(100)"/>
+                      <column name="name" type="varchar(100)"/>
+                    </createTable>
+                  </changeSet>
+                  <changeSet id="1b" author="test">
+                    <createIndex tableName="users" indexName="idx_users_name">
+                      <column name="name"/>
+                    </createIndex>
+                    <createIndex tableName="users" indexName="idx_users_email_name">
+                      <column name="email"/>
+                      <column name="name"/>
+                    </createIndex>
+                  </changeSet>
+                """);
+
+        Set<String> names = indexNames();
+        assertTrue(names.contains("idx_users_email_name"), "changed file should be parsed again");
+        assertFalse(names.contains("idx_users_name"), "later drop should still be applied");
+        assertTrue(names.contains("idx_from_snapshot"), "unchanged file should come from the snapshot");
+    }
+
+    @Test
+    void testChangedIncludeListTriggersFullParse() throws Exception {
+        indexNames();
+        tamperWithIndexesSegment();
+
+        write("extra.xml", """
+                  <changeSet id="3" author="test">
+                    <createIndex tableName="users" indexName="idx_users_name">
+                      <column name="name"/>
+                    </createIndex>
+                  </changeSet>
+                """);
+        write("changelog-master.xml", """
+                  <include file="db/changelog/tables.xml"/>
+                  <include file="db/changelog/indexes.xml"/>
+                  <include file="db/changelog/extra.xml"/>
+                """);
+
+        Set<String> names = indexNames();
+        assertTrue(names.contains("idx_users_name"));
+        assertTrue(names.contains("idx_users_email"));
+        assertFalse(names.contains("idx_from_snapshot"));
+    }
+
+    @Test
+    void testDisabledSnapshotWritesNothing() throws Exception {
+        IndexSnapshot.setDirectory(null);
+
+        assertTrue(indexNames().contains("idx_users_email"));
+        assertFalse(snapshotDir.exists());
+    }
+
+    @Test
+    void testSnapshotIsOffUnlessThePropertyIsSet() {
+        String previous = System.getProperty(IndexSnapshot.DIRECTORY_PROPERTY);
+        try {
+            System.clearProperty(IndexSnapshot.DIRECTORY_PROPERTY);
+            assertNull(IndexSnapshot.defaultDirectory());
+
+            System.setProperty(IndexSnapshot.DIRECTORY_PROPERTY, "none");
+            assertNull(IndexSnapshot.defaultDirectory());
+
+            System.setProperty(IndexSnapshot.DIRECTORY_PROPERTY, snapshotDir.getPath());
+            assertEquals(snapshotDir, IndexSnapshot.defaultDirectory());
+        } finally {
+            if (previous == null) {
+                System.clearProperty(IndexSnapshot.DIRECTORY_PROPERTY);
+            } else {
+                System.setProperty(IndexSnapshot.DIRECTORY_PROPERTY, previous);
+            }
+        }
+    }
+}